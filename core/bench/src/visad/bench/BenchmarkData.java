@@ -0,0 +1,180 @@
+//
+// BenchmarkData.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.bench;
+
+import java.util.Random;
+
+import visad.FlatField;
+import visad.FunctionType;
+import visad.Gridded2DSet;
+import visad.Gridded3DSet;
+import visad.Linear2DSet;
+import visad.RealTupleType;
+import visad.RealType;
+import visad.VisADException;
+
+/**
+ * Synthetic data shared by the benchmarks.  Everything is generated
+ * from fixed seeds, so every run measures the same inputs.
+ */
+public final class BenchmarkData {
+
+  public static final RealType X = RealType.getRealType("bench_x");
+  public static final RealType Y = RealType.getRealType("bench_y");
+  public static final RealType Z = RealType.getRealType("bench_z");
+  public static final RealType T = RealType.getRealType("bench_t");
+  public static final RealType P = RealType.getRealType("bench_p");
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * @return the (x, y) domain type
+   */
+  public static RealTupleType getDomain2D() throws VisADException {
+    return new RealTupleType(X, Y);
+  }
+
+  /**
+   * @return the (x, y, z) domain type
+   */
+  public static RealTupleType getDomain3D() throws VisADException {
+    return new RealTupleType(X, Y, Z);
+  }
+
+  /**
+   * The value of a smooth field with some fine structure, so contours
+   * and isosurfaces are long and wiggly.
+   */
+  public static float field(float x, float y, float z) {
+    return (float) (Math.sin(x * 0.05) * Math.cos(y * 0.037)
+                    + 0.3 * Math.sin((x + y) * 0.21) + 0.2 * Math.cos(z * 0.13));
+  }
+
+  /**
+   * @param n  samples along each axis
+   * @return an n by n FlatField ((x, y) -> (t, p)) on a Linear2DSet
+   */
+  public static FlatField makeFlatField(int n)
+         throws VisADException, java.rmi.RemoteException {
+    RealTupleType domain = getDomain2D();
+    FunctionType type = new FunctionType(domain, new RealTupleType(T, P));
+    Linear2DSet set = new Linear2DSet(domain, 0, n - 1, n, 0, n - 1, n);
+    float[][] values = new float[2][n * n];
+    for (int j=0; j<n; j++) {
+      for (int i=0; i<n; i++) {
+        values[0][j * n + i] = 280 + 20 * field(i, j, 0);
+        values[1][j * n + i] = 1000 - 50 * field(j, i, 0);
+      }
+    }
+    FlatField field = new FlatField(type, set);
+    field.setSamples(values, false);
+    return field;
+  }
+
+  /**
+   * @param n  samples along each axis
+   * @return a Linear2DSet over the same domain as makeFlatField(n),
+   *         offset by a fraction of a grid box so resampling interpolates
+   */
+  public static Linear2DSet makeResampleSet(int n) throws VisADException {
+    return new Linear2DSet(getDomain2D(), 0.37, n - 1.63, n, 0.21, n - 1.79, n);
+  }
+
+  /**
+   * @param n  samples along each axis
+   * @return an n by n curvilinear (x, y) grid
+   */
+  public static Gridded2DSet makeGrid2D(int n) throws VisADException {
+    float[][] samples = new float[2][n * n];
+    for (int j=0; j<n; j++) {
+      for (int i=0; i<n; i++) {
+        samples[0][j * n + i] = i + 0.2f * j + 0.3f * (float) Math.sin(j * 0.1);
+        samples[1][j * n + i] = j + 0.1f * (float) Math.cos(i * 0.07);
+      }
+    }
+    return new Gridded2DSet(getDomain2D(), samples, n, n);
+  }
+
+  /**
+   * @param n   samples along x and y
+   * @param nz  samples along z
+   * @return an n by n by nz curvilinear (x, y, z) grid
+   */
+  public static Gridded3DSet makeGrid3D(int n, int nz) throws VisADException {
+    float[][] samples = new float[3][n * n * nz];
+    int k = 0;
+    for (int l=0; l<nz; l++) {
+      for (int j=0; j<n; j++) {
+        for (int i=0; i<n; i++) {
+          samples[0][k] = i + 0.1f * (float) Math.sin(l * 0.3);
+          samples[1][k] = j + 0.1f * (float) Math.cos(i * 0.05);
+          samples[2][k] = l + 0.05f * (float) Math.sin(j * 0.2);
+          k++;
+        }
+      }
+    }
+    return new Gridded3DSet(getDomain3D(), samples, n, n, nz);
+  }
+
+  /**
+   * @param n   samples along x and y
+   * @param nz  samples along z
+   * @return field values for makeGrid3D(n, nz)
+   */
+  public static float[] makeGrid3DValues(int n, int nz) {
+    float[] values = new float[n * n * nz];
+    int k = 0;
+    for (int l=0; l<nz; l++) {
+      for (int j=0; j<n; j++) {
+        for (int i=0; i<n; i++) {
+          values[k++] = field(i, j, 4 * l);
+        }
+      }
+    }
+    return values;
+  }
+
+  /**
+   * @param dim     2 or 3
+   * @param count   number of points
+   * @param extent  points are drawn uniformly from [0, extent) on each axis
+   * @param seed    random seed
+   * @return random points
+   */
+  public static float[][] makePoints(int dim, int count, float extent,
+                                     long seed) {
+    Random random = new Random(seed);
+    float[][] points = new float[dim][count];
+    for (int i=0; i<count; i++) {
+      for (int d=0; d<dim; d++) {
+        points[d][i] = extent * random.nextFloat();
+      }
+    }
+    return points;
+  }
+}
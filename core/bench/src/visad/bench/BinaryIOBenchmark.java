@@ -0,0 +1,104 @@
+//
+// BinaryIOBenchmark.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import visad.DataImpl;
+import visad.FlatField;
+import visad.data.visad.BinaryReader;
+import visad.data.visad.BinaryWriter;
+
+/**
+ * Writing and reading FlatFields in the VisAD binary format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BinaryIOBenchmark {
+
+  /** samples along each axis */
+  @Param({"256", "1024"})
+  public int n;
+
+  private FlatField field;
+  private byte[] encoded;
+
+  @Setup
+  public void setup() throws Exception {
+    field = BenchmarkData.makeFlatField(n);
+    encoded = write(field);
+  }
+
+  private static byte[] write(DataImpl data) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    BinaryWriter writer = new BinaryWriter(bytes);
+    writer.save(data);
+    writer.close();
+    return bytes.toByteArray();
+  }
+
+  private static DataImpl read(byte[] encoded) throws Exception {
+    BinaryReader reader =
+      new BinaryReader(new ByteArrayInputStream(encoded));
+    DataImpl data = reader.getData();
+    reader.close();
+    return data;
+  }
+
+  @Benchmark
+  public byte[] write() throws Exception {
+    return write(field);
+  }
+
+  @Benchmark
+  public DataImpl read() throws Exception {
+    return read(encoded);
+  }
+
+  @Benchmark
+  public DataImpl roundTrip() throws Exception {
+    return read(write(field));
+  }
+}
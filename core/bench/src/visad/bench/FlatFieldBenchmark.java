@@ -0,0 +1,112 @@
+//
+// FlatFieldBenchmark.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import visad.Data;
+import visad.Field;
+import visad.FlatField;
+import visad.Linear2DSet;
+import visad.ResamplePlan;
+
+/**
+ * FlatField math and resampling on n by n grids.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FlatFieldBenchmark {
+
+  /** samples along each axis */
+  @Param({"256", "1024"})
+  public int n;
+
+  private FlatField field;
+  private FlatField other;
+  private Linear2DSet resampleSet;
+  private ResamplePlan plan;
+
+  @Setup
+  public void setup() throws Exception {
+    field = BenchmarkData.makeFlatField(n);
+    other = (FlatField) field.unary(Data.NEGATE, Data.NEAREST_NEIGHBOR,
+                                    Data.NO_ERRORS);
+    resampleSet = BenchmarkData.makeResampleSet(n);
+    plan = new ResamplePlan(field, resampleSet, Data.WEIGHTED_AVERAGE,
+                            Data.NO_ERRORS);
+  }
+
+  @Benchmark
+  public Data binaryAdd() throws Exception {
+    return field.binary(other, Data.ADD, Data.NEAREST_NEIGHBOR,
+                        Data.NO_ERRORS);
+  }
+
+  @Benchmark
+  public Data binaryMultiply() throws Exception {
+    return field.binary(other, Data.MULTIPLY, Data.NEAREST_NEIGHBOR,
+                        Data.NO_ERRORS);
+  }
+
+  @Benchmark
+  public Data unarySqrt() throws Exception {
+    return field.unary(Data.SQRT, Data.NEAREST_NEIGHBOR, Data.NO_ERRORS);
+  }
+
+  @Benchmark
+  public Field resampleNearest() throws Exception {
+    return field.resample(resampleSet, Data.NEAREST_NEIGHBOR,
+                          Data.NO_ERRORS);
+  }
+
+  @Benchmark
+  public Field resampleWeighted() throws Exception {
+    return field.resample(resampleSet, Data.WEIGHTED_AVERAGE,
+                          Data.NO_ERRORS);
+  }
+
+  @Benchmark
+  public Field resamplePlan() throws Exception {
+    return field.resample(plan);
+  }
+}
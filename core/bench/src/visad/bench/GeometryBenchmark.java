@@ -0,0 +1,121 @@
+//
+// GeometryBenchmark.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import visad.Contour2D;
+import visad.Gridded3DSet;
+import visad.VisADGeometryArray;
+
+/**
+ * Contouring and isosurface extraction, the core of the display
+ * transforms of 2-D and 3-D grids.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GeometryBenchmark {
+
+  /** grid samples along x and y */
+  @Param({"256", "1024"})
+  public int n;
+
+  /** number of contour levels */
+  @Param({"20"})
+  public int levels;
+
+  /** grid samples along z for the isosurface */
+  @Param({"32"})
+  public int nz;
+
+  private float[] grid;
+  private Gridded3DSet spatial2D;
+  private float[] contourLevels;
+  private byte[][] levelColors;
+
+  private Gridded3DSet grid3D;
+  private float[] values3D;
+
+  @Setup
+  public void setup() throws Exception {
+    grid = new float[n * n];
+    float[][] samples = new float[3][n * n];
+    for (int ic=0; ic<n; ic++) {
+      for (int ir=0; ir<n; ir++) {
+        grid[ic * n + ir] = BenchmarkData.field(ir, ic, 0);
+        samples[0][ic * n + ir] = ir;
+        samples[1][ic * n + ir] = ic;
+      }
+    }
+    spatial2D = new Gridded3DSet(BenchmarkData.getDomain3D(), samples, n, n);
+    contourLevels = new float[levels];
+    levelColors = new byte[3][levels];
+    for (int i=0; i<levels; i++) {
+      contourLevels[i] = -1.2f + 2.4f * i / (levels - 1);
+      levelColors[0][i] = (byte) (255 * i / levels);
+      levelColors[2][i] = (byte) (255 - 255 * i / levels);
+    }
+
+    grid3D = BenchmarkData.makeGrid3D(n, nz);
+    values3D = BenchmarkData.makeGrid3DValues(n, nz);
+  }
+
+  @Benchmark
+  public Object contour() throws Exception {
+    return Contour2D.contour(grid, n, n, contourLevels, -10f, 10f, 0f, true,
+                             null, new boolean[] {false, false, false}, false,
+                             null, levelColors, new double[] {0, 1, 0, 1},
+                             1.0, 1, 1, 1.0, false, null, null, false,
+                             spatial2D);
+  }
+
+  @Benchmark
+  public VisADGeometryArray isoSurface() throws Exception {
+    return grid3D.makeIsoSurface(0.3f, values3D, null, false);
+  }
+
+  @Benchmark
+  public VisADGeometryArray isoSurfaceIndexed() throws Exception {
+    return grid3D.makeIsoSurface(0.3f, values3D, null, true);
+  }
+}
@@ -0,0 +1,108 @@
+//
+// GriddedSetBenchmark.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import visad.Gridded2DSet;
+import visad.Gridded3DSet;
+import visad.Irregular3DSet;
+
+/**
+ * Point location in curvilinear grids and irregular 3-D sets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GriddedSetBenchmark {
+
+  /** grid samples along x and y (and 1/4 of that along z) */
+  @Param({"128", "512"})
+  public int n;
+
+  /** number of points located per call */
+  @Param({"100000"})
+  public int points;
+
+  /** number of samples in the irregular set */
+  @Param({"5000"})
+  public int irregular;
+
+  private Gridded2DSet grid2D;
+  private Gridded3DSet grid3D;
+  private Irregular3DSet set3D;
+  private float[][] points2D;
+  private float[][] points3D;
+  private float[][] pointsIrregular;
+
+  @Setup
+  public void setup() throws Exception {
+    int nz = Math.max(n / 4, 2);
+    grid2D = BenchmarkData.makeGrid2D(n);
+    grid3D = BenchmarkData.makeGrid3D(n, nz);
+    points2D = BenchmarkData.makePoints(2, points, n - 1, 1);
+    points3D = BenchmarkData.makePoints(3, points, nz - 1, 2);
+    set3D = new Irregular3DSet(BenchmarkData.getDomain3D(),
+                               BenchmarkData.makePoints(3, irregular, 1, 3));
+    pointsIrregular = BenchmarkData.makePoints(3, points, 1, 4);
+
+    // build the lazily created search structures outside the measurement
+    grid2D.valueToGrid(points2D);
+    grid3D.valueToGrid(points3D);
+    set3D.valueToTri(pointsIrregular);
+  }
+
+  @Benchmark
+  public float[][] gridded2DValueToGrid() throws Exception {
+    return grid2D.valueToGrid(points2D);
+  }
+
+  @Benchmark
+  public float[][] gridded3DValueToGrid() throws Exception {
+    return grid3D.valueToGrid(points3D);
+  }
+
+  @Benchmark
+  public int[] irregular3DValueToTri() throws Exception {
+    return set3D.valueToTri(pointsIrregular);
+  }
+}
@@ -0,0 +1,206 @@
+//
+// SocketSlaveBenchmark.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.bench;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import visad.SocketSlaveDisplay;
+import visad.browser.Convert;
+import visad.browser.FrameCodec;
+import visad.browser.VisADApplet;
+import visad.java2d.DisplayImplJ2D;
+
+/**
+ * Delivering display images from a SocketSlaveDisplay to local clients
+ * that speak the VisADApplet protocol.  Each operation sends one image,
+ * in which a square a quarter the width of the display has moved, and
+ * waits until every client has decoded it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SocketSlaveBenchmark {
+
+  /** image width and height */
+  @Param({"512"})
+  public int size;
+
+  /** number of connected clients */
+  @Param({"1", "16", "64"})
+  public int clients;
+
+  /** whether clients ask for delta-encoded images */
+  @Param({"false", "true"})
+  public boolean delta;
+
+  private DisplayImplJ2D display;
+  private SocketSlaveDisplay slave;
+  private Client[] readers;
+  private int frame = 0;
+
+  @Setup
+  public void setup() throws Exception {
+    display = new DisplayImplJ2D("bench", size, size);
+    ServerSocket probe = new ServerSocket(0);
+    int port = probe.getLocalPort();
+    probe.close();
+    slave = new SocketSlaveDisplay(display, port);
+    readers = new Client[clients];
+    for (int i = 0; i < clients; i++) {
+      readers[i] = new Client(port, delta);
+    }
+    for (int i = 0; i < clients; i++) readers[i].awaitId();
+    // let the server notice the delta requests before the first image
+    Thread.sleep(500);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    for (int i = 0; i < clients; i++) readers[i].close();
+    slave.killServer();
+    display.destroy();
+  }
+
+  @Benchmark
+  public int sendImage() throws Exception {
+    frame++;
+    int[] pixels = new int[size * size];
+    int side = size / 4;
+    int x0 = (frame * 7) % (size - side);
+    int y0 = (frame * 3) % (size - side);
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        boolean inside = x >= x0 && x < x0 + side && y >= y0 && y < y0 + side;
+        pixels[y * size + x] = inside ? 0xffff0000 : 0xff000000 | (x ^ y);
+      }
+    }
+    // the first pixel numbers the image, so clients can report it
+    pixels[0] = frame;
+    slave.sendImage(Convert.encodeRLE(pixels), size, size, 0);
+    for (int i = 0; i < clients; i++) readers[i].await(frame);
+    return frame;
+  }
+
+  /** a client that reads and decodes images, as VisADApplet does */
+  private static class Client implements Runnable {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final boolean delta;
+    private int id = 0;
+    private int latest = 0;
+    private boolean done = false;
+
+    Client(int port, boolean delta) throws IOException {
+      this.delta = delta;
+      socket = new Socket("localhost", port);
+      in = new DataInputStream(
+        new BufferedInputStream(socket.getInputStream()));
+      out = new DataOutputStream(socket.getOutputStream());
+      new Thread(this, "SocketSlaveBenchmark-Client").start();
+    }
+
+    synchronized void awaitId() throws InterruptedException {
+      while (id == 0 && !done) wait();
+    }
+
+    synchronized void await(int frame) throws Exception {
+      while (latest < frame) {
+        if (done) throw new IOException("client disconnected");
+        wait();
+      }
+    }
+
+    synchronized void close() throws IOException {
+      done = true;
+      socket.close();
+    }
+
+    public void run() {
+      try {
+        int cid = in.readInt();
+        if (delta) {
+          out.writeInt(cid);
+          out.writeInt(VisADApplet.DELTA_FRAMES);
+        }
+        synchronized (this) {
+          id = cid;
+          notifyAll();
+        }
+        int[] pixels = null;
+        while (true) {
+          int w = in.readInt();
+          if (w == VisADApplet.MESSAGE_FRAME) {
+            int len = in.readInt();
+            for (int i = 0; i < len; i++) in.readChar();
+            continue;
+          }
+          boolean encoded = w == VisADApplet.DELTA_FRAME;
+          if (encoded) w = in.readInt();
+          int h = in.readInt();
+          byte[] data = new byte[in.readInt()];
+          in.readFully(data);
+          pixels = encoded ? FrameCodec.decode(data, pixels, w, h) :
+            Convert.decodeRLE(Convert.bytesToInt(data));
+          synchronized (this) {
+            latest = pixels[0];
+            notifyAll();
+          }
+        }
+      }
+      catch (IOException exc) {
+        synchronized (this) {
+          done = true;
+          notifyAll();
+        }
+      }
+    }
+  }
+}
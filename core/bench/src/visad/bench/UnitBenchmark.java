@@ -0,0 +1,109 @@
+//
+// UnitBenchmark.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import visad.OffsetUnit;
+import visad.SI;
+import visad.ScaledUnit;
+import visad.Unit;
+
+/**
+ * Unit conversion of value arrays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UnitBenchmark {
+
+  /** number of values converted per call */
+  @Param({"1000", "1000000"})
+  public int length;
+
+  private float[] floats;
+  private double[] doubles;
+
+  private Unit kilometer;
+  private Unit celsius;
+  private Unit metersPerSecond;
+  private Unit knots;
+
+  @Setup
+  public void setup() throws Exception {
+    float[][] values = BenchmarkData.makePoints(1, length, 300, 5);
+    floats = values[0];
+    doubles = new double[length];
+    for (int i=0; i<length; i++) {
+      doubles[i] = floats[i];
+    }
+    kilometer = new ScaledUnit(1000.0, SI.meter);
+    celsius = new OffsetUnit(273.15, SI.kelvin);
+    metersPerSecond = SI.meter.divide(SI.second);
+    knots = new ScaledUnit(1852.0 / 3600.0, SI.meter).divide(SI.second);
+  }
+
+  @Benchmark
+  public float[] scaledFloat() throws Exception {
+    return SI.meter.toThis(floats, kilometer);
+  }
+
+  @Benchmark
+  public double[] scaledDouble() throws Exception {
+    return SI.meter.toThis(doubles, kilometer);
+  }
+
+  @Benchmark
+  public float[] offsetFloat() throws Exception {
+    return SI.kelvin.toThis(floats, celsius);
+  }
+
+  @Benchmark
+  public double[] offsetDouble() throws Exception {
+    return celsius.toThis(doubles, SI.kelvin);
+  }
+
+  @Benchmark
+  public float[] derivedFloat() throws Exception {
+    return metersPerSecond.toThis(floats, knots);
+  }
+}
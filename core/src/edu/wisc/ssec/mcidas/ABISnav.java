@@ -169,19 +169,28 @@ public class ABISnav extends AREAnav {
    *
    */
   public double[][] toLatLon(double[][] linele) {
+    double[][] latlon = new double[2][linele[0].length];
+    toLatLon(linele, latlon, 0, linele[0].length);
+    return latlon;
+  }
 
-    int number = linele[0].length;
-    double[][] latlon = new double[2][number];
-    //  transform line/pixel to geographic coordinates:
-    double imglinele[][] = areaCoordToImageCoord(linele);
+  /**
+   * Converts a range of points, as {@link #toLatLon(double[][])}
+   * does, without temporary arrays.
+   * @see AREAnav#toLatLon(double[][], double[][], int, int)
+   */
+  public void toLatLon(double[][] linele, double[][] latlon,
+                        int offset, int count) {
+
+    int end = offset + count;
     double xlin, xele, xele2, xlin2, x, y, xr, yr, rs, tanx, tany, val1, val2,
            yk;
     double vmu, cosrf, sinrf, xt, yt, zt, teta, xfi, xla, ylat, ylon;
 
-    for (int point = 0; point < number; point++) {
+    for (int point = offset; point < end; point++) {
 
-      xlin = imglinele[indexLine][point];
-      xele = imglinele[indexEle][point];
+      xlin = areaToImageLine(linele[indexLine][point]);
+      xele = areaToImageElement(linele[indexEle][point]);
       xele2 = xele / 4.;
       xlin2 = xlin / 4.;
       x = (nstep / 2.) - xele2;
@@ -225,7 +234,6 @@ public class ABISnav extends AREAnav {
       latlon[indexLat][point] = ylat;
       latlon[indexLon][point] = -ylon; // McIDAS uses west positive
     }
-    return latlon;
   }
 
 
@@ -241,15 +249,26 @@ public class ABISnav extends AREAnav {
    *                     (not "image" coordinates);
    */
   public double[][] toLinEle(double[][] latlon) {
+    double[][] linele = new double[2][latlon[0].length];
+    toLinEle(latlon, linele, 0, latlon[0].length);
+    return linele;
+  }
+
+  /**
+   * Converts a range of points, as {@link #toLinEle(double[][])}
+   * does, without temporary arrays.
+   * @see AREAnav#toLinEle(double[][], double[][], int, int)
+   */
+  public void toLinEle(double[][] latlon, double[][] linele,
+                        int offset, int count) {
 
-    int number = latlon[0].length;
-    double[][] linele = new double[2][number];
+    int end = offset + count;
     //  transform line/pixel to geographic coordinates:
     double x1, y1, xfi, xla, rom, y, r1, r2, rs, reph, rpph, coslo, sinlo,
            teta, xt, yt;
     double zt, px, py, xr, yr;
 
-    for (int point = 0; point < number; point++) {
+    for (int point = offset; point < end; point++) {
       x1 = latlon[indexLat][point];
       y1 = latlon[indexLon][point]; // seems to want east postitive
 
@@ -305,7 +324,7 @@ public class ABISnav extends AREAnav {
       linele[indexLine][point] = yr;
       linele[indexEle][point] = xr;
     }
-    return imageCoordToAreaCoord(linele, linele);
+    imageCoordToAreaCoord(linele, offset, count);
   }
 
   /**
@@ -322,19 +341,28 @@ public class ABISnav extends AREAnav {
    *
    */
   public float[][] toLatLon(float[][] linele) {
+    float[][] latlon = new float[2][linele[0].length];
+    toLatLon(linele, latlon, 0, linele[0].length);
+    return latlon;
+  }
 
-    int number = linele[0].length;
-    float[][] latlon = new float[2][number];
-    //  transform line/pixel to geographic coordinates:
-    float imglinele[][] = areaCoordToImageCoord(linele);
+  /**
+   * Converts a range of points, as {@link #toLatLon(float[][])}
+   * does, without temporary arrays.
+   * @see AREAnav#toLatLon(float[][], float[][], int, int)
+   */
+  public void toLatLon(float[][] linele, float[][] latlon,
+                        int offset, int count) {
+
+    int end = offset + count;
     double xlin, xele, xele2, xlin2, x, y, xr, yr, rs, tanx, tany, val1, val2,
            yk;
     double vmu, cosrf, sinrf, xt, yt, zt, teta, xfi, xla, ylat, ylon;
 
-    for (int point = 0; point < number; point++) {
+    for (int point = offset; point < end; point++) {
 
-      xlin = imglinele[indexLine][point];
-      xele = imglinele[indexEle][point];
+      xlin = areaToImageLine(linele[indexLine][point]);
+      xele = areaToImageElement(linele[indexEle][point]);
       xele2 = xele / 4.;
       xlin2 = xlin / 4.;
       x = (nstep / 2.) - xele2;
@@ -378,7 +406,6 @@ public class ABISnav extends AREAnav {
       latlon[indexLat][point] = (float)ylat;
       latlon[indexLon][point] = (float)-ylon; // McIDAS uses west positive
     }
-    return latlon;
   }
 
 
@@ -394,15 +421,26 @@ public class ABISnav extends AREAnav {
    *                     (not "image" coordinates);
    */
   public float[][] toLinEle(float[][] latlon) {
+    float[][] linele = new float[2][latlon[0].length];
+    toLinEle(latlon, linele, 0, latlon[0].length);
+    return linele;
+  }
 
-    int number = latlon[0].length;
-    float[][] linele = new float[2][number];
+  /**
+   * Converts a range of points, as {@link #toLinEle(float[][])}
+   * does, without temporary arrays.
+   * @see AREAnav#toLinEle(float[][], float[][], int, int)
+   */
+  public void toLinEle(float[][] latlon, float[][] linele,
+                        int offset, int count) {
+
+    int end = offset + count;
     //  transform line/pixel to geographic coordinates:
     double x1, y1, xfi, xla, rom, y, r1, r2, rs, reph, rpph, coslo, sinlo,
            teta, xt, yt;
     double zt, px, py, xr, yr;
 
-    for (int point = 0; point < number; point++) {
+    for (int point = offset; point < end; point++) {
       x1 = latlon[indexLat][point];
       y1 = latlon[indexLon][point]; // seems to want east postitive
 
@@ -458,7 +496,17 @@ public class ABISnav extends AREAnav {
       linele[indexLine][point] = (float)yr;
       linele[indexEle][point] = (float)xr;
     }
-    return imageCoordToAreaCoord(linele, linele);
+    imageCoordToAreaCoord(linele, offset, count);
+  }
+
+  /**
+   * Conversions change no shared state, so ranges of points may be
+   * converted by several threads at once, unless a subclass converts
+   * whole arrays differently.
+   * @return true if the whole array conversions are those of this class
+   */
+  public boolean canNavigateInParallel() {
+    return convertsAs(ABISnav.class);
   }
 
 }
@@ -244,6 +244,250 @@ public abstract class AREAnav
        return doubleToFloat(toLinEle(floatToDouble(latlon)));
     }
 
+    /**
+     * Converts a range of points from satellite coordinates to
+     * latitude/longitude, writing them into an existing array.
+     * <p>
+     * Converting many points in ranges gives the same values as
+     * {@link #toLatLon(float[][])}.  Subclasses that return true from
+     * {@link #canNavigateInParallel()} implement this without temporary
+     * arrays, and ranges of the same arrays may then be converted by
+     * several threads at once.  This implementation copies the range and
+     * calls {@link #toLatLon(float[][])}.
+     *
+     * @param  linele      array of line/element pairs, in 'file'
+     *                     coordinates, as for {@link #toLatLon(float[][])}
+     * @param  latlon      array of lat/long pairs to hold the results; it
+     *                     may be <code>linele</code>
+     * @param  offset      index of the first point to convert
+     * @param  count       number of points to convert
+     */
+    public void toLatLon(float[][] linele, float[][] latlon,
+                         int offset, int count) {
+       float[][] values = new float[2][count];
+       System.arraycopy(linele[0], offset, values[0], 0, count);
+       System.arraycopy(linele[1], offset, values[1], 0, count);
+       values = toLatLon(values);
+       System.arraycopy(values[0], 0, latlon[0], offset, count);
+       System.arraycopy(values[1], 0, latlon[1], offset, count);
+    }
+
+    /**
+     * Converts a range of points from latitude/longitude to satellite
+     * line/element, writing them into an existing array.  See
+     * {@link #toLatLon(float[][], float[][], int, int)}.
+     *
+     * @param  latlon      array of lat/long pairs, as for
+     *                     {@link #toLinEle(float[][])}
+     * @param  linele      array of line/element pairs to hold the results,
+     *                     in 'file' coordinates; it may be <code>latlon</code>
+     * @param  offset      index of the first point to convert
+     * @param  count       number of points to convert
+     */
+    public void toLinEle(float[][] latlon, float[][] linele,
+                         int offset, int count) {
+       float[][] values = new float[2][count];
+       System.arraycopy(latlon[0], offset, values[0], 0, count);
+       System.arraycopy(latlon[1], offset, values[1], 0, count);
+       values = toLinEle(values);
+       System.arraycopy(values[0], 0, linele[0], offset, count);
+       System.arraycopy(values[1], 0, linele[1], offset, count);
+    }
+
+    /**
+     * Converts a range of points from satellite coordinates to
+     * latitude/longitude, writing them into an existing array.  See
+     * {@link #toLatLon(float[][], float[][], int, int)}.
+     *
+     * @param  linele      array of line/element pairs, in 'file'
+     *                     coordinates, as for {@link #toLatLon(double[][])}
+     * @param  latlon      array of lat/long pairs to hold the results; it
+     *                     may be <code>linele</code>
+     * @param  offset      index of the first point to convert
+     * @param  count       number of points to convert
+     */
+    public void toLatLon(double[][] linele, double[][] latlon,
+                         int offset, int count) {
+       double[][] values = new double[2][count];
+       System.arraycopy(linele[0], offset, values[0], 0, count);
+       System.arraycopy(linele[1], offset, values[1], 0, count);
+       values = toLatLon(values);
+       System.arraycopy(values[0], 0, latlon[0], offset, count);
+       System.arraycopy(values[1], 0, latlon[1], offset, count);
+    }
+
+    /**
+     * Converts a range of points from latitude/longitude to satellite
+     * line/element, writing them into an existing array.  See
+     * {@link #toLatLon(float[][], float[][], int, int)}.
+     *
+     * @param  latlon      array of lat/long pairs, as for
+     *                     {@link #toLinEle(double[][])}
+     * @param  linele      array of line/element pairs to hold the results,
+     *                     in 'file' coordinates; it may be <code>latlon</code>
+     * @param  offset      index of the first point to convert
+     * @param  count       number of points to convert
+     */
+    public void toLinEle(double[][] latlon, double[][] linele,
+                         int offset, int count) {
+       double[][] values = new double[2][count];
+       System.arraycopy(latlon[0], offset, values[0], 0, count);
+       System.arraycopy(latlon[1], offset, values[1], 0, count);
+       values = toLinEle(values);
+       System.arraycopy(values[0], 0, linele[0], offset, count);
+       System.arraycopy(values[1], 0, linele[1], offset, count);
+    }
+
+    /**
+     * Converts a range of line/element values from Image to AREA (File)
+     * coordinates in place, as {@link #imageCoordToAreaCoord(float[][],
+     * float[][])} does.
+     *
+     * @param   linele  line/element array in Image coordinates
+     * @param   offset  index of the first value to convert
+     * @param   count   number of values to convert
+     */
+    protected final void imageCoordToAreaCoord(float[][] linele,
+                                               int offset, int count)
+    {
+        float[] lines = linele[indexLine];
+        float[] eles = linele[indexEle];
+        for (int i = offset; i < offset + count; i++)
+        {
+            lines[i] = imageToAreaLine(lines[i]);
+            eles[i] = imageToAreaElement(eles[i]);
+        }
+    }
+
+    /**
+     * Converts a range of line/element values from Image to AREA (File)
+     * coordinates in place, as {@link #imageCoordToAreaCoord(double[][],
+     * double[][])} does.
+     *
+     * @param   linele  line/element array in Image coordinates
+     * @param   offset  index of the first value to convert
+     * @param   count   number of values to convert
+     */
+    protected final void imageCoordToAreaCoord(double[][] linele,
+                                               int offset, int count)
+    {
+        double[] lines = linele[indexLine];
+        double[] eles = linele[indexEle];
+        for (int i = offset; i < offset + count; i++)
+        {
+            lines[i] = imageToAreaLine(lines[i]);
+            eles[i] = imageToAreaElement(eles[i]);
+        }
+    }
+
+    /**
+     * Converts an AREA (file) line to an Image line, as
+     * {@link #areaCoordToImageCoord(float[][])} does.
+     *
+     * @param   line  line in AREA coordinates
+     * @return  line in Image coordinates; NaN if <code>line</code> is NaN
+     */
+    protected final float areaToImageLine(float line)
+    {
+        // account for flipped coordinates
+        if (isLineFlipped) line = lineOffset - line;
+        return startImageLine + (resLine * (line - startLine)) / magLine;
+    }
+
+    /**
+     * Converts an AREA (file) element to an Image element, as
+     * {@link #areaCoordToImageCoord(float[][])} does.
+     *
+     * @param   ele  element in AREA coordinates
+     * @return  element in Image coordinates
+     */
+    protected final float areaToImageElement(float ele)
+    {
+        return startImageElement + (resElement * (ele - startElement))
+                                   / magElement;
+    }
+
+    /**
+     * Converts an Image line to an AREA (file) line, as
+     * {@link #imageCoordToAreaCoord(float[][])} does.
+     *
+     * @param   line  line in Image coordinates
+     * @return  line in AREA coordinates
+     */
+    protected final float imageToAreaLine(float line)
+    {
+        line = startLine + (magLine * (line - startImageLine)) / resLine;
+        // account for flipped coordinates
+        return isLineFlipped ? lineOffset - line : line;
+    }
+
+    /**
+     * Converts an Image element to an AREA (file) element, as
+     * {@link #imageCoordToAreaCoord(float[][])} does.
+     *
+     * @param   ele  element in Image coordinates
+     * @return  element in AREA coordinates
+     */
+    protected final float imageToAreaElement(float ele)
+    {
+        return startElement + (magElement * (ele - startImageElement))
+                              / resElement;
+    }
+
+    /**
+     * Converts an AREA (file) line to an Image line, as
+     * {@link #areaCoordToImageCoord(double[][])} does.
+     *
+     * @param   line  line in AREA coordinates
+     * @return  line in Image coordinates; NaN if <code>line</code> is NaN
+     */
+    protected final double areaToImageLine(double line)
+    {
+        // account for flipped coordinates
+        if (isLineFlipped) line = lineOffset - line;
+        return startImageLine + (resLine * (line - startLine)) / magLine;
+    }
+
+    /**
+     * Converts an AREA (file) element to an Image element, as
+     * {@link #areaCoordToImageCoord(double[][])} does.
+     *
+     * @param   ele  element in AREA coordinates
+     * @return  element in Image coordinates
+     */
+    protected final double areaToImageElement(double ele)
+    {
+        return startImageElement + (resElement * (ele - startElement))
+                                   / magElement;
+    }
+
+    /**
+     * Converts an Image line to an AREA (file) line, as
+     * {@link #imageCoordToAreaCoord(double[][])} does.
+     *
+     * @param   line  line in Image coordinates
+     * @return  line in AREA coordinates
+     */
+    protected final double imageToAreaLine(double line)
+    {
+        line = startLine + (magLine * (line - startImageLine)) / resLine;
+        // account for flipped coordinates
+        return isLineFlipped ? lineOffset - line : line;
+    }
+
+    /**
+     * Converts an Image element to an AREA (file) element, as
+     * {@link #imageCoordToAreaCoord(double[][])} does.
+     *
+     * @param   ele  element in Image coordinates
+     * @return  element in AREA coordinates
+     */
+    protected final double imageToAreaElement(double ele)
+    {
+        return startElement + (magElement * (ele - startImageElement))
+                              / resElement;
+    }
+
     /** 
      * Define the resolution of the image.
      * values range from 1 (highest) to n (lowest). Note
@@ -696,6 +940,48 @@ public abstract class AREAnav
       return true;
   }
 
+  /**
+   * See if ranges of points may be converted by several threads at once
+   * with {@link #toLatLon(float[][], float[][], int, int)} and
+   * {@link #toLinEle(float[][], float[][], int, int)} (and their double
+   * versions).  Subclasses whose conversions change no shared state can
+   * override.
+   * @return false
+   */
+  public boolean canNavigateInParallel() {
+      return false;
+  }
+
+  /**
+   * See if this navigation converts whole arrays as navClass does, so
+   * that the range conversions of navClass give the same values.  That
+   * is so when this is a navClass, or a subclass of it that does not
+   * override {@link #toLatLon(float[][])}, {@link #toLinEle(float[][])}
+   * or their double versions.  Subclasses that implement the range
+   * conversions return this from {@link #canNavigateInParallel()}.
+   * @param navClass class declaring the range conversions
+   * @return true if the whole array conversions are those of navClass
+   */
+  protected final boolean convertsAs(Class<?> navClass) {
+      Class<?> c = getClass();
+      if (c == navClass) return true;
+      Class<?>[][] types = {{float[][].class}, {double[][].class}};
+      try {
+        for (int i=0; i<types.length; i++) {
+          if (!c.getMethod("toLatLon", types[i]).getDeclaringClass()
+                .isAssignableFrom(navClass) ||
+              !c.getMethod("toLinEle", types[i]).getDeclaringClass()
+                .isAssignableFrom(navClass)) {
+            return false;
+          }
+        }
+      }
+      catch (NoSuchMethodException e) {
+        return false;
+      }
+      return true;
+  }
+
   /**
    * Convert arrays of floats to doubles
    * @param value  arrays of floats
@@ -611,20 +611,7 @@ public class AreaFile implements java.io.Serializable {
 
     // see if the directory needs to be byte-flipped
 
-    if (dir[AD_VERSION] != VERSION_NUMBER) {
-      McIDASUtil.flip(dir, 0, 19);
-      // check again
-      if (dir[AD_VERSION] != VERSION_NUMBER)
-        throw new AreaFileException("Invalid version number - probably not an AREA file");
-      // word 20 may contain characters -- if small integer, flip it...
-      if ((dir[20] & 0xffff) == 0) McIDASUtil.flip(dir, 20, 20);
-      McIDASUtil.flip(dir, 21, 23);
-      // words 24-31 contain memo field
-      McIDASUtil.flip(dir, 32, 50);
-      // words 51-2 contain cal info
-      McIDASUtil.flip(dir, 53, 55);
-      // word 56 contains original source type (ascii)
-      McIDASUtil.flip(dir, 57, 63);
+    if (flipDirectory(dir)) {
       flipwords = true;
     }
 
@@ -744,6 +731,35 @@ public class AreaFile implements java.io.Serializable {
     return;
   }
 
+  /**
+   * Byte-flip the numeric words of a directory block that was written
+   * on a machine of the other byte order.  Words holding characters
+   * are left alone.
+   *
+   * @param dir the directory block, as read
+   *
+   * @return true if the block was flipped
+   *
+   * @exception AreaFileException if the block is not an AREA directory
+   */
+  static boolean flipDirectory(int[] dir) throws AreaFileException {
+    if (dir[AD_VERSION] == VERSION_NUMBER) return false;
+    McIDASUtil.flip(dir, 0, 19);
+    // check again
+    if (dir[AD_VERSION] != VERSION_NUMBER)
+      throw new AreaFileException("Invalid version number - probably not an AREA file");
+    // word 20 may contain characters -- if small integer, flip it...
+    if ((dir[20] & 0xffff) == 0) McIDASUtil.flip(dir, 20, 20);
+    McIDASUtil.flip(dir, 21, 23);
+    // words 24-31 contain memo field
+    McIDASUtil.flip(dir, 32, 50);
+    // words 51-2 contain cal info
+    McIDASUtil.flip(dir, 53, 55);
+    // word 56 contains original source type (ascii)
+    McIDASUtil.flip(dir, 57, 63);
+    return true;
+  }
+
   /**
    * returns the string of the image source location
    *
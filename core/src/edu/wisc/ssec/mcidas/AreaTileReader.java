@@ -0,0 +1,314 @@
+//
+// AreaTileReader.java
+//
+
+/*
+This source file is part of the edu.wisc.ssec.mcidas package and is
+Copyright (C) 1998 - 2015 by Tom Whittaker, Tommy Jasmin, Tom Rink,
+Don Murray, James Kelly, Bill Hibbard, Dave Glowacki, Curtis Rueden
+and others.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package edu.wisc.ssec.mcidas;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Random access reader for rectangular tiles of a local, uncompressed
+ * McIDAS 'area' file.
+ *
+ * <p>Unlike {@link AreaFile}, which streams the data block from its
+ * start, this reads each requested line with a positional read of a
+ * <code>FileChannel</code>, at the offset given by the data offset, line
+ * prefix and line length in the directory.  A sub-region, or a view
+ * decimated by a line and element stride, is therefore read without
+ * touching the lines in between or the rest of the file.</p>
+ *
+ * <p>Reads do not move a file pointer, so one reader may be used by
+ * several threads at once.</p>
+ */
+public class AreaTileReader {
+
+  /** the channel of the file */
+  private final FileChannel channel;
+
+  /** the file */
+  private final RandomAccessFile file;
+
+  /** the directory block */
+  private final int[] dir;
+
+  /** the AreaDirectory of the file */
+  private final AreaDirectory areaDirectory;
+
+  /** byte order of the data */
+  private final ByteOrder order;
+
+  /** data layout, from the directory */
+  private final long datLoc;
+  private final int linePrefixLength, lineLength, elementSize, dataWidth;
+  private final int numLines, numEles;
+
+  /**
+   * Open an area file for tile reads.
+   *
+   * @param filename name of the local file
+   *
+   * @exception AreaFileException if the file cannot be read, or its data
+   *            block is compressed and so cannot be read at random
+   */
+  public AreaTileReader(String filename) throws AreaFileException {
+    try {
+      file = new RandomAccessFile(new File(filename), "r");
+    }
+    catch (IOException e) {
+      throw new AreaFileException("Error opening AreaFile " + filename, e);
+    }
+    channel = file.getChannel();
+
+    try {
+      ByteBuffer buf = ByteBuffer.allocate(AreaFile.AD_DIRSIZE * 4);
+      readFully(buf, 0);
+      buf.flip();
+      dir = new int[AreaFile.AD_DIRSIZE];
+      buf.asIntBuffer().get(dir);
+      boolean flipped = AreaFile.flipDirectory(dir);
+      order = flipped ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+      areaDirectory = new AreaDirectory(dir);
+
+      datLoc = dir[AreaFile.AD_DATAOFFSET];
+      linePrefixLength = dir[AreaFile.AD_PFXSIZE];
+      dataWidth = dir[AreaFile.AD_DATAWIDTH];
+      elementSize = dir[AreaFile.AD_NUMBANDS] * dataWidth;
+      numLines = dir[AreaFile.AD_NUMLINES];
+      numEles = dir[AreaFile.AD_NUMELEMS];
+      lineLength = linePrefixLength + numEles * elementSize;
+
+      if (dataWidth != 1 && dataWidth != 2 && dataWidth != 4) {
+        throw new AreaFileException("Unsupported data width " + dataWidth);
+      }
+      // a compressed data block is shorter than the lines it holds
+      if (channel.size() < datLoc + (long) numLines * lineLength) {
+        throw new AreaFileException("AreaFile " + filename +
+          " is compressed or truncated, and cannot be read at random");
+      }
+    }
+    catch (IOException e) {
+      close();
+      throw new AreaFileException("Error reading AreaFile directory", e);
+    }
+    catch (AreaFileException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the AreaDirectory of the file
+   *
+   * @return AreaDirectory
+   */
+  public AreaDirectory getAreaDirectory() {
+    return areaDirectory;
+  }
+
+  /**
+   * Returns the directory block
+   *
+   * @return an integer array containing the area directory
+   */
+  public int[] getDir() {
+    return dir;
+  }
+
+  /**
+   * Read a tile of one band.  Line and element magnifications follow
+   * {@link AreaFile}: 0, 1 and -1 are full resolution and -n keeps every
+   * n-th line or element; magnifications greater than 1 are not
+   * supported.
+   *
+   * @param band the band number, or -1 for the first band
+   * @param startLine file-relative line number of the first line
+   * @param numLines number of lines to return
+   * @param lineMag line magnification
+   * @param startEle file-relative element number of the first element
+   * @param numEles number of elements to return for each line
+   * @param eleMag element magnification
+   *
+   * @return int array[lines][elements] with data values
+   *
+   * @exception AreaFileException if there is a problem reading the file
+   */
+  public int[][] readTile(int band, int startLine, int numLines, int lineMag,
+                          int startEle, int numEles, int eleMag)
+          throws AreaFileException {
+    int[][] target = new int[numLines][numEles];
+    readTile(band, startLine, numLines, lineMag, startEle, numEles, eleMag,
+             target);
+    return target;
+  }
+
+  /**
+   * Read a tile of one band into an int array.
+   *
+   * @param band the band number, or -1 for the first band
+   * @param startLine file-relative line number of the first line
+   * @param numLines number of lines to return
+   * @param lineMag line magnification
+   * @param startEle file-relative element number of the first element
+   * @param numEles number of elements to return for each line
+   * @param eleMag element magnification
+   * @param target array[lines][elements] to hold the data values
+   *
+   * @exception AreaFileException if there is a problem reading the file
+   */
+  public void readTile(int band, int startLine, int numLines, int lineMag,
+                       int startEle, int numEles, int eleMag,
+                       int[][] target)
+          throws AreaFileException {
+    readTile(band, startLine, numLines, lineMag, startEle, numEles, eleMag,
+             target, null, 0);
+  }
+
+  /**
+   * Read a tile of one band into a float array, one line after another.
+   *
+   * @param band the band number, or -1 for the first band
+   * @param startLine file-relative line number of the first line
+   * @param numLines number of lines to return
+   * @param lineMag line magnification
+   * @param startEle file-relative element number of the first element
+   * @param numEles number of elements to return for each line
+   * @param eleMag element magnification
+   * @param target array to hold numLines * numEles values
+   * @param offset index in target of the first value
+   *
+   * @exception AreaFileException if there is a problem reading the file
+   */
+  public void readTile(int band, int startLine, int numLines, int lineMag,
+                       int startEle, int numEles, int eleMag,
+                       float[] target, int offset)
+          throws AreaFileException {
+    readTile(band, startLine, numLines, lineMag, startEle, numEles, eleMag,
+             null, target, offset);
+  }
+
+  private void readTile(int band, int startLine, int nlines, int lineMag,
+                        int startEle, int neles, int eleMag,
+                        int[][] ints, float[] floats, int offset)
+          throws AreaFileException {
+
+    if (lineMag > 1 || eleMag > 1) {
+      throw new IllegalArgumentException("Magnifications greater that 1 are not currently supported");
+    }
+    int lineStride = Math.max(Math.abs(lineMag), 1);
+    int eleStride = Math.max(Math.abs(eleMag), 1);
+    if (nlines <= 0 || neles <= 0) return;
+    if (startLine < 0 || startEle < 0 ||
+        startLine + (nlines - 1) * lineStride >= numLines ||
+        startEle + (neles - 1) * eleStride >= numEles) {
+      throw new IllegalArgumentException("Arguments outside of file line/element counts");
+    }
+
+    int bandOffset = getBandIndex(band) * dataWidth;
+    int step = eleStride * elementSize;
+    // bytes of a line from the first to the last element read
+    int span = (neles - 1) * step + dataWidth;
+    ByteBuffer buf = ByteBuffer.allocate(span);
+    buf.order(order);
+
+    for (int i = 0; i < nlines; i++) {
+      long line = startLine + (long) i * lineStride;
+      long pos = datLoc + line * lineLength + linePrefixLength +
+                 (long) startEle * elementSize + bandOffset;
+      buf.clear();
+      try {
+        readFully(buf, pos);
+      }
+      catch (IOException e) {
+        throw new AreaFileException("Error reading line " + line, e);
+      }
+
+      int p = 0;
+      if (ints != null) {
+        int[] values = ints[i];
+        for (int j = 0; j < neles; j++, p += step) {
+          values[j] = getValue(buf, p);
+        }
+      }
+      else {
+        int m = offset + i * neles;
+        for (int j = 0; j < neles; j++, p += step) {
+          floats[m + j] = getValue(buf, p);
+        }
+      }
+    }
+  }
+
+  /** value at byte p of buf; 1- and 2-byte data are un-signed */
+  private int getValue(ByteBuffer buf, int p) {
+    switch (dataWidth) {
+      case 1:
+        return buf.get(p) & 0xff;
+      case 2:
+        return buf.getShort(p) & 0xffff;
+      default:
+        return buf.getInt(p);
+    }
+  }
+
+  /** index in the band map of band; -1 is the first band */
+  private int getBandIndex(int band) {
+    if (band == -1) return 0;
+    int[] bands = areaDirectory.getBands();
+    for (int i = 0; i < bands.length; i++) {
+      if (bands[i] == band) return i;
+    }
+    throw new IllegalArgumentException("Band not found in band map");
+  }
+
+  /** fill buf from the file, starting at position pos */
+  private void readFully(ByteBuffer buf, long pos) throws IOException {
+    while (buf.hasRemaining()) {
+      int n = channel.read(buf, pos);
+      if (n < 0) throw new IOException("Unexpected end of file");
+      pos += n;
+    }
+  }
+
+  /**
+   * Close this instance.
+   */
+  public void close() {
+    try {
+      file.close();
+    }
+    catch (IOException ioe) {
+    }
+  }
+
+  public String toString() {
+    return "AreaTileReader: " + numLines + " lines, " + numEles +
+           " elements, " + dir[AreaFile.AD_NUMBANDS] + " bands";
+  }
+}
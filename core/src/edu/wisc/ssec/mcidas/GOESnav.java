@@ -119,9 +119,7 @@ public final class GOESnav extends AREAnav
     private double pictim;
     private double xref;
 
-    private int iold = 0;
-
-    // variables needed for satvec
+    // variables needed for satvec, set up by initSatvec
     private double tdife;
     private double xmmc;
     private double epsiln;
@@ -295,7 +293,7 @@ public final class GOESnav extends AREAnav
             scan2 = (double) (lintot%100000);
             time2 = time1 + scan2*tmpscl;
         }
-        iold = 0;
+        initSatvec();
     }
 
     /** converts from satellite coordinates to latitude/longitude
@@ -310,8 +308,19 @@ public final class GOESnav extends AREAnav
      *                     latlon[indexLon][] of longitudes.
      *
      */
-    public float[][] toLatLon(float[][] linele) 
-    {
+    public float[][] toLatLon(float[][] linele) {
+        float[][] latlon = new float[2][linele[0].length];
+        toLatLon(linele, latlon, 0, linele[0].length);
+        return latlon;
+    }
+
+    /**
+     * Converts a range of points, as {@link #toLatLon(float[][])}
+     * does, without temporary arrays.
+     * @see AREAnav#toLatLon(float[][], float[][], int, int)
+     */
+    public void toLatLon(float[][] linele, float[][] latlon,
+                          int offset, int count) {
 
         int ilin;
         double parlin;
@@ -349,22 +358,20 @@ public final class GOESnav extends AREAnav
         double st;
         double x1;
         double y1;
+        double xyz[] = new double[3];
+        double ll[] = new double[2];
 
-        int number = linele[0].length;
-        float[][] latlon = new float[2][number];
+        int end = offset + count;
 
-        // Convert array to Image coordinates for computations
-        float[][] imglinele = areaCoordToImageCoord(linele);
-
-        for (int point=0; point < number; point++) 
+        for (int point=offset; point < end; point++) 
         {
-            xlin = imglinele[indexLine][point];
-            xele = imglinele[indexEle][point];
+            xlin = areaToImageLine(linele[indexLine][point]);
+            xele = areaToImageElement(linele[indexEle][point]);
             ilin = Math.round( (float) xlin);
             parlin = (ilin - 1)/numsen + 1;
             framet = tmpscl*parlin;
             samtim = framet + pictim;
-            double xyz[] = satvec(samtim);
+            satvec(samtim, xyz);
             ylin = (xlin - piclin) * radlin;
             yele = (xele - picele + gamma + gamdot*samtim)*radele;
             xcor = b11*xyz[0] + b12*xyz[1] + b13*xyz[2];
@@ -406,20 +413,28 @@ public final class GOESnav extends AREAnav
                 st = Math.sin(emega*samtim+xref);
                 x1 = ct*x + st*y;
                 y1 = -st*x + ct*y;
-                double ll[] = nxyzll(x1, y1, z);
+                nxyzll(x1, y1, z, ll);
 
                 latlon[indexLat][point] = (float) ll[0];
                 //  put longitude into East Positive (form)
                 latlon[indexLon][point] = (isEastPositive) ? (float)-ll[1] : (float)ll[1];
             }
         } // end point for loop
+    }
 
+    public double[][] toLatLon(double[][] linele) {
+        double[][] latlon = new double[2][linele[0].length];
+        toLatLon(linele, latlon, 0, linele[0].length);
         return latlon;
-
     }
 
-    public double[][] toLatLon(double[][] linele) 
-    {
+    /**
+     * Converts a range of points, as {@link #toLatLon(double[][])}
+     * does, without temporary arrays.
+     * @see AREAnav#toLatLon(double[][], double[][], int, int)
+     */
+    public void toLatLon(double[][] linele, double[][] latlon,
+                          int offset, int count) {
 
         int ilin;
         double parlin;
@@ -457,22 +472,20 @@ public final class GOESnav extends AREAnav
         double st;
         double x1;
         double y1;
+        double xyz[] = new double[3];
+        double ll[] = new double[2];
 
-        int number = linele[0].length;
-        double[][] latlon = new double[2][number];
-
-        // Convert array to Image coordinates for computations
-        double[][] imglinele = areaCoordToImageCoord(linele);
+        int end = offset + count;
 
-        for (int point=0; point < number; point++) 
+        for (int point=offset; point < end; point++) 
         {
-            xlin = imglinele[indexLine][point];
-            xele = imglinele[indexEle][point];
+            xlin = areaToImageLine(linele[indexLine][point]);
+            xele = areaToImageElement(linele[indexEle][point]);
             ilin = Math.round( (float) xlin);
             parlin = (ilin - 1)/numsen + 1;
             framet = tmpscl*parlin;
             samtim = framet + pictim;
-            double xyz[] = satvec(samtim);
+            satvec(samtim, xyz);
             ylin = (xlin - piclin) * radlin;
             yele = (xele - picele + gamma + gamdot*samtim)*radele;
             xcor = b11*xyz[0] + b12*xyz[1] + b13*xyz[2];
@@ -514,16 +527,13 @@ public final class GOESnav extends AREAnav
                 st = Math.sin(emega*samtim+xref);
                 x1 = ct*x + st*y;
                 y1 = -st*x + ct*y;
-                double ll[] = nxyzll(x1, y1, z);
+                nxyzll(x1, y1, z, ll);
 
                 latlon[indexLat][point] = ll[0];
                 //  put longitude into East Positive (form)
                 latlon[indexLon][point] = (isEastPositive) ? -ll[1] : ll[1];
             }
         } // end point for loop
-
-        return latlon;
-
     }
 
     /**
@@ -537,8 +547,19 @@ public final class GOESnav extends AREAnav
      *                    is an element.  These are in 'file' coordinates
      *                    (not "image" coordinates);
      */
-    public float[][] toLinEle(float[][] latlon) 
-    {
+    public float[][] toLinEle(float[][] latlon) {
+        float[][] linele = new float[2][latlon[0].length];
+        toLinEle(latlon, linele, 0, latlon[0].length);
+        return linele;
+    }
+
+    /**
+     * Converts a range of points, as {@link #toLinEle(float[][])}
+     * does, without temporary arrays.
+     * @see AREAnav#toLinEle(float[][], float[][], int, int)
+     */
+    public void toLinEle(float[][] latlon, float[][] linele,
+                          int offset, int count) {
 
         double xpar;
         double ypar;
@@ -570,11 +591,11 @@ public final class GOESnav extends AREAnav
         double umv;
         double x3;
         double xyzsat[] = new double[3];
+        double xyz[] = new double[3];
 
-        int number = latlon[0].length;
-        float[][] linele = new float[2][number];
+        int end = offset + count;
 
-        for (int point=0; point < number; point++) 
+        for (int point=offset; point < end; point++) 
         {
 
             xpar = latlon[indexLat][point];
@@ -595,7 +616,7 @@ public final class GOESnav extends AREAnav
                 xsat = ysat = zsat = 0.0;
                 x = y = z = 0.0;
                 xht = znorm = 0.0;
-                double xyz[] = nllxyz(xpar, ypar);
+                nllxyz(xpar, ypar, xyz);
                 x1 = xyz[0];
                 y1 = xyz[1];
                 z = xyz[2];
@@ -605,7 +626,7 @@ public final class GOESnav extends AREAnav
                 {
                     if (Math.abs(samtim - orbtim) >= 0.0005)
                     {
-                        xyzsat = satvec(samtim);
+                        satvec(samtim, xyzsat);
                         xsat = xyzsat[0];
                         ysat = xyzsat[1];
                         zsat = xyzsat[2];
@@ -639,7 +660,7 @@ public final class GOESnav extends AREAnav
                 double scnfrc = (scnnum - scan1)/(scan2 - scan1);
                 xlin = oldlin + scnfrc*(xlin - oldlin);
                 samtim = time1 + tmpscl*(scnnum - scan1);
-                xyzsat = satvec(samtim);
+                satvec(samtim, xyzsat);
                 xsat = xyzsat[0];
                 ysat = xyzsat[1];
                 zsat = xyzsat[2];
@@ -682,13 +703,24 @@ public final class GOESnav extends AREAnav
 
         } // end point loop
 
-        // Return in 'File' coordinates
-        return imageCoordToAreaCoord(linele, linele);
+        // Convert to 'File' coordinates
+        imageCoordToAreaCoord(linele, offset, count);
     }
 
 
-    public double[][] toLinEle(double[][] latlon) 
-    {
+    public double[][] toLinEle(double[][] latlon) {
+        double[][] linele = new double[2][latlon[0].length];
+        toLinEle(latlon, linele, 0, latlon[0].length);
+        return linele;
+    }
+
+    /**
+     * Converts a range of points, as {@link #toLinEle(double[][])}
+     * does, without temporary arrays.
+     * @see AREAnav#toLinEle(double[][], double[][], int, int)
+     */
+    public void toLinEle(double[][] latlon, double[][] linele,
+                          int offset, int count) {
 
         double xpar;
         double ypar;
@@ -723,11 +755,11 @@ public final class GOESnav extends AREAnav
         double umv;
         double x3;
         double xyzsat[] = new double[3];
+        double xyz[] = new double[3];
 
-        int number = latlon[0].length;
-        double[][] linele = new double[2][number];
+        int end = offset + count;
 
-        for (int point=0; point < number; point++) 
+        for (int point=offset; point < end; point++) 
         {
 
             xpar = latlon[indexLat][point];
@@ -748,7 +780,7 @@ public final class GOESnav extends AREAnav
                 xsat = ysat = zsat = 0.0;
                 x = y = z = 0.0;
                 xht = znorm = 0.0;
-                double xyz[] = nllxyz(xpar, ypar);
+                nllxyz(xpar, ypar, xyz);
                 x1 = xyz[0];
                 y1 = xyz[1];
                 z = xyz[2];
@@ -759,7 +791,7 @@ public final class GOESnav extends AREAnav
                 {
                     if (Math.abs(samtim - orbtim) >= 0.0005)
                     {
-                        xyzsat = satvec(samtim);
+                        satvec(samtim, xyzsat);
                         xsat = xyzsat[0];
                         ysat = xyzsat[1];
                         zsat = xyzsat[2];
@@ -794,7 +826,7 @@ public final class GOESnav extends AREAnav
                 double scnfrc = (scnnum - scan1)/(scan2 - scan1);
                 xlin = oldlin + scnfrc*(xlin - oldlin);
                 samtim = time1 + tmpscl*(scnnum - scan1);
-                xyzsat = satvec(samtim);
+                satvec(samtim, xyzsat);
                 xsat = xyzsat[0];
                 ysat = xyzsat[1];
                 zsat = xyzsat[2];
@@ -837,8 +869,8 @@ public final class GOESnav extends AREAnav
 
         } // end point loop
 
-        // Return in 'File' coordinates
-        return imageCoordToAreaCoord(linele, linele);
+        // Convert to 'File' coordinates
+        imageCoordToAreaCoord(linele, offset, count);
     }
 
     private int icon1(int yymmdd)
@@ -938,7 +970,7 @@ public final class GOESnav extends AREAnav
          PIERCES THE EQUATOR AT LON 90 DEG, AND WHOSE POSITIVE Z-AXIS
          INTERSECTS THE NORTH POLE.
     */
-    private double[] nllxyz(double xlat, double xlon)
+    private void nllxyz(double xlat, double xlon, double[] xyz)
     {
 
         double ylat = rdpdg*xlat;
@@ -953,7 +985,9 @@ public final class GOESnav extends AREAnav
         double x = r*cslt*csln;
         double y = r*cslt*snln;
         double z = r*snlt;
-        return new double[] {x, y, z};
+        xyz[0] = x;
+        xyz[1] = y;
+        xyz[2] = z;
     }
 
 
@@ -967,7 +1001,7 @@ public final class GOESnav extends AREAnav
          INTERSECTS THE NORTH POLE.
       XLAT,XLON ARE IN DEGREES, WITH NORTH AND WEST POSITIVE
     */
-    private double[] nxyzll(double x, double y, double z)
+    private void nxyzll(double x, double y, double z, double[] ll)
     {
         double xlat;
         double xlon;
@@ -980,63 +1014,63 @@ public final class GOESnav extends AREAnav
             xlat = Math.atan2(asq*Math.sin(a), bsq*Math.cos(a))/rdpdg;
             xlon = -Math.atan2(y,x)/rdpdg;
         }
-        return new double[] {xlat, xlon};
+        ll[0] = xlat;
+        ll[1] = xlon;
     }
 
 /*
 C SATVEC PHILLI 0880 NAVLIB  COMPUTES EARTH SATELLITE AS FUNCTION OF TIM
 C VECTOR EARTH-CENTER-TO-SAT (FUNC OF TIME)
 */
-    private double[] satvec(double samtim)
+    private void initSatvec()
     {
-        if (iold != 1)
-        {
-            iold = 1;
-            double rdpdg = Math.PI/180.0;
-            double re = 6378.388;
-            double gracon = .07436574;
-            double sha = 100.26467;
-            sha = rdpdg*sha;
-            int irayd = 74001;
-            int irahms = 0;
-            double o = rdpdg*orbinc;
-            double p = rdpdg*perhel;
-            double a = rdpdg*asnode;
-            double so = Math.sin(o);
-            double co = Math.cos(o);
-            double sp = Math.sin(p)*semima;
-            double cp = Math.cos(p)*semima;
-            double sa = Math.sin(a);
-            double ca = Math.cos(a);
-            px = cp*ca - sp*sa*co;
-            py = cp*sa + sp*ca*co;
-            pz = sp*so;
-            qx = -sp*ca - cp*sa*co;
-            qy = -sp*sa + cp*ca*co;
-            qz = cp*so;
-            srome2 = Math.sqrt(1.0 - oeccen) * Math.sqrt(1.0 + oeccen);
-            xmmc = gracon*re*Math.sqrt(re/semima)/semima;
-            int iey = (ietimy/1000)%100;
-            int ied = ietimy%1000;
-            int iefac = (iey-1)/4 + 1;
-            double de = 365*(iey-1) + iefac + ied - 1;
-            double te = 
-                1440.0*de + 60.0*McIDASUtil.mcPackedIntegerToDouble(ietimh);
-            int iray = irayd/1000;
-            int irad = irayd%1000;
-            int irafac = (iray-1)/4 + 1;
-            double dra = 365*(iray-1) + irafac + irad -1;
-            double tra = 
-                1440.0*dra + 60.0*McIDASUtil.mcPackedIntegerToDouble(irahms);
-            int inavy = (navday/1000)%100;
-            int inavd = navday%1000;
-            int infac = (inavy-1)/4 + 1;
-            double dnav = 365*(inavy-1) + infac + inavd -1;
-            tdife = dnav*1440. - te;
-            double tdifra = dnav*1440. - tra;
-            epsiln = 1.0E-8;
-        }
+        double rdpdg = Math.PI/180.0;
+        double re = 6378.388;
+        double gracon = .07436574;
+        double sha = 100.26467;
+        sha = rdpdg*sha;
+        int irayd = 74001;
+        int irahms = 0;
+        double o = rdpdg*orbinc;
+        double p = rdpdg*perhel;
+        double a = rdpdg*asnode;
+        double so = Math.sin(o);
+        double co = Math.cos(o);
+        double sp = Math.sin(p)*semima;
+        double cp = Math.cos(p)*semima;
+        double sa = Math.sin(a);
+        double ca = Math.cos(a);
+        px = cp*ca - sp*sa*co;
+        py = cp*sa + sp*ca*co;
+        pz = sp*so;
+        qx = -sp*ca - cp*sa*co;
+        qy = -sp*sa + cp*ca*co;
+        qz = cp*so;
+        srome2 = Math.sqrt(1.0 - oeccen) * Math.sqrt(1.0 + oeccen);
+        xmmc = gracon*re*Math.sqrt(re/semima)/semima;
+        int iey = (ietimy/1000)%100;
+        int ied = ietimy%1000;
+        int iefac = (iey-1)/4 + 1;
+        double de = 365*(iey-1) + iefac + ied - 1;
+        double te = 
+            1440.0*de + 60.0*McIDASUtil.mcPackedIntegerToDouble(ietimh);
+        int iray = irayd/1000;
+        int irad = irayd%1000;
+        int irafac = (iray-1)/4 + 1;
+        double dra = 365*(iray-1) + irafac + irad -1;
+        double tra = 
+            1440.0*dra + 60.0*McIDASUtil.mcPackedIntegerToDouble(irahms);
+        int inavy = (navday/1000)%100;
+        int inavd = navday%1000;
+        int infac = (inavy-1)/4 + 1;
+        double dnav = 365*(inavy-1) + infac + inavd -1;
+        tdife = dnav*1440. - te;
+        double tdifra = dnav*1440. - tra;
+        epsiln = 1.0E-8;
+    }
 
+    private void satvec(double samtim, double[] xyz)
+    {
         double timsam = samtim*60.0;
         double diftim = tdife + timsam;
         double xmanom = xmmc*diftim;
@@ -1054,7 +1088,9 @@ C VECTOR EARTH-CENTER-TO-SAT (FUNC OF TIME)
         double z = xomega*pz + yomega*qz;
         double y = xomega*py + yomega*qy;
         double x = xomega*px + yomega*qx;
-        return new double[] {x, y, z};
+        xyz[0] = x;
+        xyz[1] = y;
+        xyz[2] = z;
     }
     
     /** Get the lat,lon of the subpoint if available
@@ -1065,7 +1101,7 @@ C VECTOR EARTH-CENTER-TO-SAT (FUNC OF TIME)
     
     public double[] getSubpoint() {
     	double samtim;
-    	double[] xyzsat;
+    	double[] xyzsat = new double[3];
     	double ct;
     	double st;
     	double x;
@@ -1077,7 +1113,7 @@ C VECTOR EARTH-CENTER-TO-SAT (FUNC OF TIME)
     	double ssp_lon;
     	
     	samtim = time1;
-        xyzsat = satvec(samtim);
+        satvec(samtim, xyzsat);
         
         ct = Math.cos(emega*samtim+xref);
         st = Math.sin(emega*samtim+xref);
@@ -1087,11 +1123,22 @@ C VECTOR EARTH-CENTER-TO-SAT (FUNC OF TIME)
         x1 = ct*x + st*y;
         y1 = -st*x + ct*y;
         
-        double ll[] = nxyzll(x1, y1, z);
+        double ll[] = new double[2];
+        nxyzll(x1, y1, z, ll);
         
         ssp_lat = ll[0];
         ssp_lon = (isEastPositive) ? -ll[1] : ll[1];
 
         return new double[] {ssp_lat, ssp_lon};
       }
+
+    /**
+     * Conversions change no shared state, so ranges of points may be
+     * converted by several threads at once, unless a subclass converts
+     * whole arrays differently.
+     * @return true if the whole array conversions are those of this class
+     */
+    public boolean canNavigateInParallel() {
+        return convertsAs(GOESnav.class);
+    }
 }
@@ -691,11 +691,23 @@ public class GVARnav extends AREAnav
    *                     latlon[indexLon][] of longitudes.
    *
    */
-  public double[][] toLatLon(double[][] linele) { 
+  public double[][] toLatLon(double[][] linele) {
+    double[][] latlon = new double[2][linele[0].length];
+    toLatLon(linele, latlon, 0, linele[0].length);
+    return latlon;
+  }
+
+  /**
+   * Converts a range of points, as {@link #toLatLon(double[][])}
+   * does, without temporary arrays.
+   * @see AREAnav#toLatLon(double[][], double[][], int, int)
+   */
+  public void toLatLon(double[][] linele, double[][] latlon,
+                        int offset, int count) { 
 
     double rl, rp;
     double rlat, rlon;
-    int number = linele[0].length;
+    int end = offset + count;
 
     // alpha = elevation angle (rad)
     // zeta = scan angle (rad)
@@ -704,16 +716,12 @@ public class GVARnav extends AREAnav
     double[] g = new double[3];
     double[] u = new double[3];
     double sa, ca, da, dz, d1, cz;
-    double[][] latlon = new double[2][number];
-
-    //  transform line/pixel to geographic coordinates:
-    double imglinele[][] = areaCoordToImageCoord(linele); 
 
-    for (int point=0; point<number; point++) {
+    for (int point=offset; point<end; point++) {
 
       //  set input line/pixel numbers
-      rl = imglinele[indexLine][point];
-      rp = imglinele[indexEle][point];
+      rl = areaToImageLine(linele[indexLine][point]);
+      rp = areaToImageElement(linele[indexEle][point]);
 
       //  if doing sounder nav, have to trick routines into thinking image is
       //  at res 1, because nav routines take sounder res into account
@@ -738,7 +746,6 @@ public class GVARnav extends AREAnav
       if (instr == 2) ff = -ff;
       doff = scnmax[instr - 1] - ewnom[instr - 1];;
 
-
       // add new second order origin offset correction
       alpha = alpha0- alpha0 * zeta0 * doff;
       zeta = zeta0+ 0.5f * alpha0 * alpha0 * doff;
@@ -818,9 +825,6 @@ public class GVARnav extends AREAnav
       }
 
     } // end point for loop
-
-    return latlon;
-
   }
 
   /** converts from satellite coordinates to latitude/longitude
@@ -835,11 +839,23 @@ public class GVARnav extends AREAnav
    *                     latlon[indexLon][] of longitudes.
    *
    */
-  public float[][] toLatLon(float[][] linele) { 
+  public float[][] toLatLon(float[][] linele) {
+    float[][] latlon = new float[2][linele[0].length];
+    toLatLon(linele, latlon, 0, linele[0].length);
+    return latlon;
+  }
+
+  /**
+   * Converts a range of points, as {@link #toLatLon(float[][])}
+   * does, without temporary arrays.
+   * @see AREAnav#toLatLon(float[][], float[][], int, int)
+   */
+  public void toLatLon(float[][] linele, float[][] latlon,
+                        int offset, int count) { 
 
     double rl, rp;
     double rlat, rlon;
-    int number = linele[0].length;
+    int end = offset + count;
 
     // alpha = elevation angle (rad)
     // zeta = scan angle (rad)
@@ -848,16 +864,12 @@ public class GVARnav extends AREAnav
     double[] g = new double[3];
     double[] u = new double[3];
     double sa, ca, da, dz, d1, cz;
-    float[][] latlon = new float[2][number];
-
-    //  transform line/pixel to geographic coordinates:
-    float imglinele[][] = areaCoordToImageCoord(linele); 
 
-    for (int point=0; point<number; point++) {
+    for (int point=offset; point<end; point++) {
 
       //  set input line/pixel numbers
-      rl = imglinele[indexLine][point];
-      rp = imglinele[indexEle][point];
+      rl = areaToImageLine(linele[indexLine][point]);
+      rp = areaToImageElement(linele[indexEle][point]);
 
       //  if doing sounder nav, have to trick routines into thinking image is
       //  at res 1, because nav routines take sounder res into account
@@ -882,7 +894,6 @@ public class GVARnav extends AREAnav
       if (instr == 2) ff = -ff;
       doff = scnmax[instr - 1] - ewnom[instr - 1];;
 
-
       // add new second order origin offset correction
       alpha = alpha0- alpha0 * zeta0 * doff;
       zeta = zeta0+ 0.5f * alpha0 * alpha0 * doff;
@@ -962,9 +973,6 @@ public class GVARnav extends AREAnav
       }
 
     } // end point for loop
-
-    return latlon;
-
   }
 
 
@@ -980,6 +988,18 @@ public class GVARnav extends AREAnav
    *                     (not "image" coordinates);
    */
   public double[][] toLinEle(double[][] latlon) {
+    double[][] linele = new double[2][latlon[0].length];
+    toLinEle(latlon, linele, 0, latlon[0].length);
+    return linele;
+  }
+
+  /**
+   * Converts a range of points, as {@link #toLinEle(double[][])}
+   * does, without temporary arrays.
+   * @see AREAnav#toLinEle(double[][], double[][], int, int)
+   */
+  public void toLinEle(double[][] latlon, double[][] linele,
+                        int offset, int count) {
 
     double tmplin, tmpele;
     double sing, slat, w1, w2, ff, doff, alpha1;
@@ -987,14 +1007,13 @@ public class GVARnav extends AREAnav
     double [] f = new double[3];
     double [] ft = new double[3];
     double [] u = new double[3];
-    int number = latlon[0].length;
-    double[][] linele = new double[2][number];
+    int end = offset + count;
 
     ff = (double) iflip;
     if (instr == 2) ff = -ff;
     doff = scnmax[instr-1] - ewnom[instr - 1];
 
-    for (int point=0; point<number; point++) {
+    for (int point=offset; point<end; point++) {
 
       if (Math.abs(latlon[indexLat][point]) > 90.) {
         linele[indexLine][point] = Double.NaN;
@@ -1085,8 +1104,8 @@ public class GVARnav extends AREAnav
 
     } // end for loop on points
 
-    // Return in 'File' coordinates
-    return imageCoordToAreaCoord(linele, linele);
+    // Convert to 'File' coordinates
+    imageCoordToAreaCoord(linele, offset, count);
   }
 
   /**
@@ -1101,6 +1120,18 @@ public class GVARnav extends AREAnav
    *                     (not "image" coordinates);
    */
   public float[][] toLinEle(float[][] latlon) {
+    float[][] linele = new float[2][latlon[0].length];
+    toLinEle(latlon, linele, 0, latlon[0].length);
+    return linele;
+  }
+
+  /**
+   * Converts a range of points, as {@link #toLinEle(float[][])}
+   * does, without temporary arrays.
+   * @see AREAnav#toLinEle(float[][], float[][], int, int)
+   */
+  public void toLinEle(float[][] latlon, float[][] linele,
+                        int offset, int count) {
 
     double tmplin, tmpele;
     double sing, slat, w1, w2, ff, doff, alpha1;
@@ -1108,14 +1139,13 @@ public class GVARnav extends AREAnav
     double [] f = new double[3];
     double [] ft = new double[3];
     double [] u = new double[3];
-    int number = latlon[0].length;
-    float[][] linele = new float[2][number];
+    int end = offset + count;
 
     ff = (double) iflip;
     if (instr == 2) ff = -ff;
     doff = scnmax[instr-1] - ewnom[instr - 1];
 
-    for (int point=0; point<number; point++) {
+    for (int point=offset; point<end; point++) {
 
       if (Math.abs(latlon[indexLat][point]) > 90.) {
         linele[indexLine][point] = Float.NaN;
@@ -1206,8 +1236,18 @@ public class GVARnav extends AREAnav
 
     } // end for loop on points
 
-    // Return in 'File' coordinates
-    return imageCoordToAreaCoord(linele, linele);
+    // Convert to 'File' coordinates
+    imageCoordToAreaCoord(linele, offset, count);
+  }
+
+  /**
+   * Conversions change no shared state, so ranges of points may be
+   * converted by several threads at once, unless a subclass converts
+   * whole arrays differently.
+   * @return true if the whole array conversions are those of this class
+   */
+  public boolean canNavigateInParallel() {
+    return convertsAs(GVARnav.class);
   }
 
 }
@@ -105,8 +105,19 @@ public final class LAMBnav extends AREAnav
      *                     latlon[indexLon][] of longitudes.
      *
      */
-    public double[][] toLatLon(double[][] linele) 
-    {
+    public double[][] toLatLon(double[][] linele) {
+        double[][] latlon = new double[2][linele[0].length];
+        toLatLon(linele, latlon, 0, linele[0].length);
+        return latlon;
+    }
+
+    /**
+     * Converts a range of points, as {@link #toLatLon(double[][])}
+     * does, without temporary arrays.
+     * @see AREAnav#toLatLon(double[][], double[][], int, int)
+     */
+    public void toLatLon(double[][] linele, double[][] latlon,
+                          int offset, int count) {
 
         double xldif;
         double xedif;
@@ -114,16 +125,12 @@ public final class LAMBnav extends AREAnav
         double xlat;
         double xrlon, radius;
 
-        int number = linele[0].length;
-        double[][] latlon = new double[2][number];
-
-        // Convert array to Image coordinates for computations
-        double[][] imglinele = areaCoordToImageCoord(linele);
+        int end = offset + count;
 
-        for (int point=0; point < number; point++) 
+        for (int point=offset; point < end; point++) 
         {
-            xldif = ihem*(imglinele[indexLine][point] - xrow)/xblat;
-            xedif = -ihem*(imglinele[indexEle][point] - xcol)/xblat;
+            xldif = ihem*(areaToImageLine(linele[indexLine][point]) - xrow)/xblat;
+            xedif = -ihem*(areaToImageElement(linele[indexEle][point]) - xcol)/xblat;
             xrlon = 0;
             if (!(xldif == 0 && xedif == 0)) xrlon = Math.atan2(xedif, xldif);
             xlon = ihem*xrlon/xfac/DEGREES_TO_RADIANS + xqlon;
@@ -139,9 +146,6 @@ public final class LAMBnav extends AREAnav
             latlon[indexLon][point] = (iwest == 1) ? -xlon  : xlon;
 
         } // end point for loop
-
-        return latlon;
-
     }
 
     /**
@@ -154,16 +158,26 @@ public final class LAMBnav extends AREAnav
      *                    is an element.  These are in 'file' coordinates
      *                    (not "image" coordinates);
      */
-    public double[][] toLinEle(double[][] latlon) 
-    {
+    public double[][] toLinEle(double[][] latlon) {
+        double[][] linele = new double[2][latlon[0].length];
+        toLinEle(latlon, linele, 0, latlon[0].length);
+        return linele;
+    }
+
+    /**
+     * Converts a range of points, as {@link #toLinEle(double[][])}
+     * does, without temporary arrays.
+     * @see AREAnav#toLinEle(double[][], double[][], int, int)
+     */
+    public void toLinEle(double[][] latlon, double[][] linele,
+                          int offset, int count) {
         double xlon;
         double xlat;
         double xrlon, xrlat, xclat;
 
-        int number = latlon[0].length;
-        double[][] linele = new double[2][number];
+        int end = offset + count;
 
-        for (int point=0; point < number; point++) 
+        for (int point=offset; point < end; point++) 
         {
             xlat = latlon[indexLat][point];
             // transform to McIDAS (west positive longitude) coordinates
@@ -185,7 +199,17 @@ public final class LAMBnav extends AREAnav
 
         } // end point loop
 
-        // Return in 'File' coordinates
-        return imageCoordToAreaCoord(linele, linele);
+        // Convert to 'File' coordinates
+        imageCoordToAreaCoord(linele, offset, count);
+    }
+
+    /**
+     * Conversions change no shared state, so ranges of points may be
+     * converted by several threads at once, unless a subclass converts
+     * whole arrays differently.
+     * @return true if the whole array conversions are those of this class
+     */
+    public boolean canNavigateInParallel() {
+        return convertsAs(LAMBnav.class);
     }
 }
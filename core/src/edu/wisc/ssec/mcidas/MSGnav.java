@@ -108,27 +108,38 @@ public final class MSGnav extends AREAnav
      *
      */
     public double[][] toLatLon(double[][] linele) {
+        double[][] latlon = new double[2][linele[0].length];
+        toLatLon(linele, latlon, 0, linele[0].length);
+        return latlon;
+    }
 
+    /**
+     * Converts a range of points, as {@link #toLatLon(double[][])}
+     * does, without temporary arrays.
+     * @see AREAnav#toLatLon(double[][], double[][], int, int)
+     */
+    public void toLatLon(double[][] linele, double[][] latlon,
+                         int offset, int count) {
 
-        int number = linele[0].length;
-
-        // Convert array to Image coordinates for computations
-        double[][] imglinele = areaCoordToImageCoord(linele);
-        double[][] latlon = imglinele;
-
+        int end = offset + count;
 
         double xlin, xele, xr, yr, tanx, tany, v1, v2;
         double vmu, xt, yt, zt, teta, xlat, xlon;
 
-        for (int point=0; point < number; point++) 
+        for (int point=offset; point < end; point++) 
         {
-            if (Double.isNaN(imglinele[indexLine][point]) || 
-                Double.isNaN(imglinele[indexEle][point])) {
+            // Convert to Image coordinates for computations
+            double imgline = areaToImageLine(linele[indexLine][point]);
+            double imgele = areaToImageElement(linele[indexEle][point]);
+
+            if (Double.isNaN(imgline) || Double.isNaN(imgele)) {
+                latlon[indexLat][point] = Double.NaN;
+                latlon[indexLon][point] = Double.NaN;
                 continue;
             }
 
-            xlin = 3713. - imglinele[indexLine][point]/3.0;
-            xele = 3713. - imglinele[indexEle][point]/3.0;
+            xlin = 3713. - imgline/3.0;
+            xele = 3713. - imgele/3.0;
 
             xr = xele - 1856.;
             yr = xlin - 1856.;
@@ -165,7 +176,6 @@ public final class MSGnav extends AREAnav
 
         } // end point for loop
 
-        return latlon;
 
     }
 
@@ -181,14 +191,25 @@ public final class MSGnav extends AREAnav
      *                    (not "image" coordinates);
      */
     public double[][] toLinEle(double[][] latlon) {
+        double[][] linele = new double[2][latlon[0].length];
+        toLinEle(latlon, linele, 0, latlon[0].length);
+        return linele;
+    }
+
+    /**
+     * Converts a range of points, as {@link #toLinEle(double[][])}
+     * does, without temporary arrays.
+     * @see AREAnav#toLinEle(double[][], double[][], int, int)
+     */
+    public void toLinEle(double[][] latlon, double[][] linele,
+                          int offset, int count) {
        
-      int number = latlon[0].length;
-      double[][] linele = new double[2][number];
+      int end = offset + count;
       double xfi, xla, rom, y, r1, r2, teta, xt, yt, zt;
       double px, py, xr, yr, xele, xlin;
       double xlat, xlon;
 
-      for (int point=0; point < number; point++) 
+      for (int point=offset; point < end; point++) 
       {
           if (Double.isNaN(latlon[indexLat][point]) || 
               Double.isNaN(latlon[indexLon][point])) {
@@ -205,7 +226,6 @@ public final class MSGnav extends AREAnav
                    : -latlon[indexLon][point];
           xlon = xlon - sublon;
 
-
           xfi = xlat*cdr;
           xla = xlon*cdr;
           rom = EARTH_RADIUS*rp/Math.sqrt(rp*rp*Math.cos(xfi) * 
@@ -250,8 +270,8 @@ public final class MSGnav extends AREAnav
 
       } // end point loop
 
-        // Return in 'File' coordinates
-        return imageCoordToAreaCoord(linele, linele);
+        // Convert to 'File' coordinates
+        imageCoordToAreaCoord(linele, offset, count);
     }
 
     /** converts from satellite coordinates to latitude/longitude
@@ -267,25 +287,38 @@ public final class MSGnav extends AREAnav
      *
      */
     public float[][] toLatLon(float[][] linele) {
+        float[][] latlon = new float[2][linele[0].length];
+        toLatLon(linele, latlon, 0, linele[0].length);
+        return latlon;
+    }
 
-        int number = linele[0].length;
+    /**
+     * Converts a range of points, as {@link #toLatLon(float[][])}
+     * does, without temporary arrays.
+     * @see AREAnav#toLatLon(float[][], float[][], int, int)
+     */
+    public void toLatLon(float[][] linele, float[][] latlon,
+                         int offset, int count) {
 
-        // Convert array to Image coordinates for computations
-        float[][] imglinele = areaCoordToImageCoord(linele);
-        float[][] latlon = imglinele;
+        int end = offset + count;
 
         double xlin, xele, xr, yr, tanx, tany, v1, v2;
         double vmu, xt, yt, zt, teta, xlat, xlon;
 
-        for (int point=0; point < number; point++) 
+        for (int point=offset; point < end; point++) 
         {
+            // Convert to Image coordinates for computations
+            float imgline = areaToImageLine(linele[indexLine][point]);
+            float imgele = areaToImageElement(linele[indexEle][point]);
 
-            if (Float.isNaN(imglinele[indexLine][point]) || 
-                Float.isNaN(imglinele[indexEle][point])) {
+            if (Float.isNaN(imgline) || Float.isNaN(imgele)) {
+                latlon[indexLat][point] = Float.NaN;
+                latlon[indexLon][point] = Float.NaN;
                 continue;
             }
-            xlin = 3713. - imglinele[indexLine][point]/3.0;
-            xele = 3713. - imglinele[indexEle][point]/3.0;
+
+            xlin = 3713. - imgline/3.0;
+            xele = 3713. - imgele/3.0;
 
             xr = xele - 1856.;
             yr = xlin - 1856.;
@@ -322,7 +355,6 @@ public final class MSGnav extends AREAnav
 
         } // end point for loop
 
-        return latlon;
 
     }
 
@@ -338,17 +370,27 @@ public final class MSGnav extends AREAnav
      *                    (not "image" coordinates);
      */
     public float[][] toLinEle(float[][] latlon) {
+        float[][] linele = new float[2][latlon[0].length];
+        toLinEle(latlon, linele, 0, latlon[0].length);
+        return linele;
+    }
+
+    /**
+     * Converts a range of points, as {@link #toLinEle(float[][])}
+     * does, without temporary arrays.
+     * @see AREAnav#toLinEle(float[][], float[][], int, int)
+     */
+    public void toLinEle(float[][] latlon, float[][] linele,
+                          int offset, int count) {
        
-      int number = latlon[0].length;
-      float[][] linele = new float[2][number];
+      int end = offset + count;
       double xfi, xla, rom, y, r1, r2, teta, xt, yt, zt;
       double px, py, xr, yr, xele, xlin;
       double xlat, xlon;
 
-      for (int point=0; point < number; point++) 
+      for (int point=offset; point < end; point++) 
       {
 
-
           if (Float.isNaN(latlon[indexLat][point]) || 
               Float.isNaN(latlon[indexLon][point])) {
               linele[indexLine][point] = Float.NaN;
@@ -363,7 +405,6 @@ public final class MSGnav extends AREAnav
                    : -latlon[indexLon][point];
           xlon = xlon - sublon;
 
-
           xfi = xlat*cdr;
           xla = xlon*cdr;
           rom = EARTH_RADIUS*rp/Math.sqrt(rp*rp*Math.cos(xfi) * 
@@ -408,8 +449,17 @@ public final class MSGnav extends AREAnav
 
       } // end point loop
 
-      // Return in 'File' coordinates
-      return imageCoordToAreaCoord(linele, linele);
+      // Convert to 'File' coordinates
+      imageCoordToAreaCoord(linele, offset, count);
+    }
 
+    /**
+     * Conversions change no shared state, so ranges of points may be
+     * converted by several threads at once, unless a subclass converts
+     * whole arrays differently.
+     * @return true if the whole array conversions are those of this class
+     */
+    public boolean canNavigateInParallel() {
+        return convertsAs(MSGnav.class);
     }
 }
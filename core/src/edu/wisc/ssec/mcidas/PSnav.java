@@ -96,8 +96,19 @@ public final class PSnav extends AREAnav
      *                     latlon[indexLon][] of longitudes.
      *
      */
-    public double[][] toLatLon(double[][] linele) 
-    {
+    public double[][] toLatLon(double[][] linele) {
+        double[][] latlon = new double[2][linele[0].length];
+        toLatLon(linele, latlon, 0, linele[0].length);
+        return latlon;
+    }
+
+    /**
+     * Converts a range of points, as {@link #toLatLon(double[][])}
+     * does, without temporary arrays.
+     * @see AREAnav#toLatLon(double[][], double[][], int, int)
+     */
+    public void toLatLon(double[][] linele, double[][] latlon,
+                          int offset, int count) {
 
         double xldif;
         double xedif;
@@ -105,16 +116,12 @@ public final class PSnav extends AREAnav
         double xlat;
         double xrlon, radius;
 
-        int number = linele[0].length;
-        double[][] latlon = new double[2][number];
-
-        // Convert array to Image coordinates for computations
-        double[][] imglinele = areaCoordToImageCoord(linele);
+        int end = offset + count;
 
-        for (int point=0; point < number; point++) 
+        for (int point=offset; point < end; point++) 
         {
-            xldif = ihem * (imglinele[indexLine][point] - xrow)/xblat;
-            xedif = (xcol - imglinele[indexEle][point])/xblat;
+            xldif = ihem * (areaToImageLine(linele[indexLine][point]) - xrow)/xblat;
+            xedif = (xcol - areaToImageElement(linele[indexEle][point]))/xblat;
             xrlon = 0;
             if (!(xldif == 0. && xedif == 0.))
                 xrlon = Math.atan2(xedif, xldif);
@@ -131,9 +138,6 @@ public final class PSnav extends AREAnav
             latlon[indexLon][point] = (iwest == 1) ? -xlon  : xlon;
 
         } // end point for loop
-
-        return latlon;
-
     }
 
     /**
@@ -147,16 +151,26 @@ public final class PSnav extends AREAnav
      *                    is an element.  These are in 'file' coordinates
      *                    (not "image" coordinates);
      */
-    public double[][] toLinEle(double[][] latlon) 
-    {
+    public double[][] toLinEle(double[][] latlon) {
+        double[][] linele = new double[2][latlon[0].length];
+        toLinEle(latlon, linele, 0, latlon[0].length);
+        return linele;
+    }
+
+    /**
+     * Converts a range of points, as {@link #toLinEle(double[][])}
+     * does, without temporary arrays.
+     * @see AREAnav#toLinEle(double[][], double[][], int, int)
+     */
+    public void toLinEle(double[][] latlon, double[][] linele,
+                          int offset, int count) {
         double xlon;
         double xlat;
         double xrlon, xclat, xrlat;
 
-        int number = latlon[0].length;
-        double[][] linele = new double[2][number];
+        int end = offset + count;
 
-        for (int point=0; point < number; point++) 
+        for (int point=offset; point < end; point++) 
         {
 
             xlat = latlon[indexLat][point];
@@ -176,7 +190,17 @@ public final class PSnav extends AREAnav
            
         } // end point loop
 
-        // Return in 'File' coordinates
-        return imageCoordToAreaCoord(linele, linele);
+        // Convert to 'File' coordinates
+        imageCoordToAreaCoord(linele, offset, count);
+    }
+
+    /**
+     * Conversions change no shared state, so ranges of points may be
+     * converted by several threads at once, unless a subclass converts
+     * whole arrays differently.
+     * @return true if the whole array conversions are those of this class
+     */
+    public boolean canNavigateInParallel() {
+        return convertsAs(PSnav.class);
     }
 }
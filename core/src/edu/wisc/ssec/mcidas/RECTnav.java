@@ -120,8 +120,19 @@ public final class RECTnav extends AREAnav
      *                     latlon[indexLon][] of longitudes.
      *
      */
-    public double[][] toLatLon(double[][] linele) 
-    {
+    public double[][] toLatLon(double[][] linele) {
+        double[][] latlon = new double[2][linele[0].length];
+        toLatLon(linele, latlon, 0, linele[0].length);
+        return latlon;
+    }
+
+    /**
+     * Converts a range of points, as {@link #toLatLon(double[][])}
+     * does, without temporary arrays.
+     * @see AREAnav#toLatLon(double[][], double[][], int, int)
+     */
+    public void toLatLon(double[][] linele, double[][] latlon,
+                          int offset, int count) {
 
         double xldif;
         double xedif;
@@ -130,16 +141,12 @@ public final class RECTnav extends AREAnav
         double xele;
         double xlin;
 
-        int number = linele[0].length;
-        double[][] latlon = new double[2][number];
-
-        // Convert array to Image coordinates for computations
-        double[][] imglinele = areaCoordToImageCoord(linele);
+        int end = offset + count;
 
-        for (int point=0; point < number; point++) 
+        for (int point=offset; point < end; point++) 
         {
-            xlin = imglinele[indexLine][point];
-            xele = imglinele[indexEle][point];
+            xlin = areaToImageLine(linele[indexLine][point]);
+            xele = areaToImageElement(linele[indexEle][point]);
 
             xldif = xrow - xlin;
             if (xcol == 1) {
@@ -182,9 +189,6 @@ public final class RECTnav extends AREAnav
             }
 
         } // end point for loop
-
-        return latlon;
-
     }
 
     /**
@@ -198,17 +202,27 @@ public final class RECTnav extends AREAnav
      *                    is an element.  These are in 'file' coordinates
      *                    (not "image" coordinates);
      */
-    public double[][] toLinEle(double[][] latlon) 
-    {
+    public double[][] toLinEle(double[][] latlon) {
+        double[][] linele = new double[2][latlon[0].length];
+        toLinEle(latlon, linele, 0, latlon[0].length);
+        return linele;
+    }
+
+    /**
+     * Converts a range of points, as {@link #toLinEle(double[][])}
+     * does, without temporary arrays.
+     * @see AREAnav#toLinEle(double[][], double[][], int, int)
+     */
+    public void toLinEle(double[][] latlon, double[][] linele,
+                          int offset, int count) {
         double xlon;
         double xlat;
         double xlin;
         double xele;
 
-        int number = latlon[0].length;
-        double[][] linele = new double[2][number];
+        int end = offset + count;
 
-        for (int point=0; point < number; point++) 
+        for (int point=offset; point < end; point++) 
         {
 
             xlat = latlon[indexLat][point];
@@ -234,8 +248,8 @@ public final class RECTnav extends AREAnav
 
         } // end point loop
 
-        // Return in 'File' coordinates
-        return imageCoordToAreaCoord(linele, linele);
+        // Convert to 'File' coordinates
+        imageCoordToAreaCoord(linele, offset, count);
     }
 
 
@@ -251,8 +265,19 @@ public final class RECTnav extends AREAnav
      *                     latlon[indexLon][] of longitudes.
      *
      */
-    public float[][] toLatLon(float[][] linele) 
-    {
+    public float[][] toLatLon(float[][] linele) {
+        float[][] latlon = new float[2][linele[0].length];
+        toLatLon(linele, latlon, 0, linele[0].length);
+        return latlon;
+    }
+
+    /**
+     * Converts a range of points, as {@link #toLatLon(float[][])}
+     * does, without temporary arrays.
+     * @see AREAnav#toLatLon(float[][], float[][], int, int)
+     */
+    public void toLatLon(float[][] linele, float[][] latlon,
+                          int offset, int count) {
 
         double xldif;
         double xedif;
@@ -261,16 +286,12 @@ public final class RECTnav extends AREAnav
         double xele;
         double xlin;
 
-        int number = linele[0].length;
-        float[][] latlon = new float[2][number];
-
-        // Convert array to Image coordinates for computations
-        float[][] imglinele = areaCoordToImageCoord(linele);
+        int end = offset + count;
 
-        for (int point=0; point < number; point++) 
+        for (int point=offset; point < end; point++) 
         {
-            xlin = imglinele[indexLine][point];
-            xele = imglinele[indexEle][point];
+            xlin = areaToImageLine(linele[indexLine][point]);
+            xele = areaToImageElement(linele[indexEle][point]);
 
             xldif = xrow - xlin;
             if (xcol == 1) {
@@ -313,9 +334,6 @@ public final class RECTnav extends AREAnav
             }
 
         } // end point for loop
-
-        return latlon;
-
     }
 
     /**
@@ -329,17 +347,27 @@ public final class RECTnav extends AREAnav
      *                    is an element.  These are in 'file' coordinates
      *                    (not "image" coordinates);
      */
-    public float[][] toLinEle(float[][] latlon) 
-    {
+    public float[][] toLinEle(float[][] latlon) {
+        float[][] linele = new float[2][latlon[0].length];
+        toLinEle(latlon, linele, 0, latlon[0].length);
+        return linele;
+    }
+
+    /**
+     * Converts a range of points, as {@link #toLinEle(float[][])}
+     * does, without temporary arrays.
+     * @see AREAnav#toLinEle(float[][], float[][], int, int)
+     */
+    public void toLinEle(float[][] latlon, float[][] linele,
+                          int offset, int count) {
         double xlon;
         double xlat;
         double xlin;
         double xele;
 
-        int number = latlon[0].length;
-        float[][] linele = new float[2][number];
+        int end = offset + count;
 
-        for (int point=0; point < number; point++) 
+        for (int point=offset; point < end; point++) 
         {
 
             xlat = latlon[indexLat][point];
@@ -365,8 +393,18 @@ public final class RECTnav extends AREAnav
 
         } // end point loop
 
-        // Return in 'File' coordinates
-        return imageCoordToAreaCoord(linele, linele);
+        // Convert to 'File' coordinates
+        imageCoordToAreaCoord(linele, offset, count);
+    }
+
+    /**
+     * Conversions change no shared state, so ranges of points may be
+     * converted by several threads at once, unless a subclass converts
+     * whole arrays differently.
+     * @return true if the whole array conversions are those of this class
+     */
+    public boolean canNavigateInParallel() {
+        return convertsAs(RECTnav.class);
     }
 
 }
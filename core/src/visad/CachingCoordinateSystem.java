@@ -35,10 +35,11 @@ import visad.data.ArrayCache;
 
 
 /**
- * A wrapper class for CoordinateSystems that will cache the last
- * values input and output values of the toReference and fromReference
- * methods.  If the inputs are the same as the last time these
- * methods were called, the previously calculated values are returned.
+ * A wrapper class for CoordinateSystems that will cache recent
+ * input and output values of the toReference and fromReference
+ * methods.  If the inputs are the same as one of the recent calls to
+ * these methods, the previously calculated values are returned.
+ * See {@link visad.data.ArrayCache} for how many values are kept.
  *
  * @author Don Murray
  * @version $Revision: 1.11 $ $Date: 2009-12-07 12:16:19 $
@@ -31,6 +31,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import visad.util.ParallelLoop;
 import visad.util.Trace;
 import visad.util.HersheyFont;
 import java.awt.Font;
@@ -239,13 +240,9 @@ public class Contour2D {
 			Gridded3DSet spatial_set) throws VisADException {
 
 		dash = fill ? false : dash;
-		int ir, ic;
 		int nrm, ncm;
-		int numc, il;
-		int lr, lc, lc2, lrr, lr2, lcc;
-		float xd, yd, xx, yy;
+		float xd, yd;
 		float xdd, ydd;
-		float gg;
 
 		// these are just estimates
 		// int est = 2 * Length; WLH 14 April 2000
@@ -258,12 +255,6 @@ public class Contour2D {
 		// setup colors arrays
 		int interval_length = (interval_colors.length > 0) ? interval_colors[0].length : 0;
 
-		// setup display coordinate arrays
-		float[] vx = new float[maxsize];
-		float[] vy = new float[maxsize];
-
-		int numv;
-
 		// JDM:Find the max and min values of the data
 		float maxValue = Float.NEGATIVE_INFINITY;
 		float minValue = Float.POSITIVE_INFINITY;
@@ -348,17 +339,7 @@ public class Contour2D {
 			interval_colors = tmpColors;
 		}
 
-		int low;
-		int hi;
-
-		int t;
-
-		byte[][] auxLevels = null;
 		int naux = (auxValues != null) ? auxValues.length : 0;
-		byte[] auxa = null;
-		byte[] auxb = null;
-		byte[] auxc = null;
-		byte[] auxd = null;
 		if (naux > 0) {
 			for (int i = 0; i < naux; i++) {
 				if (auxValues[i].length != g.length) {
@@ -366,11 +347,6 @@ public class Contour2D {
 							+ "auxValues lengths don't match");
 				}
 			}
-			auxa = new byte[naux];
-			auxb = new byte[naux];
-			auxc = new byte[naux];
-			auxd = new byte[naux];
-			auxLevels = new byte[naux][maxsize];
 		}
 
 		if (values == null)
@@ -383,10 +359,6 @@ public class Contour2D {
 		// flags for each level indicating dashed rendering
 		boolean[] dashFlags = new boolean[myvals.length];
 
-		int numLevels = myvals.length;
-		float minLevelValue = myvals[0];
-		float maxLevelValue = myvals[numLevels - 1];
-
 		/*
 		 * DRM: 1999-05-19 - Not needed since dash is a boolean // check for bad
 		 * contour interval if (interval==0.0) { throw new
@@ -407,52 +379,6 @@ public class Contour2D {
 		xd = xdd - 0.00002f;
 		yd = ydd - 0.00002f;
 
-		/*
-		 * set up mark array mark= 0 if avail for label center, 2 if in label,
-		 * and 1 if not available and not in label
-		 * 
-		 * lr and lc give label size in grid boxes lrr and lcc give unavailable
-		 * radius
-		 */
-		if (swap[0]) {
-			lr = 1 + (nr - 2) / 10;
-			lc = 1 + (nc - 2) / 50;
-		} else {
-			lr = 1 + (nr - 2) / 50;
-			lc = 1 + (nc - 2) / 10;
-		}
-		lc2 = lc / 2;
-		lr2 = lr / 2;
-		lrr = 1 + (nr - 2) / 8;
-		lcc = 1 + (nc - 2) / 8;
-
-		// allocate mark array
-		char[] mark = new char[nr * nc];
-
-		// set top and bottom rows to 1
-		float max_g = -Float.MAX_VALUE;
-		float min_g = Float.MAX_VALUE;
-		for (ic = 0; ic < nc; ic++) {
-			for (ir = 0; ir < lr; ir++) {
-				mark[(ic) * nr + (ir)] = 1;
-				mark[(ic) * nr + (nr - ir - 2)] = 1;
-				float val = g[(ic) * nr + (ir)];
-				if (val > max_g)
-					max_g = val;
-				if (val < min_g)
-					min_g = val;
-			}
-		}
-
-		// set left and right columns to 1
-		for (ir = 0; ir < nr; ir++) {
-			for (ic = 0; ic < lc; ic++) {
-				mark[(ic) * nr + (ir)] = 1;
-				mark[(nc - ic - 2) * nr + (ir)] = 1;
-			}
-		}
-		numv = 0;
-
 		// - color fill arrays
 		byte[][] color_bin = null;
 		byte[][][] o_flags = null;
@@ -472,183 +398,165 @@ public class Contour2D {
 		visad.util.Trace.call1("Contour2d.loop", " nrm=" + nrm + " ncm=" + ncm
 				+ " naux=" + naux + " myvals.length=" + myvals.length);
 
-		// compute contours
-		for (ic = 0; ic < ncm; ic++) {
-			int ic_plus1 = ic + 1;
-			yy = ydd * ic + 0.0f; // = ic
-			for (ir = 0; ir < nrm; ir++) {
-				int ir_plus1 = ir + 1;
-				xx = xdd * ir + 0.0f; // = ir
+		// compute contours, in bands of grid boxes that are processed
+		// concurrently for large grids
+		ContourBands bands = new ContourBands(g, nr, nrm, ncm, myvals,
+				lowlimit, highlimit, base, dash, auxValues, fill, o_flags,
+				n_lines, ctrLow, xd, yd, xdd, ydd, maxsize);
+		ParallelLoop.run(bands.nboxes, bands);
 
-				int ic_times_nr = ic * nr;
-				int ic_plus1_times_nr = ic_plus1 * nr;
+		// join the bands in grid box order, so vertex indices, strips and
+		// labels are the same as when the grid is contoured in one pass
+		bands.join(ctrSet, dashFlags);
+		float[] vx = bands.vx;
+		float[] vy = bands.vy;
+		byte[][] auxLevels = bands.auxLevels;
 
-				float ga, gb, gc, gd;
-				float gAvg, gMin, gMax;
-				float tmp1, tmp2;
-
-				// WLH 21 April 2000
-				// if (numv+8 >= maxsize || nump+4 >= 2*maxsize) {
-				if (numv + 8 >= maxsize) {
-					// allocate more space
-					maxsize = 2 * maxsize;
-					/*
-					 * WLH 21 April 2000 int[] tt = ipnt; ipnt = new int[2
-					 * maxsize]; System.arraycopy(tt, 0, ipnt, 0, nump);
-					 */
-					float[] tx = vx;
-					float[] ty = vy;
-					vx = new float[maxsize];
-					vy = new float[maxsize];
-					System.arraycopy(tx, 0, vx, 0, numv);
-					System.arraycopy(ty, 0, vy, 0, numv);
-					tx = null;
-					ty = null;
-					if (naux > 0) {
-						byte[][] ta = auxLevels;
-						auxLevels = new byte[naux][maxsize];
-						for (int i = 0; i < naux; i++) {
-							System.arraycopy(ta[i], 0, auxLevels[i], 0, numv);
-						}
-						ta = null;
-					}
-				}
+		// System.err.println ("ii:" + ii1 + " " +ii2 + " " +ii3 + " " +ii4 +
+		// " "
+		// +ii5 + " " +ii6);
+		visad.util.Trace.call2("Contour2d.loop");
 
-				// save index of first vertex in this grid box
-				// JDM: ipnt[nump++] = numv;
-
-				/*
-				 * ga = ( g[ (ic) nr + (ir) ] ); gb = ( g[ (ic) nr + (ir+1) ] );
-				 * gc = ( g[ (ic+1) nr + (ir) ] ); gd = ( g[ (ic+1) nr + (ir+1)
-				 * ] ); boolean miss = false; if (ga != ga || gb != gb || gc !=
-				 * gc || gd != gd) { miss = true; System.out.println("ic, ir = "
-				 * + ic + "  " + ir + " gabcd = " + ga + " " + gb + " " + gc +
-				 * " " + gd); }
-				 */
-
-				/*
-				 * if (ga != ga || gb != gb || gc != gc || gd != gd) { if
-				 * (!anymissing) { anymissing = true;
-				 * System.out.println("missing"); } } else { if (!anynotmissing)
-				 * { anynotmissing = true; System.out.println("notmissing"); } }
-				 */
-				// get 4 corner values, skip box if any are missing
-				//
-				// [c, (x,y+ydd)]-------[d, (x+xdd,y+ydd)]
-				// | |
-				// | |
-				// | |
-				// [a, (x,y)]------------[b, (x+xdd,y)]
-				//
-				// ------------------------------
-				ga = g[ic_times_nr + ir];
-       			if (Float.isNaN(ga))
-         			continue;
-				gb = g[ic_times_nr + ir_plus1];
-       			if (Float.isNaN(gb))
-         			continue;
-				gc = g[ic_plus1_times_nr + ir];
-       			if (Float.isNaN(gc))
-         			continue;
-				gd = g[ic_plus1_times_nr + ir_plus1];
-       			if (Float.isNaN(gd))
-         			continue;
+		/** ------------------- Color Fill ------------------------- */
+		TriangleStripBuilder triStripBldr = null;
 
-				/*
-				 * DRM move outside the loop byte[] auxa = null; byte[] auxb =
-				 * null; byte[] auxc = null; byte[] auxd = null; if (naux > 0) {
-				 * auxa = new byte[naux]; auxb = new byte[naux]; auxc = new
-				 * byte[naux]; auxd = new byte[naux];
-				 */
-				if (naux > 0) {
-					for (int i = 0; i < naux; i++) {
-						byte[] auxValues_i = auxValues[i];
-						auxa[i] = auxValues_i[ic_times_nr + ir];
-						auxb[i] = auxValues_i[ic_times_nr + ir_plus1];
-						auxc[i] = auxValues_i[ic_plus1_times_nr + ir];
-						auxd[i] = auxValues_i[ic_plus1_times_nr + ir_plus1];
-					}
-				}
+		if (fill) {
+			triStripBldr = new TriangleStripBuilder(ncm, nrm, color_bin.length);
+			fillGridBox(g, n_lines, vx, vy, xd, xdd, yd, ydd, nr, nrm, nc, ncm,
+					ctrLow, o_flags, myvals, color_bin, grd_normals,
+					triStripBldr);
+			// BMF 2006-10-04 do not return, ie. draw labels on filled contours
+			// for now, just return because we don't need to do labels
+			// return;
+		}
 
-				// find average, min, and max of 4 corner values
-				gAvg = (ga + gb + gc + gd) / 4.0f;
-
-				// gMin = MIN4(ga,gb,gc,gd);
-				tmp1 = ((ga) < (gb) ? (ga) : (gb));
-				tmp2 = ((gc) < (gd) ? (gc) : (gd));
-				gMin = ((tmp1) < (tmp2) ? (tmp1) : (tmp2));
-
-				// gMax = MAX4(ga,gb,gc,gd);
-				tmp1 = ((ga) > (gb) ? (ga) : (gb));
-				tmp2 = ((gc) > (gd) ? (gc) : (gd));
-				gMax = ((tmp1) > (tmp2) ? (tmp1) : (tmp2));
-
-				/*
-				 * remove for new signature, replace with code below // compute
-				 * clow and chi, low and high contour values in the box tmp1 =
-				 * (gMin-base) / interval; clow = base + interval (( (tmp1) >= 0
-				 * ? (int) ((tmp1) + 0.5) : (int) ((tmp1)-0.5) )-1); while
-				 * (clow<gMin) { clow += interval; }
-				 * 
-				 * tmp1 = (gMax-base) / interval; chi = base + interval ((
-				 * (tmp1) >= 0 ? (int) ((tmp1) + 0.5) : (int) ((tmp1)-0.5) )+1);
-				 * while (chi>gMax) { chi -= interval; }
-				 * 
-				 * // how many contour lines in the box: tmp1 = (chi-clow) /
-				 * interval; numc = 1+( (tmp1) >= 0 ? (int) ((tmp1) + 0.5) :
-				 * (int) ((tmp1)-0.5) );
-				 * 
-				 * // gg is current contour line value gg = clow;
-				 */
-
-				low = 0;
-				hi = numLevels - 1;
-				if (gMax < minLevelValue || gMin > maxLevelValue) {
-					// no contours
-					numc = 1;
-				} else {
-					// some inside the box
-					// JDM: Instead of iterating through the whole list just do
-					// a
-					// binarySearch
-					/*
-					 * for (int i = 0; i < myvals.length; i++) { if (i == 0 &&
-					 * myvals[i] >= gn) { low = i; } else if (myvals[i] >= gn &&
-					 * myvals[i-1] < gn) { low = i; } if (i == 0 && myvals[i] >=
-					 * gx) { hi = i; } else if (myvals[i] >= gx && myvals[i-1] <
-					 * gx) { hi = i; } }
-					 */
-					hi = java.util.Arrays.binarySearch(myvals, gMax);
-					if (hi < 0)
-						hi = (-hi) - 1;
-					if (hi >= myvals.length)
-						hi = myvals.length - 1;
-					low = java.util.Arrays.binarySearch(myvals, gMin);
-					if (low < 0)
-						low = (-low) - 1;
-
-					numc = hi - low + 1;
-				}
+		// ---TDR, build Contour Strips
 
-				// gg = myvals[low];
-				/*
-				 * if (!any && numc > 0) { System.out.println("gMin = " + gMin +
-				 * " gMax = " + gMax + " gAvg = " + gAvg);
-				 * System.out.println("numc = " + numc + " clow = " +
-				 * myvals[low] + " chi = " + myvals[hi]); any = true; }
-				 */
-				if (fill) {
-					o_flags[ir][ic] = new byte[2 * numc]; // - case flags
-					n_lines[ir][ic] = 0; // - number of contour line segments
-					ctrLow[ir][ic] = (short) hi;
-				}
+		Trace.call1("Contour2d.getLineColorArrays");
+		ctrSet.getLineColorArrays(vx, vy, auxLevels, labelColor, labelFont,
+				labelAlign, sphericalDisplayCS, dashFlags);
+		Trace.call2("Contour2d.getLineColorArrays");
 
-				for (il = 0; il < numc; il++) {
-					if ((low + il) >= myvals.length) {
-						System.err.println("bad range: myvals.length=" + myvals
-								+ " il=" + il + " low=" + low + " high=" + hi);
-					}
-					gg = myvals[low + il];
+		return new ContourOutput(ctrSet, triStripBldr);
+	}
+
+	/**
+	 * Contours the grid boxes of a grid in bands of consecutive boxes,
+	 * numbered column by column, as chunks of a {@link ParallelLoop}.
+	 * Each band keeps its own vertices and segments, and the bands are
+	 * then joined in box order.
+	 */
+	private static final class ContourBands implements ParallelLoop.Body {
+
+		private final float[] g;
+		private final int nr, nrm;
+		private final float[] myvals;
+		private final int numLevels;
+		private final float minLevelValue, maxLevelValue;
+		private final float lowlimit, highlimit, base;
+		private final boolean dash;
+		private final byte[][] auxValues;
+		private final int naux;
+		private final boolean fill;
+		private final byte[][][] o_flags;
+		private final short[][] n_lines;
+		private final short[][] ctrLow;
+		private final float xd, yd, xdd, ydd;
+
+		/** estimated vertex count of the whole grid */
+		private final int est_numv;
+
+		/** number of grid boxes */
+		final int nboxes;
+
+		/** bands done so far, in no particular order */
+		private final List<ContourBand> bands = new ArrayList<ContourBand>();
+
+		/** joined vertices of all bands */
+		float[] vx;
+		float[] vy;
+		byte[][] auxLevels;
+
+		ContourBands(float[] g, int nr, int nrm, int ncm, float[] myvals,
+				float lowlimit, float highlimit, float base, boolean dash,
+				byte[][] auxValues, boolean fill, byte[][][] o_flags,
+				short[][] n_lines, short[][] ctrLow, float xd, float yd,
+				float xdd, float ydd, int est_numv) {
+			this.g = g;
+			this.nr = nr;
+			this.nrm = nrm;
+			this.myvals = myvals;
+			numLevels = myvals.length;
+			minLevelValue = myvals[0];
+			maxLevelValue = myvals[numLevels - 1];
+			this.lowlimit = lowlimit;
+			this.highlimit = highlimit;
+			this.base = base;
+			this.dash = dash;
+			this.auxValues = auxValues;
+			naux = (auxValues != null) ? auxValues.length : 0;
+			this.fill = fill;
+			this.o_flags = o_flags;
+			this.n_lines = n_lines;
+			this.ctrLow = ctrLow;
+			this.xd = xd;
+			this.yd = yd;
+			this.xdd = xdd;
+			this.ydd = ydd;
+			this.est_numv = est_numv;
+			nboxes = (nrm > 0 && ncm > 0) ? nrm * ncm : 0;
+		}
+
+		/**
+		 * Contour the grid boxes <code>start</code> through
+		 * <code>end - 1</code>.
+		 */
+		public void run(int start, int end) {
+			int ir, ic;
+			int numc, il;
+			float xx, yy;
+			float gg;
+			int low;
+			int hi;
+			int t;
+
+			// these are just estimates
+			int maxsize = (int) ((long) est_numv * (end - start) / nboxes);
+			if (maxsize < 1000)
+				maxsize = 1000;
+			int numv = 0;
+			float[] vx = new float[maxsize];
+			float[] vy = new float[maxsize];
+			boolean[] dashFlags = new boolean[numLevels];
+			ContourBand band = new ContourBand(start);
+
+			byte[][] auxLevels = null;
+			byte[] auxa = null;
+			byte[] auxb = null;
+			byte[] auxc = null;
+			byte[] auxd = null;
+			if (naux > 0) {
+				auxa = new byte[naux];
+				auxb = new byte[naux];
+				auxc = new byte[naux];
+				auxd = new byte[naux];
+				auxLevels = new byte[naux][maxsize];
+			}
+
+			for (ic = start / nrm; ic * nrm < end; ic++) {
+				int ic_plus1 = ic + 1;
+				yy = ydd * ic + 0.0f; // = ic
+				int ir_end = Math.min(end - ic * nrm, nrm);
+				for (ir = Math.max(start - ic * nrm, 0); ir < ir_end; ir++) {
+					int ir_plus1 = ir + 1;
+					xx = xdd * ir + 0.0f; // = ir
+
+					int ic_times_nr = ic * nr;
+					int ic_plus1_times_nr = ic_plus1 * nr;
+
+					float ga, gb, gc, gd;
+					float gAvg, gMin, gMax;
+					float tmp1, tmp2;
 
 					// WLH 21 April 2000
 					// if (numv+8 >= maxsize || nump+4 >= 2*maxsize) {
@@ -671,382 +579,224 @@ public class Contour2D {
 							byte[][] ta = auxLevels;
 							auxLevels = new byte[naux][maxsize];
 							for (int i = 0; i < naux; i++) {
-								System.arraycopy(ta[i], 0, auxLevels[i], 0,
-										numv);
+								System.arraycopy(ta[i], 0, auxLevels[i], 0, numv);
 							}
 							ta = null;
 						}
 					}
 
-					// make sure gg is within contouring limits
-					if (gg < gMin)
-						continue;
-					if (gg > gMax)
-						break;
-					if (gg < lowlimit)
-						continue;
-					if (gg > highlimit)
-						break;
-
-					// compute orientation of lines inside box
-					int ii = 0;
-					if (gg > ga)
-						ii = 1;
-					if (gg > gb)
-						ii += 2;
-					if (gg > gc)
-						ii += 4;
-					if (gg > gd)
-						ii += 8;
-					if (ii > 7)
-						ii = 15 - ii;
-					if (ii <= 0)
-						continue;
+					// save index of first vertex in this grid box
+					// JDM: ipnt[nump++] = numv;
 
-					if (fill) {
-						if ((low + il) < ctrLow[ir][ic])
-							ctrLow[ir][ic] = (short) (low + il);
-					}
+					/*
+					 * ga = ( g[ (ic) nr + (ir) ] ); gb = ( g[ (ic) nr + (ir+1) ] );
+					 * gc = ( g[ (ic+1) nr + (ir) ] ); gd = ( g[ (ic+1) nr + (ir+1)
+					 * ] ); boolean miss = false; if (ga != ga || gb != gb || gc !=
+					 * gc || gd != gd) { miss = true; System.out.println("ic, ir = "
+					 * + ic + "  " + ir + " gabcd = " + ga + " " + gb + " " + gc +
+					 * " " + gd); }
+					 */
 
-					// DO LABEL HERE
-					if ((mark[(ic) * nr + (ir)]) == 0) {
-						int kc, kr, mc, mr, jc, jr;
-
-						// Insert a label
-
-						// BOX TO AVOID
-						kc = ic - lc2 - lcc;
-						kr = ir - lr2 - lrr;
-						mc = kc + 2 * lcc + lc - 1;
-						mr = kr + 2 * lrr + lr - 1;
-						// OK here
-						for (jc = kc; jc <= mc; jc++) {
-							if (jc >= 0 && jc < nc) {
-								for (jr = kr; jr <= mr; jr++) {
-									if (jr >= 0 && jr < nr) {
-										if ((mark[(jc) * nr + (jr)]) != 2) {
-											mark[(jc) * nr + (jr)] = 1;
-										}
-									}
-								}
-							}
-						}
+					/*
+					 * if (ga != ga || gb != gb || gc != gc || gd != gd) { if
+					 * (!anymissing) { anymissing = true;
+					 * System.out.println("missing"); } } else { if (!anynotmissing)
+					 * { anynotmissing = true; System.out.println("notmissing"); } }
+					 */
+					// get 4 corner values, skip box if any are missing
+					//
+					// [c, (x,y+ydd)]-------[d, (x+xdd,y+ydd)]
+					// | |
+					// | |
+					// | |
+					// [a, (x,y)]------------[b, (x+xdd,y)]
+					//
+					// ------------------------------
+					ga = g[ic_times_nr + ir];
+       			if (Float.isNaN(ga))
+         			continue;
+					gb = g[ic_times_nr + ir_plus1];
+       			if (Float.isNaN(gb))
+         			continue;
+					gc = g[ic_plus1_times_nr + ir];
+       			if (Float.isNaN(gc))
+         			continue;
+					gd = g[ic_plus1_times_nr + ir_plus1];
+       			if (Float.isNaN(gd))
+         			continue;
 
-						// BOX TO HOLD LABEL
-						kc = ic - lc2;
-						kr = ir - lr2;
-						mc = kc + lc - 1;
-						mr = kr + lr - 1;
-						for (jc = kc; jc <= mc; jc++) {
-							if (jc >= 0 && jc < nc) {
-								for (jr = kr; jr <= mr; jr++) {
-									if (jr >= 0 && jr < nr) {
-										mark[(jc) * nr + (jr)] = 2;
-									}
-								}
-							}
+					/*
+					 * DRM move outside the loop byte[] auxa = null; byte[] auxb =
+					 * null; byte[] auxc = null; byte[] auxd = null; if (naux > 0) {
+					 * auxa = new byte[naux]; auxb = new byte[naux]; auxc = new
+					 * byte[naux]; auxd = new byte[naux];
+					 */
+					if (naux > 0) {
+						for (int i = 0; i < naux; i++) {
+							byte[] auxValues_i = auxValues[i];
+							auxa[i] = auxValues_i[ic_times_nr + ir];
+							auxb[i] = auxValues_i[ic_times_nr + ir_plus1];
+							auxc[i] = auxValues_i[ic_plus1_times_nr + ir];
+							auxd[i] = auxValues_i[ic_plus1_times_nr + ir_plus1];
 						}
 					}
 
-					float gba, gca, gdb, gdc;
-					switch (ii) {
-					case 1:
-						gba = gb - ga;
-						gca = gc - ga;
-
-						if (naux > 0) {
-							float ratioba = (gg - ga) / gba;
-							float ratioca = (gg - ga) / gca;
-							for (int i = 0; i < naux; i++) {
-								t = (int) ((1.0f - ratioba)
-										* ((auxa[i] < 0) ? ((float) auxa[i]) + 256.0f
-												: ((float) auxa[i])) + ratioba
-										* ((auxb[i] < 0) ? ((float) auxb[i]) + 256.0f
-												: ((float) auxb[i])));
-								auxLevels[i][numv] = (byte) ((t < 0) ? 0
-										: ((t > 255) ? -1 : ((t < 128) ? t
-												: t - 256)));
-								t = (int) ((1.0f - ratioca)
-										* ((auxa[i] < 0) ? ((float) auxa[i]) + 256.0f
-												: ((float) auxa[i])) + ratioca
-										* ((auxc[i] < 0) ? ((float) auxc[i]) + 256.0f
-												: ((float) auxc[i])));
-								auxLevels[i][numv + 1] = (byte) ((t < 0) ? 0
-										: ((t > 255) ? -1 : ((t < 128) ? t
-												: t - 256)));
-								/*
-								 * MEM_WLH auxLevels[i][numv] = auxa[i] +
-								 * (auxb[i]-auxa[i]) ratioba;
-								 * auxLevels[i][numv+1] = auxa[i] +
-								 * (auxc[i]-auxa[i]) ratioca;
-								 */
-							}
-						}
-
-						if (((gba) < 0 ? -(gba) : (gba)) < 0.0000001) {
-							vx[numv] = xx;
-						} else {
-							vx[numv] = xx + xd * (gg - ga) / gba;
-						}
-						vy[numv] = yy;
-						numv++;
-						if (((gca) < 0 ? -(gca) : (gca)) < 0.0000001) {
-							vy[numv] = yy;
-						} else {
-							vy[numv] = yy + yd * (gg - ga) / gca;
-						}
-						vx[numv] = xx;
-						numv++;
-						if (fill) {
-							o_flags[ir][ic][n_lines[ir][ic]] = (byte) ii;
-							n_lines[ir][ic]++;
-						}
-						if (vx[numv - 2] == vx[numv - 1]
-								|| vy[numv - 2] == vy[numv - 1]) {
-							vx[numv - 2] += 0.00001f;
-							vy[numv - 1] += 0.00001f;
-						}
-						break;
+					// find average, min, and max of 4 corner values
+					gAvg = (ga + gb + gc + gd) / 4.0f;
 
-					case 2:
-						gba = gb - ga;
-						gdb = gd - gb;
+					// gMin = MIN4(ga,gb,gc,gd);
+					tmp1 = ((ga) < (gb) ? (ga) : (gb));
+					tmp2 = ((gc) < (gd) ? (gc) : (gd));
+					gMin = ((tmp1) < (tmp2) ? (tmp1) : (tmp2));
 
-						if (naux > 0) {
-							float ratioba = (gg - ga) / gba;
-							float ratiodb = (gg - gb) / gdb;
-							for (int i = 0; i < naux; i++) {
-								t = (int) ((1.0f - ratioba)
-										* ((auxa[i] < 0) ? ((float) auxa[i]) + 256.0f
-												: ((float) auxa[i])) + ratioba
-										* ((auxb[i] < 0) ? ((float) auxb[i]) + 256.0f
-												: ((float) auxb[i])));
-								auxLevels[i][numv] = (byte) ((t < 0) ? 0
-										: ((t > 255) ? -1 : ((t < 128) ? t
-												: t - 256)));
-								t = (int) ((1.0f - ratiodb)
-										* ((auxb[i] < 0) ? ((float) auxb[i]) + 256.0f
-												: ((float) auxb[i])) + ratiodb
-										* ((auxd[i] < 0) ? ((float) auxd[i]) + 256.0f
-												: ((float) auxd[i])));
-								auxLevels[i][numv + 1] = (byte) ((t < 0) ? 0
-										: ((t > 255) ? -1 : ((t < 128) ? t
-												: t - 256)));
-								/*
-								 * MEM_WLH auxLevels[i][numv] = auxa[i] +
-								 * (auxb[i]-auxa[i]) ratioba;
-								 * auxLevels[i][numv+1] = auxb[i] +
-								 * (auxd[i]-auxb[i]) ratiodb;
-								 */
-							}
-						}
+					// gMax = MAX4(ga,gb,gc,gd);
+					tmp1 = ((ga) > (gb) ? (ga) : (gb));
+					tmp2 = ((gc) > (gd) ? (gc) : (gd));
+					gMax = ((tmp1) > (tmp2) ? (tmp1) : (tmp2));
 
-						if (((gba) < 0 ? -(gba) : (gba)) < 0.0000001)
-							vx[numv] = xx;
-						else
-							vx[numv] = xx + xd * (gg - ga) / gba;
-						vy[numv] = yy;
-						numv++;
-						if (((gdb) < 0 ? -(gdb) : (gdb)) < 0.0000001)
-							vy[numv] = yy;
-						else
-							vy[numv] = yy + yd * (gg - gb) / gdb;
-						vx[numv] = xx + xd;
-						numv++;
-						if (fill) {
-							o_flags[ir][ic][n_lines[ir][ic]] = (byte) ii;
-							n_lines[ir][ic]++;
-						}
-						if (vx[numv - 2] == vx[numv - 1]
-								|| vy[numv - 2] == vy[numv - 1]) {
-							vx[numv - 2] -= 0.00001f;
-							vy[numv - 1] += 0.00001f;
-						}
-						break;
+					/*
+					 * remove for new signature, replace with code below // compute
+					 * clow and chi, low and high contour values in the box tmp1 =
+					 * (gMin-base) / interval; clow = base + interval (( (tmp1) >= 0
+					 * ? (int) ((tmp1) + 0.5) : (int) ((tmp1)-0.5) )-1); while
+					 * (clow<gMin) { clow += interval; }
+					 * 
+					 * tmp1 = (gMax-base) / interval; chi = base + interval ((
+					 * (tmp1) >= 0 ? (int) ((tmp1) + 0.5) : (int) ((tmp1)-0.5) )+1);
+					 * while (chi>gMax) { chi -= interval; }
+					 * 
+					 * // how many contour lines in the box: tmp1 = (chi-clow) /
+					 * interval; numc = 1+( (tmp1) >= 0 ? (int) ((tmp1) + 0.5) :
+					 * (int) ((tmp1)-0.5) );
+					 * 
+					 * // gg is current contour line value gg = clow;
+					 */
 
-					case 3:
-						gca = gc - ga;
-						gdb = gd - gb;
+					low = 0;
+					hi = numLevels - 1;
+					if (gMax < minLevelValue || gMin > maxLevelValue) {
+						// no contours
+						numc = 1;
+					} else {
+						// some inside the box
+						// JDM: Instead of iterating through the whole list just do
+						// a
+						// binarySearch
+						/*
+						 * for (int i = 0; i < myvals.length; i++) { if (i == 0 &&
+						 * myvals[i] >= gn) { low = i; } else if (myvals[i] >= gn &&
+						 * myvals[i-1] < gn) { low = i; } if (i == 0 && myvals[i] >=
+						 * gx) { hi = i; } else if (myvals[i] >= gx && myvals[i-1] <
+						 * gx) { hi = i; } }
+						 */
+						hi = java.util.Arrays.binarySearch(myvals, gMax);
+						if (hi < 0)
+							hi = (-hi) - 1;
+						if (hi >= myvals.length)
+							hi = myvals.length - 1;
+						low = java.util.Arrays.binarySearch(myvals, gMin);
+						if (low < 0)
+							low = (-low) - 1;
+
+						numc = hi - low + 1;
+					}
 
-						if (naux > 0) {
-							float ratioca = (gg - ga) / gca;
-							float ratiodb = (gg - gb) / gdb;
-							for (int i = 0; i < naux; i++) {
-								t = (int) ((1.0f - ratioca)
-										* ((auxa[i] < 0) ? ((float) auxa[i]) + 256.0f
-												: ((float) auxa[i])) + ratioca
-										* ((auxc[i] < 0) ? ((float) auxc[i]) + 256.0f
-												: ((float) auxc[i])));
-								auxLevels[i][numv] = (byte) ((t < 0) ? 0
-										: ((t > 255) ? -1 : ((t < 128) ? t
-												: t - 256)));
-								t = (int) ((1.0f - ratiodb)
-										* ((auxb[i] < 0) ? ((float) auxb[i]) + 256.0f
-												: ((float) auxb[i])) + ratiodb
-										* ((auxd[i] < 0) ? ((float) auxd[i]) + 256.0f
-												: ((float) auxd[i])));
-								auxLevels[i][numv + 1] = (byte) ((t < 0) ? 0
-										: ((t > 255) ? -1 : ((t < 128) ? t
-												: t - 256)));
-								/*
-								 * MEM_WLH auxLevels[i][numv] = auxa[i] +
-								 * (auxc[i]-auxa[i]) ratioca;
-								 * auxLevels[i][numv+1] = auxb[i] +
-								 * (auxd[i]-auxb[i]) ratiodb;
-								 */
-							}
-						}
+					// gg = myvals[low];
+					/*
+					 * if (!any && numc > 0) { System.out.println("gMin = " + gMin +
+					 * " gMax = " + gMax + " gAvg = " + gAvg);
+					 * System.out.println("numc = " + numc + " clow = " +
+					 * myvals[low] + " chi = " + myvals[hi]); any = true; }
+					 */
+					if (fill) {
+						o_flags[ir][ic] = new byte[2 * numc]; // - case flags
+						n_lines[ir][ic] = 0; // - number of contour line segments
+						ctrLow[ir][ic] = (short) hi;
+					}
 
-						if (((gca) < 0 ? -(gca) : (gca)) < 0.0000001)
-							vy[numv] = yy;
-						else
-							vy[numv] = yy + yd * (gg - ga) / gca;
-						vx[numv] = xx;
-						numv++;
-						if (((gdb) < 0 ? -(gdb) : (gdb)) < 0.0000001)
-							vy[numv] = yy;
-						else
-							vy[numv] = yy + yd * (gg - gb) / gdb;
-						vx[numv] = xx + xd;
-						numv++;
-						if (fill) {
-							o_flags[ir][ic][n_lines[ir][ic]] = (byte) ii;
-							n_lines[ir][ic]++;
+					for (il = 0; il < numc; il++) {
+						if ((low + il) >= myvals.length) {
+							System.err.println("bad range: myvals.length=" + myvals
+									+ " il=" + il + " low=" + low + " high=" + hi);
 						}
-						break;
-
-					case 4:
-						gca = gc - ga;
-						gdc = gd - gc;
-
-						if (naux > 0) {
-							float ratioca = (gg - ga) / gca;
-							float ratiodc = (gg - gc) / gdc;
-							for (int i = 0; i < naux; i++) {
-								t = (int) ((1.0f - ratioca)
-										* ((auxa[i] < 0) ? ((float) auxa[i]) + 256.0f
-												: ((float) auxa[i])) + ratioca
-										* ((auxc[i] < 0) ? ((float) auxc[i]) + 256.0f
-												: ((float) auxc[i])));
-								auxLevels[i][numv] = (byte) ((t < 0) ? 0
-										: ((t > 255) ? -1 : ((t < 128) ? t
-												: t - 256)));
-								t = (int) ((1.0f - ratiodc)
-										* ((auxc[i] < 0) ? ((float) auxc[i]) + 256.0f
-												: ((float) auxc[i])) + ratiodc
-										* ((auxd[i] < 0) ? ((float) auxd[i]) + 256.0f
-												: ((float) auxd[i])));
-								auxLevels[i][numv + 1] = (byte) ((t < 0) ? 0
-										: ((t > 255) ? -1 : ((t < 128) ? t
-												: t - 256)));
-								/*
-								 * MEM_WLH auxLevels[i][numv] = auxa[i] +
-								 * (auxc[i]-auxa[i]) ratioca;
-								 * auxLevels[i][numv+1] = auxc[i] +
-								 * (auxd[i]-auxc[i]) ratiodc;
-								 */
+						gg = myvals[low + il];
+
+						// WLH 21 April 2000
+						// if (numv+8 >= maxsize || nump+4 >= 2*maxsize) {
+						if (numv + 8 >= maxsize) {
+							// allocate more space
+							maxsize = 2 * maxsize;
+							/*
+							 * WLH 21 April 2000 int[] tt = ipnt; ipnt = new int[2
+							 * maxsize]; System.arraycopy(tt, 0, ipnt, 0, nump);
+							 */
+							float[] tx = vx;
+							float[] ty = vy;
+							vx = new float[maxsize];
+							vy = new float[maxsize];
+							System.arraycopy(tx, 0, vx, 0, numv);
+							System.arraycopy(ty, 0, vy, 0, numv);
+							tx = null;
+							ty = null;
+							if (naux > 0) {
+								byte[][] ta = auxLevels;
+								auxLevels = new byte[naux][maxsize];
+								for (int i = 0; i < naux; i++) {
+									System.arraycopy(ta[i], 0, auxLevels[i], 0,
+											numv);
+								}
+								ta = null;
 							}
 						}
 
-						if (((gca) < 0 ? -(gca) : (gca)) < 0.0000001)
-							vy[numv] = yy;
-						else
-							vy[numv] = yy + yd * (gg - ga) / gca;
-						vx[numv] = xx;
-						numv++;
-						if (((gdc) < 0 ? -(gdc) : (gdc)) < 0.0000001)
-							vx[numv] = xx;
-						else
-							vx[numv] = xx + xd * (gg - gc) / gdc;
-						vy[numv] = yy + yd;
-						numv++;
-						if (fill) {
-							o_flags[ir][ic][n_lines[ir][ic]] = (byte) ii;
-							n_lines[ir][ic]++;
-						}
-						if (vx[numv - 2] == vx[numv - 1]
-								|| vy[numv - 2] == vy[numv - 1]) {
-							vx[numv - 1] += 0.00001f;
-							vy[numv - 2] -= 0.00001f;
-						}
-						break;
+						// make sure gg is within contouring limits
+						if (gg < gMin)
+							continue;
+						if (gg > gMax)
+							break;
+						if (gg < lowlimit)
+							continue;
+						if (gg > highlimit)
+							break;
 
-					case 5:
-						gba = gb - ga;
-						gdc = gd - gc;
+						// compute orientation of lines inside box
+						int ii = 0;
+						if (gg > ga)
+							ii = 1;
+						if (gg > gb)
+							ii += 2;
+						if (gg > gc)
+							ii += 4;
+						if (gg > gd)
+							ii += 8;
+						if (ii > 7)
+							ii = 15 - ii;
+						if (ii <= 0)
+							continue;
 
-						if (naux > 0) {
-							float ratioba = (gg - ga) / gba;
-							float ratiodc = (gg - gc) / gdc;
-							for (int i = 0; i < naux; i++) {
-								t = (int) ((1.0f - ratioba)
-										* ((auxa[i] < 0) ? ((float) auxa[i]) + 256.0f
-												: ((float) auxa[i])) + ratioba
-										* ((auxb[i] < 0) ? ((float) auxb[i]) + 256.0f
-												: ((float) auxb[i])));
-								auxLevels[i][numv] = (byte) ((t < 0) ? 0
-										: ((t > 255) ? -1 : ((t < 128) ? t
-												: t - 256)));
-								t = (int) ((1.0f - ratiodc)
-										* ((auxc[i] < 0) ? ((float) auxc[i]) + 256.0f
-												: ((float) auxc[i])) + ratiodc
-										* ((auxd[i] < 0) ? ((float) auxd[i]) + 256.0f
-												: ((float) auxd[i])));
-								auxLevels[i][numv + 1] = (byte) ((t < 0) ? 0
-										: ((t > 255) ? -1 : ((t < 128) ? t
-												: t - 256)));
-								/*
-								 * MEM_WLH auxLevels[i][numv] = auxa[i] +
-								 * (auxb[i]-auxa[i]) ratioba;
-								 * auxLevels[i][numv+1] = auxc[i] +
-								 * (auxd[i]-auxc[i]) ratiodc;
-								 */
-							}
-						}
-
-						if (((gba) < 0 ? -(gba) : (gba)) < 0.0000001)
-							vx[numv] = xx;
-						else
-							vx[numv] = xx + xd * (gg - ga) / gba;
-						vy[numv] = yy;
-						numv++;
-						if (((gdc) < 0 ? -(gdc) : (gdc)) < 0.0000001)
-							vx[numv] = xx;
-						else
-							vx[numv] = xx + xd * (gg - gc) / gdc;
-						vy[numv] = yy + yd;
-						numv++;
 						if (fill) {
-							o_flags[ir][ic][n_lines[ir][ic]] = (byte) ii;
-							n_lines[ir][ic]++;
+							if ((low + il) < ctrLow[ir][ic])
+								ctrLow[ir][ic] = (short) (low + il);
 						}
-						break;
-
-					case 6:
-						gba = gb - ga;
-						gdc = gd - gc;
-						gca = gc - ga;
-						gdb = gd - gb;
 
-						if (naux > 0) {
-							float ratioba = (gg - ga) / gba;
-							float ratiodc = (gg - gc) / gdc;
-							float ratioca = (gg - ga) / gca;
-							float ratiodb = (gg - gb) / gdb;
-							for (int i = 0; i < naux; i++) {
-								t = (int) ((1.0f - ratioba)
-										* ((auxa[i] < 0) ? ((float) auxa[i]) + 256.0f
-												: ((float) auxa[i])) + ratioba
-										* ((auxb[i] < 0) ? ((float) auxb[i]) + 256.0f
-												: ((float) auxb[i])));
-								auxLevels[i][numv] = (byte) ((t < 0) ? 0
-										: ((t > 255) ? -1 : ((t < 128) ? t
-												: t - 256)));
-								/*
-								 * MEM_WLH auxLevels[i][numv] = auxa[i] +
-								 * (auxb[i]-auxa[i]) ratioba;
-								 */
-								if ((gg > gAvg) ^ (ga < gb)) {
+						float gba, gca, gdb, gdc;
+						switch (ii) {
+						case 1:
+							gba = gb - ga;
+							gca = gc - ga;
+
+							if (naux > 0) {
+								float ratioba = (gg - ga) / gba;
+								float ratioca = (gg - ga) / gca;
+								for (int i = 0; i < naux; i++) {
+									t = (int) ((1.0f - ratioba)
+											* ((auxa[i] < 0) ? ((float) auxa[i]) + 256.0f
+													: ((float) auxa[i])) + ratioba
+											* ((auxb[i] < 0) ? ((float) auxb[i]) + 256.0f
+													: ((float) auxb[i])));
+									auxLevels[i][numv] = (byte) ((t < 0) ? 0
+											: ((t > 255) ? -1 : ((t < 128) ? t
+													: t - 256)));
 									t = (int) ((1.0f - ratioca)
 											* ((auxa[i] < 0) ? ((float) auxa[i]) + 256.0f
 													: ((float) auxa[i])) + ratioca
@@ -1055,21 +805,112 @@ public class Contour2D {
 									auxLevels[i][numv + 1] = (byte) ((t < 0) ? 0
 											: ((t > 255) ? -1 : ((t < 128) ? t
 													: t - 256)));
+									/*
+									 * MEM_WLH auxLevels[i][numv] = auxa[i] +
+									 * (auxb[i]-auxa[i]) ratioba;
+									 * auxLevels[i][numv+1] = auxa[i] +
+									 * (auxc[i]-auxa[i]) ratioca;
+									 */
+								}
+							}
+
+							if (((gba) < 0 ? -(gba) : (gba)) < 0.0000001) {
+								vx[numv] = xx;
+							} else {
+								vx[numv] = xx + xd * (gg - ga) / gba;
+							}
+							vy[numv] = yy;
+							numv++;
+							if (((gca) < 0 ? -(gca) : (gca)) < 0.0000001) {
+								vy[numv] = yy;
+							} else {
+								vy[numv] = yy + yd * (gg - ga) / gca;
+							}
+							vx[numv] = xx;
+							numv++;
+							if (fill) {
+								o_flags[ir][ic][n_lines[ir][ic]] = (byte) ii;
+								n_lines[ir][ic]++;
+							}
+							if (vx[numv - 2] == vx[numv - 1]
+									|| vy[numv - 2] == vy[numv - 1]) {
+								vx[numv - 2] += 0.00001f;
+								vy[numv - 1] += 0.00001f;
+							}
+							break;
+
+						case 2:
+							gba = gb - ga;
+							gdb = gd - gb;
+
+							if (naux > 0) {
+								float ratioba = (gg - ga) / gba;
+								float ratiodb = (gg - gb) / gdb;
+								for (int i = 0; i < naux; i++) {
+									t = (int) ((1.0f - ratioba)
+											* ((auxa[i] < 0) ? ((float) auxa[i]) + 256.0f
+													: ((float) auxa[i])) + ratioba
+											* ((auxb[i] < 0) ? ((float) auxb[i]) + 256.0f
+													: ((float) auxb[i])));
+									auxLevels[i][numv] = (byte) ((t < 0) ? 0
+											: ((t > 255) ? -1 : ((t < 128) ? t
+													: t - 256)));
 									t = (int) ((1.0f - ratiodb)
 											* ((auxb[i] < 0) ? ((float) auxb[i]) + 256.0f
 													: ((float) auxb[i])) + ratiodb
 											* ((auxd[i] < 0) ? ((float) auxd[i]) + 256.0f
 													: ((float) auxd[i])));
-									auxLevels[i][numv + 2] = (byte) ((t < 0) ? 0
+									auxLevels[i][numv + 1] = (byte) ((t < 0) ? 0
 											: ((t > 255) ? -1 : ((t < 128) ? t
 													: t - 256)));
 									/*
-									 * MEM_WLH auxLevels[i][numv+1] = auxa[i] +
-									 * (auxc[i]-auxa[i]) ratioca;
-									 * auxLevels[i][numv+2] = auxb[i] +
+									 * MEM_WLH auxLevels[i][numv] = auxa[i] +
+									 * (auxb[i]-auxa[i]) ratioba;
+									 * auxLevels[i][numv+1] = auxb[i] +
 									 * (auxd[i]-auxb[i]) ratiodb;
 									 */
-								} else {
+								}
+							}
+
+							if (((gba) < 0 ? -(gba) : (gba)) < 0.0000001)
+								vx[numv] = xx;
+							else
+								vx[numv] = xx + xd * (gg - ga) / gba;
+							vy[numv] = yy;
+							numv++;
+							if (((gdb) < 0 ? -(gdb) : (gdb)) < 0.0000001)
+								vy[numv] = yy;
+							else
+								vy[numv] = yy + yd * (gg - gb) / gdb;
+							vx[numv] = xx + xd;
+							numv++;
+							if (fill) {
+								o_flags[ir][ic][n_lines[ir][ic]] = (byte) ii;
+								n_lines[ir][ic]++;
+							}
+							if (vx[numv - 2] == vx[numv - 1]
+									|| vy[numv - 2] == vy[numv - 1]) {
+								vx[numv - 2] -= 0.00001f;
+								vy[numv - 1] += 0.00001f;
+							}
+							break;
+
+						case 3:
+							gca = gc - ga;
+							gdb = gd - gb;
+
+							if (naux > 0) {
+								float ratioca = (gg - ga) / gca;
+								float ratiodb = (gg - gb) / gdb;
+								for (int i = 0; i < naux; i++) {
+									t = (int) ((1.0f - ratioca)
+											* ((auxa[i] < 0) ? ((float) auxa[i]) + 256.0f
+													: ((float) auxa[i])) + ratioca
+											* ((auxc[i] < 0) ? ((float) auxc[i]) + 256.0f
+													: ((float) auxc[i])));
+									auxLevels[i][numv] = (byte) ((t < 0) ? 0
+											: ((t > 255) ? -1 : ((t < 128) ? t
+													: t - 256)));
 									t = (int) ((1.0f - ratiodb)
 											* ((auxb[i] < 0) ? ((float) auxb[i]) + 256.0f
 													: ((float) auxb[i])) + ratiodb
@@ -1078,203 +919,470 @@ public class Contour2D {
 									auxLevels[i][numv + 1] = (byte) ((t < 0) ? 0
 											: ((t > 255) ? -1 : ((t < 128) ? t
 													: t - 256)));
+									/*
+									 * MEM_WLH auxLevels[i][numv] = auxa[i] +
+									 * (auxc[i]-auxa[i]) ratioca;
+									 * auxLevels[i][numv+1] = auxb[i] +
+									 * (auxd[i]-auxb[i]) ratiodb;
+									 */
+								}
+							}
+
+							if (((gca) < 0 ? -(gca) : (gca)) < 0.0000001)
+								vy[numv] = yy;
+							else
+								vy[numv] = yy + yd * (gg - ga) / gca;
+							vx[numv] = xx;
+							numv++;
+							if (((gdb) < 0 ? -(gdb) : (gdb)) < 0.0000001)
+								vy[numv] = yy;
+							else
+								vy[numv] = yy + yd * (gg - gb) / gdb;
+							vx[numv] = xx + xd;
+							numv++;
+							if (fill) {
+								o_flags[ir][ic][n_lines[ir][ic]] = (byte) ii;
+								n_lines[ir][ic]++;
+							}
+							break;
+
+						case 4:
+							gca = gc - ga;
+							gdc = gd - gc;
+
+							if (naux > 0) {
+								float ratioca = (gg - ga) / gca;
+								float ratiodc = (gg - gc) / gdc;
+								for (int i = 0; i < naux; i++) {
 									t = (int) ((1.0f - ratioca)
 											* ((auxa[i] < 0) ? ((float) auxa[i]) + 256.0f
 													: ((float) auxa[i])) + ratioca
 											* ((auxc[i] < 0) ? ((float) auxc[i]) + 256.0f
 													: ((float) auxc[i])));
-									auxLevels[i][numv + 2] = (byte) ((t < 0) ? 0
+									auxLevels[i][numv] = (byte) ((t < 0) ? 0
+											: ((t > 255) ? -1 : ((t < 128) ? t
+													: t - 256)));
+									t = (int) ((1.0f - ratiodc)
+											* ((auxc[i] < 0) ? ((float) auxc[i]) + 256.0f
+													: ((float) auxc[i])) + ratiodc
+											* ((auxd[i] < 0) ? ((float) auxd[i]) + 256.0f
+													: ((float) auxd[i])));
+									auxLevels[i][numv + 1] = (byte) ((t < 0) ? 0
 											: ((t > 255) ? -1 : ((t < 128) ? t
 													: t - 256)));
 									/*
-									 * MEM_WLH auxLevels[i][numv+1] = auxb[i] +
-									 * (auxd[i]-auxb[i]) ratiodb;
-									 * auxLevels[i][numv+2] = auxa[i] +
+									 * MEM_WLH auxLevels[i][numv] = auxa[i] +
 									 * (auxc[i]-auxa[i]) ratioca;
+									 * auxLevels[i][numv+1] = auxc[i] +
+									 * (auxd[i]-auxc[i]) ratiodc;
 									 */
 								}
-								t = (int) ((1.0f - ratiodc)
-										* ((auxc[i] < 0) ? ((float) auxc[i]) + 256.0f
-												: ((float) auxc[i])) + ratiodc
-										* ((auxd[i] < 0) ? ((float) auxd[i]) + 256.0f
-												: ((float) auxd[i])));
-								auxLevels[i][numv + 3] = (byte) ((t < 0) ? 0
-										: ((t > 255) ? -1 : ((t < 128) ? t
-												: t - 256)));
-								/*
-								 * MEM_WLH auxLevels[i][numv+3] = auxc[i] +
-								 * (auxd[i]-auxc[i]) ratiodc;
-								 */
 							}
-						}
 
-						if (((gba) < 0 ? -(gba) : (gba)) < 0.0000001)
-							vx[numv] = xx;
-						else
-							vx[numv] = xx + xd * (gg - ga) / gba;
-						vy[numv] = yy;
-						numv++;
-						// here's a brain teaser
-						if ((gg > gAvg) ^ (ga < gb)) { // (XOR)
 							if (((gca) < 0 ? -(gca) : (gca)) < 0.0000001)
 								vy[numv] = yy;
 							else
 								vy[numv] = yy + yd * (gg - ga) / gca;
 							vx[numv] = xx;
 							numv++;
+							if (((gdc) < 0 ? -(gdc) : (gdc)) < 0.0000001)
+								vx[numv] = xx;
+							else
+								vx[numv] = xx + xd * (gg - gc) / gdc;
+							vy[numv] = yy + yd;
+							numv++;
 							if (fill) {
-								o_flags[ir][ic][n_lines[ir][ic]] = (byte) 1
-										+ (byte) 32;
+								o_flags[ir][ic][n_lines[ir][ic]] = (byte) ii;
 								n_lines[ir][ic]++;
 							}
-							if (((gdb) < 0 ? -(gdb) : (gdb)) < 0.0000001)
-								vy[numv] = yy;
+							if (vx[numv - 2] == vx[numv - 1]
+									|| vy[numv - 2] == vy[numv - 1]) {
+								vx[numv - 1] += 0.00001f;
+								vy[numv - 2] -= 0.00001f;
+							}
+							break;
+
+						case 5:
+							gba = gb - ga;
+							gdc = gd - gc;
+
+							if (naux > 0) {
+								float ratioba = (gg - ga) / gba;
+								float ratiodc = (gg - gc) / gdc;
+								for (int i = 0; i < naux; i++) {
+									t = (int) ((1.0f - ratioba)
+											* ((auxa[i] < 0) ? ((float) auxa[i]) + 256.0f
+													: ((float) auxa[i])) + ratioba
+											* ((auxb[i] < 0) ? ((float) auxb[i]) + 256.0f
+													: ((float) auxb[i])));
+									auxLevels[i][numv] = (byte) ((t < 0) ? 0
+											: ((t > 255) ? -1 : ((t < 128) ? t
+													: t - 256)));
+									t = (int) ((1.0f - ratiodc)
+											* ((auxc[i] < 0) ? ((float) auxc[i]) + 256.0f
+													: ((float) auxc[i])) + ratiodc
+											* ((auxd[i] < 0) ? ((float) auxd[i]) + 256.0f
+													: ((float) auxd[i])));
+									auxLevels[i][numv + 1] = (byte) ((t < 0) ? 0
+											: ((t > 255) ? -1 : ((t < 128) ? t
+													: t - 256)));
+									/*
+									 * MEM_WLH auxLevels[i][numv] = auxa[i] +
+									 * (auxb[i]-auxa[i]) ratioba;
+									 * auxLevels[i][numv+1] = auxc[i] +
+									 * (auxd[i]-auxc[i]) ratiodc;
+									 */
+								}
+							}
+
+							if (((gba) < 0 ? -(gba) : (gba)) < 0.0000001)
+								vx[numv] = xx;
 							else
-								vy[numv] = yy + yd * (gg - gb) / gdb;
-							vx[numv] = xx + xd;
+								vx[numv] = xx + xd * (gg - ga) / gba;
+							vy[numv] = yy;
+							numv++;
+							if (((gdc) < 0 ? -(gdc) : (gdc)) < 0.0000001)
+								vx[numv] = xx;
+							else
+								vx[numv] = xx + xd * (gg - gc) / gdc;
+							vy[numv] = yy + yd;
+							numv++;
 							if (fill) {
-								o_flags[ir][ic][n_lines[ir][ic]] = (byte) 7
-										+ (byte) 32;
+								o_flags[ir][ic][n_lines[ir][ic]] = (byte) ii;
 								n_lines[ir][ic]++;
 							}
+							break;
+
+						case 6:
+							gba = gb - ga;
+							gdc = gd - gc;
+							gca = gc - ga;
+							gdb = gd - gb;
+
+							if (naux > 0) {
+								float ratioba = (gg - ga) / gba;
+								float ratiodc = (gg - gc) / gdc;
+								float ratioca = (gg - ga) / gca;
+								float ratiodb = (gg - gb) / gdb;
+								for (int i = 0; i < naux; i++) {
+									t = (int) ((1.0f - ratioba)
+											* ((auxa[i] < 0) ? ((float) auxa[i]) + 256.0f
+													: ((float) auxa[i])) + ratioba
+											* ((auxb[i] < 0) ? ((float) auxb[i]) + 256.0f
+													: ((float) auxb[i])));
+									auxLevels[i][numv] = (byte) ((t < 0) ? 0
+											: ((t > 255) ? -1 : ((t < 128) ? t
+													: t - 256)));
+									/*
+									 * MEM_WLH auxLevels[i][numv] = auxa[i] +
+									 * (auxb[i]-auxa[i]) ratioba;
+									 */
+									if ((gg > gAvg) ^ (ga < gb)) {
+										t = (int) ((1.0f - ratioca)
+												* ((auxa[i] < 0) ? ((float) auxa[i]) + 256.0f
+														: ((float) auxa[i])) + ratioca
+												* ((auxc[i] < 0) ? ((float) auxc[i]) + 256.0f
+														: ((float) auxc[i])));
+										auxLevels[i][numv + 1] = (byte) ((t < 0) ? 0
+												: ((t > 255) ? -1 : ((t < 128) ? t
+														: t - 256)));
+										t = (int) ((1.0f - ratiodb)
+												* ((auxb[i] < 0) ? ((float) auxb[i]) + 256.0f
+														: ((float) auxb[i])) + ratiodb
+												* ((auxd[i] < 0) ? ((float) auxd[i]) + 256.0f
+														: ((float) auxd[i])));
+										auxLevels[i][numv + 2] = (byte) ((t < 0) ? 0
+												: ((t > 255) ? -1 : ((t < 128) ? t
+														: t - 256)));
+										/*
+										 * MEM_WLH auxLevels[i][numv+1] = auxa[i] +
+										 * (auxc[i]-auxa[i]) ratioca;
+										 * auxLevels[i][numv+2] = auxb[i] +
+										 * (auxd[i]-auxb[i]) ratiodb;
+										 */
+									} else {
+										t = (int) ((1.0f - ratiodb)
+												* ((auxb[i] < 0) ? ((float) auxb[i]) + 256.0f
+														: ((float) auxb[i])) + ratiodb
+												* ((auxd[i] < 0) ? ((float) auxd[i]) + 256.0f
+														: ((float) auxd[i])));
+										auxLevels[i][numv + 1] = (byte) ((t < 0) ? 0
+												: ((t > 255) ? -1 : ((t < 128) ? t
+														: t - 256)));
+										t = (int) ((1.0f - ratioca)
+												* ((auxa[i] < 0) ? ((float) auxa[i]) + 256.0f
+														: ((float) auxa[i])) + ratioca
+												* ((auxc[i] < 0) ? ((float) auxc[i]) + 256.0f
+														: ((float) auxc[i])));
+										auxLevels[i][numv + 2] = (byte) ((t < 0) ? 0
+												: ((t > 255) ? -1 : ((t < 128) ? t
+														: t - 256)));
+										/*
+										 * MEM_WLH auxLevels[i][numv+1] = auxb[i] +
+										 * (auxd[i]-auxb[i]) ratiodb;
+										 * auxLevels[i][numv+2] = auxa[i] +
+										 * (auxc[i]-auxa[i]) ratioca;
+										 */
+									}
+									t = (int) ((1.0f - ratiodc)
+											* ((auxc[i] < 0) ? ((float) auxc[i]) + 256.0f
+													: ((float) auxc[i])) + ratiodc
+											* ((auxd[i] < 0) ? ((float) auxd[i]) + 256.0f
+													: ((float) auxd[i])));
+									auxLevels[i][numv + 3] = (byte) ((t < 0) ? 0
+											: ((t > 255) ? -1 : ((t < 128) ? t
+													: t - 256)));
+									/*
+									 * MEM_WLH auxLevels[i][numv+3] = auxc[i] +
+									 * (auxd[i]-auxc[i]) ratiodc;
+									 */
+								}
+							}
+
+							if (((gba) < 0 ? -(gba) : (gba)) < 0.0000001)
+								vx[numv] = xx;
+							else
+								vx[numv] = xx + xd * (gg - ga) / gba;
+							vy[numv] = yy;
 							numv++;
-						} else {
+							// here's a brain teaser
+							if ((gg > gAvg) ^ (ga < gb)) { // (XOR)
+								if (((gca) < 0 ? -(gca) : (gca)) < 0.0000001)
+									vy[numv] = yy;
+								else
+									vy[numv] = yy + yd * (gg - ga) / gca;
+								vx[numv] = xx;
+								numv++;
+								if (fill) {
+									o_flags[ir][ic][n_lines[ir][ic]] = (byte) 1
+											+ (byte) 32;
+									n_lines[ir][ic]++;
+								}
+								if (((gdb) < 0 ? -(gdb) : (gdb)) < 0.0000001)
+									vy[numv] = yy;
+								else
+									vy[numv] = yy + yd * (gg - gb) / gdb;
+								vx[numv] = xx + xd;
+								if (fill) {
+									o_flags[ir][ic][n_lines[ir][ic]] = (byte) 7
+											+ (byte) 32;
+									n_lines[ir][ic]++;
+								}
+								numv++;
+							} else {
+								if (((gdb) < 0 ? -(gdb) : (gdb)) < 0.0000001)
+									vy[numv] = yy;
+								else
+									vy[numv] = yy + yd * (gg - gb) / gdb;
+								vx[numv] = xx + xd;
+								numv++;
+								if (fill) {
+									o_flags[ir][ic][n_lines[ir][ic]] = (byte) 2
+											+ (byte) 32;
+									n_lines[ir][ic]++;
+								}
+								if (((gca) < 0 ? -(gca) : (gca)) < 0.0000001)
+									vy[numv] = yy;
+								else
+									vy[numv] = yy + yd * (gg - ga) / gca;
+								vx[numv] = xx;
+								numv++;
+								if (fill) {
+									o_flags[ir][ic][n_lines[ir][ic]] = (byte) 4
+											+ (byte) 32;
+									n_lines[ir][ic]++;
+								}
+							}
+							if (((gdc) < 0 ? -(gdc) : (gdc)) < 0.0000001)
+								vx[numv] = xx;
+							else
+								vx[numv] = xx + xd * (gg - gc) / gdc;
+							vy[numv] = yy + yd;
+							numv++;
+							break;
+
+						case 7:
+							gdb = gd - gb;
+							gdc = gd - gc;
+
+							if (naux > 0) {
+								float ratiodb = (gg - gb) / gdb;
+								float ratiodc = (gg - gc) / gdc;
+								for (int i = 0; i < naux; i++) {
+									t = (int) ((1.0f - ratiodb)
+											* ((auxb[i] < 0) ? ((float) auxb[i]) + 256.0f
+													: ((float) auxb[i])) + ratiodb
+											* ((auxd[i] < 0) ? ((float) auxd[i]) + 256.0f
+													: ((float) auxd[i])));
+									auxLevels[i][numv] = (byte) ((t < 0) ? 0
+											: ((t > 255) ? -1 : ((t < 128) ? t
+													: t - 256)));
+									t = (int) ((1.0f - ratiodc)
+											* ((auxc[i] < 0) ? ((float) auxc[i]) + 256.0f
+													: ((float) auxc[i])) + ratiodc
+											* ((auxd[i] < 0) ? ((float) auxd[i]) + 256.0f
+													: ((float) auxd[i])));
+									auxLevels[i][numv + 1] = (byte) ((t < 0) ? 0
+											: ((t > 255) ? -1 : ((t < 128) ? t
+													: t - 256)));
+									/*
+									 * MEM_WLH auxLevels[i][numv] = auxb[i] +
+									 * (auxb[i]-auxb[i]) ratiodb;
+									 * auxLevels[i][numv+1] = auxc[i] +
+									 * (auxd[i]-auxc[i]) ratiodc;
+									 */
+								}
+							}
+
 							if (((gdb) < 0 ? -(gdb) : (gdb)) < 0.0000001)
 								vy[numv] = yy;
 							else
 								vy[numv] = yy + yd * (gg - gb) / gdb;
 							vx[numv] = xx + xd;
 							numv++;
-							if (fill) {
-								o_flags[ir][ic][n_lines[ir][ic]] = (byte) 2
-										+ (byte) 32;
-								n_lines[ir][ic]++;
-							}
-							if (((gca) < 0 ? -(gca) : (gca)) < 0.0000001)
-								vy[numv] = yy;
+							if (((gdc) < 0 ? -(gdc) : (gdc)) < 0.0000001)
+								vx[numv] = xx;
 							else
-								vy[numv] = yy + yd * (gg - ga) / gca;
-							vx[numv] = xx;
+								vx[numv] = xx + xd * (gg - gc) / gdc;
+							vy[numv] = yy + yd;
 							numv++;
 							if (fill) {
-								o_flags[ir][ic][n_lines[ir][ic]] = (byte) 4
-										+ (byte) 32;
+								o_flags[ir][ic][n_lines[ir][ic]] = (byte) ii;
 								n_lines[ir][ic]++;
 							}
-						}
-						if (((gdc) < 0 ? -(gdc) : (gdc)) < 0.0000001)
-							vx[numv] = xx;
-						else
-							vx[numv] = xx + xd * (gg - gc) / gdc;
-						vy[numv] = yy + yd;
-						numv++;
-						break;
-
-					case 7:
-						gdb = gd - gb;
-						gdc = gd - gc;
-
-						if (naux > 0) {
-							float ratiodb = (gg - gb) / gdb;
-							float ratiodc = (gg - gc) / gdc;
-							for (int i = 0; i < naux; i++) {
-								t = (int) ((1.0f - ratiodb)
-										* ((auxb[i] < 0) ? ((float) auxb[i]) + 256.0f
-												: ((float) auxb[i])) + ratiodb
-										* ((auxd[i] < 0) ? ((float) auxd[i]) + 256.0f
-												: ((float) auxd[i])));
-								auxLevels[i][numv] = (byte) ((t < 0) ? 0
-										: ((t > 255) ? -1 : ((t < 128) ? t
-												: t - 256)));
-								t = (int) ((1.0f - ratiodc)
-										* ((auxc[i] < 0) ? ((float) auxc[i]) + 256.0f
-												: ((float) auxc[i])) + ratiodc
-										* ((auxd[i] < 0) ? ((float) auxd[i]) + 256.0f
-												: ((float) auxd[i])));
-								auxLevels[i][numv + 1] = (byte) ((t < 0) ? 0
-										: ((t > 255) ? -1 : ((t < 128) ? t
-												: t - 256)));
-								/*
-								 * MEM_WLH auxLevels[i][numv] = auxb[i] +
-								 * (auxb[i]-auxb[i]) ratiodb;
-								 * auxLevels[i][numv+1] = auxc[i] +
-								 * (auxd[i]-auxc[i]) ratiodc;
-								 */
+							if (vx[numv - 2] == vx[numv - 1]
+									|| vy[numv - 2] == vy[numv - 1]) {
+								vx[numv - 1] -= 0.00001f;
+								vy[numv - 2] -= 0.00001f;
 							}
-						}
+							break;
+						} // switch
 
-						if (((gdb) < 0 ? -(gdb) : (gdb)) < 0.0000001)
-							vy[numv] = yy;
-						else
-							vy[numv] = yy + yd * (gg - gb) / gdb;
-						vx[numv] = xx + xd;
-						numv++;
-						if (((gdc) < 0 ? -(gdc) : (gdc)) < 0.0000001)
-							vx[numv] = xx;
-						else
-							vx[numv] = xx + xd * (gg - gc) / gdc;
-						vy[numv] = yy + yd;
-						numv++;
-						if (fill) {
-							o_flags[ir][ic][n_lines[ir][ic]] = (byte) ii;
-							n_lines[ir][ic]++;
+						// If contour level is negative, make dashed line
+						if (gg < base && dash) { /* DRM: 1999-05-19 */
+							dashFlags[low + il] = true;
 						}
-						if (vx[numv - 2] == vx[numv - 1]
-								|| vy[numv - 2] == vy[numv - 1]) {
-							vx[numv - 1] -= 0.00001f;
-							vy[numv - 2] -= 0.00001f;
+						/*
+						 * if ((20.0 <= vy[numv-2] && vy[numv-2] < 22.0) || (20.0 <=
+						 * vy[numv-1] && vy[numv-1] < 22.0)) {
+						 * System.out.println("vy = " + vy[numv-1] + " " +
+						 * vy[numv-2] + " ic, ir = " + ic + " " + ir); }
+						 */
+
+						if (ii == 6) { // - add last two pairs
+                                                band.addSegment(numv - 4, numv - 3, low + il);
+                                                band.addSegment(numv - 2, numv - 1, low + il);
+						} else {
+                                                band.addSegment(numv - 2, numv - 1, low + il);
 						}
-						break;
-					} // switch
 
-					// If contour level is negative, make dashed line
-					if (gg < base && dash) { /* DRM: 1999-05-19 */
-						dashFlags[low + il] = true;
-					}
-					/*
-					 * if ((20.0 <= vy[numv-2] && vy[numv-2] < 22.0) || (20.0 <=
-					 * vy[numv-1] && vy[numv-1] < 22.0)) {
-					 * System.out.println("vy = " + vy[numv-1] + " " +
-					 * vy[numv-2] + " ic, ir = " + ic + " " + ir); }
-					 */
+					} // for il -- NOTE: gg incremented in for statement
+				} // for ic
+			}
 
-					if (ii == 6) { // - add last two pairs
-                                                ctrSet.add(vx, vy, numv - 4, numv - 3, low + il);
-                                                ctrSet.add(vx, vy, numv - 2, numv - 1, low + il);
-					} else {
-                                                ctrSet.add(vx, vy, numv - 2, numv - 1, low + il);
+			band.vx = vx;
+			band.vy = vy;
+			band.auxLevels = auxLevels;
+			band.numv = numv;
+			band.dashFlags = dashFlags;
+			synchronized (bands) {
+				bands.add(band);
+			}
+		}
+
+		/**
+		 * Join the vertices of all bands, and add their segments to
+		 * <code>ctrSet</code> in grid box order.
+		 * 
+		 * @param ctrSet
+		 *            the strips of the joined segments
+		 * @param dashFlags
+		 *            set for each level with a dashed segment
+		 */
+		void join(ContourStripSet ctrSet, boolean[] dashFlags) {
+			ContourBand[] sorted = bands.toArray(new ContourBand[bands.size()]);
+			java.util.Arrays.sort(sorted, new java.util.Comparator<ContourBand>() {
+				public int compare(ContourBand b1, ContourBand b2) {
+					return (b1.start < b2.start) ? -1 : ((b1.start > b2.start) ? 1 : 0);
+				}
+			});
+
+			if (sorted.length == 1) {
+				vx = sorted[0].vx;
+				vy = sorted[0].vy;
+				auxLevels = sorted[0].auxLevels;
+			} else {
+				int numv = 0;
+				for (int k = 0; k < sorted.length; k++) {
+					numv += sorted[k].numv;
+				}
+				vx = new float[numv];
+				vy = new float[numv];
+				auxLevels = (naux > 0) ? new byte[naux][numv] : null;
+				int offset = 0;
+				for (int k = 0; k < sorted.length; k++) {
+					ContourBand band = sorted[k];
+					System.arraycopy(band.vx, 0, vx, offset, band.numv);
+					System.arraycopy(band.vy, 0, vy, offset, band.numv);
+					for (int i = 0; i < naux; i++) {
+						System.arraycopy(band.auxLevels[i], 0, auxLevels[i],
+								offset, band.numv);
 					}
+					offset += band.numv;
+				}
+			}
 
-				} // for il -- NOTE: gg incremented in for statement
-			} // for ic
-		} // for ir
+			int offset = 0;
+			for (int k = 0; k < sorted.length; k++) {
+				ContourBand band = sorted[k];
+				int[] segs = band.segs;
+				for (int s = 0; s < 3 * band.nsegs; s += 3) {
+					ctrSet.add(vx, vy, offset + segs[s], offset + segs[s + 1],
+							segs[s + 2]);
+				}
+				for (int i = 0; i < numLevels; i++) {
+					if (band.dashFlags[i])
+						dashFlags[i] = true;
+				}
+				offset += band.numv;
+			}
+			bands.clear();
+		}
+	}
 
-		// System.err.println ("ii:" + ii1 + " " +ii2 + " " +ii3 + " " +ii4 +
-		// " "
-		// +ii5 + " " +ii6);
-		visad.util.Trace.call2("Contour2d.loop");
+	/**
+	 * The vertices and contour segments of one band of grid boxes.
+	 */
+	private static final class ContourBand {
 
-		/** ------------------- Color Fill ------------------------- */
-		TriangleStripBuilder triStripBldr = null;
+		/** first grid box of the band */
+		final int start;
 
-		if (fill) {
-			triStripBldr = new TriangleStripBuilder(ncm, nrm, color_bin.length);
-			fillGridBox(g, n_lines, vx, vy, xd, xdd, yd, ydd, nr, nrm, nc, ncm,
-					ctrLow, o_flags, myvals, color_bin, grd_normals,
-					triStripBldr);
-			// BMF 2006-10-04 do not return, ie. draw labels on filled contours
-			// for now, just return because we don't need to do labels
-			// return;
-		}
+		float[] vx;
+		float[] vy;
+		byte[][] auxLevels;
+		int numv;
+		boolean[] dashFlags;
 
-		// ---TDR, build Contour Strips
+		/** segments, as vertex index, vertex index, level index triples */
+		int[] segs = new int[3 * 256];
+		int nsegs = 0;
 
-		Trace.call1("Contour2d.getLineColorArrays");
-		ctrSet.getLineColorArrays(vx, vy, auxLevels, labelColor, labelFont,
-				labelAlign, sphericalDisplayCS, dashFlags);
-		Trace.call2("Contour2d.getLineColorArrays");
+		ContourBand(int start) {
+			this.start = start;
+		}
 
-		return new ContourOutput(ctrSet, triStripBldr);
+		void addSegment(int idx0, int idx1, int lev_idx) {
+			if (3 * nsegs + 3 > segs.length) {
+				int[] tmp = new int[2 * segs.length];
+				System.arraycopy(segs, 0, tmp, 0, 3 * nsegs);
+				segs = tmp;
+			}
+			segs[3 * nsegs] = idx0;
+			segs[3 * nsegs + 1] = idx1;
+			segs[3 * nsegs + 2] = lev_idx;
+			nsegs++;
+		}
 	}
 
 	/**
@@ -4277,6 +4385,18 @@ class ContourStripSet {
 
         List<ContourStrip> closedStripList;
 
+	/** Open strips by level, keyed by the grid cells of their end points. */
+	private Map<Long, List<ContourStrip>>[] stripEnds;
+
+	/** Search radius for end points, twice the ContourStrip.addPair tolerance. */
+	private static final float END_RADIUS = 0.002f;
+
+	/** Number of strips made, which orders the open strips of a level. */
+	private int numStrips = 0;
+
+	/** Open strips with an end point near the segment being added. */
+	private final List<ContourStrip> candidates = new ArrayList<ContourStrip>();
+
 	/**           */
 	boolean[] swap;
 
@@ -4327,6 +4447,7 @@ class ContourStripSet {
 		
 		vecArray = new List[n_levs];
                 closedStripArray = new List[n_levs];
+		stripEnds = new Map[n_levs];
 		labelScale = ((0.062 * (1.0 / scale_ratio)) * label_size);
 		this.nr = nr;
 		this.nc = nc;
@@ -4336,6 +4457,7 @@ class ContourStripSet {
 		for (int kk = 0; kk < n_levs; kk++) {
 			vecArray[kk] = new ArrayList<ContourStrip>();
 			closedStripArray[kk] = new ArrayList<ContourStrip>();
+			stripEnds[kk] = new HashMap<Long, List<ContourStrip>>();
 		}
 
 		qSet = new ContourQuadSet[n_levs];
@@ -4417,44 +4539,182 @@ class ContourStripSet {
 		int n_strip = vec.size();
 
 		if (n_strip == 0) {
-			ContourStrip c_strp = new ContourStrip(lev_idx, idx0, idx1, this);
-			vec.add(c_strp);
+			newStrip(vx, vy, idx0, idx1, lev_idx);
 		} else {
+			// only strips ending near the segment can take it; they are
+			// tried in list order, as when scanning the whole list
+			findCandidates(vx, vy, idx0, idx1, lev_idx);
 			int[] found_array = new int[3];
 			int found = 0;
-			for (int kk = 0; kk < n_strip; kk++) {
-				ContourStrip c_strp = vec.get(kk);
+			for (int k = 0; k < candidates.size(); k++) {
+				ContourStrip c_strp = candidates.get(k);
+				int kk = indexOf(c_strp);
 				if (c_strp.addPair(vx, vy, idx0, idx1)) {
 					found_array[found] = kk;
 					found++;
                                         if (c_strp.closed) { // take off main list, add to closed (done) list.
                                            vec.remove(c_strp);
                                            closedStripList.add(c_strp);
+                                           unindexStrip(c_strp);
                                            break;
                                         }
+					indexStrip(vx, vy, c_strp);
 					// exit loop if we hit threshold value
 					if (found == 3) break;
 				}
 			}
+			candidates.clear();
 			if (found == 3) {
-				ContourStrip c_strp = new ContourStrip(lev_idx, idx0,
-						idx1, this);
-				vec.add(c_strp);
+				newStrip(vx, vy, idx0, idx1, lev_idx);
 
 			} else if (found == 2) {
 				ContourStrip c_strpA = vec.get(found_array[0]);
 				ContourStrip c_strpB = vec.get(found_array[1]);
 				c_strpA.merge(c_strpB);
 				vec.remove(found_array[1]);
+				unindexStrip(c_strpB);
+				indexStrip(vx, vy, c_strpA);
 
 			} else if (found == 0) {
-				ContourStrip c_strp = new ContourStrip(lev_idx, idx0,
-						idx1, this);
-				vec.add(c_strp);
+				newStrip(vx, vy, idx0, idx1, lev_idx);
 			}
 		}
 	}
 
+	/**
+	 * Make a strip of one segment and add it to the end of the open strips
+	 * of its level.
+	 */
+	private void newStrip(float[] vx, float[] vy, int idx0, int idx1,
+			int lev_idx) {
+		ContourStrip c_strp = new ContourStrip(lev_idx, idx0, idx1, this);
+		c_strp.seq = numStrips++;
+		vec.add(c_strp);
+		indexStrip(vx, vy, c_strp);
+	}
+
+	/**
+	 * Index of an open strip in <code>vec</code>, which is ordered by
+	 * <code>ContourStrip.seq</code>.
+	 */
+	private int indexOf(ContourStrip c_strp) {
+		int lo = 0;
+		int hi = vec.size() - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int seq = vec.get(mid).seq;
+			if (seq < c_strp.seq) {
+				lo = mid + 1;
+			} else if (seq > c_strp.seq) {
+				hi = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Collect the open strips of a level with an end point near either
+	 * vertex of a segment into <code>candidates</code>, ordered by
+	 * <code>ContourStrip.seq</code>.
+	 */
+	private void findCandidates(float[] vx, float[] vy, int idx0, int idx1,
+			int lev_idx) {
+		Map<Long, List<ContourStrip>> ends = stripEnds[lev_idx];
+		for (int v = 0; v < 2; v++) {
+			int idx = (v == 0) ? idx0 : idx1;
+			int cx0 = cell(vx[idx] - END_RADIUS);
+			int cx1 = cell(vx[idx] + END_RADIUS);
+			int cy0 = cell(vy[idx] - END_RADIUS);
+			int cy1 = cell(vy[idx] + END_RADIUS);
+			for (int cx = cx0; cx <= cx1; cx++) {
+				for (int cy = cy0; cy <= cy1; cy++) {
+					List<ContourStrip> list = ends.get(cellKey(cx, cy));
+					if (list == null)
+						continue;
+					for (int i = 0; i < list.size(); i++) {
+						ContourStrip c_strp = list.get(i);
+						if (!candidates.contains(c_strp))
+							candidates.add(c_strp);
+					}
+				}
+			}
+		}
+		// insertion sort, there are only a few
+		for (int i = 1; i < candidates.size(); i++) {
+			ContourStrip c_strp = candidates.get(i);
+			int j = i - 1;
+			while (j >= 0 && candidates.get(j).seq > c_strp.seq) {
+				candidates.set(j + 1, candidates.get(j));
+				j--;
+			}
+			candidates.set(j + 1, c_strp);
+		}
+	}
+
+	/**
+	 * (Re)index an open strip by the grid cells of its end points.
+	 */
+	private void indexStrip(float[] vx, float[] vy, ContourStrip c_strp) {
+		int idx = c_strp.idxs.first.idx0;
+		Long first = cellKey(cell(vx[idx]), cell(vy[idx]));
+		idx = c_strp.idxs.last.idx1;
+		Long last = cellKey(cell(vx[idx]), cell(vy[idx]));
+		if (first.equals(c_strp.firstCell) && last.equals(c_strp.lastCell))
+			return;
+		unindexStrip(c_strp);
+		c_strp.firstCell = first;
+		c_strp.lastCell = last;
+		Map<Long, List<ContourStrip>> ends = stripEnds[c_strp.lev_idx];
+		addToCell(ends, first, c_strp);
+		if (!last.equals(first))
+			addToCell(ends, last, c_strp);
+	}
+
+	/**
+	 * Remove a strip from the end point index.
+	 */
+	private void unindexStrip(ContourStrip c_strp) {
+		if (c_strp.firstCell == null)
+			return;
+		Map<Long, List<ContourStrip>> ends = stripEnds[c_strp.lev_idx];
+		removeFromCell(ends, c_strp.firstCell, c_strp);
+		removeFromCell(ends, c_strp.lastCell, c_strp);
+		c_strp.firstCell = null;
+		c_strp.lastCell = null;
+	}
+
+	/**
+	 * Grid cell of a coordinate; cells are centered on the grid points, so
+	 * vertices on grid box edges are rarely near a cell boundary.
+	 */
+	private static int cell(float v) {
+		return (int) Math.floor(v + 0.5f);
+	}
+
+	private static Long cellKey(int cx, int cy) {
+		return Long.valueOf(((long) cx << 32) | (cy & 0xffffffffL));
+	}
+
+	private static void addToCell(Map<Long, List<ContourStrip>> ends,
+			Long key, ContourStrip c_strp) {
+		List<ContourStrip> list = ends.get(key);
+		if (list == null) {
+			list = new ArrayList<ContourStrip>(2);
+			ends.put(key, list);
+		}
+		list.add(c_strp);
+	}
+
+	private static void removeFromCell(Map<Long, List<ContourStrip>> ends,
+			Long key, ContourStrip c_strp) {
+		List<ContourStrip> list = ends.get(key);
+		if (list != null && list.remove(c_strp) && list.isEmpty()) {
+			ends.remove(key);
+		}
+	}
+
 	/**
          * Iterates over list of ContourStrips for each contour level index.
          *
@@ -4686,6 +4946,13 @@ class ContourStrip {
 
     boolean closed = false;
 
+	/** Creation order, see ContourStripSet.newStrip. */
+	int seq;
+
+	/** Grid cells of the end points, while indexed by the ContourStripSet. */
+	Long firstCell;
+	Long lastCell;
+
 	/**
 	 * 
 	 * @param lev_idx
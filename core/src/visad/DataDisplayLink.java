@@ -63,6 +63,14 @@ public class DataDisplayLink extends ReferenceActionLink {
       Control changes, index by Control.getIndex() */
   boolean[] isTransform;
 
+  /** scene graph branches made for the samples of an animated Field
+      by the last transform, for reuse by the next */
+  private final SampleBranchCache branchCache = new SampleBranchCache();
+
+  /** reads ahead the frames of an animated Field during the last
+      transform */
+  private volatile FramePrefetcher prefetcher = null;
+
   /** value of System.currentTimeMillis() when doTransform() started */
   public long start_time;
 
@@ -373,6 +381,26 @@ public class DataDisplayLink extends ReferenceActionLink {
     return true;
   }
 
+  /**
+   * @return cache of scene graph branches made for the samples of an
+   *         animated Field by the last transform
+   */
+  SampleBranchCache getBranchCache() {
+    return branchCache;
+  }
+
+  /**
+   * @return FramePrefetcher used by the last transform of an animated
+   *         Field, with its metrics, or null if there is none
+   */
+  public FramePrefetcher getFramePrefetcher() {
+    return prefetcher;
+  }
+
+  void setFramePrefetcher(FramePrefetcher p) {
+    prefetcher = p;
+  }
+
   /**
    * @return ShadowType generated from MathType of linked Data
    */
@@ -66,6 +66,9 @@ public abstract class DataImpl extends ThingImpl
       not correctly notified of data changes */
   private transient DataImpl parent;
 
+  /** number of calls to notifyReferences, i.e. of changes to this */
+  private transient volatile long changeCount = 0;
+
   /**
    * construct a DataImpl with given MathType
    * @param type  MathType
@@ -90,6 +93,16 @@ public abstract class DataImpl extends ThingImpl
     parent = p;
   }
 
+  /**
+   * Return the number of times this DataImpl (or any DataImpl it
+   * contains) has notified its references of a change.  Two equal counts
+   * for the same DataImpl mean it has not changed in between.
+   * @return the change count
+   */
+  public long getChangeCount() {
+    return changeCount;
+  }
+
   /**
    * @return MathType of this Data
    */
@@ -106,6 +119,7 @@ public abstract class DataImpl extends ThingImpl
    */
   public void notifyReferences()
          throws VisADException, RemoteException {
+    changeCount++;
     super.notifyReferences();
     // recursively propogate data change to parent
     if (parent != null) parent.notifyReferences();
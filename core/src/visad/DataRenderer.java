@@ -324,6 +324,7 @@ System.out.println("prepareAction " + display.getName() + " " +
 
         if (!feasible[i]) {
           all_feasible = false;
+          Links[i].getBranchCache().clear();
           clearBranch();
         }
         if (initialize && feasible[i]) {
@@ -484,6 +485,27 @@ if (map.badRange()) {
     tuple = null;
   }
 
+  /** number of Switches registered with Controls for this DataRenderer */
+  private int switches_added = 0;
+
+  /**
+   * note that a Switch was registered with an AVControl or a
+   * ProjectionControl for this DataRenderer; such registrations are
+   * cleared by clearAVControls before each transform, so a branch
+   * whose transform made any cannot be reused by a later transform
+   */
+  public void switchAdded() {
+    switches_added++;
+  }
+
+  /**
+   * @return number of Switches registered with Controls for this
+   *         DataRenderer so far
+   */
+  public int getSwitchesAdded() {
+    return switches_added;
+  }
+
   /**
    * clear all information associated with AnimationControls
    * and ValueControls created by this DataRenderer
@@ -26,6 +26,8 @@ MA 02111-1307, USA
 
 package visad;
 
+import visad.util.ParallelLoop;
+
 /**
    Delaunay represents an abstract class for calculating an
    N-dimensional Delaunay triangulation, that can be extended
@@ -137,7 +139,7 @@ public abstract class Delaunay implements java.io.Serializable {
    * to the Delaunay abstract class to use in order to construct the
    * fastest triangulation, and calls that extension, returning the
    * finished triangulation. The method chooses from among the Fast,
-   * Clarkson, and Watson methods.
+   * Clarkson, Parallel and Watson methods.
    * @param samples locations of points for topology - dimensioned
    *                float[dimension][number_of_points]
    * @param exact flag indicating need for exact Delaunay triangulation
@@ -163,6 +165,7 @@ public abstract class Delaunay implements java.io.Serializable {
     int FAST = 0;
     int CLARKSON = 1;
     int WATSON = 2;
+    int PARALLEL = 3;
 
     int dim = samples.length;
     if (dim < 2) throw new VisADException("Delaunay.factory: "
@@ -182,8 +185,11 @@ public abstract class Delaunay implements java.io.Serializable {
         choice = FAST;
       }
       else if (nrs > 3000) {
-        // use Clarkson for large sets
-        choice = CLARKSON;
+        // use Clarkson for large sets, split across threads if very
+        // large and not lattice-like
+        choice = (ParallelLoop.isParallel(nrs) &&
+                  !DelaunayParallel.isDegenerate(samples)) ?
+                 PARALLEL : CLARKSON;
       }
       else {
         choice = WATSON;
@@ -202,6 +208,11 @@ public abstract class Delaunay implements java.io.Serializable {
         DelaunayClarkson delan = new DelaunayClarkson(samples);
         return (Delaunay) delan;
       }
+      if (choice == PARALLEL) {
+        // triangulate slabs with the Clarkson method on several threads
+        DelaunayParallel delan = new DelaunayParallel(samples);
+        return (Delaunay) delan;
+      }
       if (choice == WATSON) {
         // triangulate with the Watson method
         DelaunayWatson delan = new DelaunayWatson(samples);
@@ -0,0 +1,544 @@
+//
+// DelaunayParallel.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import visad.util.ParallelLoop;
+
+/**
+   DelaunayParallel finds the same triangulation as DelaunayClarkson
+   for a large set of samples of R^2 or R^3, using several threads.<P>
+
+   The samples are split into slabs along their longest axis, and the
+   slabs are triangulated concurrently.  A triangle (or tetrahedron)
+   of a slab whose circumcircle lies strictly inside the slab contains
+   no sample of any other slab, so it belongs to the triangulation of
+   the whole set.  The vertices of the other triangles, and of the
+   slab hulls, are triangulated again, and the triangles of that
+   triangulation outside the region already covered fill the seams
+   between the slabs.<P>
+
+   Like DelaunayClarkson, this rounds sample values to integers.  If
+   the pieces do not fit together, which can happen when rounding
+   makes samples co-circular, or if there are too few samples to be
+   worth splitting, the whole set is triangulated by DelaunayClarkson
+   instead.  {@link Delaunay#factory} uses DelaunayClarkson directly for
+   samples that {@link #isDegenerate} reports as lattice-like.<P>
+*/
+public class DelaunayParallel extends Delaunay {
+
+  private static final long serialVersionUID = 1L;
+
+  // fewest samples in a slab
+  private static final int MIN_SLAB = 2000;
+
+  // cost of triangulating one sample, in samples of ParallelLoop work
+  private static final int SAMPLE_WORK = 64;
+
+  /**
+   * construct a Delaunay triangulation of the points in the
+   * samples array, with one slab for each thread that
+   * ParallelLoop may use
+   * @param samples locations of points for topology - dimensioned
+   *                float[dimension][number_of_points]
+   * @throws VisADException a VisAD error occurred
+   */
+  public DelaunayParallel(float[][] samples) throws VisADException {
+    this(samples, ParallelLoop.getMaxThreads());
+  }
+
+  /**
+   * construct a Delaunay triangulation of the points in the
+   * samples array, splitting them into at most the given
+   * number of slabs
+   * @param samples locations of points for topology - dimensioned
+   *                float[dimension][number_of_points]
+   * @param slabs maximum number of slabs triangulated concurrently
+   * @throws VisADException a VisAD error occurred
+   */
+  public DelaunayParallel(float[][] samples, int slabs)
+         throws VisADException {
+    int dim = samples.length;
+    int nrs = samples[0].length;
+    for (int i=1; i<dim; i++) nrs = Math.min(nrs, samples[i].length);
+
+    slabs = Math.min(slabs, nrs / MIN_SLAB);
+    if ((dim == 2 || dim == 3) && slabs > 1) {
+      Tri = merge(samples, nrs, slabs);
+      if (Tri != null) {
+        try {
+          finish_triang(samples);
+          return;
+        }
+        catch (SetException e) {
+          // seams did not fit; fall through to a single triangulation
+        }
+      }
+    }
+
+    DelaunayClarkson delan = new DelaunayClarkson(samples);
+    Tri = delan.Tri;
+    Vertices = delan.Vertices;
+    Walk = delan.Walk;
+    Edges = delan.Edges;
+    NumEdges = delan.NumEdges;
+  }
+
+  /**
+   * Return true if many samples share a value, after rounding to
+   * integers, along some axis, as on a lattice.  Such samples are
+   * often co-circular, so their triangulation is not unique and the
+   * slabs may not fit together.
+   * @param samples locations of points - dimensioned
+   *                float[dimension][number_of_points]
+   * @return true if fewer than half the samples have distinct values
+   *         along some axis
+   */
+  public static boolean isDegenerate(float[][] samples) {
+    int dim = samples.length;
+    int nrs = samples[0].length;
+    for (int i=1; i<dim; i++) nrs = Math.min(nrs, samples[i].length);
+    float[] v = new float[nrs];
+    for (int j=0; j<dim; j++) {
+      for (int i=0; i<nrs; i++) v[i] = (float) Math.floor(samples[j][i] + 0.5);
+      Arrays.sort(v);
+      int distinct = (nrs == 0) ? 0 : 1;
+      for (int i=1; i<nrs; i++) {
+        if (v[i] != v[i-1]) distinct++;
+      }
+      if (2 * distinct < nrs) return true;
+    }
+    return false;
+  }
+
+  /**
+   * triangulate slabs of the samples concurrently and join them
+   * @return the triangles, or null if they do not fit together
+   */
+  private static int[][] merge(final float[][] samples, int nrs, int slabs)
+          throws VisADException {
+    final int dim = samples.length;
+    final int dim1 = dim + 1;
+
+    // Clarkson triangulates the samples rounded to integers, so the
+    // tests here use the same values
+    final double[][] site = new double[dim][nrs];
+    int axis = 0;
+    double range = -1.0;
+    for (int j=0; j<dim; j++) {
+      double lo = Double.POSITIVE_INFINITY;
+      double hi = Double.NEGATIVE_INFINITY;
+      for (int i=0; i<nrs; i++) {
+        double v = (float) Math.floor(samples[j][i] + 0.5);
+        if (v != v) return null;
+        site[j][i] = v;
+        if (v < lo) lo = v;
+        if (v > hi) hi = v;
+      }
+      if (hi - lo > range) {
+        range = hi - lo;
+        axis = j;
+      }
+    }
+
+    // cut the samples into slabs along axis, so that no value of
+    // axis is in two slabs
+    double[] keys = site[axis].clone();
+    int[] order = QuickSort.sort(keys);
+    int[] first = new int[slabs + 1];
+    int count = 0;
+    for (int k=1; k<slabs; k++) {
+      int b = (int) ((long) nrs * k / slabs);
+      while (b < nrs && keys[b] == keys[b-1]) b++;
+      if (b - first[count] > dim && nrs - b > dim) first[++count] = b;
+    }
+    first[++count] = nrs;
+    if (count < 2) return null;
+
+    final Slab[] slab = new Slab[count];
+    for (int k=0; k<count; k++) {
+      int[] points = new int[first[k+1] - first[k]];
+      System.arraycopy(order, first[k], points, 0, points.length);
+      // Clarkson inserts samples in order, and is slow in sorted order
+      Arrays.sort(points);
+      double low = (k == 0) ? Double.NEGATIVE_INFINITY : keys[first[k] - 1];
+      double high = (k == count - 1) ? Double.POSITIVE_INFINITY
+                                     : keys[first[k+1]];
+      slab[k] = new Slab(points, axis, low, high);
+    }
+    keys = null;
+    order = null;
+
+    final boolean[] seam = new boolean[nrs];
+    ParallelLoop.runTasks(count, (long) nrs * SAMPLE_WORK,
+      new ParallelLoop.Body() {
+        public void run(int start, int end) {
+          for (int k=start; k<end; k++) {
+            slab[k].triangulate(samples, site, seam);
+          }
+        }
+      });
+
+    // triangulate the samples along the seams and slab hulls
+    int nseam = 0;
+    for (int i=0; i<nrs; i++) {
+      if (seam[i]) nseam++;
+    }
+    if (nseam <= dim) return null;
+    int[] seamPoints = new int[nseam];
+    float[][] seamSamples = new float[dim][nseam];
+    nseam = 0;
+    for (int i=0; i<nrs; i++) {
+      if (seam[i]) {
+        for (int j=0; j<dim; j++) seamSamples[j][nseam] = samples[j][i];
+        seamPoints[nseam++] = i;
+      }
+    }
+    Delaunay delan;
+    try {
+      delan = new DelaunayClarkson(seamSamples);
+    }
+    catch (Exception e) {
+      return null;
+    }
+    seamSamples = null;
+    int[][] stri = delan.Tri;
+    int[][] swalk = delan.Walk;
+    int ns = stri.length;
+    for (int i=0; i<ns; i++) {
+      for (int j=0; j<dim1; j++) stri[i][j] = seamPoints[stri[i][j]];
+    }
+
+    // facets between kept slab triangles and the rest, each with the
+    // vertex opposite it in the kept triangle
+    HashMap bounds = new HashMap();
+    int nsafe = 0;
+    for (int k=0; k<count; k++) {
+      Slab s = slab[k];
+      nsafe += s.nsafe;
+      for (int f=0; f<s.nbounds; f++) {
+        bounds.put(new Facet(s.bounds[f]), Integer.valueOf(s.opposite[f]));
+      }
+    }
+
+    // split the seam triangulation into regions bounded by those
+    // facets; a region on the side of the kept triangles lies under
+    // them, the others fill the seams
+    boolean[] keep = new boolean[ns];
+    boolean[] visited = new boolean[ns];
+    int[] stack = new int[ns];
+    int[] members = new int[ns];
+    int[] facet = new int[dim];
+    int nkeep = 0;
+    for (int t0=0; t0<ns; t0++) {
+      if (visited[t0]) continue;
+      visited[t0] = true;
+      int sp = 0;
+      int nm = 0;
+      int vote = 0;
+      stack[sp++] = t0;
+      while (sp > 0) {
+        int t = stack[--sp];
+        members[nm++] = t;
+        for (int j=0; j<dim1; j++) {
+          for (int l=0; l<dim; l++) facet[l] = stri[t][(j + l) % dim1];
+          Object opp = bounds.get(new Facet(facet));
+          if (opp != null) {
+            int other = stri[t][(j + dim) % dim1];
+            int side = orient(site, facet, ((Integer) opp).intValue()) *
+                       orient(site, facet, other);
+            if (side != 0) {
+              if (vote == 0) vote = side;
+              else if (vote != side) return null;
+            }
+          }
+          else {
+            int w = swalk[t][j];
+            if (w >= 0 && !visited[w]) {
+              visited[w] = true;
+              stack[sp++] = w;
+            }
+          }
+        }
+      }
+      if (vote <= 0) {
+        for (int m=0; m<nm; m++) keep[members[m]] = true;
+        nkeep += nm;
+      }
+    }
+
+    int[][] tri = new int[nsafe + nkeep][];
+    int itri = 0;
+    double volume = 0.0;
+    for (int k=0; k<count; k++) {
+      Slab s = slab[k];
+      for (int i=0; i<s.tri.length; i++) {
+        if (s.safe[i]) {
+          tri[itri++] = s.tri[i];
+          volume += volume(site, s.tri[i]);
+        }
+      }
+    }
+    double total = 0.0;
+    for (int i=0; i<ns; i++) {
+      double v = volume(site, stri[i]);
+      total += v;
+      if (keep[i]) {
+        tri[itri++] = stri[i];
+        volume += v;
+      }
+    }
+
+    // the seam triangulation covers the hull of the whole set, so the
+    // joined triangles must cover the same volume
+    if (Math.abs(volume - total) > 1.0e-9 * total) return null;
+    return tri;
+  }
+
+  /**
+   * @return the sign of the volume of the simplex with base facet
+   *         and apex p
+   */
+  private static int orient(double[][] site, int[] facet, int p) {
+    double det;
+    if (facet.length == 2) {
+      int a = facet[0];
+      int b = facet[1];
+      det = (site[0][b] - site[0][a]) * (site[1][p] - site[1][a]) -
+            (site[1][b] - site[1][a]) * (site[0][p] - site[0][a]);
+    }
+    else {
+      int a = facet[0];
+      det = det3(site, a, facet[1], facet[2], p);
+    }
+    return (det > 0.0) ? 1 : (det < 0.0) ? -1 : 0;
+  }
+
+  /**
+   * @return the unsigned area (2-D) or volume (3-D) of simplex t,
+   *         up to a constant factor
+   */
+  private static double volume(double[][] site, int[] t) {
+    if (t.length == 3) {
+      return Math.abs((site[0][t[1]] - site[0][t[0]]) *
+                      (site[1][t[2]] - site[1][t[0]]) -
+                      (site[1][t[1]] - site[1][t[0]]) *
+                      (site[0][t[2]] - site[0][t[0]]));
+    }
+    return Math.abs(det3(site, t[0], t[1], t[2], t[3]));
+  }
+
+  /** determinant of the edges from a to b, c and d */
+  private static double det3(double[][] site, int a, int b, int c, int d) {
+    double bx = site[0][b] - site[0][a];
+    double by = site[1][b] - site[1][a];
+    double bz = site[2][b] - site[2][a];
+    double cx = site[0][c] - site[0][a];
+    double cy = site[1][c] - site[1][a];
+    double cz = site[2][c] - site[2][a];
+    double dx = site[0][d] - site[0][a];
+    double dy = site[1][d] - site[1][a];
+    double dz = site[2][d] - site[2][a];
+    return bx * (cy * dz - cz * dy) - by * (cx * dz - cz * dx) +
+           bz * (cx * dy - cy * dx);
+  }
+
+  /** the samples of one slab, and its triangulation */
+  private static class Slab {
+
+    // sample indices in this slab
+    private final int[] points;
+    private final int axis;
+
+    // largest value of axis in the slab before, and smallest in the
+    // slab after
+    private final double low, high;
+
+    // triangles, in sample indices, and whether each lies inside the slab
+    int[][] tri = new int[0][];
+    boolean[] safe = new boolean[0];
+    int nsafe = 0;
+
+    // facets between safe triangles and the rest, and their opposite
+    // vertices in the safe triangles
+    int[][] bounds;
+    int[] opposite;
+    int nbounds = 0;
+
+    Slab(int[] points, int axis, double low, double high) {
+      this.points = points;
+      this.axis = axis;
+      this.low = low;
+      this.high = high;
+    }
+
+    /**
+     * triangulate this slab, and set seam for the vertices of
+     * triangles that are not safe and of the slab hull
+     */
+    void triangulate(float[][] samples, double[][] site, boolean[] seam) {
+      int dim = samples.length;
+      int dim1 = dim + 1;
+      int m = points.length;
+      float[][] sub = new float[dim][m];
+      for (int j=0; j<dim; j++) {
+        for (int i=0; i<m; i++) sub[j][i] = samples[j][points[i]];
+      }
+      Delaunay delan;
+      try {
+        delan = new DelaunayClarkson(sub);
+      }
+      catch (Exception e) {
+        for (int i=0; i<m; i++) seam[points[i]] = true;
+        return;
+      }
+      sub = null;
+
+      int ntris = delan.Tri.length;
+      tri = new int[ntris][dim1];
+      safe = new boolean[ntris];
+      double[][] a = new double[dim][dim];
+      double[] b = new double[dim];
+      for (int i=0; i<ntris; i++) {
+        for (int j=0; j<dim1; j++) tri[i][j] = points[delan.Tri[i][j]];
+        safe[i] = isSafe(site, tri[i], a, b);
+        if (safe[i]) nsafe++;
+        else {
+          for (int j=0; j<dim1; j++) seam[tri[i][j]] = true;
+        }
+      }
+
+      int[][] walk = delan.Walk;
+      bounds = new int[16][];
+      opposite = new int[16];
+      for (int i=0; i<ntris; i++) {
+        for (int j=0; j<dim1; j++) {
+          int w = walk[i][j];
+          if (w < 0) {
+            // hull facet
+            for (int l=0; l<dim; l++) seam[tri[i][(j + l) % dim1]] = true;
+          }
+          if (safe[i] && (w < 0 || !safe[w])) {
+            if (nbounds == bounds.length) {
+              int[][] nb = new int[2 * nbounds][];
+              System.arraycopy(bounds, 0, nb, 0, nbounds);
+              bounds = nb;
+              int[] no = new int[2 * nbounds];
+              System.arraycopy(opposite, 0, no, 0, nbounds);
+              opposite = no;
+            }
+            int[] facet = new int[dim];
+            for (int l=0; l<dim; l++) facet[l] = tri[i][(j + l) % dim1];
+            bounds[nbounds] = facet;
+            opposite[nbounds++] = tri[i][(j + dim) % dim1];
+          }
+        }
+      }
+    }
+
+    /**
+     * @return true if the circumcircle of triangle t lies strictly
+     *         between low and high along axis
+     */
+    private boolean isSafe(double[][] site, int[] t, double[][] a,
+                           double[] b) {
+      // the center c, relative to the first vertex, solves
+      // 2 (p_i - p_0) . c = |p_i - p_0|^2
+      int dim = a.length;
+      int p0 = t[0];
+      for (int i=0; i<dim; i++) {
+        b[i] = 0.0;
+        for (int k=0; k<dim; k++) {
+          double d = site[k][t[i+1]] - site[k][p0];
+          a[i][k] = 2.0 * d;
+          b[i] += d * d;
+        }
+      }
+      for (int k=0; k<dim; k++) {
+        int piv = k;
+        for (int i=k+1; i<dim; i++) {
+          if (Math.abs(a[i][k]) > Math.abs(a[piv][k])) piv = i;
+        }
+        if (a[piv][k] == 0.0) return false;
+        double[] ta = a[k];
+        a[k] = a[piv];
+        a[piv] = ta;
+        double tb = b[k];
+        b[k] = b[piv];
+        b[piv] = tb;
+        for (int i=k+1; i<dim; i++) {
+          double f = a[i][k] / a[k][k];
+          for (int l=k; l<dim; l++) a[i][l] -= f * a[k][l];
+          b[i] -= f * b[k];
+        }
+      }
+      double r2 = 0.0;
+      for (int k=dim-1; k>=0; k--) {
+        double c = b[k];
+        for (int l=k+1; l<dim; l++) c -= a[k][l] * b[l];
+        c /= a[k][k];
+        b[k] = c;
+        r2 += c * c;
+      }
+      double center = site[axis][p0] + b[axis];
+      double r = Math.sqrt(r2);
+      if (!(r == r) || Double.isInfinite(r)) return false;
+      double tol = 1.0e-9 * (Math.abs(center) + r);
+      return center - r > low + tol && center + r < high - tol;
+    }
+  }
+
+  /** a facet, as its sorted sample indices */
+  private static class Facet {
+    private final int[] v;
+    private final int hash;
+
+    Facet(int[] facet) {
+      v = facet.clone();
+      Arrays.sort(v);
+      int h = 0;
+      for (int i=0; i<v.length; i++) h = 31 * h + v[i];
+      hash = h;
+    }
+
+    public int hashCode() {
+      return hash;
+    }
+
+    public boolean equals(Object o) {
+      if (!(o instanceof Facet)) return false;
+      int[] w = ((Facet) o).v;
+      for (int i=0; i<v.length; i++) {
+        if (v[i] != w[i]) return false;
+      }
+      return true;
+    }
+  }
+
+}
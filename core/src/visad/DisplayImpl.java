@@ -1823,6 +1823,15 @@ System.out.println("initialize = " + initialize + " go = " + go +
           go = true;
 // System.out.println("redisplay_all = " + redisplay_all + " go = " + go);
           redisplay_all = false;
+          // nothing from earlier transforms may be reused
+          renderers = temp.elements();
+          while (renderers.hasMoreElements()) {
+            DataDisplayLink[] links =
+              ((DataRenderer) renderers.nextElement()).getLinks();
+            for (int i=0; links != null && i<links.length; i++) {
+              links[i].getBranchCache().clear();
+            }
+          }
         }
 
         if (!initialize || go) {
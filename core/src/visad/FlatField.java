@@ -1419,7 +1419,171 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
     return range;
   }
 
-  /** 
+  /**
+   * Return the values of one range component for an interval of samples,
+   * in the default Units of the range, as {@link #getFloats(boolean)}
+   * returns them.  Only the requested samples are unpacked and converted.
+   *
+   * @param comp	component index
+   * @param start	index of the first sample
+   * @param length	number of samples
+   *
+   * @return  new array of the values
+   * @throws VisADException  bad range mode or Unit conversion
+   */
+  public float[] getRangeFloats(int comp, int start, int length)
+         throws VisADException {
+    if (isMissing()) {
+      float[] range = new float[length];
+      Arrays.fill(range, Float.NaN);
+      return range;
+    }
+    return toDefaultUnit(comp, unpackRangeFloats(comp, start, length));
+  }
+
+  /**
+   * Return the values of one range component for an interval of samples,
+   * in the default Units of the range, as {@link #getValues(boolean)}
+   * returns them.  Only the requested samples are unpacked and converted.
+   *
+   * @param comp	component index
+   * @param start	index of the first sample
+   * @param length	number of samples
+   *
+   * @return  new array of the values
+   * @throws VisADException  bad range mode or Unit conversion
+   */
+  public double[] getRangeValues(int comp, int start, int length)
+         throws VisADException {
+    if (isMissing()) {
+      double[] range = new double[length];
+      Arrays.fill(range, Double.NaN);
+      return range;
+    }
+    double[] range = unpackRangeValues(comp, start, length);
+    Unit[] units_out = ((FunctionType) Type).getFlatRange().getDefaultUnits();
+    return Unit.convertTuple(new double[][] {range},
+                             new Unit[] {RangeUnits[comp]},
+                             new Unit[] {units_out[comp]}, false)[0];
+  }
+
+  /**
+   * Unpack the float values of one range component for an interval of
+   * samples, in the range Units.  Subclasses that keep their values
+   * outside the FlatField storage override this along with
+   * {@link #unpackFloats(boolean)}.
+   *
+   * @param comp	component index
+   * @param start	index of the first sample
+   * @param length	number of samples
+   *
+   * @return  new array of the values
+   * @throws VisADException  bad range mode
+   */
+  protected float[] unpackRangeFloats(int comp, int start, int length)
+            throws VisADException {
+    float[] range = new float[length];
+    synchronized (DoubleRange) {
+      switch (RangeMode[comp]) {
+        case DOUBLE:
+          double[] DoubleRangeI = DoubleRange[comp];
+          for (int j=0; j<length; j++) {
+            range[j] = (float) DoubleRangeI[start + j];
+          }
+          break;
+        case FLOAT:
+          System.arraycopy(FloatRange[comp], start, range, 0, length);
+          break;
+        default:
+          range = RangeSet[comp].indexToValue(
+            rangeIndices(comp, start, length))[0];
+          break;
+      }
+    }
+    return range;
+  }
+
+  /**
+   * Unpack the double values of one range component for an interval of
+   * samples, in the range Units.  Subclasses that keep their values
+   * outside the FlatField storage override this along with
+   * {@link #unpackValues(boolean)}.
+   *
+   * @param comp	component index
+   * @param start	index of the first sample
+   * @param length	number of samples
+   *
+   * @return  new array of the values
+   * @throws VisADException  bad range mode
+   */
+  protected double[] unpackRangeValues(int comp, int start, int length)
+            throws VisADException {
+    double[] range = new double[length];
+    synchronized (DoubleRange) {
+      switch (RangeMode[comp]) {
+        case DOUBLE:
+          System.arraycopy(DoubleRange[comp], start, range, 0, length);
+          break;
+        case FLOAT:
+          float[] FloatRangeI = FloatRange[comp];
+          for (int j=0; j<length; j++) {
+            range[j] = (double) FloatRangeI[start + j];
+          }
+          break;
+        default:
+          range = Set.floatToDouble(RangeSet[comp].indexToValue(
+            rangeIndices(comp, start, length)))[0];
+          break;
+      }
+    }
+    return range;
+  }
+
+  /** RangeSet indices of the packed values of component comp for
+      length samples from start */
+  private int[] rangeIndices(int comp, int start, int length)
+          throws VisADException {
+    int[] index = new int[length];
+    switch (RangeMode[comp]) {
+      case BYTE:
+        byte[] ByteRangeI = ByteRange[comp];
+        for (int j=0; j<length; j++) {
+          index[j] = ((int) ByteRangeI[start + j]) - MISSING1 - 1;
+        }
+        break;
+      case SHORT:
+        short[] ShortRangeI = ShortRange[comp];
+        for (int j=0; j<length; j++) {
+          index[j] = ((int) ShortRangeI[start + j]) - MISSING2 - 1;
+        }
+        break;
+      case INT:
+        int[] IntRangeI = IntRange[comp];
+        for (int j=0; j<length; j++) {
+          index[j] = ((int) IntRangeI[start + j]) - MISSING4 - 1;
+        }
+        break;
+      default:
+        throw new SetException("FlatField.rangeIndices: bad RangeMode");
+    }
+    return index;
+  }
+
+  /** convert float values of component comp from its range Unit to its
+      default Unit, as getFloats does */
+  private float[] toDefaultUnit(int comp, float[] range)
+          throws VisADException {
+    Unit[] units_out = ((FunctionType) Type).getFlatRange().getDefaultUnits();
+    if (units_out[comp] == null ? RangeUnits[comp] == null :
+        units_out[comp].equals(RangeUnits[comp])) {
+      return range;
+    }
+    return Unit.convertTuple(new float[][] {range},
+                             new Unit[] {RangeUnits[comp]},
+                             new Unit[] {units_out[comp]}, false)[0];
+  }
+
+  /**
    * Unpack the double value at the sample index.
    * @param s_index  sample index
    * @return array of values at that index
@@ -2253,16 +2417,16 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
 
                 if (convertThis) {
                     if (thisValuesD != null)
-                        thisValuesD[j] = outUnits[j].toThis (thisValuesD[j], thisUnits[j]);
+                        thisValuesD[j] = UnitConverter.get(thisUnits[j], outUnits[j]).convert(thisValuesD[j]);
                     if (thisValuesF != null)
-                        thisValuesF[j] = outUnits[j].toThis (thisValuesF[j], thisUnits[j]);
+                        thisValuesF[j] = UnitConverter.get(thisUnits[j], outUnits[j]).convert(thisValuesF[j]);
                 }
 
                 if (convertThat) {
                     if (thatValuesD!=null)
-                        thatValuesD[j] = outUnits[j].toThis (thatValuesD[j], thatUnits[j]);
+                        thatValuesD[j] = UnitConverter.get(thatUnits[j], outUnits[j]).convert(thatValuesD[j]);
                     if (thatValuesF!=null)
-                        thatValuesF[j] = outUnits[j].toThis (thatValuesF[j], thatUnits[j]);
+                        thatValuesF[j] = UnitConverter.get(thatUnits[j], outUnits[j]).convert(thatValuesF[j]);
                 }
 
                 if (error_mode != NO_ERRORS &&
@@ -2303,61 +2467,10 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
                 outUnits[j] = null;
               }
             }
-            double[]thisLineD = null;
-            double[]thatLineD = null;
-            float[]thisLineF = null;
-            float[]thatLineF = null;
-            switch (op) {
-              case ADD:
-                  if (thisValuesD != null) {
-                      double[]thisValuesLineD = thisValuesD[j];
-                      double[]thatValuesLineD = thatValuesD[j];
-                      for (int i=0; i<getLength(); i++) {
-                          thisValuesLineD[i] += thatValuesLineD[i];
-                      }
-                  }
-                  if (thisValuesF != null) {
-                      float[]thisValuesLineF = thisValuesF[j];
-                      float[]thatValuesLineF = thatValuesF[j];
-                      for (int i=0; i<getLength(); i++) {
-                          thisValuesLineF[i] += thatValuesLineF[i];
-                      }
-                  }
-
-                break;
-              case SUBTRACT:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++) 
-                          thisValuesD[j][i] -= thatValuesD[j][i];
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++) 
-                          thisValuesF[j][i] -= thatValuesF[j][i];
-                break;
-              case INV_SUBTRACT:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++) 
-                          thisValuesD[j][i] = thatValuesD[j][i] - thisValuesD[j][i];
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++) 
-                          thisValuesF[j][i] = thatValuesF[j][i] - thisValuesF[j][i];
-                break;
-              case MAX:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] = Math.max(thisValuesD[j][i], thatValuesD[j][i]);
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] = Math.max(thisValuesF[j][i], thatValuesF[j][i]);
-                break;
-              case MIN:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] = Math.min (thisValuesD[j][i], thatValuesD[j][i]);
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] = Math.min (thisValuesF[j][i], thatValuesF[j][i]);
-                break;
-            }
+            if (thisValuesD != null)
+                FlatFieldOps.binary(op, thisValuesD[j], thatValuesD[j], getLength());
+            if (thisValuesF != null)
+                FlatFieldOps.binary(op, thisValuesF[j], thatValuesF[j], getLength());
           }
           break;
 
@@ -2370,9 +2483,9 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
               Unit absUnit = thisUnits[j].getAbsoluteUnit();
               if (!absUnit.equals(thisUnits[j])) {
                   if (thisValuesD != null)
-                      thisValuesD[j] = absUnit.toThis (thisValuesD[j], thisUnits[j]);
+                      thisValuesD[j] = UnitConverter.get(thisUnits[j], absUnit).convert(thisValuesD[j]);
                   if (thisValuesF != null)
-                      thisValuesF[j] = absUnit.toThis (thisValuesF[j], thisUnits[j]);
+                      thisValuesF[j] = UnitConverter.get(thisUnits[j], absUnit).convert(thisValuesF[j]);
                   thisUnits[j] = absUnit;
               }
             }
@@ -2380,9 +2493,9 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
               Unit absUnit = thatUnits[j].getAbsoluteUnit();
               if (!absUnit.equals(thatUnits[j])) {
                   if (thatValuesD != null)
-                      thatValuesD[j] = absUnit.toThis(thatValuesD[j], thatUnits[j]);
+                      thatValuesD[j] = UnitConverter.get(thatUnits[j], absUnit).convert(thatValuesD[j]);
                   if (thatValuesF != null)
-                      thatValuesF[j] = absUnit.toThis(thatValuesF[j], thatUnits[j]);
+                      thatValuesF[j] = UnitConverter.get(thatUnits[j], absUnit).convert(thatValuesF[j]);
                   thatUnits[j] = absUnit;
               }
             }
@@ -2413,32 +2526,10 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
                   break;
               }
             }
-            switch(op) {
-              case MULTIPLY:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] *= thatValuesD[j][i];
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] *= thatValuesF[j][i];
-                break;
-              case DIVIDE:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] /= thatValuesD[j][i];
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] /= thatValuesF[j][i];
-                break;
-              case INV_DIVIDE:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] = thatValuesD[j][i] / thisValuesD[j][i];
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] = thatValuesF[j][i] / thisValuesF[j][i];
-                break;
-            }
+            if (thisValuesD != null)
+                FlatFieldOps.binary(op, thisValuesD[j], thatValuesD[j], getLength());
+            if (thisValuesF != null)
+                FlatFieldOps.binary(op, thisValuesF[j], thatValuesF[j], getLength());
           }
           break;
 
@@ -2448,9 +2539,9 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
               Unit absUnit = thisUnits[j].getAbsoluteUnit();
               if (!absUnit.equals(thisUnits[j])) {
                   if (thisValuesD != null)
-                      thisValuesD[j] = absUnit.toThis(thisValuesD[j], thisUnits[j]);
+                      thisValuesD[j] = UnitConverter.get(thisUnits[j], absUnit).convert(thisValuesD[j]);
                   if (thisValuesF != null)
-                      thisValuesF[j] = absUnit.toThis(thisValuesF[j], thisUnits[j]);
+                      thisValuesF[j] = UnitConverter.get(thisUnits[j], absUnit).convert(thisValuesF[j]);
                   thisUnits[j] = absUnit;
               }
             }
@@ -2459,9 +2550,9 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
                 Unit absUnit = thatUnits[j].getAbsoluteUnit();
                 if (!absUnit.equals(thatUnits[j])) {
                     if (thatValuesD != null)
-                        thatValuesD[j] = absUnit.toThis(thatValuesD[j], thatUnits[j]);
+                        thatValuesD[j] = UnitConverter.get(thatUnits[j], absUnit).convert(thatValuesD[j]);
                     if (thatValuesF != null)
-                        thatValuesF[j] = absUnit.toThis(thatValuesF[j], thatUnits[j]);
+                        thatValuesF[j] = UnitConverter.get(thatUnits[j], absUnit).convert(thatValuesF[j]);
                     thatUnits[j] = absUnit;
               }
             }
@@ -2474,11 +2565,9 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
               outUnits[j] = null;
             }
             if (thisValuesD != null)
-                for (int i=0; i<getLength(); i++)
-                    thisValuesD[j][i] = (double)(Math.pow(thisValuesD[j][i], thatValuesD[j][i]));
+                FlatFieldOps.binary(op, thisValuesD[j], thatValuesD[j], getLength());
             if (thisValuesF != null)
-                for (int i=0; i<getLength(); i++)
-                    thisValuesF[j][i] = (float)(Math.pow(thisValuesF[j][i], thatValuesF[j][i]));
+                FlatFieldOps.binary(op, thisValuesF[j], thatValuesF[j], getLength());
           }
           break;
 
@@ -2488,9 +2577,9 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
               Unit absUnit = thatUnits[j].getAbsoluteUnit();
               if (!absUnit.equals(thatUnits[j])) {
                   if (thatValuesD != null)
-                      thatValuesD[j] = absUnit.toThis(thatValuesD[j], thatUnits[j]);
+                      thatValuesD[j] = UnitConverter.get(thatUnits[j], absUnit).convert(thatValuesD[j]);
                   if (thatValuesF != null)
-                      thatValuesF[j] = absUnit.toThis(thatValuesF[j], thatUnits[j]);
+                      thatValuesF[j] = UnitConverter.get(thatUnits[j], absUnit).convert(thatValuesF[j]);
                   thatUnits[j] = absUnit;
               }
             }
@@ -2499,9 +2588,9 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
               Unit absUnit = thisUnits[j].getAbsoluteUnit();
               if (!absUnit.equals(thisUnits[j])) {
                   if (thisValuesD != null)
-                      thisValuesD[j] = absUnit.toThis(thisValuesD[j], thisUnits[j]);
+                      thisValuesD[j] = UnitConverter.get(thisUnits[j], absUnit).convert(thisValuesD[j]);
                   if (thisValuesF != null)
-                      thisValuesF[j] = absUnit.toThis(thisValuesF[j], thisUnits[j]);
+                      thisValuesF[j] = UnitConverter.get(thisUnits[j], absUnit).convert(thisValuesF[j]);
                   thisUnits[j] = absUnit;
               }
             }
@@ -2514,11 +2603,9 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
               outUnits[j] = null;
             }
             if (thisValuesD != null)
-                for (int i=0; i<getLength(); i++)
-                    thisValuesD[j][i] = (double)(Math.pow(thatValuesD[j][i], thisValuesD[j][i]));
+                FlatFieldOps.binary(op, thisValuesD[j], thatValuesD[j], getLength());
             if (thisValuesF != null)
-                for (int i=0; i<getLength(); i++)
-                    thisValuesF[j][i] = (float)(Math.pow(thatValuesF[j][i], thisValuesF[j][i]));
+                FlatFieldOps.binary(op, thisValuesF[j], thatValuesF[j], getLength());
           }
           break;
 
@@ -2533,73 +2620,36 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
               Unit absUnit = thisUnits[j].getAbsoluteUnit();
               if (!absUnit.equals(thisUnits[j])) {
                   if (thisValuesD != null)
-                      thisValuesD[j] = absUnit.toThis(thisValuesD[j], thisUnits[j]);
+                      thisValuesD[j] = UnitConverter.get(thisUnits[j], absUnit).convert(thisValuesD[j]);
                   if (thisValuesF != null)
-                      thisValuesF[j] = absUnit.toThis(thisValuesF[j], thisUnits[j]);
+                      thisValuesF[j] = UnitConverter.get(thisUnits[j], absUnit).convert(thisValuesF[j]);
                   thisUnits[j] = absUnit;
               }
               if (!absUnit.equals(thatUnits[j])) {
                   if (thatValuesD != null)
-                      thatValuesD[j] = absUnit.toThis(thatValuesD[j], thatUnits[j]);
+                      thatValuesD[j] = UnitConverter.get(thatUnits[j], absUnit).convert(thatValuesD[j]);
                   if (thatValuesF != null)
-                      thatValuesF[j] = absUnit.toThis(thatValuesF[j], thatUnits[j]);
+                      thatValuesF[j] = UnitConverter.get(thatUnits[j], absUnit).convert(thatValuesF[j]);
                   thatUnits[j] = absUnit;
               }
             }
+            if (thisValuesD != null)
+                FlatFieldOps.binary(op, thisValuesD[j], thatValuesD[j], getLength());
+            if (thisValuesF != null)
+                FlatFieldOps.binary(op, thisValuesF[j], thatValuesF[j], getLength());
             switch(op) {
               case ATAN2:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] = (double)(Math.atan2(thisValuesD[j][i], thatValuesD[j][i]));
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] = (float)(Math.atan2(thisValuesF[j][i], thatValuesF[j][i]));
-                  outUnits[j] = CommonUnit.radian;
-                  break;
-              case ATAN2_DEGREES:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] = (double)(Data.RADIANS_TO_DEGREES * Math.atan2(thisValuesD[j][i], thatValuesD[j][i]));
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] = (float)(Data.RADIANS_TO_DEGREES * Math.atan2(thisValuesF[j][i], thatValuesF[j][i]));
-                outUnits[j] = CommonUnit.degree;
-                break;
               case INV_ATAN2:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] = (double)(Math.atan2(thatValuesD[j][i], thisValuesD[j][i]));
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] = (float)(Math.atan2(thatValuesF[j][i], thisValuesF[j][i]));
-                  outUnits[j] = CommonUnit.radian;
+                outUnits[j] = CommonUnit.radian;
                 break;
+              case ATAN2_DEGREES:
               case INV_ATAN2_DEGREES:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] = (double)(Data.RADIANS_TO_DEGREES * Math.atan2(thatValuesD[j][i], thisValuesD[j][i]));
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] = (float)(Data.RADIANS_TO_DEGREES * Math.atan2(thatValuesF[j][i], thisValuesF[j][i]));
-
-                  outUnits[j] = CommonUnit.degree;
-                  break;
+                outUnits[j] = CommonUnit.degree;
+                break;
               case REMAINDER:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] %= thatValuesD[j][i];
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] %= thatValuesF[j][i];
                 outUnits[j] = thisUnits[j];
                 break;
               case INV_REMAINDER:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] = thatValuesD[j][i] % thisValuesD[j][i];
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] = thatValuesF[j][i] % thisValuesF[j][i];
                 outUnits[j] = thatUnits[j];
                 break;
             }
@@ -2784,13 +2834,13 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
 
                       if (convertThis)
                           if (thisValuesD != null)
-                              thisValuesD[j] = outUnits[j].toThis(thisValuesD[j], thisUnits[j]);
+                              thisValuesD[j] = UnitConverter.get(thisUnits[j], outUnits[j]).convert(thisValuesD[j]);
                           if (thisValuesF != null)
-                              thisValuesF[j] = outUnits[j].toThis(thisValuesF[j], thisUnits[j]);
+                              thisValuesF[j] = UnitConverter.get(thisUnits[j], outUnits[j]).convert(thisValuesF[j]);
 
                       if (convertThat)
                           thatValues[j] =
-                              outUnits[j].toThis(thatValues[j], thatUnits[j]);
+                              UnitConverter.get(thatUnits[j], outUnits[j]).convert(thatValues[j]);
 
                       if (error_mode != NO_ERRORS &&
                           thisErrs[j] != null && thatErrs[j] != null) {
@@ -2830,48 +2880,10 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
                       outUnits[j] = null;
                   }
               }
-              switch (op) {
-              case ADD:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] += thatValues[j];
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] += thatValues[j];
-                  break;
-              case SUBTRACT:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] -= thatValues[j];
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] -= thatValues[j];
-                  break;
-              case INV_SUBTRACT:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] = (double)(thatValues[j] - thisValuesD[j][i]);
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] = (float)(thatValues[j] - thisValuesF[j][i]);
-                  break;
-              case MAX:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] = (double)(Math.max(thisValuesD[j][i], thatValues[j]));
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] = (float)(Math.max(thisValuesF[j][i], thatValues[j]));
-                  break;
-              case MIN:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] = (double)(Math.min(thisValuesD[j][i], thatValues[j]));
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] = (float)(Math.min(thisValuesF[j][i], thatValues[j]));
-                  break;
-              }
+              if (thisValuesD != null)
+                  FlatFieldOps.binary(op, thisValuesD[j], thatValues[j], getLength());
+              if (thisValuesF != null)
+                  FlatFieldOps.binary(op, thisValuesF[j], thatValues[j], getLength());
           }
           break;
 
@@ -2882,15 +2894,15 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
               if (thisUnits[j] != null) {
                   Unit absUnit = thisUnits[j].getAbsoluteUnit();
                   if (!absUnit.equals(thisUnits[j])) {
-                      if (thisValuesD != null) thisValuesD[j] = absUnit.toThis(thisValuesD[j], thisUnits[j]);
-                      if (thisValuesF != null) thisValuesF[j] = absUnit.toThis(thisValuesF[j], thisUnits[j]);
+                      if (thisValuesD != null) thisValuesD[j] = UnitConverter.get(thisUnits[j], absUnit).convert(thisValuesD[j]);
+                      if (thisValuesF != null) thisValuesF[j] = UnitConverter.get(thisUnits[j], absUnit).convert(thisValuesF[j]);
                       thisUnits[j] = absUnit;
                   }
               }
               if (thatUnits[j] != null) {
                   Unit absUnit = thatUnits[j].getAbsoluteUnit();
                   if (!absUnit.equals(thatUnits[j])) {
-                      thatValues[j] = absUnit.toThis(thatValues[j], thatUnits[j]);
+                      thatValues[j] = UnitConverter.get(thatUnits[j], absUnit).convert(thatValues[j]);
                       thatUnits[j] = absUnit;
                   }
               }
@@ -2921,32 +2933,10 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
                       break;
                   }
               }
-              switch(op) {
-              case MULTIPLY:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] *= thatValues[j];
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] *= thatValues[j];
-                  break;
-              case DIVIDE:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] /= thatValues[j];
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] /= thatValues[j];
-                  break;
-              case INV_DIVIDE:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] = (double)(thatValues[j] / thisValuesD[j][i]);
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] = (float)(thatValues[j] / thisValuesF[j][i]);
-                  break;
-              }
+              if (thisValuesD != null)
+                  FlatFieldOps.binary(op, thisValuesD[j], thatValues[j], getLength());
+              if (thisValuesF != null)
+                  FlatFieldOps.binary(op, thisValuesF[j], thatValues[j], getLength());
           }
           break;
 
@@ -2955,8 +2945,8 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
               if (thisUnits[j] != null) {
                   Unit absUnit = thisUnits[j].getAbsoluteUnit();
                   if (!absUnit.equals(thisUnits[j])) {
-                      if (thisValuesD != null) thisValuesD[j] = absUnit.toThis(thisValuesD[j], thisUnits[j]);
-                      if (thisValuesF != null) thisValuesF[j] = absUnit.toThis(thisValuesF[j], thisUnits[j]);
+                      if (thisValuesD != null) thisValuesD[j] = UnitConverter.get(thisUnits[j], absUnit).convert(thisValuesD[j]);
+                      if (thisValuesF != null) thisValuesF[j] = UnitConverter.get(thisUnits[j], absUnit).convert(thisValuesF[j]);
                       thisUnits[j] = absUnit;
                   }
               }
@@ -2964,7 +2954,7 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
                   !CommonUnit.promiscuous.equals(thatUnits[j])) {
                   Unit absUnit = thatUnits[j].getAbsoluteUnit();
                   if (!absUnit.equals(thatUnits[j])) {
-                      thatValues[j] = absUnit.toThis(thatValues[j], thatUnits[j]);
+                      thatValues[j] = UnitConverter.get(thatUnits[j], absUnit).convert(thatValues[j]);
                       thatUnits[j] = absUnit;
                   }
               }
@@ -2977,11 +2967,9 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
                   outUnits[j] = null;
               }
               if (thisValuesD != null)
-                  for (int i=0; i<getLength(); i++)
-                      thisValuesD[j][i] = (double)(Math.pow(thisValuesD[j][i], thatValues[j]));
+                  FlatFieldOps.binary(op, thisValuesD[j], thatValues[j], getLength());
               if (thisValuesF != null)
-                  for (int i=0; i<getLength(); i++)
-                      thisValuesF[j][i] = (float)(Math.pow(thisValuesF[j][i], thatValues[j]));
+                  FlatFieldOps.binary(op, thisValuesF[j], thatValues[j], getLength());
           }
           break;
 
@@ -2990,7 +2978,7 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
               if (thatUnits[j] != null) {
                   Unit absUnit = thatUnits[j].getAbsoluteUnit();
                   if (!absUnit.equals(thatUnits[j])) {
-                      thatValues[j] = absUnit.toThis(thatValues[j], thatUnits[j]);
+                      thatValues[j] = UnitConverter.get(thatUnits[j], absUnit).convert(thatValues[j]);
                       thatUnits[j] = absUnit;
                   }
               }
@@ -2998,8 +2986,8 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
                   !CommonUnit.promiscuous.equals(thisUnits[j])) {
                   Unit absUnit = thisUnits[j].getAbsoluteUnit();
                   if (!absUnit.equals(thisUnits[j])) {
-                      if (thisValuesD != null)  thisValuesD[j] = absUnit.toThis(thisValuesD[j], thisUnits[j]);
-                      if (thisValuesF != null)  thisValuesF[j] = absUnit.toThis(thisValuesF[j], thisUnits[j]);
+                      if (thisValuesD != null)  thisValuesD[j] = UnitConverter.get(thisUnits[j], absUnit).convert(thisValuesD[j]);
+                      if (thisValuesF != null)  thisValuesF[j] = UnitConverter.get(thisUnits[j], absUnit).convert(thisValuesF[j]);
                       thisUnits[j] = absUnit;
                   }
               }
@@ -3012,11 +3000,9 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
                   outUnits[j] = null;
               }
               if (thisValuesD != null)
-                  for (int i=0; i<getLength(); i++)
-                      thisValuesD[j][i] = (double)(Math.pow(thatValues[j], thisValuesD[j][i]));
+                  FlatFieldOps.binary(op, thisValuesD[j], thatValues[j], getLength());
               if (thisValuesF != null)
-                  for (int i=0; i<getLength(); i++)
-                      thisValuesF[j][i] = (float)(Math.pow(thatValues[j], thisValuesF[j][i]));
+                  FlatFieldOps.binary(op, thisValuesF[j], thatValues[j], getLength());
           }
           break;
 
@@ -3031,73 +3017,33 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
                   Unit absUnit = thisUnits[j].getAbsoluteUnit();
                   if (!absUnit.equals(thisUnits[j])) {
                       if (thisValuesD != null)
-                          thisValuesD[j] = absUnit.toThis(thisValuesD[j], thisUnits[j]);
+                          thisValuesD[j] = UnitConverter.get(thisUnits[j], absUnit).convert(thisValuesD[j]);
                       if (thisValuesF != null)
-                          thisValuesF[j] = absUnit.toThis(thisValuesF[j], thisUnits[j]);
+                          thisValuesF[j] = UnitConverter.get(thisUnits[j], absUnit).convert(thisValuesF[j]);
                       thisUnits[j] = absUnit;
                   }
                   if (!absUnit.equals(thatUnits[j])) {
-                      thatValues[j] = absUnit.toThis(thatValues[j], thatUnits[j]);
+                      thatValues[j] = UnitConverter.get(thatUnits[j], absUnit).convert(thatValues[j]);
                       thatUnits[j] = absUnit;
                   }
               }
+              if (thisValuesD != null)
+                  FlatFieldOps.binary(op, thisValuesD[j], thatValues[j], getLength());
+              if (thisValuesF != null)
+                  FlatFieldOps.binary(op, thisValuesF[j], thatValues[j], getLength());
               switch(op) {
               case ATAN2:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] = (double)(Math.atan2(thisValuesD[j][i], thatValues[j]));
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] = (float)(Math.atan2(thisValuesF[j][i], thatValues[j]));
-                  outUnits[j] = CommonUnit.radian;
-                  break;
-              case ATAN2_DEGREES:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] = (double)(Data.RADIANS_TO_DEGREES * 
-                                                       Math.atan2(thisValuesD[j][i], thatValues[j]));
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] = (float)(Data.RADIANS_TO_DEGREES * 
-                                                       Math.atan2(thisValuesF[j][i], thatValues[j]));
-                  outUnits[j] = CommonUnit.degree;
-                  break;
               case INV_ATAN2:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] = (double)(Math.atan2(thatValues[j], thisValuesD[j][i]));
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] = (float)(Math.atan2(thatValues[j], thisValuesF[j][i]));
                   outUnits[j] = CommonUnit.radian;
                   break;
+              case ATAN2_DEGREES:
               case INV_ATAN2_DEGREES:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] = (double)(Data.RADIANS_TO_DEGREES * 
-                                                       Math.atan2(thatValues[j], thisValuesD[j][i]));
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] = (float)(Data.RADIANS_TO_DEGREES * 
-                                                       Math.atan2(thatValues[j], thisValuesF[j][i]));
                   outUnits[j] = CommonUnit.degree;
                   break;
               case REMAINDER:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] %= thatValues[j];
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] %= thatValues[j];
                   outUnits[j] = thisUnits[j];
                   break;
               case INV_REMAINDER:
-                  if (thisValuesD != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesD[j][i] = (double)(thatValues[j] % thisValuesD[j][i]);
-                  if (thisValuesF != null)
-                      for (int i=0; i<getLength(); i++)
-                          thisValuesF[j][i] = (float)(thatValues[j] % thisValuesF[j][i]);
                   outUnits[j] = thatUnits[j];
                   break;
               }
@@ -3199,514 +3145,87 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
         }
 
 
-        int i, j; // loop indices
-        double[] valuesDJ;
-        float[] valuesFJ;
+        int j; // loop index
+        boolean degrees;
 
         switch (op) {
         case ABS:
+        case CEIL:
+        case FLOOR:
+        case RINT:
+        case ROUND:
+        case NEGATE:
             for (j=0; j<TupleDimension; j++) {
-                if (valuesD != null) {
-                    valuesDJ = valuesD[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesDJ[i] = Math.abs(valuesDJ[i]);
-                    }
-                }
-                if (valuesF != null) {
-                    valuesFJ = valuesF[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesFJ[i] = Math.abs(valuesFJ[i]);
-                    }
-                }
+                unaryRange(op, false, valuesD, valuesF, j);
                 units_out[j] = units_in[j];
             }
             break;
         case ACOS:
+        case ASIN:
+        case ATAN:
             for (j=0; j<TupleDimension; j++) {
-                if (valuesD != null) {
-                    valuesDJ = valuesD[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesDJ[i] = (double)(Math.acos(valuesDJ[i]));
-                    }
-                }
-                if (valuesF != null) {
-                    valuesFJ = valuesF[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesFJ[i] = (float)(Math.acos(valuesFJ[i]));
-                    }
-                }
-
+                unaryRange(op, false, valuesD, valuesF, j);
                 units_out[j] = CommonUnit.radian;
             }
             break;
         case ACOS_DEGREES:
+        case ASIN_DEGREES:
+        case ATAN_DEGREES:
             for (j=0; j<TupleDimension; j++) {
-                if (valuesD != null) {
-                    valuesDJ = valuesD[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesDJ[i] = (double)(Data.RADIANS_TO_DEGREES * Math.acos(valuesDJ[i]));
-                    }
-                }
-                if (valuesF != null) {
-                    valuesFJ = valuesF[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesFJ[i] = (float)(Data.RADIANS_TO_DEGREES * Math.acos(valuesFJ[i]));
-                    }
-                }
-
+                unaryRange(op, false, valuesD, valuesF, j);
                 units_out[j] = CommonUnit.degree;
             }
             break;
-        case ASIN:
+        case COS:
+        case SIN:
+        case TAN:
+            // do trig in degrees, unless unit is radians
             for (j=0; j<TupleDimension; j++) {
-                if (valuesD != null) {
-                    valuesDJ = valuesD[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesDJ[i] = (double)(Math.asin(valuesDJ[i]));
-                    }
-                }
-                if (valuesF != null) {
-                    valuesFJ = valuesF[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesFJ[i] = (float)(Math.asin(valuesFJ[i]));
-                    }
-                }
-
-                units_out[j] = CommonUnit.radian;
+                degrees = CommonUnit.degree.equals(units_in[j]);
+                unaryRange(op, degrees, valuesD, valuesF, j);
+                units_out[j] =
+                    CommonUnit.dimensionless.equals(units_in[j]) ? units_in[j] : null;
             }
             break;
-        case ASIN_DEGREES:
+        case COS_DEGREES:
+        case SIN_DEGREES:
+        case TAN_DEGREES:
             for (j=0; j<TupleDimension; j++) {
-                if (valuesD != null) {
-                    valuesDJ = valuesD[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesDJ[i] = (double)(Data.RADIANS_TO_DEGREES * Math.asin(valuesDJ[i]));
-                    }
-                }
-                if (valuesF != null) {
-                    valuesFJ = valuesF[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesFJ[i] = (float)(Data.RADIANS_TO_DEGREES * Math.asin(valuesFJ[i]));
-                    }
-                }
-
-                units_out[j] = CommonUnit.degree;
+                degrees = !CommonUnit.radian.equals(units_in[j]);
+                unaryRange(op, degrees, valuesD, valuesF, j);
+                units_out[j] =
+                    CommonUnit.dimensionless.equals(units_in[j]) ? units_in[j] : null;
             }
             break;
-        case ATAN:
+        case EXP:
+        case LOG:
             for (j=0; j<TupleDimension; j++) {
-                if (valuesD != null) {
-                    valuesDJ = valuesD[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesDJ[i] = (double)(Math.atan(valuesDJ[i]));
-                    }
-                }
-                if (valuesF != null) {
-                    valuesFJ = valuesF[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesFJ[i] = (float)(Math.atan(valuesFJ[i]));
-                    }
-                }
-
-                units_out[j] = CommonUnit.radian;
+                unaryRange(op, false, valuesD, valuesF, j);
+                units_out[j] =
+                    CommonUnit.dimensionless.equals(units_in[j]) ? units_in[j] : null;
             }
             break;
-        case ATAN_DEGREES:
+        case SQRT:
             for (j=0; j<TupleDimension; j++) {
-                if (valuesD != null) {
-                    valuesDJ = valuesD[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesDJ[i] = (double)(Data.RADIANS_TO_DEGREES * Math.atan(valuesDJ[i]));
-                    }
+                unaryRange(op, false, valuesD, valuesF, j);
+
+                // WLH 26 Nov 2001
+                // units_out[j] =
+                //   CommonUnit.dimensionless.equals(units_in[j]) ? units_in[j] : null;
+                if (units_in[j] == null) {
+                    units_out[j] = null;
                 }
-                if (valuesF != null) {
-                    valuesFJ = valuesF[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesFJ[i] = (float)(Data.RADIANS_TO_DEGREES * Math.atan(valuesFJ[i]));
+                else {
+                    try {
+                        units_out[j] = units_in[j].sqrt();
+                    }
+                    catch (IllegalArgumentException e) {
+                        units_out[j] = null;
+                    }
+                    catch (UnitException e) {
+                        units_out[j] = null;
                     }
                 }
-                units_out[j] = CommonUnit.degree;
-            }
-            break;
-        case CEIL:
-            for (j=0; j<TupleDimension; j++) {
-                if (valuesD != null) {
-                    valuesDJ = valuesD[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesDJ[i] = (double)(Math.ceil(valuesDJ[i]));
-                    }
-                }
-                if (valuesF != null) {
-                    valuesFJ = valuesF[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesFJ[i] = (float)(Math.ceil(valuesFJ[i]));
-                    }
-                }
-
-                units_out[j] = units_in[j];
-            }
-            break;
-        case COS:
-            // do cos in degrees, unless unit is radians
-            for (j=0; j<TupleDimension; j++) {
-                if (CommonUnit.degree.equals(units_in[j])) {
-                    if (valuesD != null) {
-                        valuesDJ = valuesD[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesDJ[i] = (double)(Math.cos(Data.DEGREES_TO_RADIANS * valuesDJ[i]));
-                        }
-                    }
-                    if (valuesF != null) {
-                        valuesFJ = valuesF[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesFJ[i] = (float)(Math.cos(Data.DEGREES_TO_RADIANS * valuesFJ[i]));
-                        }
-                    }
-
-                }
-                else {
-                    if (valuesD != null) {
-                        valuesDJ = valuesD[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesDJ[i] = (double)(Math.cos(valuesDJ[i]));
-                        }
-                    }
-                    if (valuesF != null) {
-                        valuesFJ = valuesF[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesFJ[i] = (float)(Math.cos(valuesFJ[i]));
-                        }
-                    }
-
-                }
-                units_out[j] = CommonUnit.dimensionless.equals(units_in[j]) ? units_in[j] : null;
-            }
-            break;
-        case COS_DEGREES:
-            for (j=0; j<TupleDimension; j++) {
-
-
-                if (CommonUnit.radian.equals(units_in[j])) {
-                    if (valuesD != null) {
-                        valuesDJ = valuesD[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesDJ[i] = (double)(Math.cos(valuesDJ[i]));
-                        }
-                    }
-                    if (valuesF != null) {
-                        valuesFJ = valuesF[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesFJ[i] = (float)(Math.cos(valuesFJ[i]));
-                        }
-                    }
-
-                }
-                else {
-                    if (valuesD != null) {
-                        valuesDJ = valuesD[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesDJ[i] = (double)(Math.cos(Data.DEGREES_TO_RADIANS * valuesDJ[i]));
-                        }
-                    }
-                    if (valuesF != null) {
-                        valuesFJ = valuesF[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesFJ[i] = (float)(Math.cos(Data.DEGREES_TO_RADIANS * valuesFJ[i]));
-                        }
-                    }
-
-                }
-                units_out[j] =
-                    CommonUnit.dimensionless.equals(units_in[j]) ? units_in[j] : null;
-            }
-            break;
-        case EXP:
-            for (j=0; j<TupleDimension; j++) {
-                if (valuesD != null) {
-                    valuesDJ = valuesD[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesDJ[i] = (double)(Math.exp(valuesDJ[i]));
-                    }
-                }
-                if (valuesF != null) {
-                    valuesFJ = valuesF[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesFJ[i] = (float)(Math.exp(valuesFJ[i]));
-                    }
-                }
-
-                units_out[j] =
-                    CommonUnit.dimensionless.equals(units_in[j]) ? units_in[j] : null;
-            }
-            break;
-        case FLOOR:
-            for (j=0; j<TupleDimension; j++) {
-                if (valuesD != null) {
-                    valuesDJ = valuesD[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesDJ[i] = (double)(Math.floor(valuesDJ[i]));
-                    }
-                }
-                if (valuesF != null) {
-                    valuesFJ = valuesF[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesFJ[i] = (float)(Math.floor(valuesFJ[i]));
-                    }
-                }
-
-                units_out[j] = units_in[j];
-            }
-            break;
-        case LOG:
-            for (j=0; j<TupleDimension; j++) {
-                if (valuesD != null) {
-                    valuesDJ = valuesD[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesDJ[i] = (double)(Math.log(valuesDJ[i]));
-                    }
-                }
-                if (valuesF != null) {
-                    valuesFJ = valuesF[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesFJ[i] = (float)(Math.log(valuesFJ[i]));
-                    }
-                }
-
-                units_out[j] =
-                    CommonUnit.dimensionless.equals(units_in[j]) ? units_in[j] : null;
-            }
-            break;
-        case RINT:
-            for (j=0; j<TupleDimension; j++) {
-                if (valuesD != null) {
-                    valuesDJ = valuesD[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesDJ[i] = (double)(Math.rint(valuesDJ[i]));
-                    }
-                }
-                if (valuesF != null) {
-                    valuesFJ = valuesF[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesFJ[i] = (float)(Math.rint(valuesFJ[i]));
-                    }
-                }
-
-                units_out[j] = units_in[j];
-            }
-            break;
-        case ROUND:
-            for (j=0; j<TupleDimension; j++) {
-                if (valuesD != null) {
-                    valuesDJ = valuesD[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesDJ[i] = Math.round(valuesDJ[i]);
-                    }
-                }
-                if (valuesF != null) {
-                    valuesFJ = valuesF[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesFJ[i] = Math.round(valuesFJ[i]);
-                    }
-                }
-
-                units_out[j] = units_in[j];
-            }
-            break;
-        case SIN:
-            for (j=0; j<TupleDimension; j++) {
-                if (CommonUnit.degree.equals(units_in[j])) {
-                    if (valuesD != null) {
-                        valuesDJ = valuesD[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesDJ[i] = (double)(Math.sin(Data.DEGREES_TO_RADIANS * valuesDJ[i]));
-                        }
-                    }
-                    if (valuesF != null) {
-                        valuesFJ = valuesF[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesFJ[i] = (float)(Math.sin(Data.DEGREES_TO_RADIANS * valuesFJ[i]));
-                        }
-                    }
-
-                }
-                else {
-                    if (valuesD != null) {
-                        valuesDJ = valuesD[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesDJ[i] = (double)(Math.sin(valuesDJ[i]));
-                        }
-                    }
-                    if (valuesF != null) {
-                        valuesFJ = valuesF[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesFJ[i] = (float)(Math.sin(valuesFJ[i]));
-                        }
-                    }
-
-                }
-                units_out[j] =
-                    CommonUnit.dimensionless.equals(units_in[j]) ? units_in[j] : null;
-            }
-            break;
-        case SIN_DEGREES:
-            for (j=0; j<TupleDimension; j++) {
-
-                if (CommonUnit.radian.equals(units_in[j])) {
-                    if (valuesD != null) {
-                        valuesDJ = valuesD[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesDJ[i] = (double)(Math.sin(valuesDJ[i]));
-                        }
-                    }
-                    if (valuesF != null) {
-                        valuesFJ = valuesF[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesFJ[i] = (float)(Math.sin(valuesFJ[i]));
-                        }
-                    }
-
-                }
-                else {
-                    if (valuesD != null) {
-                        valuesDJ = valuesD[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesDJ[i] = (double)(Math.sin(Data.DEGREES_TO_RADIANS * valuesDJ[i]));
-                        }
-                    }
-                    if (valuesF != null) {
-                        valuesFJ = valuesF[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesFJ[i] = (float)(Math.sin(Data.DEGREES_TO_RADIANS * valuesFJ[i]));
-                        }
-                    }
-
-                }
-                units_out[j] =
-                    CommonUnit.dimensionless.equals(units_in[j]) ? units_in[j] : null;
-            }
-            break;
-        case SQRT:
-            for (j=0; j<TupleDimension; j++) {
-                if (valuesD != null) {
-                    valuesDJ = valuesD[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesDJ[i] = (double)(Math.sqrt(valuesDJ[i]));
-                    }
-                }
-                if (valuesF != null) {
-                    valuesFJ = valuesF[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesFJ[i] = (float)(Math.sqrt(valuesFJ[i]));
-                    }
-                }
-
-                // WLH 26 Nov 2001
-                // units_out[j] =
-                //   CommonUnit.dimensionless.equals(units_in[j]) ? units_in[j] : null;
-                if (units_in[j] == null) {
-                    units_out[j] = null;
-                }
-                else {
-                    try {
-                        units_out[j] = units_in[j].sqrt();
-                    }
-                    catch (IllegalArgumentException e) {
-                        units_out[j] = null;
-                    }
-                    catch (UnitException e) {
-                        units_out[j] = null;
-                    }
-                }
-            }
-            break;
-        case TAN:
-            for (j=0; j<TupleDimension; j++) {
-                if (CommonUnit.degree.equals(units_in[j])) {
-                    if (valuesD != null) {
-                        valuesDJ = valuesD[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesDJ[i] = (double)(Math.tan(Data.DEGREES_TO_RADIANS * valuesDJ[i]));
-                        }
-                    }
-                    if (valuesF != null) {
-                        valuesFJ = valuesF[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesFJ[i] = (float)(Math.tan(Data.DEGREES_TO_RADIANS * valuesFJ[i]));
-                        }
-                    }
-
-                }
-                else {
-                    if (valuesD != null) {
-                        valuesDJ = valuesD[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesDJ[i] = (double)(Math.tan(valuesDJ[i]));
-                        }
-                    }
-                    if (valuesF != null) {
-                        valuesFJ = valuesF[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesFJ[i] = (float)(Math.tan(valuesFJ[i]));
-                        }
-                    }
-
-                }
-                units_out[j] =
-                    CommonUnit.dimensionless.equals(units_in[j]) ? units_in[j] : null;
-            }
-            break;
-        case TAN_DEGREES:
-            for (j=0; j<TupleDimension; j++) {
-                if (CommonUnit.radian.equals(units_in[j])) {
-                    if (valuesD != null) {
-                        valuesDJ = valuesD[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesDJ[i] = (double)(Math.tan(valuesDJ[i]));
-                        }
-                    }
-                    if (valuesF != null) {
-                        valuesFJ = valuesF[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesFJ[i] = (float)(Math.tan(valuesFJ[i]));
-                        }
-                    }
-
-                }
-                else {
-                    if (valuesD != null) {
-                        valuesDJ = valuesD[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesDJ[i] = (double)(Math.tan(Data.DEGREES_TO_RADIANS * valuesDJ[i]));
-                        }
-                    }
-                    if (valuesF != null) {
-                        valuesFJ = valuesF[j];
-                        for (i=0; i<getLength(); i++) {
-                            valuesFJ[i] = (float)(Math.tan(Data.DEGREES_TO_RADIANS * valuesFJ[i]));
-                        }
-                    }
-
-                }
-                units_out[j] =
-                    CommonUnit.dimensionless.equals(units_in[j]) ? units_in[j] : null;
-            }
-            break;
-        case NEGATE:
-            for (j=0; j<TupleDimension; j++) {
-                if (valuesD != null) {
-                    valuesDJ = valuesD[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesDJ[i] = -valuesDJ[i];
-                    }
-                }
-                if (valuesF != null) {
-                    valuesFJ = valuesF[j];
-                    for (i=0; i<getLength(); i++) {
-                        valuesFJ[i] = -valuesFJ[i];
-                    }
-                }
-
-                units_out[j] = units_in[j];
             }
             break;
         case NOP:
@@ -3758,6 +3277,21 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
 
 
 
+    /**
+     * Apply a unary operation in place to range component j of whichever
+     * of valuesD and valuesF is non-null.
+     */
+    private void unaryRange(int op, boolean degrees, double[][] valuesD,
+                            float[][] valuesF, int j) throws VisADException {
+        if (valuesD != null) {
+            FlatFieldOps.unary(op, degrees, valuesD[j], getLength());
+        }
+        if (valuesF != null) {
+            FlatFieldOps.unary(op, degrees, valuesF[j], getLength());
+        }
+    }
+
+
     /**
    * Ensure that numeric values and units are in rational form, i.e. one in
    * which ratios of data values make sense (e.g. Temperature values in Kelvin
@@ -3792,7 +3326,7 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
                     outputUnit = CommonUnit.dimensionless;
                 }
                 if (!outputUnit.equals(inputUnit)) {
-                    values[j] = outputUnit.toThis (values[j], inputUnit);
+                    values[j] = UnitConverter.get(inputUnit, outputUnit).convert(values[j]);
                     if (errors[j] != null) {
                         errors[j] =
                             new ErrorEstimate(
@@ -4511,9 +4045,9 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
   public Field resample (Set set, int sampling_mode, int error_mode)
          throws VisADException, RemoteException {
 
-    /* NB: resampling is done in this method for a float domain.  If
-     * you make changes to this method, make the corresponding changes
-     * in resampleDouble.
+    /* NB: the resampling geometry is computed by ResamplePlan and the
+     * range values are gathered by resample(ResamplePlan); this method
+     * only handles the trivial cases.
      */
     Set domainSet = getDomainSet();
 
@@ -4533,12 +4067,104 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
       return resampleDouble(set, sampling_mode, error_mode);
     }
 
-    CoordinateSystem coord_sys = set.getCoordinateSystem();
-    Unit[] units = set.getSetUnits();
-    ErrorEstimate[] errors =
-      (error_mode == NO_ERRORS) ? new ErrorEstimate[dim] : set.getSetErrors();
+    if (isMissing()) {
+      visad.util.Trace.call2("FlatField.resample", "missing");
+      return makeResampleField(set, sampling_mode);
+    }
 
-    // create (initially missing) FlatField for return
+    return resamplePlanned(
+      new ResamplePlan(this, set, sampling_mode, error_mode));
+  }
+
+  /**
+   * Resamples the range to domain samples of a given double set.  Resampling is either
+   * by nearest neighbor or mulit-linear interpolation.  NOTE: This code is very
+   * similar to FieldImpl.resample(Set,int,int).
+   * @param set                 The set of points at which to resample this
+   *                            field.
+   * @param sampling_mode       Resampling mode: Data.NEAREST_NEIGHBOR or
+   *                            Data.WEIGHTED_AVERAGE
+   * @param error_mode          Error estimation mode: Data.DEPENDENT,
+   *                            Data.INDEPENDENT, or Data.NO_ERRORS.
+   * @return                    Field of resampled data.  RangeSet objects
+   *                            in result are set to DoubleSet.  NOTE: May
+   *                            return this (i.e., not a copy).
+   */
+  public Field resampleDouble(Set set, int sampling_mode, int error_mode)
+         throws VisADException, RemoteException {
+    Set domainSet = getDomainSet();
+    visad.util.Trace.call1("FlatField.resample");
+    if (domainSet.equals(set)) {
+      // nothing to do
+      visad.util.Trace.call2("FlatField.resample", "sampling set==domain set");
+      return this;
+    }
+
+    int dim = domainSet.getDimension();
+    if (dim != set.getDimension()) {
+      throw new SetException("FlatField.resample: bad Set Dimension");
+    }
+
+    if (!(domainSet instanceof GriddedDoubleSet)) {
+      return resample(set, sampling_mode, error_mode);
+    }
+
+    if (isMissing()) {
+      visad.util.Trace.call2("FlatField.resample", "missing");
+      return makeResampleField(set, sampling_mode);
+    }
+
+    return resamplePlanned(
+      new ResamplePlan(this, set, sampling_mode, error_mode));
+  }
+
+  /**
+   * Resamples the range with a precomputed ResamplePlan.  The plan holds
+   * the transformed sampling locations and the interpolation weights, so
+   * only the range values are gathered here; the gather loops are split
+   * across threads for large sampling sets.  One plan can be reused for
+   * every FlatField with the same domain.
+   * @param plan                Plan built by ResamplePlan(FlatField, Set,
+   *                            int, int) for this or an equivalent FlatField.
+   * @return                    Field of resampled data.  NOTE: May
+   *                            return this (i.e., not a copy).
+   * @throws SetException       this FlatField's domain does not match
+   *                            the plan.
+   */
+  public Field resample(ResamplePlan plan)
+         throws VisADException, RemoteException {
+    if (!plan.isCompatible(this)) {
+      throw new SetException("FlatField.resample: plan does not match domain");
+    }
+    if (plan.isIdentity()) return this;
+
+    visad.util.Trace.call1("FlatField.resample");
+    return resamplePlanned(plan);
+  }
+
+  /**
+   * Resamples the range with a ResamplePlan for this FlatField, inside
+   * the trace of the calling resample method.
+   */
+  private Field resamplePlanned(ResamplePlan plan)
+          throws VisADException, RemoteException {
+    FlatField new_field =
+      makeResampleField(plan.getSet(), plan.getSamplingMode());
+    if (isMissing()) {
+      visad.util.Trace.call2("FlatField.resample", "missing");
+      return new_field;
+    }
+    if (plan.isDouble()) {
+      return resampleDouble(plan, new_field);
+    }
+    return resampleFloat(plan, new_field);
+  }
+
+  /**
+   * Create the (initially missing) FlatField returned by resample.
+   */
+  private FlatField makeResampleField(Set set, int sampling_mode)
+          throws VisADException {
     Set[] sets = new Set[TupleDimension];
     for (int i=0; i<TupleDimension; i++) {
       SetType set_type =
@@ -4556,11 +4182,24 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
     MathType range_type = ((FunctionType) Type).getRange();
     RealTupleType domain_type = ((SetType) set.getType()).getDomain();
     FunctionType func_type = new FunctionType(domain_type, range_type);
-    FlatField new_field =
-      new FlatField(func_type, set, RangeCoordinateSystem,
-                    RangeCoordinateSystems, sets, RangeUnits);
+    return new FlatField(func_type, set, RangeCoordinateSystem,
+                         RangeCoordinateSystems, sets, RangeUnits);
+  }
 
-    if (isMissing()) return new_field;
+  private Field resampleFloat(ResamplePlan plan, FlatField new_field)
+          throws VisADException, RemoteException {
+
+    /* NB: resampling is done in this method for a float domain.  If
+     * you make changes to this method, make the corresponding changes
+     * in resampleDouble if necessary.
+     */
+    Set set = plan.getSet();
+    Set domainSet = plan.getDomainSet();
+    int sampling_mode = plan.getSamplingMode();
+    int error_mode = plan.getErrorMode();
+    int dim = domainSet.getDimension();
+    CoordinateSystem coord_sys = set.getCoordinateSystem();
+    Unit[] units = set.getSetUnits();
 
     ErrorEstimate[] range_errors_in =
       (error_mode == NO_ERRORS) ? new ErrorEstimate[TupleDimension] :
@@ -4569,29 +4208,13 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
 
     int i, j, k; // loop indices
 
-    // create an array containing all indices of 'this'
     int length = set.getLength();
-    int[] wedge = set.getWedge();
-
-    // get values from wedge and possibly transform coordinates
-    float[][] vals = set.indexToValue(wedge);
-    // holder for sampling errors of transformed set; these are
-    // only useful to help estmate range errors due to resampling
-    ErrorEstimate[] errors_out = new ErrorEstimate[dim];
-    float[][] oldvals = vals;
-    visad.util.Trace.call1("FlatField.resample:transformCoords");
-    try {  // this is only to throw a more meaningful message
-      vals = CoordinateSystem.transformCoordinates(
-                      ((FunctionType) Type).getDomain(), 
-                      getDomainCoordinateSystem(),
-                      getDomainUnits(), errors_out,
-                      ((SetType) set.getType()).getDomain(), coord_sys,
-                      units, errors, vals, false);
-    } catch (UnitException ue) {
-        throw new VisADException("Sampling set is not compatible with domain");
-    }
-    visad.util.Trace.call2("FlatField.resample:transformCoords");
-    boolean coord_transform = !(vals == oldvals);
+    int[] wedge = plan.wedge;
+    float[][] oldvals = plan.oldvals;
+    float[][] vals = plan.vals;
+    // copy, since transformVectors is handed these as well
+    ErrorEstimate[] errors_out = (ErrorEstimate[]) plan.errorsOut.clone();
+    boolean coord_transform = plan.coordTransform;
 
     // check whether we need to do sampling error calculations
     boolean sampling_errors = (error_mode != NO_ERRORS);
@@ -4621,14 +4244,11 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
     }
 
     float[][] new_values = new float[TupleDimension][length];
-    float[] new_valuesJ;
-    float[] valuesJ;
 
-    if (sampling_mode == WEIGHTED_AVERAGE && domainSet instanceof SimpleSet) {
+    if (plan.interpIndices != null) {
       // resample by interpolation
-      int[][] indices = new int[length][];
-      float[][] coefs = new float[length][];
-      ((SimpleSet) domainSet).valueToInterp(vals, indices, coefs);
+      int[][] indices = plan.interpIndices;
+      float[][] coefs = plan.interpCoefs;
 
 /* DEBUG
 // System.out.println("DomainSet = " + domainSet);
@@ -4660,22 +4280,8 @@ for (i=0; i<ii; i++) {
       // WLH 20 July 2000
       if (values != null) {
         for (j=0; j<TupleDimension; j++) {
-          valuesJ = values[j];
-          new_valuesJ = new_values[j];
-          for (i=0; i<length; i++) {
-            float v = Float.NaN;
-            int len = indices[i] == null ? 0 : indices[i].length;
-            if (len > 0) {
-              v = valuesJ[indices[i][0]] * coefs[i][0];
-              for (k=1; k<len; k++) {
-                v += valuesJ[indices[i][k]] * coefs[i][k];
-              }
-              new_valuesJ[wedge[i]] = v;
-            }
-            else { // values outside grid
-              new_valuesJ[wedge[i]] = Float.NaN;
-            }
-          }
+          FlatFieldOps.interpolate(values[j], new_values[j], wedge,
+                                   indices, coefs, length);
         }
       }
       else {
@@ -4735,7 +4341,7 @@ if (pr) System.out.println("value = " + new_values[0][0]);
     }
     else { // NEAREST_NEIGHBOR or set is not SimpleSet
       // simple resampling
-      int[] indices = domainSet.valueToIndex(vals);
+      int[] indices = plan.indices;
 /* DEBUG
 // System.out.println("DomainSet = " + domainSet);
 // System.out.println("set = " + set);
@@ -4759,12 +4365,8 @@ for (i=0; i<ii; i++) {
       // WLH 20 July 2000
       if (values != null) {
         for (j=0; j<TupleDimension; j++) {
-          valuesJ = values[j];
-          new_valuesJ = new_values[j];
-          for (i=0; i<length; i++) {
-            new_valuesJ[wedge[i]] =
-              ((indices[i] >= 0) ? valuesJ[indices[i]]: Float.NaN);
-          }
+          FlatFieldOps.gather(values[j], new_values[j], wedge, indices,
+                              length);
         }
       }
       else {
@@ -4893,72 +4495,20 @@ if (pr) System.out.println("value = " + new_values[0][0]);
     return new_field;
   }
 
-  /**
-   * Resamples the range to domain samples of a given double set.  Resampling is either
-   * by nearest neighbor or mulit-linear interpolation.  NOTE: This code is very
-   * similar to FieldImpl.resample(Set,int,int).
-   * @param set                 The set of points at which to resample this
-   *                            field.
-   * @param sampling_mode       Resampling mode: Data.NEAREST_NEIGHBOR or
-   *                            Data.WEIGHTED_AVERAGE
-   * @param error_mode          Error estimation mode: Data.DEPENDENT,
-   *                            Data.INDEPENDENT, or Data.NO_ERRORS.
-   * @return                    Field of resampled data.  RangeSet objects
-   *                            in result are set to DoubleSet.  NOTE: May
-   *                            return this (i.e., not a copy).
-   */
-  public Field resampleDouble(Set set, int sampling_mode, int error_mode)
-         throws VisADException, RemoteException {
+  private Field resampleDouble(ResamplePlan plan, FlatField new_field)
+          throws VisADException, RemoteException {
 
     /* NB: resampling is done in this method for a double domain.  If
      * you make changes to this method, make the corresponding changes
-     * in resample if necessary.
+     * in resampleFloat if necessary.
      */
-    Set domainSet = getDomainSet();
-    visad.util.Trace.call1("FlatField.resample");
-    if (domainSet.equals(set)) {
-      // nothing to do
-      visad.util.Trace.call2("FlatField.resample", "sampling set==domain set");
-      return this;
-    }
-
+    Set set = plan.getSet();
+    Set domainSet = plan.getDomainSet();
+    int sampling_mode = plan.getSamplingMode();
+    int error_mode = plan.getErrorMode();
     int dim = domainSet.getDimension();
-    if (dim != set.getDimension()) {
-      throw new SetException("FlatField.resample: bad Set Dimension");
-    }
-
-    if (!(domainSet instanceof GriddedDoubleSet)) {
-      return resample(set, sampling_mode, error_mode);
-    }
-
     CoordinateSystem coord_sys = set.getCoordinateSystem();
     Unit[] units = set.getSetUnits();
-    ErrorEstimate[] errors =
-      (error_mode == NO_ERRORS) ? new ErrorEstimate[dim] : set.getSetErrors();
-
-    // create (initially missing) FlatField for return
-    Set[] sets = new Set[TupleDimension];
-    for (int i=0; i<TupleDimension; i++) {
-      SetType set_type =
-        new SetType(((FunctionType) Type).getFlatRange().getComponent(i));
-      // WLH 26 Nov 2001
-      // sets[i] = new DoubleSet(set_type);
-      if (sampling_mode == Data.NEAREST_NEIGHBOR) {
-        sets[i] = RangeSet[i];
-      }
-      else {
-        sets[i] = new FloatSet(set_type);
-      }
-    }
-
-    MathType range_type = ((FunctionType) Type).getRange();
-    RealTupleType domain_type = ((SetType) set.getType()).getDomain();
-    FunctionType func_type = new FunctionType(domain_type, range_type);
-    FlatField new_field =
-      new FlatField(func_type, set, RangeCoordinateSystem,
-                    RangeCoordinateSystems, sets, RangeUnits);
-
-    if (isMissing()) return new_field;
 
     ErrorEstimate[] range_errors_in =
       (error_mode == NO_ERRORS) ? new ErrorEstimate[TupleDimension] :
@@ -4967,29 +4517,13 @@ if (pr) System.out.println("value = " + new_values[0][0]);
 
     int i, j, k; // loop indices
 
-    // create an array containing all indices of 'this'
     int length = set.getLength();
-    int[] wedge = set.getWedge();
-
-    // get values from wedge and possibly transform coordinates
-    double[][] vals = set.indexToDouble(wedge);
-    // holder for sampling errors of transformed set; these are
-    // only useful to help estmate range errors due to resampling
-    ErrorEstimate[] errors_out = new ErrorEstimate[dim];
-    double[][] oldvals = vals;
-    visad.util.Trace.call1("FlatField.resample:transformCoords");
-    try {  // this is only to throw a more meaningful message
-      vals = CoordinateSystem.transformCoordinates(
-                      ((FunctionType) Type).getDomain(), 
-                      getDomainCoordinateSystem(),
-                      getDomainUnits(), errors_out,
-                      ((SetType) set.getType()).getDomain(), coord_sys,
-                      units, errors, vals, false);
-    } catch (UnitException ue) {
-        throw new VisADException("Sampling set is not compatible with domain");
-    }
-    visad.util.Trace.call2("FlatField.resample:transformCoords");
-    boolean coord_transform = !(vals == oldvals);
+    int[] wedge = plan.wedge;
+    double[][] oldvals = plan.oldvalsDouble;
+    double[][] vals = plan.valsDouble;
+    // copy, since transformVectors is handed these as well
+    ErrorEstimate[] errors_out = (ErrorEstimate[]) plan.errorsOut.clone();
+    boolean coord_transform = plan.coordTransform;
 
     // check whether we need to do sampling error calculations
     boolean sampling_errors = (error_mode != NO_ERRORS);
@@ -5018,14 +4552,11 @@ if (pr) System.out.println("value = " + new_values[0][0]);
     }
 
     double[][] new_values = new double[TupleDimension][length];
-    double[] new_valuesJ;
-    float[] valuesJ;
 
-    if (sampling_mode == WEIGHTED_AVERAGE) {
+    if (plan.interpIndices != null) {
       // resample by interpolation
-      int[][] indices = new int[length][];
-      double[][] coefs = new double[length][];
-      ((GriddedDoubleSet) domainSet).doubleToInterp(vals, indices, coefs);
+      int[][] indices = plan.interpIndices;
+      double[][] coefs = plan.interpCoefsDouble;
 
 /* DEBUG
 // System.out.println("DomainSet = " + domainSet);
@@ -5057,22 +4588,8 @@ for (i=0; i<ii; i++) {
       // WLH 20 July 2000
       if (values != null) {
         for (j=0; j<TupleDimension; j++) {
-          valuesJ = values[j];
-          new_valuesJ = new_values[j];
-          for (i=0; i<length; i++) {
-            double v = Double.NaN;
-            int len = indices[i] == null ? 0 : indices[i].length;
-            if (len > 0) {
-              v = valuesJ[indices[i][0]] * coefs[i][0];
-              for (k=1; k<len; k++) {
-                v += valuesJ[indices[i][k]] * coefs[i][k];
-              }
-              new_valuesJ[wedge[i]] = v;
-            }
-            else { // values outside grid
-              new_valuesJ[wedge[i]] = Float.NaN;
-            }
-          }
+          FlatFieldOps.interpolate(values[j], new_values[j], wedge,
+                                   indices, coefs, length);
         }
       }
       else {
@@ -5132,7 +4649,7 @@ if (pr) System.out.println("value = " + new_values[0][0]);
     }
     else { // NEAREST_NEIGHBOR or set is not SimpleSet
       // simple resampling
-      int[] indices = domainSet.doubleToIndex(vals);
+      int[] indices = plan.indices;
 /* DEBUG
 // System.out.println("DomainSet = " + domainSet);
 // System.out.println("set = " + set);
@@ -5156,12 +4673,8 @@ for (i=0; i<ii; i++) {
       // WLH 20 July 2000
       if (values != null) {
         for (j=0; j<TupleDimension; j++) {
-          valuesJ = values[j];
-          new_valuesJ = new_values[j];
-          for (i=0; i<length; i++) {
-            new_valuesJ[wedge[i]] =
-              ((indices[i] >= 0) ? valuesJ[indices[i]]: Float.NaN);
-          }
+          FlatFieldOps.gather(values[j], new_values[j], wedge, indices,
+                              length);
         }
       }
       else {
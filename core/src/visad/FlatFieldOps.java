@@ -0,0 +1,626 @@
+//
+// FlatFieldOps.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad;
+
+import visad.util.ParallelLoop;
+
+/**
+   FlatFieldOps holds the per-sample loops of FlatField.binary,
+   FlatField.unary and FlatField.resample.  Each loop is applied to one
+   range component and is split across threads by ParallelLoop when the
+   component is long enough.  Samples are independent, so the results
+   (including NaN propagation) do not depend on how a loop is split.<P>
+
+   The float and double loops reproduce the arithmetic of the original
+   serial code exactly: float by float operations are done in float,
+   while float by double operations are done in double and cast back.<P>
+*/
+final class FlatFieldOps {
+
+  private FlatFieldOps() {
+  }
+
+  /**
+   * values[i] = values[i] op that[i] for a binary Data operation op.
+   */
+  static void binary(final int op, final double[] values, final double[] that,
+                     int length) throws VisADException {
+    ParallelLoop.run(length, new ParallelLoop.Body() {
+      public void run(int start, int end) {
+        binary(op, values, that, start, end);
+      }
+    });
+  }
+
+  /**
+   * values[i] = values[i] op that[i] for a binary Data operation op.
+   */
+  static void binary(final int op, final float[] values, final float[] that,
+                     int length) throws VisADException {
+    ParallelLoop.run(length, new ParallelLoop.Body() {
+      public void run(int start, int end) {
+        binary(op, values, that, start, end);
+      }
+    });
+  }
+
+  /**
+   * values[i] = values[i] op that for a binary Data operation op.
+   */
+  static void binary(final int op, final double[] values, final double that,
+                     int length) throws VisADException {
+    ParallelLoop.run(length, new ParallelLoop.Body() {
+      public void run(int start, int end) {
+        binary(op, values, that, start, end);
+      }
+    });
+  }
+
+  /**
+   * values[i] = values[i] op that for a binary Data operation op.
+   */
+  static void binary(final int op, final float[] values, final double that,
+                     int length) throws VisADException {
+    ParallelLoop.run(length, new ParallelLoop.Body() {
+      public void run(int start, int end) {
+        binary(op, values, that, start, end);
+      }
+    });
+  }
+
+  /**
+   * values[i] = op(values[i]) for a unary Data operation op; for the
+   * trigonometric operations (COS, SIN, TAN and their _DEGREES forms)
+   * degrees indicates that values are in degrees rather than radians.
+   */
+  static void unary(final int op, final boolean degrees, final double[] values,
+                    int length) throws VisADException {
+    ParallelLoop.run(length, new ParallelLoop.Body() {
+      public void run(int start, int end) {
+        unary(op, degrees, values, start, end);
+      }
+    });
+  }
+
+  /**
+   * Nearest neighbor resampling of one range component:
+   * new_values[wedge[i]] = values[indices[i]], or NaN where indices[i]
+   * is negative.  wedge is a permutation, so chunks write disjoint samples.
+   */
+  static void gather(final float[] values, final float[] new_values,
+                     final int[] wedge, final int[] indices, int length)
+         throws VisADException {
+    ParallelLoop.run(length, new ParallelLoop.Body() {
+      public void run(int start, int end) {
+        for (int i=start; i<end; i++) {
+          new_values[wedge[i]] =
+            ((indices[i] >= 0) ? values[indices[i]]: Float.NaN);
+        }
+      }
+    });
+  }
+
+  /**
+   * Nearest neighbor resampling of one range component into doubles.
+   */
+  static void gather(final float[] values, final double[] new_values,
+                     final int[] wedge, final int[] indices, int length)
+         throws VisADException {
+    ParallelLoop.run(length, new ParallelLoop.Body() {
+      public void run(int start, int end) {
+        for (int i=start; i<end; i++) {
+          new_values[wedge[i]] =
+            ((indices[i] >= 0) ? values[indices[i]]: Float.NaN);
+        }
+      }
+    });
+  }
+
+  /**
+   * Weighted average resampling of one range component:
+   * new_values[wedge[i]] = sum over k of values[indices[i][k]] * coefs[i][k],
+   * or NaN where indices[i] is empty.
+   */
+  static void interpolate(final float[] values, final float[] new_values,
+                          final int[] wedge, final int[][] indices,
+                          final float[][] coefs, int length)
+         throws VisADException {
+    ParallelLoop.run(length, new ParallelLoop.Body() {
+      public void run(int start, int end) {
+        for (int i=start; i<end; i++) {
+          int len = indices[i] == null ? 0 : indices[i].length;
+          if (len > 0) {
+            float v = values[indices[i][0]] * coefs[i][0];
+            for (int k=1; k<len; k++) {
+              v += values[indices[i][k]] * coefs[i][k];
+            }
+            new_values[wedge[i]] = v;
+          }
+          else { // values outside grid
+            new_values[wedge[i]] = Float.NaN;
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Weighted average resampling of one range component into doubles.
+   */
+  static void interpolate(final float[] values, final double[] new_values,
+                          final int[] wedge, final int[][] indices,
+                          final double[][] coefs, int length)
+         throws VisADException {
+    ParallelLoop.run(length, new ParallelLoop.Body() {
+      public void run(int start, int end) {
+        for (int i=start; i<end; i++) {
+          int len = indices[i] == null ? 0 : indices[i].length;
+          if (len > 0) {
+            double v = values[indices[i][0]] * coefs[i][0];
+            for (int k=1; k<len; k++) {
+              v += values[indices[i][k]] * coefs[i][k];
+            }
+            new_values[wedge[i]] = v;
+          }
+          else { // values outside grid
+            new_values[wedge[i]] = Float.NaN;
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * values[i] = op(values[i]) for a unary Data operation op; for the
+   * trigonometric operations (COS, SIN, TAN and their _DEGREES forms)
+   * degrees indicates that values are in degrees rather than radians.
+   */
+  static void unary(final int op, final boolean degrees, final float[] values,
+                    int length) throws VisADException {
+    ParallelLoop.run(length, new ParallelLoop.Body() {
+      public void run(int start, int end) {
+        unary(op, degrees, values, start, end);
+      }
+    });
+  }
+
+  static void binary(int op, double[] a, double[] b, int start, int end) {
+    int i;
+    switch (op) {
+      case Data.ADD:
+        for (i=start; i<end; i++) a[i] += b[i];
+        break;
+      case Data.SUBTRACT:
+        for (i=start; i<end; i++) a[i] -= b[i];
+        break;
+      case Data.INV_SUBTRACT:
+        for (i=start; i<end; i++) a[i] = b[i] - a[i];
+        break;
+      case Data.MAX:
+        for (i=start; i<end; i++) a[i] = Math.max(a[i], b[i]);
+        break;
+      case Data.MIN:
+        for (i=start; i<end; i++) a[i] = Math.min(a[i], b[i]);
+        break;
+      case Data.MULTIPLY:
+        for (i=start; i<end; i++) a[i] *= b[i];
+        break;
+      case Data.DIVIDE:
+        for (i=start; i<end; i++) a[i] /= b[i];
+        break;
+      case Data.INV_DIVIDE:
+        for (i=start; i<end; i++) a[i] = b[i] / a[i];
+        break;
+      case Data.POW:
+        for (i=start; i<end; i++) a[i] = Math.pow(a[i], b[i]);
+        break;
+      case Data.INV_POW:
+        for (i=start; i<end; i++) a[i] = Math.pow(b[i], a[i]);
+        break;
+      case Data.ATAN2:
+        for (i=start; i<end; i++) a[i] = Math.atan2(a[i], b[i]);
+        break;
+      case Data.ATAN2_DEGREES:
+        for (i=start; i<end; i++) {
+          a[i] = Data.RADIANS_TO_DEGREES * Math.atan2(a[i], b[i]);
+        }
+        break;
+      case Data.INV_ATAN2:
+        for (i=start; i<end; i++) a[i] = Math.atan2(b[i], a[i]);
+        break;
+      case Data.INV_ATAN2_DEGREES:
+        for (i=start; i<end; i++) {
+          a[i] = Data.RADIANS_TO_DEGREES * Math.atan2(b[i], a[i]);
+        }
+        break;
+      case Data.REMAINDER:
+        for (i=start; i<end; i++) a[i] %= b[i];
+        break;
+      case Data.INV_REMAINDER:
+        for (i=start; i<end; i++) a[i] = b[i] % a[i];
+        break;
+      default:
+        throw new ArithmeticException("FlatField.binary: illegal operation");
+    }
+  }
+
+  static void binary(int op, float[] a, float[] b, int start, int end) {
+    int i;
+    switch (op) {
+      case Data.ADD:
+        for (i=start; i<end; i++) a[i] += b[i];
+        break;
+      case Data.SUBTRACT:
+        for (i=start; i<end; i++) a[i] -= b[i];
+        break;
+      case Data.INV_SUBTRACT:
+        for (i=start; i<end; i++) a[i] = b[i] - a[i];
+        break;
+      case Data.MAX:
+        for (i=start; i<end; i++) a[i] = Math.max(a[i], b[i]);
+        break;
+      case Data.MIN:
+        for (i=start; i<end; i++) a[i] = Math.min(a[i], b[i]);
+        break;
+      case Data.MULTIPLY:
+        for (i=start; i<end; i++) a[i] *= b[i];
+        break;
+      case Data.DIVIDE:
+        for (i=start; i<end; i++) a[i] /= b[i];
+        break;
+      case Data.INV_DIVIDE:
+        for (i=start; i<end; i++) a[i] = b[i] / a[i];
+        break;
+      case Data.POW:
+        for (i=start; i<end; i++) a[i] = (float) Math.pow(a[i], b[i]);
+        break;
+      case Data.INV_POW:
+        for (i=start; i<end; i++) a[i] = (float) Math.pow(b[i], a[i]);
+        break;
+      case Data.ATAN2:
+        for (i=start; i<end; i++) a[i] = (float) Math.atan2(a[i], b[i]);
+        break;
+      case Data.ATAN2_DEGREES:
+        for (i=start; i<end; i++) {
+          a[i] = (float) (Data.RADIANS_TO_DEGREES * Math.atan2(a[i], b[i]));
+        }
+        break;
+      case Data.INV_ATAN2:
+        for (i=start; i<end; i++) a[i] = (float) Math.atan2(b[i], a[i]);
+        break;
+      case Data.INV_ATAN2_DEGREES:
+        for (i=start; i<end; i++) {
+          a[i] = (float) (Data.RADIANS_TO_DEGREES * Math.atan2(b[i], a[i]));
+        }
+        break;
+      case Data.REMAINDER:
+        for (i=start; i<end; i++) a[i] %= b[i];
+        break;
+      case Data.INV_REMAINDER:
+        for (i=start; i<end; i++) a[i] = b[i] % a[i];
+        break;
+      default:
+        throw new ArithmeticException("FlatField.binary: illegal operation");
+    }
+  }
+
+  static void binary(int op, double[] a, double b, int start, int end) {
+    int i;
+    switch (op) {
+      case Data.ADD:
+        for (i=start; i<end; i++) a[i] += b;
+        break;
+      case Data.SUBTRACT:
+        for (i=start; i<end; i++) a[i] -= b;
+        break;
+      case Data.INV_SUBTRACT:
+        for (i=start; i<end; i++) a[i] = b - a[i];
+        break;
+      case Data.MAX:
+        for (i=start; i<end; i++) a[i] = Math.max(a[i], b);
+        break;
+      case Data.MIN:
+        for (i=start; i<end; i++) a[i] = Math.min(a[i], b);
+        break;
+      case Data.MULTIPLY:
+        for (i=start; i<end; i++) a[i] *= b;
+        break;
+      case Data.DIVIDE:
+        for (i=start; i<end; i++) a[i] /= b;
+        break;
+      case Data.INV_DIVIDE:
+        for (i=start; i<end; i++) a[i] = b / a[i];
+        break;
+      case Data.POW:
+        for (i=start; i<end; i++) a[i] = Math.pow(a[i], b);
+        break;
+      case Data.INV_POW:
+        for (i=start; i<end; i++) a[i] = Math.pow(b, a[i]);
+        break;
+      case Data.ATAN2:
+        for (i=start; i<end; i++) a[i] = Math.atan2(a[i], b);
+        break;
+      case Data.ATAN2_DEGREES:
+        for (i=start; i<end; i++) {
+          a[i] = Data.RADIANS_TO_DEGREES * Math.atan2(a[i], b);
+        }
+        break;
+      case Data.INV_ATAN2:
+        for (i=start; i<end; i++) a[i] = Math.atan2(b, a[i]);
+        break;
+      case Data.INV_ATAN2_DEGREES:
+        for (i=start; i<end; i++) {
+          a[i] = Data.RADIANS_TO_DEGREES * Math.atan2(b, a[i]);
+        }
+        break;
+      case Data.REMAINDER:
+        for (i=start; i<end; i++) a[i] %= b;
+        break;
+      case Data.INV_REMAINDER:
+        for (i=start; i<end; i++) a[i] = b % a[i];
+        break;
+      default:
+        throw new ArithmeticException("FlatField.binary: illegal operation");
+    }
+  }
+
+  static void binary(int op, float[] a, double b, int start, int end) {
+    int i;
+    switch (op) {
+      case Data.ADD:
+        for (i=start; i<end; i++) a[i] += b;
+        break;
+      case Data.SUBTRACT:
+        for (i=start; i<end; i++) a[i] -= b;
+        break;
+      case Data.INV_SUBTRACT:
+        for (i=start; i<end; i++) a[i] = (float) (b - a[i]);
+        break;
+      case Data.MAX:
+        for (i=start; i<end; i++) a[i] = (float) Math.max(a[i], b);
+        break;
+      case Data.MIN:
+        for (i=start; i<end; i++) a[i] = (float) Math.min(a[i], b);
+        break;
+      case Data.MULTIPLY:
+        for (i=start; i<end; i++) a[i] *= b;
+        break;
+      case Data.DIVIDE:
+        for (i=start; i<end; i++) a[i] /= b;
+        break;
+      case Data.INV_DIVIDE:
+        for (i=start; i<end; i++) a[i] = (float) (b / a[i]);
+        break;
+      case Data.POW:
+        for (i=start; i<end; i++) a[i] = (float) Math.pow(a[i], b);
+        break;
+      case Data.INV_POW:
+        for (i=start; i<end; i++) a[i] = (float) Math.pow(b, a[i]);
+        break;
+      case Data.ATAN2:
+        for (i=start; i<end; i++) a[i] = (float) Math.atan2(a[i], b);
+        break;
+      case Data.ATAN2_DEGREES:
+        for (i=start; i<end; i++) {
+          a[i] = (float) (Data.RADIANS_TO_DEGREES * Math.atan2(a[i], b));
+        }
+        break;
+      case Data.INV_ATAN2:
+        for (i=start; i<end; i++) a[i] = (float) Math.atan2(b, a[i]);
+        break;
+      case Data.INV_ATAN2_DEGREES:
+        for (i=start; i<end; i++) {
+          a[i] = (float) (Data.RADIANS_TO_DEGREES * Math.atan2(b, a[i]));
+        }
+        break;
+      case Data.REMAINDER:
+        for (i=start; i<end; i++) a[i] %= b;
+        break;
+      case Data.INV_REMAINDER:
+        for (i=start; i<end; i++) a[i] = (float) (b % a[i]);
+        break;
+      default:
+        throw new ArithmeticException("FlatField.binary: illegal operation");
+    }
+  }
+
+  static void unary(int op, boolean degrees, double[] a, int start, int end) {
+    int i;
+    double scale = degrees ? Data.DEGREES_TO_RADIANS : 1.0;
+    switch (op) {
+      case Data.ABS:
+        for (i=start; i<end; i++) a[i] = Math.abs(a[i]);
+        break;
+      case Data.ACOS:
+        for (i=start; i<end; i++) a[i] = Math.acos(a[i]);
+        break;
+      case Data.ACOS_DEGREES:
+        for (i=start; i<end; i++) {
+          a[i] = Data.RADIANS_TO_DEGREES * Math.acos(a[i]);
+        }
+        break;
+      case Data.ASIN:
+        for (i=start; i<end; i++) a[i] = Math.asin(a[i]);
+        break;
+      case Data.ASIN_DEGREES:
+        for (i=start; i<end; i++) {
+          a[i] = Data.RADIANS_TO_DEGREES * Math.asin(a[i]);
+        }
+        break;
+      case Data.ATAN:
+        for (i=start; i<end; i++) a[i] = Math.atan(a[i]);
+        break;
+      case Data.ATAN_DEGREES:
+        for (i=start; i<end; i++) {
+          a[i] = Data.RADIANS_TO_DEGREES * Math.atan(a[i]);
+        }
+        break;
+      case Data.CEIL:
+        for (i=start; i<end; i++) a[i] = Math.ceil(a[i]);
+        break;
+      case Data.COS:
+      case Data.COS_DEGREES:
+        if (degrees) {
+          for (i=start; i<end; i++) a[i] = Math.cos(scale * a[i]);
+        }
+        else {
+          for (i=start; i<end; i++) a[i] = Math.cos(a[i]);
+        }
+        break;
+      case Data.EXP:
+        for (i=start; i<end; i++) a[i] = Math.exp(a[i]);
+        break;
+      case Data.FLOOR:
+        for (i=start; i<end; i++) a[i] = Math.floor(a[i]);
+        break;
+      case Data.LOG:
+        for (i=start; i<end; i++) a[i] = Math.log(a[i]);
+        break;
+      case Data.RINT:
+        for (i=start; i<end; i++) a[i] = Math.rint(a[i]);
+        break;
+      case Data.ROUND:
+        for (i=start; i<end; i++) a[i] = Math.round(a[i]);
+        break;
+      case Data.SIN:
+      case Data.SIN_DEGREES:
+        if (degrees) {
+          for (i=start; i<end; i++) a[i] = Math.sin(scale * a[i]);
+        }
+        else {
+          for (i=start; i<end; i++) a[i] = Math.sin(a[i]);
+        }
+        break;
+      case Data.SQRT:
+        for (i=start; i<end; i++) a[i] = Math.sqrt(a[i]);
+        break;
+      case Data.TAN:
+      case Data.TAN_DEGREES:
+        if (degrees) {
+          for (i=start; i<end; i++) a[i] = Math.tan(scale * a[i]);
+        }
+        else {
+          for (i=start; i<end; i++) a[i] = Math.tan(a[i]);
+        }
+        break;
+      case Data.NEGATE:
+        for (i=start; i<end; i++) a[i] = -a[i];
+        break;
+      default:
+        // NOP and unknown operations leave the values alone
+        break;
+    }
+  }
+
+  static void unary(int op, boolean degrees, float[] a, int start, int end) {
+    int i;
+    double scale = degrees ? Data.DEGREES_TO_RADIANS : 1.0;
+    switch (op) {
+      case Data.ABS:
+        for (i=start; i<end; i++) a[i] = Math.abs(a[i]);
+        break;
+      case Data.ACOS:
+        for (i=start; i<end; i++) a[i] = (float) Math.acos(a[i]);
+        break;
+      case Data.ACOS_DEGREES:
+        for (i=start; i<end; i++) {
+          a[i] = (float) (Data.RADIANS_TO_DEGREES * Math.acos(a[i]));
+        }
+        break;
+      case Data.ASIN:
+        for (i=start; i<end; i++) a[i] = (float) Math.asin(a[i]);
+        break;
+      case Data.ASIN_DEGREES:
+        for (i=start; i<end; i++) {
+          a[i] = (float) (Data.RADIANS_TO_DEGREES * Math.asin(a[i]));
+        }
+        break;
+      case Data.ATAN:
+        for (i=start; i<end; i++) a[i] = (float) Math.atan(a[i]);
+        break;
+      case Data.ATAN_DEGREES:
+        for (i=start; i<end; i++) {
+          a[i] = (float) (Data.RADIANS_TO_DEGREES * Math.atan(a[i]));
+        }
+        break;
+      case Data.CEIL:
+        for (i=start; i<end; i++) a[i] = (float) Math.ceil(a[i]);
+        break;
+      case Data.COS:
+      case Data.COS_DEGREES:
+        if (degrees) {
+          for (i=start; i<end; i++) a[i] = (float) Math.cos(scale * a[i]);
+        }
+        else {
+          for (i=start; i<end; i++) a[i] = (float) Math.cos(a[i]);
+        }
+        break;
+      case Data.EXP:
+        for (i=start; i<end; i++) a[i] = (float) Math.exp(a[i]);
+        break;
+      case Data.FLOOR:
+        for (i=start; i<end; i++) a[i] = (float) Math.floor(a[i]);
+        break;
+      case Data.LOG:
+        for (i=start; i<end; i++) a[i] = (float) Math.log(a[i]);
+        break;
+      case Data.RINT:
+        for (i=start; i<end; i++) a[i] = (float) Math.rint(a[i]);
+        break;
+      case Data.ROUND:
+        for (i=start; i<end; i++) a[i] = Math.round(a[i]);
+        break;
+      case Data.SIN:
+      case Data.SIN_DEGREES:
+        if (degrees) {
+          for (i=start; i<end; i++) a[i] = (float) Math.sin(scale * a[i]);
+        }
+        else {
+          for (i=start; i<end; i++) a[i] = (float) Math.sin(a[i]);
+        }
+        break;
+      case Data.SQRT:
+        for (i=start; i<end; i++) a[i] = (float) Math.sqrt(a[i]);
+        break;
+      case Data.TAN:
+      case Data.TAN_DEGREES:
+        if (degrees) {
+          for (i=start; i<end; i++) a[i] = (float) Math.tan(scale * a[i]);
+        }
+        else {
+          for (i=start; i<end; i++) a[i] = (float) Math.tan(a[i]);
+        }
+        break;
+      case Data.NEGATE:
+        for (i=start; i<end; i++) a[i] = -a[i];
+        break;
+      default:
+        // NOP and unknown operations leave the values alone
+        break;
+    }
+  }
+}
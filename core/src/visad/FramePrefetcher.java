@@ -0,0 +1,390 @@
+//
+// FramePrefetcher.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad;
+
+import java.rmi.RemoteException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import visad.data.CachedFlatField;
+import visad.data.DataCacheManager;
+import visad.data.FileFlatField;
+
+/**
+   FramePrefetcher reads the frames of an animated Field ahead of
+   their transform, so reading the next frames from disk overlaps the
+   transform of the current one.<P>
+
+   Only frames whose values are read on demand (CachedFlatField and
+   FileFlatField samples) are prefetched, on a small shared pool of
+   daemon threads.  The number of frames read ahead is bounded by the
+   <code>visad.prefetch.frames</code> system property (default 4) and
+   by the memory budget of the DataCacheManager.<P>
+
+   If an AnimationControl is given, frames are handed out by
+   {@link #next} in the order the animation will show them, starting
+   at its current step and following its direction, so the frames the
+   user sees first are ready first.  The order is re-evaluated for
+   every frame, so if the user reverses direction or jumps to another
+   step, reads queued for frames that are no longer next are
+   cancelled.<P>
+
+   The prefetcher used by the last transform of a DataDisplayLink is
+   available from {@link DataDisplayLink#getFramePrefetcher} for its
+   frames-ready and per-frame latency metrics.<P>
+*/
+public class FramePrefetcher {
+
+  /** System property giving the maximum number of frames read ahead */
+  public static final String FRAMES_PROPERTY = "visad.prefetch.frames";
+
+  /** System property giving the number of prefetch threads */
+  public static final String THREADS_PROPERTY = "visad.prefetch.threads";
+
+  private static final int maxFrames =
+    Integer.getInteger(FRAMES_PROPERTY, 4).intValue();
+
+  private static final int numThreads =
+    Math.max(Integer.getInteger(THREADS_PROPERTY, 2).intValue(), 1);
+
+  /** shared prefetch pool, created on first use */
+  private static ThreadPoolExecutor pool = null;
+
+  private final Field field;
+  private final int length;
+  private final AnimationControl control;
+  private final Set domainSet;
+
+  /** true for frames handed out by next(), read by getSample() or
+      passed to skip() */
+  private final boolean[] done;
+
+  /** pending and completed reads, by frame index */
+  private final Map reads = new TreeMap();
+
+  /** frames read ahead; 0 until the size of a frame is known */
+  private int lookahead = 0;
+  private boolean sized = false;
+
+  /** metrics */
+  private int framesReady = 0;
+  private int framesWaited = 0;
+  private final long[] latency;
+
+  /**
+   * Construct a FramePrefetcher for the samples of field.
+   * @param link DataDisplayLink being transformed, which keeps this
+   *             FramePrefetcher for its metrics; may be null
+   * @param field Field whose samples are the frames
+   * @param control AnimationControl giving the order in which frames
+   *                are needed; if null, frames are needed in index order
+   * @param done frames that need not be read, or null
+   */
+  public FramePrefetcher(DataDisplayLink link, Field field,
+                         AnimationControl control, boolean[] done)
+         throws VisADException, RemoteException {
+    this.field = field;
+    this.control = control;
+    domainSet = field.getDomainSet();
+    length = field.getLength();
+    this.done = new boolean[length];
+    if (done != null) {
+      System.arraycopy(done, 0, this.done, 0, Math.min(length, done.length));
+    }
+    latency = new long[length];
+    java.util.Arrays.fill(latency, -1);
+    if (link != null) link.setFramePrefetcher(this);
+  }
+
+  /**
+   * @return index of the next frame to transform, following the
+   *         AnimationControl, or -1 if every frame is done
+   */
+  public synchronized int next() {
+    int start = 0;
+    boolean forward = true;
+    if (control != null) {
+      start = getCurrentFrame();
+      forward = control.getDirection();
+    }
+    for (int k=0; k<length; k++) {
+      int i = step(start, k, forward);
+      if (!done[i]) {
+        done[i] = true;
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Return frame index, waiting for its read if one is under way, and
+   * read ahead the frames that follow it.
+   * @param index index of the frame
+   * @return sample index of the Field
+   */
+  public Data getSample(int index)
+         throws VisADException, RemoteException {
+    Future read;
+    synchronized (this) {
+      done[index] = true;
+      read = (Future) reads.remove(Integer.valueOf(index));
+    }
+
+    long t = System.nanoTime();
+    Data sample = null;
+    if (read != null && !read.isCancelled()) {
+      boolean ready = read.isDone();
+      try {
+        sample = (Data) read.get();
+      }
+      catch (InterruptedException e) {
+        sample = null;
+      }
+      catch (ExecutionException e) {
+        // read again below, to throw the error on this thread
+        sample = null;
+      }
+      synchronized (this) {
+        if (ready) framesReady++;
+        else framesWaited++;
+      }
+    }
+    if (sample == null) {
+      sample = load(field, index);
+    }
+    synchronized (this) {
+      latency[index] = System.nanoTime() - t;
+      if (!sized) {
+        sized = true;
+        lookahead = getLookahead(sample);
+      }
+      schedule(index);
+    }
+    return sample;
+  }
+
+  /**
+   * Mark frame index as not needed, e.g. because the branch made from
+   * it by the last transform is reused, so it is not read ahead, and
+   * cancel its read if one is queued.
+   * @param index index of the frame
+   */
+  public synchronized void skip(int index) {
+    done[index] = true;
+    Future read = (Future) reads.remove(Integer.valueOf(index));
+    if (read != null) read.cancel(false);
+  }
+
+  /**
+   * Cancel all reads that have not started.
+   */
+  public synchronized void close() {
+    for (Iterator it = reads.values().iterator(); it.hasNext(); ) {
+      ((Future) it.next()).cancel(false);
+    }
+    reads.clear();
+  }
+
+  /**
+   * @return number of frames read ahead and ready before the transform
+   *         needed them
+   */
+  public synchronized int getFramesReady() {
+    return framesReady;
+  }
+
+  /**
+   * @return number of frames read ahead but still being read when the
+   *         transform needed them
+   */
+  public synchronized int getFramesWaited() {
+    return framesWaited;
+  }
+
+  /**
+   * @return number of frames read ahead at a time
+   */
+  public synchronized int getLookahead() {
+    return lookahead;
+  }
+
+  /**
+   * @param index index of a frame
+   * @return nanoseconds the transform spent getting frame index
+   *         (reading it, or waiting for its read), or -1 if frame
+   *         index has not been requested
+   */
+  public synchronized long getLatency(int index) {
+    return latency[index];
+  }
+
+  public synchronized String toString() {
+    long total = 0;
+    long max = 0;
+    int count = 0;
+    for (int i=0; i<length; i++) {
+      if (latency[i] >= 0) {
+        total += latency[i];
+        max = Math.max(max, latency[i]);
+        count++;
+      }
+    }
+    return "FramePrefetcher: " + count + " of " + length + " frames, " +
+           framesReady + " ready, " + framesWaited + " waited, lookahead " +
+           lookahead + ", mean latency " +
+           ((count == 0) ? 0 : total / count / 1000) + " us, max " +
+           (max / 1000) + " us";
+  }
+
+  /** queue reads of the frames that follow index, and cancel the rest */
+  private void schedule(int index) {
+    if (lookahead == 0) return;
+    boolean forward = (control == null) || control.getDirection();
+    // frames needed in index order end at the last frame; only an
+    // animation wraps around to the frames before index
+    int span = (control == null) ? length - index : length;
+    boolean[] wanted = new boolean[length];
+    int count = 0;
+    for (int k=1; k<span && count<lookahead; k++) {
+      int i = step(index, k, forward);
+      if (done[i]) continue;
+      wanted[i] = true;
+      count++;
+      Integer key = Integer.valueOf(i);
+      if (!reads.containsKey(key)) {
+        reads.put(key, getPool().submit(new Read(field, i)));
+      }
+    }
+    for (Iterator it = reads.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry entry = (Map.Entry) it.next();
+      if (!wanted[((Integer) entry.getKey()).intValue()]) {
+        // stale: not yet started reads are dropped
+        ((Future) entry.getValue()).cancel(false);
+        it.remove();
+      }
+    }
+  }
+
+  /** k-th frame from start in the given direction, wrapping around */
+  private int step(int start, int k, boolean forward) {
+    int i = forward ? start + k : start - k;
+    i %= length;
+    return (i < 0) ? i + length : i;
+  }
+
+  /** index of the frame at the current step of control */
+  private int getCurrentFrame() {
+    try {
+      Set set = control.getSet();
+      if (set == null || domainSet == null) return 0;
+      int current = control.getCurrent();
+      if (current < 0 || current >= set.getLength()) return 0;
+      double[][] values = set.indexToDouble(new int[] {current});
+      int[] indices = domainSet.doubleToIndex(values);
+      return (indices[0] < 0) ? 0 : indices[0];
+    }
+    catch (VisADException e) {
+      return 0;
+    }
+  }
+
+  /** number of frames like sample that may be read ahead */
+  private static int getLookahead(Data sample)
+          throws VisADException {
+    if (maxFrames <= 0 || !isLazy(sample)) return 0;
+    FlatField frame = (FlatField) sample;
+    long bytes = 4L * frame.getLength() *
+      ((FunctionType) frame.getType()).getFlatRange().getDimension();
+    // leave half of the cache for the frames being transformed
+    long budget = DataCacheManager.getCacheManager().getMaxSize() / 2;
+    long frames = (bytes == 0) ? maxFrames : budget / bytes;
+    return (int) Math.min(maxFrames, frames);
+  }
+
+  /** true if the values of sample are read on demand */
+  private static boolean isLazy(Data sample) {
+    return sample instanceof CachedFlatField ||
+           sample instanceof FileFlatField;
+  }
+
+  /** get sample index of field, reading its values if they are read
+      on demand */
+  private static Data load(Field field, int index)
+          throws VisADException, RemoteException {
+    Data sample = field.getSample(index);
+    if (isLazy(sample)) {
+      ((FlatField) sample).getFloats(false);
+    }
+    return sample;
+  }
+
+  private static synchronized ThreadPoolExecutor getPool() {
+    if (pool == null) {
+      pool = new ThreadPoolExecutor(numThreads, numThreads, 30,
+                                    TimeUnit.SECONDS,
+                                    new LinkedBlockingQueue(),
+                                    new PrefetchThreadFactory());
+      pool.allowCoreThreadTimeOut(true);
+    }
+    return pool;
+  }
+
+  /** read of one frame, run on a pool thread */
+  private static class Read implements Callable {
+    private final Field field;
+    private final int index;
+
+    Read(Field field, int index) {
+      this.field = field;
+      this.index = index;
+    }
+
+    public Object call() throws Exception {
+      return load(field, index);
+    }
+  }
+
+  private static class PrefetchThreadFactory implements ThreadFactory {
+    private int count = 0;
+
+    public synchronized Thread newThread(Runnable r) {
+      Thread t = new Thread(r, "VisAD-prefetch-" + (count++));
+      t.setDaemon(true);
+      t.setPriority(Thread.NORM_PRIORITY - 1);
+      return t;
+    }
+  }
+}
@@ -379,6 +379,10 @@ System.out.println("1st = " + ( (v10[0]-v00[0])*(v11[1]-v10[1])
     int length = Math.min(value[0].length, value[1].length);
     float[][] grid = new float[ManifoldDimension][length];
 
+    // spatial index of grid boxes, for starting guesses
+    GriddedSetIndex index = getSpatialIndex(length);
+    float[] point = new float[2];
+
     // (gx, gy) is the current grid box guess
     int gx = (LengthX-1)/2;
     int gy = (LengthY-1)/2;
@@ -413,6 +417,14 @@ System.out.println("1st = " + ( (v10[0]-v00[0])*(v11[1]-v10[1])
       }
       // if the loop doesn't find the answer, the result should be NaN
       grid[0][i] = grid[1][i] = Float.NaN;
+      if (index != null) {
+        point[0] = value[0][i];
+        point[1] = value[1][i];
+        int box = index.getStartBox(point);
+        if (box < 0) continue; // not near any grid box
+        gx = box % LengthX;
+        gy = box / LengthX;
+      }
       for (int itnum=0; itnum<2*(LengthX+LengthY); itnum++) {
         // define the four vertices of the current grid box
         float[] v0 = {mySamples[0][gy*LengthX+gx],
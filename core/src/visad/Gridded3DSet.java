@@ -27,7 +27,11 @@ MA 02111-1307, USA
 package visad;
 
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
+
+import visad.util.ParallelLoop;
 
 /**
  * Gridded3DSet represents a finite set of samples of R^3.
@@ -1079,6 +1083,10 @@ public class Gridded3DSet extends GriddedSet {
     length = Math.min(length, value[2].length);
     float[][] grid = new float[ManifoldDimension][length];
 
+    // spatial index of grid boxes, for starting guesses
+    GriddedSetIndex index = getSpatialIndex(length);
+    float[] point = new float[3];
+
     // (gx, gy, gz) is the current grid box guess
     int gx = (LengthX-1)/2; 
     int gy = (LengthY-1)/2; 
@@ -1110,6 +1118,13 @@ public class Gridded3DSet extends GriddedSet {
     float[] X = new float[3];
     float[] Y = new float[3];
 
+    // true while a point is walked again from the old starting guess,
+    // and the guess (gx, gy, gz) that walk starts from
+    boolean retry = false;
+    int rx = gx;
+    int ry = gy;
+    int rz = gz;
+
     for (int i = 0; i < length; i++) {
       // a flag indicating whether point is off the grid
       boolean offgrid = false;
@@ -1138,40 +1153,60 @@ public class Gridded3DSet extends GriddedSet {
       // if the iteration loop fails, the result should be NaN
       grid[0][i] = grid[1][i] = grid[2][i] = Float.NaN;
 
-      // --TDR, don't let value and initial guess be too far apart
-      float v_x, v_y, v_z;
-      v_x = value[0][i];
-      v_y = value[1][i];
-      v_z = value[2][i];
-      int ii = LengthX * LengthY * LengthZ - 1;
-      int gii = (int) gz * LengthX * LengthY + gy * LengthX + gx;
-      float sx = mySamples[0][gii];
-      float sy = mySamples[1][gii];
-      float sz = mySamples[2][gii];
-      //GHANSHAM: Added this if condition. It tries to get start point
-      //when i = 0 (first time) or when the last guess is not a valid value
-      if (i == 0 || ((i != 0) && grid[0][i - 1] != grid[0][i - 1])) {
-        if (Math.abs(v_x-sx) > 0.4 *Math.abs(mySamples[0][0] - mySamples[0][ii]) ||
-            Math.abs(v_y-sy) > 0.4 *Math.abs(mySamples[1][0] - mySamples[1][ii]) ||
-            Math.abs(v_z-sz) > 0.4 *Math.abs(mySamples[2][0] - mySamples[2][ii])) {
-          float[] ginit = getStartPoint(value[0][i], value[1][i], value[2][i]);
-          gx = (int) ginit[0];
-          gy = (int) ginit[1];
-          gz = (int) ginit[2];
-        }
-      } else { //GHANSHAM: Use the last guest other wise
-          gx = (int) grid[0][i-1];
-          gy = (int) grid[1][i-1];
-          gz = (int) grid[2][i-1];
-          if (gx > LengthX - 2) {
-             gx = LengthX - 2;
-          }
-          if (gy > LengthY - 2) {
-             gy = LengthY - 2;
-          }
-          if (gz > LengthZ - 2) {
-             gz = LengthZ - 2;
+      if (retry) {
+        gx = rx;
+        gy = ry;
+        gz = rz;
+      }
+      if (index != null && !retry) {
+        rx = gx;
+        ry = gy;
+        rz = gz;
+        point[0] = value[0][i];
+        point[1] = value[1][i];
+        point[2] = value[2][i];
+        int box = index.getStartBox(point);
+        if (box < 0) continue; // not near any grid box
+        gx = box % LengthX;
+        gy = (box / LengthX) % LengthY;
+        gz = box / (LengthX * LengthY);
+      }
+      else {
+        // --TDR, don't let value and initial guess be too far apart
+        float v_x, v_y, v_z;
+        v_x = value[0][i];
+        v_y = value[1][i];
+        v_z = value[2][i];
+        int ii = LengthX * LengthY * LengthZ - 1;
+        int gii = (int) gz * LengthX * LengthY + gy * LengthX + gx;
+        float sx = mySamples[0][gii];
+        float sy = mySamples[1][gii];
+        float sz = mySamples[2][gii];
+        //GHANSHAM: Added this if condition. It tries to get start point
+        //when i = 0 (first time) or when the last guess is not a valid value
+        if (i == 0 || ((i != 0) && grid[0][i - 1] != grid[0][i - 1])) {
+          if (Math.abs(v_x-sx) > 0.4 *Math.abs(mySamples[0][0] - mySamples[0][ii]) ||
+              Math.abs(v_y-sy) > 0.4 *Math.abs(mySamples[1][0] - mySamples[1][ii]) ||
+              Math.abs(v_z-sz) > 0.4 *Math.abs(mySamples[2][0] - mySamples[2][ii])) {
+            float[] ginit = getStartPoint(value[0][i], value[1][i], value[2][i]);
+            gx = (int) ginit[0];
+            gy = (int) ginit[1];
+            gz = (int) ginit[2];
           }
+        } else { //GHANSHAM: Use the last guest other wise
+            gx = (int) grid[0][i-1];
+            gy = (int) grid[1][i-1];
+            gz = (int) grid[2][i-1];
+            if (gx > LengthX - 2) {
+               gx = LengthX - 2;
+            }
+            if (gy > LengthY - 2) {
+               gy = LengthY - 2;
+            }
+            if (gz > LengthZ - 2) {
+               gz = LengthZ - 2;
+            }
+        }
       }
       // ----
       for (int itnum = 0; itnum < 2 * (LengthX + LengthY + LengthZ); itnum++) {
@@ -2281,6 +2316,20 @@ public class Gridded3DSet extends GriddedSet {
         }
       }
 
+      // a point outside the grid is extrapolated from the edge box the
+      // walk ends in, which depends on where the walk starts; so walk
+      // such points again from the old starting guess, rather than from
+      // the box the spatial index picked, to get the same edge box
+      if (index != null && !retry &&
+          ((grid[0][i] < 0) || (grid[0][i] > LengthX - 1)
+           || (grid[1][i] < 0) || (grid[1][i] > LengthY - 1)
+           || (grid[2][i] < 0) || (grid[2][i] > LengthZ - 1))) {
+        retry = true;
+        i--;
+        continue;
+      }
+      retry = false;
+
       // allow estimations up to 0.5 boxes outside of defined samples
       if ((grid[0][i] <= -0.5) || (grid[0][i] >= LengthX - 0.5)
           || (grid[1][i] <= -0.5) || (grid[1][i] >= LengthY - 0.5)
@@ -2965,12 +3014,8 @@ public class Gridded3DSet extends GriddedSet {
       byte[][] color_values, boolean indexed) throws VisADException {
     boolean debug = false;
 
-    int i;
-    int size_stripe;
     int xdim_x_ydim, xdim_x_ydim_x_zdim;
-    int num_cubes, nvertex, npolygons;
-    int ix, iy, ii;
-    int nvertex_estimate;
+    int num_cubes, npolygons;
 
     if (ManifoldDimension != 3) {
       throw new DisplayException("Gridded3DSet.makeIsoSurface: "
@@ -3006,86 +3051,386 @@ public class Gridded3DSet extends GriddedSet {
 
     // take the garbage out
     pcube = null;
+    ptAUX = null;
 
-    nvertex_estimate = 4 * npolygons + 100;
-    ix = 9 * (nvertex_estimate + 50);
-    iy = 7 * npolygons;
+    // compute the surface in slabs of cube layers along Z, concurrently
+    // for large grids, and merge the slabs
+    IsoSurfaceSlabs slabs = new IsoSurfaceSlabs(isolevel, ptFLAG, npolygons,
+        ptGRID, xdim, ydim, zdim, color_values);
+    ParallelLoop.run(num_cubes, slabs);
+    return slabs.merge(indexed);
+  }
 
-    float[][] VX = new float[1][nvertex_estimate];
-    float[][] VY = new float[1][nvertex_estimate];
-    float[][] VZ = new float[1][nvertex_estimate];
+  /**
+   * Computes the isosurface of a grid in slabs of consecutive cube layers,
+   * as chunks of a {@link ParallelLoop}.  Each slab runs isosurf and
+   * sum_normals on its own layers.  The slabs are then joined into the
+   * vertices and polygons one isosurf call would have made: vertices on
+   * the plane between two slabs, made by both, are merged and their
+   * normals summed again over the polygons of both slabs in sum_normals
+   * order.  The joined mesh is stripped as a whole, so the result is the
+   * same as computing the surface in one piece.
+   */
+  private class IsoSurfaceSlabs implements ParallelLoop.Body {
+
+    private final float isolevel;
+    private final int[] ptFLAG;
+    private final int npolygons;
+    private final float[] ptGRID;
+    private final int xdim, ydim, zdim;
+    private final byte[][] color_values;
+    private final float[][] samples;
+
+    /** slabs done so far, in no particular order */
+    private final List<IsoSurfaceSlab> slabs = new ArrayList<IsoSurfaceSlab>();
+
+    IsoSurfaceSlabs(float isolevel, int[] ptFLAG, int npolygons,
+        float[] ptGRID, int xdim, int ydim, int zdim, byte[][] color_values)
+        throws VisADException {
+      this.isolevel = isolevel;
+      this.ptFLAG = ptFLAG;
+      this.npolygons = npolygons;
+      this.ptGRID = ptGRID;
+      this.xdim = xdim;
+      this.ydim = ydim;
+      this.zdim = zdim;
+      this.color_values = color_values;
+      samples = getSamples(false);
+    }
 
-    byte[][] color_temps = null;
-    if (color_values != null) {
-      color_temps = new byte[color_values.length][];
+    /**
+     * Compute the slab of the cube layers starting in cubes
+     * <code>start</code> through <code>end - 1</code>.
+     */
+    public void run(int start, int end) throws VisADException {
+      int num_cubes_xy = (xdim - 1) * (ydim - 1);
+      int zlow = (start + num_cubes_xy - 1) / num_cubes_xy;
+      int zhigh = (end + num_cubes_xy - 1) / num_cubes_xy;
+      if (zlow >= zhigh) return;
+
+      IsoSurfaceSlab slab = new IsoSurfaceSlab(zlow, zhigh);
+      if (zlow == 0 && zhigh == zdim - 1) {
+        slab.npolygons = npolygons;
+      } else {
+        slab.npolygons = 0;
+        for (int ii = zlow * num_cubes_xy; ii < zhigh * num_cubes_xy; ii++) {
+          if (ptFLAG[ii] != 0 && ptFLAG[ii] != 0xFF
+              && ptFLAG[ii] < MAX_FLAG_NUM) {
+            slab.npolygons += pol_edges[ptFLAG[ii]][1];
+          }
+        }
+      }
+      if (slab.npolygons > 0) {
+        surface(slab);
+      }
+      synchronized (slabs) {
+        slabs.add(slab);
+      }
     }
 
-    int[] Pol_f_Vert = new int[ix];
-    int[] Vert_f_Pol = new int[iy];
-    int[][] arg_Pol_f_Vert = new int[][] { Pol_f_Vert };
+    private void surface(IsoSurfaceSlab slab) throws VisADException {
+      int npolygons = slab.npolygons;
+      int nvertex_estimate = 4 * npolygons + 100;
+      int ix = 9 * (nvertex_estimate + 50);
+      int iy = 7 * npolygons;
 
-    nvertex = isosurf(isolevel, ptFLAG, nvertex_estimate, npolygons, ptGRID,
-        xdim, ydim, zdim, VX, VY, VZ, color_values, color_temps,
-        arg_Pol_f_Vert, Vert_f_Pol);
-    Pol_f_Vert = arg_Pol_f_Vert[0];
+      float[][] VX = new float[1][nvertex_estimate];
+      float[][] VY = new float[1][nvertex_estimate];
+      float[][] VZ = new float[1][nvertex_estimate];
 
-    if (nvertex == 0)
-      return null;
+      byte[][] color_temps = null;
+      if (color_values != null) {
+        color_temps = new byte[color_values.length][];
+      }
 
-    // take the garbage out
-    ptFLAG = null;
-    ptAUX = null;
-    /*
-     * for (int j=0; j<nvertex; j++) { System.out.println("iso vertex[" + j +
-     * "] " + VX[0][j] + " " + VY[0][j] + " " + VZ[0][j]); }
+      int[] Pol_f_Vert = new int[ix];
+      int[] Vert_f_Pol = new int[iy];
+      int[][] arg_Pol_f_Vert = new int[][] { Pol_f_Vert };
+
+      int nvertex = isosurf(isolevel, ptFLAG, nvertex_estimate, npolygons,
+          ptGRID, xdim, ydim, slab.zlow, slab.zhigh, samples, VX, VY, VZ,
+          color_values, color_temps, arg_Pol_f_Vert, Vert_f_Pol,
+          slab.seam_edges);
+      Pol_f_Vert = arg_Pol_f_Vert[0];
+
+      if (nvertex == 0)
+        return;
+
+      float[][] fieldVertices = new float[3][nvertex];
+      // NOTE - NO X & Y swap
+      System.arraycopy(VX[0], 0, fieldVertices[0], 0, nvertex);
+      System.arraycopy(VY[0], 0, fieldVertices[1], 0, nvertex);
+      System.arraycopy(VZ[0], 0, fieldVertices[2], 0, nvertex);
+      // take the garbage out
+      VX = null;
+      VY = null;
+      VZ = null;
+
+      byte[][] color_levels = null;
+      if (color_values != null) {
+        color_levels = new byte[color_values.length][nvertex];
+        System.arraycopy(color_temps[0], 0, color_levels[0], 0, nvertex);
+        System.arraycopy(color_temps[1], 0, color_levels[1], 0, nvertex);
+        System.arraycopy(color_temps[2], 0, color_levels[2], 0, nvertex);
+        if (color_temps.length > 3) {
+          System.arraycopy(color_temps[3], 0, color_levels[3], 0, nvertex);
+        }
+        // take the garbage out
+        color_temps = null;
+      }
+
+      float[] NxA = new float[npolygons];
+      float[] NxB = new float[npolygons];
+      float[] NyA = new float[npolygons];
+      float[] NyB = new float[npolygons];
+      float[] NzA = new float[npolygons];
+      float[] NzB = new float[npolygons];
+
+      float[] Pnx = new float[npolygons];
+      float[] Pny = new float[npolygons];
+      float[] Pnz = new float[npolygons];
+
+      float[] NX = new float[nvertex];
+      float[] NY = new float[nvertex];
+      float[] NZ = new float[nvertex];
+
+      // normalized in merge, once the seam vertices' normals are summed
+      sum_normals(fieldVertices[0], fieldVertices[1], fieldVertices[2], NX,
+          NY, NZ, nvertex, npolygons, Pnx, Pny, Pnz, NxA, NxB, NyA, NyB, NzA,
+          NzB, Pol_f_Vert, Vert_f_Pol);
+
+      slab.nvertex = nvertex;
+      slab.fieldVertices = fieldVertices;
+      slab.color_levels = color_levels;
+      slab.NX = NX;
+      slab.NY = NY;
+      slab.NZ = NZ;
+      slab.Pol_f_Vert = Pol_f_Vert;
+      slab.Vert_f_Pol = Vert_f_Pol;
+    }
+
+    /**
+     * Join the slabs into the mesh one isosurf call over the whole grid
+     * would have made, then strip it and build its geometry.
      */
-    float[][] fieldVertices = new float[3][nvertex];
-    // NOTE - NO X & Y swap
-    System.arraycopy(VX[0], 0, fieldVertices[0], 0, nvertex);
-    System.arraycopy(VY[0], 0, fieldVertices[1], 0, nvertex);
-    System.arraycopy(VZ[0], 0, fieldVertices[2], 0, nvertex);
-    // take the garbage out
-    VX = null;
-    VY = null;
-    VZ = null;
+    VisADGeometryArray merge(boolean indexed) throws VisADException {
+      List<IsoSurfaceSlab> sorted = new ArrayList<IsoSurfaceSlab>();
+      for (IsoSurfaceSlab slab : slabs) {
+        if (slab.nvertex > 0) sorted.add(slab);
+      }
+      slabs.clear();
+      if (sorted.size() == 0) return null;
+      java.util.Collections.sort(sorted,
+        new java.util.Comparator<IsoSurfaceSlab>() {
+          public int compare(IsoSurfaceSlab s1, IsoSurfaceSlab s2) {
+            return s1.zlow - s2.zlow;
+          }
+        });
+
+      if (sorted.size() == 1) {
+        IsoSurfaceSlab slab = sorted.get(0);
+        normalize_normals(slab.NX, slab.NY, slab.NZ, slab.nvertex);
+        return makeIsoSurfaceArray(slab.fieldVertices, slab.color_levels,
+            slab.NX, slab.NY, slab.NZ, slab.nvertex, slab.npolygons,
+            slab.Pol_f_Vert, slab.Vert_f_Pol, indexed);
+      }
 
-    byte[][] color_levels = null;
-    if (color_values != null) {
-      color_levels = new byte[color_values.length][nvertex];
-      System.arraycopy(color_temps[0], 0, color_levels[0], 0, nvertex);
-      System.arraycopy(color_temps[1], 0, color_levels[1], 0, nvertex);
-      System.arraycopy(color_temps[2], 0, color_levels[2], 0, nvertex);
-      if (color_temps.length > 3) {
-        System.arraycopy(color_temps[3], 0, color_levels[3], 0, nvertex);
+      // number the vertices in the order isosurf makes them; a vertex on
+      // the plane between two slabs keeps the number of the lower slab's
+      int nslabs = sorted.size();
+      int[][] vertexMap = new int[nslabs][];
+      int[] firstVertex = new int[nslabs];
+      int nvertex = 0;
+      int npolygons = 0;
+      for (int k = 0; k < nslabs; k++) {
+        IsoSurfaceSlab slab = sorted.get(k);
+        int[] map = new int[slab.nvertex];
+        java.util.Arrays.fill(map, -1);
+        if (k > 0 && sorted.get(k - 1).zhigh == slab.zlow) {
+          matchSeam(sorted.get(k - 1), vertexMap[k - 1], slab, map);
+        }
+        firstVertex[k] = nvertex;
+        for (int j = 0; j < slab.nvertex; j++) {
+          if (map[j] < 0) map[j] = nvertex++;
+        }
+        vertexMap[k] = map;
+        npolygons += slab.npolygons;
       }
-      // take the garbage out
-      color_temps = null;
+
+      float[][] fieldVertices = new float[3][nvertex];
+      byte[][] color_levels = null;
+      if (color_values != null) {
+        color_levels = new byte[color_values.length][nvertex];
+      }
+      float[] NX = new float[nvertex];
+      float[] NY = new float[nvertex];
+      float[] NZ = new float[nvertex];
+      boolean[] seam = new boolean[nvertex];
+
+      int[] Pol_f_Vert = new int[9 * nvertex];
+      for (int jj = 0; jj < Pol_f_Vert.length; jj++) {
+        Pol_f_Vert[jj] = BIG_NEG;
+      }
+      for (int jj = 8; jj < Pol_f_Vert.length; jj += 9) {
+        Pol_f_Vert[jj] = 0;
+      }
+      int[] Vert_f_Pol = new int[7 * npolygons];
+
+      int first_pol = 0;
+      for (int k = 0; k < nslabs; k++) {
+        IsoSurfaceSlab slab = sorted.get(k);
+        int[] map = vertexMap[k];
+        for (int j = 0; j < slab.nvertex; j++) {
+          int v = map[j];
+          if (v >= firstVertex[k]) {
+            for (int c = 0; c < 3; c++) {
+              fieldVertices[c][v] = slab.fieldVertices[c][j];
+            }
+            if (color_levels != null) {
+              for (int c = 0; c < color_levels.length; c++) {
+                color_levels[c][v] = slab.color_levels[c][j];
+              }
+            }
+            NX[v] = slab.NX[j];
+            NY[v] = slab.NY[j];
+            NZ[v] = slab.NZ[j];
+          } else {
+            seam[v] = true;
+          }
+          // the lower slab's polygons come first, as in isosurf
+          int n = slab.Pol_f_Vert[j * 9 + 8];
+          int m = Pol_f_Vert[v * 9 + 8];
+          for (int t = 0; t < n; t++) {
+            Pol_f_Vert[v * 9 + m + t] = slab.Pol_f_Vert[j * 9 + t] + first_pol;
+          }
+          Pol_f_Vert[v * 9 + 8] = m + n;
+        }
+        for (int i = 0; i < slab.npolygons; i++) {
+          int pa = 7 * (first_pol + i);
+          for (int t = 0; t < 6; t++) {
+            int v = slab.Vert_f_Pol[7 * i + t];
+            Vert_f_Pol[pa + t] = (v < 0) ? v : map[v];
+          }
+          Vert_f_Pol[pa + 6] = slab.Vert_f_Pol[7 * i + 6];
+        }
+        first_pol += slab.npolygons;
+        // take the garbage out
+        sorted.set(k, null);
+        vertexMap[k] = null;
+      }
+
+      for (int v = 0; v < nvertex; v++) {
+        if (seam[v]) {
+          sum_vertex_normal(fieldVertices, NX, NY, NZ, v, Pol_f_Vert,
+              Vert_f_Pol);
+        }
+      }
+      normalize_normals(NX, NY, NZ, nvertex);
+      return makeIsoSurfaceArray(fieldVertices, color_levels, NX, NY, NZ,
+          nvertex, npolygons, Pol_f_Vert, Vert_f_Pol, indexed);
     }
+  }
 
-    if (debug)
-      System.out.println("nvertex= " + nvertex);
+  /**
+   * The vertices, summed normals and polygons of one slab of cube layers.
+   */
+  private static class IsoSurfaceSlab {
 
-    float[] NxA = new float[npolygons];
-    float[] NxB = new float[npolygons];
-    float[] NyA = new float[npolygons];
-    float[] NyB = new float[npolygons];
-    float[] NzA = new float[npolygons];
-    float[] NzB = new float[npolygons];
+    /** first cube layer, and one past the last */
+    final int zlow, zhigh;
 
-    float[] Pnx = new float[npolygons];
-    float[] Pny = new float[npolygons];
-    float[] Pnz = new float[npolygons];
+    /** vertices made on the edges of the bottom and top planes */
+    final int[][] seam_edges = new int[2][];
 
-    float[] NX = new float[nvertex];
-    float[] NY = new float[nvertex];
-    float[] NZ = new float[nvertex];
+    int npolygons;
+    int nvertex = 0;
+    float[][] fieldVertices;
+    byte[][] color_levels;
+    float[] NX, NY, NZ;
+    int[] Pol_f_Vert;
+    int[] Vert_f_Pol;
+
+    IsoSurfaceSlab(int zlow, int zhigh) {
+      this.zlow = zlow;
+      this.zhigh = zhigh;
+    }
+  }
 
-    make_normals(fieldVertices[0], fieldVertices[1], fieldVertices[2], NX, NY,
-        NZ, nvertex, npolygons, Pnx, Pny, Pnz, NxA, NxB, NyA, NyB, NzA, NzB,
-        Pol_f_Vert, Vert_f_Pol);
+  /**
+   * Give the vertices made by both slabs on the plane between them the
+   * numbers <code>below</code> gave them, matching them by the grid edge
+   * they were made on.
+   */
+  private static void matchSeam(IsoSurfaceSlab below, int[] belowMap,
+      IsoSurfaceSlab above, int[] aboveMap) {
+    int[] top = below.seam_edges[1];
+    int[] bottom = above.seam_edges[0];
+    for (int e = 0; e < bottom.length; e++) {
+      if (bottom[e] >= 0 && top[e] >= 0) {
+        aboveMap[bottom[e]] = belowMap[top[e]];
+      }
+    }
+  }
 
-    // take the garbage out
-    NxA = NxB = NyA = NyB = NzA = NzB = Pnx = Pny = Pnz = null;
+  /**
+   * Sum the normals of the polygons around vertex <code>v</code> in the
+   * order sum_normals adds them (by triangle of the polygon fans, then
+   * by polygon), so that a vertex whose polygons come from two slabs
+   * gets the same sum as from one sum_normals call.
+   */
+  private static void sum_vertex_normal(float[][] fieldVertices, float[] NX,
+      float[] NY, float[] NZ, int v, int[] Pol_f_Vert, int[] Vert_f_Pol) {
+    float[] VX = fieldVertices[0];
+    float[] VY = fieldVertices[1];
+    float[] VZ = fieldVertices[2];
+    int npol = Pol_f_Vert[v * 9 + 8];
+    float nx = 0;
+    float ny = 0;
+    float nz = 0;
+    for (int k = 2; k < 6; k++) {
+      for (int t = 0; t < npol; t++) {
+        int pa = 7 * Pol_f_Vert[v * 9 + t];
+        int iv0 = Vert_f_Pol[pa];
+        int iv1 = Vert_f_Pol[pa + k - 1];
+        int iv2 = Vert_f_Pol[pa + k];
+        if (iv2 < 0 || (iv0 != v && iv1 != v && iv2 != v)) continue;
+        float ax = VX[iv1] - VX[iv0];
+        float ay = VY[iv1] - VY[iv0];
+        float az = VZ[iv1] - VZ[iv0];
+        float bx = VX[iv2] - VX[iv0];
+        float by = VY[iv2] - VY[iv0];
+        float bz = VZ[iv2] - VZ[iv0];
+        float px = ay * bz - az * by;
+        float py = az * bx - ax * bz;
+        float pz = ax * by - ay * bx;
+        float area = px * px + py * py + pz * pz;
+        if (area > Float.MIN_VALUE) {
+          px /= area;
+          py /= area;
+          pz /= area;
+        }
+        nx += px;
+        ny += py;
+        nz += pz;
+      }
+    }
+    NX[v] = nx;
+    NY[v] = ny;
+    NZ[v] = nz;
+  }
+
+  /**
+   * Strip the polygons of an isosurface and build its geometry.
+   */
+  private static VisADGeometryArray makeIsoSurfaceArray(
+      float[][] fieldVertices, byte[][] color_levels, float[] NX,
+      float[] NY, float[] NZ, int nvertex, int npolygons, int[] Pol_f_Vert,
+      int[] Vert_f_Pol, boolean indexed) throws VisADException {
+    boolean debug = false;
+
+    int i;
+    int size_stripe;
+    int ii;
 
     float[] normals = new float[3 * nvertex];
     int j = 0;
@@ -3260,8 +3605,8 @@ public class Gridded3DSet extends GriddedSet {
     int[][] arg_Pol_f_Vert = new int[][] { Pol_f_Vert };
 
     nvertex = isosurf(isolevel, ptFLAG, nvertex_estimate, npolygons, ptGRID,
-        xdim, ydim, zdim, VX, VY, VZ, color_values, color_temps,
-        arg_Pol_f_Vert, Vert_f_Pol);
+        xdim, ydim, 0, zdim - 1, getSamples(false), VX, VY, VZ, color_values,
+        color_temps, arg_Pol_f_Vert, Vert_f_Pol, null);
     Pol_f_Vert = arg_Pol_f_Vert[0];
 
     if (nvertex == 0)
@@ -3659,10 +4004,19 @@ public class Gridded3DSet extends GriddedSet {
     return npolygons;
   }
 
+  /**
+   * Compute the vertices and polygons of the isosurface in the cube
+   * layers <code>zlow</code> through <code>zhigh - 1</code>.  If
+   * <code>seam_edges</code> is not null, the vertex made on each X and Y
+   * edge of the bottom plane of the first layer, and of the top plane of
+   * the last layer, is returned in <code>seam_edges[0]</code> and
+   * <code>seam_edges[1]</code> (-1 for edges without a vertex).
+   */
   private int isosurf(float isovalue, int[] ptFLAG, int nvertex_estimate,
-      int npolygons, float[] ptGRID, int xdim, int ydim, int zdim,
-      float[][] VX, float[][] VY, float[][] VZ, byte[][] auxValues,
-      byte[][] auxLevels, int[][] Pol_f_Vert, int[] Vert_f_Pol)
+      int npolygons, float[] ptGRID, int xdim, int ydim, int zlow,
+      int zhigh, float[][] samples, float[][] VX, float[][] VY,
+      float[][] VZ, byte[][] auxValues, byte[][] auxLevels,
+      int[][] Pol_f_Vert, int[] Vert_f_Pol, int[][] seam_edges)
       throws VisADException {
 
     int ix, iy, iz, caseA, above, bellow, front, rear, mm, nn;
@@ -3688,8 +4042,6 @@ public class Gridded3DSet extends GriddedSet {
 
     int t;
 
-    float[][] samples = getSamples(false);
-
     int naux = (auxValues != null) ? auxValues.length : 0;
     if (naux > 0) {
       if (auxLevels == null || auxLevels.length != naux) {
@@ -3745,13 +4097,24 @@ public class Gridded3DSet extends GriddedSet {
     ii = 2 * (xx + yy + zz);
 
     int[] P_array = new int[ii];
+    if (seam_edges != null) {
+      java.util.Arrays.fill(P_array, -1);
+    }
 
     /*
      * Calculate the Vertex of the Polygons which edges were calculated above
      */
-    nvet = ncube = cpl = pvp = 0;
-
-    for (iz = 0; iz < zdim - 1; iz++) {
+    nvet = cpl = pvp = 0;
+    ncube = zlow * (xdim - 1) * (ydim - 1);
+    pt = zlow * xdim_x_ydim;
+
+    for (iz = zlow; iz < zhigh; iz++) {
+      if (seam_edges != null && iz == zhigh - 1) {
+        // forget the vertices of two layers down
+        java.util.Arrays.fill(P_array, above * xx, above * xx + xx, -1);
+        java.util.Arrays.fill(P_array, 2 * xx + above * yy,
+            2 * xx + above * yy + yy, -1);
+      }
 
       for (ix = 0; ix < xdim - 1; ix++) {
 
@@ -3838,7 +4201,7 @@ public class Gridded3DSet extends GriddedSet {
                                                                     * cube
                                                                     * vertex 0-1
                                                                     */
-                if ((iz != 0) || (iy != 0)) {
+                if ((iz != zlow) || (iy != 0)) {
                   calc_edge[1] = P_array[bellow * xx + ix * ydim + iy];
                 } else {
                   /*
@@ -3870,6 +4233,7 @@ public class Gridded3DSet extends GriddedSet {
                   }
 
                   calc_edge[1] = nvet;
+                  P_array[bellow * xx + ix * ydim + iy] = nvet;
                   nvet++;
                 }
               }
@@ -3877,7 +4241,7 @@ public class Gridded3DSet extends GriddedSet {
                                                                     * cube
                                                                     * vertex 0-2
                                                                     */
-                if ((iz != 0) || (ix != 0)) {
+                if ((iz != zlow) || (ix != 0)) {
                   calc_edge[2] = P_array[2 * xx + bellow * yy + iy * xdim + ix];
                 } else {
                   /*
@@ -3908,6 +4272,7 @@ public class Gridded3DSet extends GriddedSet {
                   }
 
                   calc_edge[2] = nvet;
+                  P_array[2 * xx + bellow * yy + iy * xdim + ix] = nvet;
                   nvet++;
                 }
               }
@@ -3954,7 +4319,7 @@ public class Gridded3DSet extends GriddedSet {
                                                                     * cube
                                                                     * vertex 1-3
                                                                     */
-                if ((iz != 0)) {
+                if ((iz != zlow)) {
                   calc_edge[4] = P_array[2 * xx + bellow * yy + iy * xdim
                       + (ix + 1)];
                 } else {
@@ -4040,7 +4405,7 @@ public class Gridded3DSet extends GriddedSet {
                                                                     * cube
                                                                     * vertex 2-3
                                                                     */
-                if ((iz != 0)) {
+                if ((iz != zlow)) {
                   calc_edge[6] = P_array[bellow * xx + ix * ydim + (iy + 1)];
                 } else {
                   /*
@@ -4361,7 +4726,7 @@ public class Gridded3DSet extends GriddedSet {
                  */
                 // test for not missing
                 {
-                  if (!(iz != 0) && vnode3 == vnode3 && vnode1 == vnode1) {
+                  if (!(iz != zlow) && vnode3 == vnode3 && vnode1 == vnode1) {
                     /*
                      * WLH 26 Oct 97 nodeDiff = vnode3 - vnode1; cp = ( (
                      * isovalue - vnode1 ) / nodeDiff ) + iy; VX[0][nvet] =
@@ -4457,7 +4822,7 @@ public class Gridded3DSet extends GriddedSet {
                  */
                 // test for not missing
                 {
-                  if (!(iz != 0) && vnode3 == vnode3 && vnode2 == vnode2) {
+                  if (!(iz != zlow) && vnode3 == vnode3 && vnode2 == vnode2) {
                     /*
                      * WLH 26 Oct 97 nodeDiff = vnode3 - vnode2; cp = ( (
                      * isovalue - vnode2 ) / nodeDiff ) + ix; VX[0][nvet] = cp;
@@ -4791,13 +5156,21 @@ public class Gridded3DSet extends GriddedSet {
         pt++;
         /* end swap_planes(Z,rear,front); */
       } /* end for ( ix = 0; ix < xdim - 1; ix++ ) */
+      if (seam_edges != null) {
+        if (iz == zlow) {
+          seam_edges[0] = plane_edges(P_array, bellow, xx, yy);
+        }
+        if (iz == zhigh - 1) {
+          seam_edges[1] = plane_edges(P_array, above, xx, yy);
+        }
+      }
       /* swap_planes(XY,bellow,above); */
       caseA = bellow;
       bellow = above;
       above = caseA;
       pt += ydim;
       /* end swap_planes(XY,bellow,above); */
-    } /* end for ( iz = 0; iz < zdim - 1; iz++ ) */
+    } /* end for ( iz = zlow; iz < zhigh; iz++ ) */
 
     // copy tempaux array into auxLevels array
     for (int i = 0; i < naux; i++) {
@@ -4808,15 +5181,40 @@ public class Gridded3DSet extends GriddedSet {
     return nvet;
   }
 
+  /**
+   * Return the vertices recorded in <code>P_array</code> for the X and Y
+   * edges of one plane of a cube layer.
+   */
+  private static int[] plane_edges(int[] P_array, int plane, int xx, int yy) {
+    int[] edges = new int[xx + yy];
+    System.arraycopy(P_array, plane * xx, edges, 0, xx);
+    System.arraycopy(P_array, 2 * xx + plane * yy, edges, xx, yy);
+    return edges;
+  }
+
   public static void make_normals(float[] VX, float[] VY, float[] VZ,
       float[] NX, float[] NY, float[] NZ, int nvertex, int npolygons,
       float[] Pnx, float[] Pny, float[] Pnz, float[] NxA, float[] NxB,
       float[] NyA, float[] NyB, float[] NzA, float[] NzB, int[] Pol_f_Vert,
       int[] Vert_f_Pol) throws VisADException {
+    sum_normals(VX, VY, VZ, NX, NY, NZ, nvertex, npolygons, Pnx, Pny, Pnz,
+        NxA, NxB, NyA, NyB, NzA, NzB, Pol_f_Vert, Vert_f_Pol);
+    normalize_normals(NX, NY, NZ, nvertex);
+  }
+
+  /**
+   * Sum the normals of the polygons around each vertex, without
+   * normalizing them.
+   */
+  private static void sum_normals(float[] VX, float[] VY, float[] VZ,
+      float[] NX, float[] NY, float[] NZ, int nvertex, int npolygons,
+      float[] Pnx, float[] Pny, float[] Pnz, float[] NxA, float[] NxB,
+      float[] NyA, float[] NyB, float[] NzA, float[] NzB, int[] Pol_f_Vert,
+      int[] Vert_f_Pol) throws VisADException {
 
     int i, k, n;
     int max_vert_per_pol, swap_flag;
-    float x, y, z, minimum_area, len;
+    float x, y, z, minimum_area;
 
     int iv[] = new int[3];
 
@@ -4926,6 +5324,12 @@ public class Gridded3DSet extends GriddedSet {
 
       swap_flag = ((swap_flag != 0) ? 0 : 1);
     }
+  }
+
+  private static void normalize_normals(float[] NX, float[] NY, float[] NZ,
+      int nvertex) {
+    int i;
+    float len;
 
     /* Normalize the Normals */
     for (i = 0; i < nvertex; i++) /* Vectorized */
@@ -52,6 +52,17 @@ public class GriddedSet extends SampledSet implements GriddedSetIface {
   // (i.e., the sign of the cross-products of the grid edges)
   boolean Pos;
 
+  /** minimum number of points in a valueToGrid call for which the
+      spatial index of the grid boxes is built */
+  private static int indexThreshold =
+    Integer.parseInt(System.getProperty("visad.griddedset.indexthreshold",
+                                        "1000"));
+
+  /** spatial index of the grid boxes, built on demand by
+      getSpatialIndex */
+  private transient GriddedSetIndex spatialIndex;
+  private transient boolean spatialIndexBuilt;
+
   /** construct a GriddedSet with samples */
   public GriddedSet(MathType type, float[][] samples, int[] lengths)
          throws VisADException {
@@ -79,6 +90,33 @@ public class GriddedSet extends SampledSet implements GriddedSetIface {
     }
   }
 
+  protected void setMySamples(float[][] samples) {
+    super.setMySamples(samples);
+    synchronized (this) {
+      spatialIndex = null;
+      spatialIndexBuilt = false;
+    }
+  }
+
+  /**
+   * Return the spatial index valueToGrid uses to find a starting grid
+   * box for each point, building it the first time a call transforms
+   * at least visad.griddedset.indexthreshold points.  Returns null if
+   * there is no index, in which case valueToGrid searches as before.
+   * @param numPoints  number of points being transformed
+   */
+  synchronized GriddedSetIndex getSpatialIndex(int numPoints) {
+    if (!spatialIndexBuilt && numPoints >= indexThreshold &&
+        ManifoldDimension == DomainDimension && Length > 1) {
+      float[][] samples = getMySamples();
+      if (samples != null) {
+        spatialIndex = GriddedSetIndex.create(samples, Lengths);
+      }
+      spatialIndexBuilt = true;
+    }
+    return spatialIndex;
+  }
+
   private void init_lengths(int[] lengths) throws VisADException {
     Lengths = new int[ManifoldDimension];
     Length = 1;
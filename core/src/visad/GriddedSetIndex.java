@@ -0,0 +1,253 @@
+//
+// GriddedSetIndex.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad;
+
+/**
+   GriddedSetIndex is a bucketed spatial index over the grid boxes of a
+   2-D or 3-D GriddedSet whose ManifoldDimension equals its
+   DomainDimension.  It is used by valueToGrid to pick a starting box
+   close to each point, and to reject points outside the grid without
+   walking to the grid edge.<P>
+
+   The bounding box of every grid box is scattered into a uniform
+   array of buckets covering the set's bounding box, each bucket
+   remembering one grid box that overlaps it.  The boxes on the grid
+   boundary are widened, since valueToGrid accepts points up to half a
+   box outside the grid.  A point whose bucket no grid box overlaps
+   cannot be in the grid.<P>
+*/
+final class GriddedSetIndex {
+
+  /** give up if the boxes overlap more than this many buckets each */
+  private static final int MAX_MARKS_PER_BOX = 16;
+
+  private final int dim;
+  private final int[] lengths;
+
+  /** lower bounds and bucket scales, per dimension */
+  private final float[] low;
+  private final float[] scale;
+
+  /** number of buckets per dimension */
+  private final int[] nb;
+
+  /** sample index of the first corner of a grid box overlapping each
+      bucket, or -1 if no grid box overlaps it */
+  private final int[] buckets;
+
+  /**
+   * Build the index, or return null if the grid boxes are so large
+   * (compared to the buckets) that the index would not pay off.
+   */
+  static GriddedSetIndex create(float[][] samples, int[] lengths) {
+    GriddedSetIndex index = new GriddedSetIndex(samples, lengths);
+    return index.fill(samples) ? index : null;
+  }
+
+  private GriddedSetIndex(float[][] samples, int[] lengths) {
+    dim = lengths.length;
+    this.lengths = lengths;
+    low = new float[dim];
+    scale = new float[dim];
+    nb = new int[dim];
+
+    // bounds of the (widened) grid boxes
+    float[] lo = new float[dim];
+    float[] hi = new float[dim];
+    float[] blo = new float[dim];
+    float[] bhi = new float[dim];
+    for (int d=0; d<dim; d++) {
+      lo[d] = Float.POSITIVE_INFINITY;
+      hi[d] = Float.NEGATIVE_INFINITY;
+    }
+    int[] g = new int[dim];
+    int[] corners = getCorners();
+    int nboxes = getBoxCount();
+    for (int b=0; b<nboxes; b++) {
+      int base = boxToSample(b, g);
+      if (!getBounds(samples, base, corners, isBoundary(g), blo, bhi)) continue;
+      for (int d=0; d<dim; d++) {
+        if (blo[d] < lo[d]) lo[d] = blo[d];
+        if (bhi[d] > hi[d]) hi[d] = bhi[d];
+      }
+    }
+
+    // about one bucket per 2^dim grid boxes
+    int total = 1;
+    for (int d=0; d<dim; d++) {
+      nb[d] = Math.max(1, (lengths[d] - 1) / 2);
+      total *= nb[d];
+      low[d] = lo[d];
+      float extent = hi[d] - lo[d];
+      scale[d] = (extent > 0) ? nb[d] / extent : 0;
+    }
+    buckets = new int[(lo[0] <= hi[0]) ? total : 0];
+    java.util.Arrays.fill(buckets, -1);
+  }
+
+  /** scatter the grid boxes into the buckets */
+  private boolean fill(float[][] samples) {
+    if (buckets.length == 0) return true; // every sample is missing
+    for (int d=0; d<dim; d++) {
+      if (scale[d] == 0) return false; // degenerate grid
+    }
+    int[] g = new int[dim];
+    int[] corners = getCorners();
+    float[] blo = new float[dim];
+    float[] bhi = new float[dim];
+    int nboxes = getBoxCount();
+    long budget = (long) MAX_MARKS_PER_BOX * nboxes + buckets.length;
+
+    // interior boxes first, so buckets inside the grid get a box that
+    // really overlaps them
+    for (int pass=0; pass<2; pass++) {
+      for (int b=0; b<nboxes; b++) {
+        int base = boxToSample(b, g);
+        boolean widen = (pass == 1);
+        if (widen && !isBoundary(g)) continue;
+        if (!getBounds(samples, base, corners, widen, blo, bhi)) continue;
+        budget -= mark(base, blo, bhi);
+        if (budget < 0) return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Return the sample index of the first corner of a grid box near
+   * (x, y[, z]), or -1 if the point is certainly not in the grid.
+   */
+  int getStartBox(float[] value) {
+    if (buckets.length == 0) return -1;
+    int bucket = 0;
+    for (int d=dim-1; d>=0; d--) {
+      float v = (value[d] - low[d]) * scale[d];
+      // also rejects NaN
+      if (!(v >= 0 && v <= nb[d])) return -1;
+      int b = (int) v;
+      if (b == nb[d]) b--;
+      bucket = bucket * nb[d] + b;
+    }
+    return buckets[bucket];
+  }
+
+  private int mark(int base, float[] blo, float[] bhi) {
+    int[] b0 = new int[dim];
+    int[] b1 = new int[dim];
+    for (int d=0; d<dim; d++) {
+      b0[d] = clamp((int) ((blo[d] - low[d]) * scale[d]), nb[d]);
+      b1[d] = clamp((int) ((bhi[d] - low[d]) * scale[d]), nb[d]);
+    }
+    int count = 0;
+    int z0 = (dim == 3) ? b0[2] : 0;
+    int z1 = (dim == 3) ? b1[2] : 0;
+    for (int bz=z0; bz<=z1; bz++) {
+      for (int by=b0[1]; by<=b1[1]; by++) {
+        int row = (bz * nb[1] + by) * nb[0];
+        for (int bx=b0[0]; bx<=b1[0]; bx++) {
+          if (buckets[row + bx] < 0) buckets[row + bx] = base;
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  private static int clamp(int b, int n) {
+    return (b < 0) ? 0 : ((b >= n) ? n - 1 : b);
+  }
+
+  /**
+   * Bounds of the grid box whose first corner is sample base; boxes
+   * on the grid boundary are widened on every side.
+   * Return false if any corner is missing.
+   */
+  private boolean getBounds(float[][] samples, int base, int[] corners,
+                            boolean widen, float[] blo, float[] bhi) {
+    for (int d=0; d<dim; d++) {
+      float[] s = samples[d];
+      float mn = Float.POSITIVE_INFINITY;
+      float mx = Float.NEGATIVE_INFINITY;
+      for (int c=0; c<corners.length; c++) {
+        float v = s[base + corners[c]];
+        if (v != v) return false;
+        if (v < mn) mn = v;
+        if (v > mx) mx = v;
+      }
+      if (widen) {
+        // half a box along each of the dim box edges
+        float w = 0.5f * dim * (mx - mn);
+        mn -= w;
+        mx += w;
+      }
+      blo[d] = mn;
+      bhi[d] = mx;
+    }
+    return true;
+  }
+
+  /** sample index offsets of the corners of a grid box */
+  private int[] getCorners() {
+    int[] corners = new int[1 << dim];
+    for (int c=0; c<corners.length; c++) {
+      int offset = 0;
+      int stride = 1;
+      for (int d=0; d<dim; d++) {
+        if ((c & (1 << d)) != 0) offset += stride;
+        stride *= lengths[d];
+      }
+      corners[c] = offset;
+    }
+    return corners;
+  }
+
+  private int getBoxCount() {
+    int n = 1;
+    for (int d=0; d<dim; d++) n *= lengths[d] - 1;
+    return n;
+  }
+
+  /** convert a box number to grid indices g and return its first sample */
+  private int boxToSample(int box, int[] g) {
+    int base = 0;
+    int stride = 1;
+    for (int d=0; d<dim; d++) {
+      g[d] = box % (lengths[d] - 1);
+      box /= lengths[d] - 1;
+      base += g[d] * stride;
+      stride *= lengths[d];
+    }
+    return base;
+  }
+
+  private boolean isBoundary(int[] g) {
+    for (int d=0; d<dim; d++) {
+      if (g[d] == 0 || g[d] == lengths[d] - 2) return true;
+    }
+    return false;
+  }
+}
@@ -409,6 +409,34 @@ public class ImageFlatField extends FlatField {
     return samps;
   }
 
+  protected float[] unpackRangeFloats(int comp, int start, int length)
+    throws VisADException
+  {
+    pr ("unpackRangeFloats(" + comp + ", " + start + ", " + length + ")");
+    float[] samps = new float[length];
+    if (length == 0) return samps;
+    // read the rows spanning the interval
+    int y0 = start / width, rows = (start + length - 1) / width - y0 + 1;
+    float[] block = new float[rows * width];
+    image.getRaster().getSamples(0, y0, width, rows, comp, block);
+    System.arraycopy(block, start - y0 * width, samps, 0, length);
+    return samps;
+  }
+
+  protected double[] unpackRangeValues(int comp, int start, int length)
+    throws VisADException
+  {
+    pr ("unpackRangeValues(" + comp + ", " + start + ", " + length + ")");
+    double[] samps = new double[length];
+    if (length == 0) return samps;
+    // read the rows spanning the interval
+    int y0 = start / width, rows = (start + length - 1) / width - y0 + 1;
+    double[] block = new double[rows * width];
+    image.getRaster().getSamples(0, y0, width, rows, comp, block);
+    System.arraycopy(block, start - y0 * width, samps, 0, length);
+    return samps;
+  }
+
   public Data getSample(int index) throws VisADException, RemoteException {
     double[] v = unpackValues(index);
     RealTupleType range = (RealTupleType) ((FunctionType) getType()).getRange();
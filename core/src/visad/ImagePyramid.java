@@ -0,0 +1,358 @@
+//
+// ImagePyramid.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad;
+
+import java.rmi.RemoteException;
+import java.util.Vector;
+
+/**
+   ImagePyramid is a level-of-detail pyramid for a large image
+   FlatField, i.e. one whose domain is a 2-D Linear2DSet or a
+   Gridded2DSet with a 2-D manifold.<P>
+
+   Level 0 is the image itself, and level L keeps every 2^L-th sample
+   along both domain dimensions, on a Linear2DSet (or Gridded2DSet) of
+   the same MathType, CoordinateSystem and Units.  Levels are made on
+   first use, each from the level before it, and are dropped when the
+   image changes.<P>
+
+   {@link #selectLevel(DisplayImpl)} picks the coarsest level that still
+   has at least one sample per screen pixel covered by the image, so an
+   image renderer need only transform as many samples as can be seen.
+   Levels are not made smaller than <code>visad.pyramid.min</code>
+   samples (default 256) along either dimension, and pyramids may be
+   turned off with <code>-Dvisad.pyramid=false</code>.<P>
+*/
+public class ImagePyramid {
+
+  /** System property turning pyramids on or off */
+  public static final String ENABLE_PROPERTY = "visad.pyramid";
+
+  /** System property giving the smallest level length */
+  public static final String MIN_PROPERTY = "visad.pyramid.min";
+
+  private static final boolean enabled =
+    !"false".equalsIgnoreCase(System.getProperty(ENABLE_PROPERTY));
+
+  private static final int minLength =
+    Math.max(Integer.getInteger(MIN_PROPERTY, 256).intValue(), 2);
+
+  private final FlatField image;
+  private final GriddedSet domain;
+  private final int[] lengths;
+  private final int levelCount;
+
+  /** levels made so far; levels[0] is image */
+  private final FlatField[] levels;
+
+  /** change count of image when levels were made */
+  private long changeCount;
+
+  /**
+   * Construct an ImagePyramid for image.
+   * @param image FlatField with a 2-D Linear2DSet or Gridded2DSet domain
+   *              and a Real range
+   * @throws SetException if image is not a 2-D gridded image
+   */
+  public ImagePyramid(FlatField image)
+         throws VisADException {
+    if (!isImage(image)) {
+      throw new SetException("ImagePyramid: not a 2-D gridded image");
+    }
+    this.image = image;
+    domain = (GriddedSet) image.getDomainSet();
+    lengths = domain.getLengths();
+    levelCount = getLevelCount(lengths);
+    levels = new FlatField[levelCount];
+    levels[0] = image;
+    changeCount = image.getChangeCount();
+  }
+
+  /**
+   * Return an ImagePyramid for data, or null if pyramids are turned
+   * off or data is not an image large enough to need one.
+   * @param data Data to be displayed as an image
+   */
+  public static ImagePyramid getPyramid(Data data)
+         throws VisADException {
+    if (!enabled || !isImage(data)) return null;
+    int[] lengths = ((GriddedSet) ((FlatField) data).getDomainSet()).getLengths();
+    if (getLevelCount(lengths) < 2) return null;
+    return new ImagePyramid((FlatField) data);
+  }
+
+  /**
+   * @return true if data is a FlatField with a Real range over a
+   *         2-D Linear2DSet or Gridded2DSet with a 2-D manifold
+   */
+  public static boolean isImage(Data data) {
+    if (!(data instanceof FlatField)) return false;
+    FlatField field = (FlatField) data;
+    if (!((FunctionType) field.getType()).getReal()) return false;
+    Set set = field.getDomainSet();
+    return (set instanceof Gridded2DSet) && set.getDimension() == 2 &&
+           set.getManifoldDimension() == 2;
+  }
+
+  /**
+   * @return the image at level 0
+   */
+  public FlatField getImage() {
+    return image;
+  }
+
+  /**
+   * @return number of levels, including level 0
+   */
+  public int getLevelCount() {
+    return levelCount;
+  }
+
+  /**
+   * @param level index of a level
+   * @return domain lengths of level
+   */
+  public int[] getLengths(int level) {
+    return new int[] {levelLength(lengths[0], level),
+                      levelLength(lengths[1], level)};
+  }
+
+  /**
+   * Return a level of this pyramid, making it (and the levels before
+   * it) if needed.
+   * @param level index of the level; 0 is the image itself
+   * @return image subsampled by 2^level along both dimensions
+   */
+  public synchronized FlatField getLevel(int level)
+         throws VisADException, RemoteException {
+    if (level < 0 || level >= levelCount) {
+      throw new VisADException("ImagePyramid.getLevel: bad level " + level);
+    }
+    if (image.getChangeCount() != changeCount) {
+      for (int i=1; i<levelCount; i++) levels[i] = null;
+      changeCount = image.getChangeCount();
+    }
+    for (int i=1; i<=level; i++) {
+      if (levels[i] == null) levels[i] = decimate(levels[i-1], i);
+    }
+    return levels[level];
+  }
+
+  /**
+   * Select the coarsest level with at least one sample per pixel of
+   * the image as currently projected in display.
+   * @param display DisplayImpl showing the image
+   * @return index of the level
+   */
+  public int selectLevel(DisplayImpl display)
+         throws VisADException {
+    int[] pixels = getPixels(display);
+    if (pixels == null) return 0;
+    return selectLevel(lengths, pixels, levelCount);
+  }
+
+  /**
+   * Select the coarsest level with at least the given number of samples
+   * along each domain dimension.
+   * @param lengths domain lengths of level 0
+   * @param pixels number of pixels covered along each domain dimension
+   * @param levelCount number of levels
+   * @return index of the level
+   */
+  public static int selectLevel(int[] lengths, int[] pixels, int levelCount) {
+    int level = 0;
+    while (level + 1 < levelCount &&
+           levelLength(lengths[0], level + 1) >= pixels[0] &&
+           levelLength(lengths[1], level + 1) >= pixels[1]) {
+      level++;
+    }
+    return level;
+  }
+
+  /**
+   * Return the number of screen pixels covered by the image along each
+   * of its domain dimensions, or null if they cannot be found (e.g.
+   * before the display is shown).
+   * @param display DisplayImpl showing the image
+   */
+  public int[] getPixels(DisplayImpl display)
+         throws VisADException {
+    MouseBehavior behavior = display.getDisplayRenderer().getMouseBehavior();
+    if (behavior == null) return null;
+    double[][] corners = getCorners(display);
+    int[][] screen = new int[3][];
+    for (int i=0; i<3; i++) {
+      screen[i] = behavior.getScreenCoords(corners[i]);
+      if (screen[i] == null) return null;
+    }
+    int[] pixels = new int[2];
+    for (int i=0; i<2; i++) {
+      double dx = screen[i+1][0] - screen[0][0];
+      double dy = screen[i+1][1] - screen[0][1];
+      pixels[i] = (int) Math.ceil(Math.sqrt(dx * dx + dy * dy));
+    }
+    return pixels;
+  }
+
+  /** display coordinates of the (low, low), (high, low) and (low, high)
+      corners of the image domain; if a domain component is not mapped
+      directly to a spatial axis, the corners of the display box */
+  private double[][] getCorners(DisplayImpl display)
+          throws VisADException {
+    RealType[] reals = ((SetType) domain.getType()).getDomain().getRealComponents();
+    float[] low = domain.getLow();
+    float[] hi = domain.getHi();
+    ScalarMap[] maps = new ScalarMap[2];
+    Vector mapVector = display.getMapVector();
+    for (int j=0; j<mapVector.size(); j++) {
+      ScalarMap map = (ScalarMap) mapVector.elementAt(j);
+      DisplayRealType real = map.getDisplayScalar();
+      int axis = getAxis(real);
+      if (axis < 0) continue;
+      for (int i=0; i<2; i++) {
+        if (maps[i] == null && reals[i].equals(map.getScalar())) maps[i] = map;
+      }
+    }
+
+    double[][] corners = new double[3][3];
+    if (maps[0] == null || maps[1] == null) {
+      corners[0][0] = -1.0;
+      corners[0][1] = -1.0;
+      corners[1][0] = 1.0;
+      corners[1][1] = -1.0;
+      corners[2][0] = -1.0;
+      corners[2][1] = 1.0;
+      return corners;
+    }
+    for (int k=0; k<3; k++) {
+      for (int i=0; i<2; i++) {
+        float value = (k == i + 1) ? hi[i] : low[i];
+        float[] scaled = maps[i].scaleValues(new float[] {value});
+        corners[k][getAxis(maps[i].getDisplayScalar())] = scaled[0];
+      }
+    }
+    return corners;
+  }
+
+  /** 0, 1 or 2 for XAxis, YAxis or ZAxis, otherwise -1 */
+  private static int getAxis(DisplayRealType real) {
+    if (Display.XAxis.equals(real)) return 0;
+    if (Display.YAxis.equals(real)) return 1;
+    if (Display.ZAxis.equals(real)) return 2;
+    return -1;
+  }
+
+  /** number of levels with both lengths at least minLength */
+  private static int getLevelCount(int[] lengths) {
+    int count = 1;
+    while (levelLength(lengths[0], count) >= minLength &&
+           levelLength(lengths[1], count) >= minLength &&
+           levelLength(lengths[0], count) < lengths[0]) {
+      count++;
+    }
+    return count;
+  }
+
+  /** length at level of a dimension with length samples at level 0 */
+  private static int levelLength(int length, int level) {
+    return ((length - 1) >> level) + 1;
+  }
+
+  /** subsample every 2nd sample of field, the level-1-th level */
+  private FlatField decimate(FlatField field, int level)
+          throws VisADException, RemoteException {
+    GriddedSet set = (GriddedSet) field.getDomainSet();
+    int nx = set.getLength(0);
+    int ny = set.getLength(1);
+    int mx = levelLength(lengths[0], level);
+    int my = levelLength(lengths[1], level);
+
+    float[][] values = field.getFloats(false);
+    float[][] sub = new float[values.length][];
+    for (int k=0; k<values.length; k++) {
+      sub[k] = subsample(values[k], nx, mx, my);
+    }
+
+    FlatField result =
+      new FlatField((FunctionType) field.getType(), decimate(set, mx, my),
+                    field.getRangeCoordinateSystem()[0],
+                    field.getRangeSets(), getUnits(field));
+    result.setSamples(sub, false);
+    return result;
+  }
+
+  /** subsample the domain of the level before one with mx by my samples */
+  private static GriddedSet decimate(GriddedSet set, int mx, int my)
+          throws VisADException {
+    RealTupleType type = ((SetType) set.getType()).getDomain();
+    if (set instanceof Linear2DSet) {
+      Linear2DSet linear = (Linear2DSet) set;
+      Linear1DSet x = linear.getX();
+      Linear1DSet y = linear.getY();
+      double stepx = 2.0 * x.getStep();
+      double stepy = 2.0 * y.getStep();
+      return new Linear2DSet(type,
+                             x.getFirst(), x.getFirst() + stepx * (mx - 1), mx,
+                             y.getFirst(), y.getFirst() + stepy * (my - 1), my,
+                             set.getCoordinateSystem(), set.getSetUnits(),
+                             null);
+    }
+    float[][] samples = set.getSamples(false);
+    float[][] sub = new float[samples.length][];
+    for (int k=0; k<samples.length; k++) {
+      sub[k] = subsample(samples[k], set.getLength(0), mx, my);
+    }
+    return new Gridded2DSet(type, sub, mx, my,
+                            set.getCoordinateSystem(), set.getSetUnits(),
+                            null, false);
+  }
+
+  /** every 2nd sample of an nx wide grid, as an mx by my grid */
+  private static float[] subsample(float[] values, int nx, int mx, int my) {
+    float[] sub = new float[mx * my];
+    int m = 0;
+    for (int j=0; j<my; j++) {
+      int base = 2 * j * nx;
+      for (int i=0; i<mx; i++) {
+        sub[m++] = values[base + 2 * i];
+      }
+    }
+    return sub;
+  }
+
+  private static Unit[] getUnits(FlatField field) {
+    Unit[][] units = field.getRangeUnits();
+    Unit[] flat = new Unit[units.length];
+    for (int i=0; i<units.length; i++) flat[i] = units[i][0];
+    return flat;
+  }
+
+  public String toString() {
+    return "ImagePyramid: " + lengths[0] + " by " + lengths[1] + ", " +
+           levelCount + " levels";
+  }
+}
@@ -0,0 +1,179 @@
+//
+// ImagePyramidLevels.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad;
+
+import java.rmi.RemoteException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+   ImagePyramidLevels keeps the {@link ImagePyramid}s of the images
+   shown by an image renderer, and the level of detail they are
+   transformed at.<P>
+
+   A transform calls {@link #begin(Data, DisplayImpl)} to select the
+   level from the footprint of the first image of the data under the
+   current projection, {@link #getLevel(FlatField)} for each image it
+   transforms, and {@link #end()} when it is done; pyramids of images
+   not transformed are then dropped.  Between transforms,
+   {@link #isLevelPending(DisplayImpl)} tells whether the projection
+   now calls for another level.<P>
+
+   It holds no graphics state, so it works the same for any
+   DisplayImpl, including one with no screen.<P>
+*/
+public class ImagePyramidLevels {
+
+  // pyramids of the images of the last transform
+  private Map pyramids = new IdentityHashMap();
+  private Map next_pyramids = new IdentityHashMap();
+
+  // pyramid of the first image, used to select the level
+  private ImagePyramid level_pyramid = null;
+  private int last_level = 0;
+  private boolean level_changed = false;
+
+  // number of image samples handed out in the last transform
+  private int transformed_samples = 0;
+
+  /**
+   * Forget all pyramids and return to full resolution.
+   */
+  public synchronized void clear() {
+    pyramids = new IdentityHashMap();
+    next_pyramids = new IdentityHashMap();
+    level_pyramid = null;
+    last_level = 0;
+  }
+
+  /**
+   * @param display DisplayImpl showing the images
+   * @return true if the current projection of display calls for a
+   *         level other than that of the last transform
+   */
+  public synchronized boolean isLevelPending(DisplayImpl display)
+         throws VisADException {
+    if (level_pyramid == null || display == null) return false;
+    return level_pyramid.selectLevel(display) != last_level;
+  }
+
+  /**
+   * Start a transform of data, selecting the level of detail from the
+   * footprint of its first image in display.
+   * @param data an image FlatField, or a FieldImpl of them
+   * @param display DisplayImpl showing data
+   */
+  public synchronized void begin(Data data, DisplayImpl display)
+         throws VisADException, RemoteException {
+    next_pyramids = new IdentityHashMap();
+    Data image = data;
+    if (image instanceof FieldImpl && !(image instanceof FlatField)) {
+      image = ((FieldImpl) image).getSample(0);
+    }
+    level_pyramid = (image instanceof FlatField) ?
+                    getPyramid((FlatField) image) : null;
+    int level = (level_pyramid == null || display == null) ?
+                0 : level_pyramid.selectLevel(display);
+    level_changed = (level != last_level);
+    last_level = level;
+    transformed_samples = 0;
+  }
+
+  /**
+   * End a transform, keeping only the pyramids of the images it
+   * transformed.
+   */
+  public synchronized void end() {
+    pyramids = next_pyramids;
+    next_pyramids = new IdentityHashMap();
+  }
+
+  /**
+   * @param image an image of the data being transformed
+   * @return the level of image to transform
+   */
+  public FlatField getLevel(FlatField image)
+         throws VisADException, RemoteException {
+    ImagePyramid pyramid;
+    int level;
+    synchronized (this) {
+      level = last_level;
+      pyramid = (level == 0) ? null : getPyramid(image);
+    }
+    if (pyramid != null) {
+      image = pyramid.getLevel(Math.min(level, pyramid.getLevelCount() - 1));
+    }
+    synchronized (this) {
+      transformed_samples += image.getLength();
+    }
+    return image;
+  }
+
+  /**
+   * @return true if the level of detail of the current transform
+   *         differs from that of the one before it
+   */
+  public synchronized boolean getLevelChanged() {
+    return level_changed;
+  }
+
+  /**
+   * @return level of detail of the last transform; 0 for full
+   *         resolution, L for every 2^L-th sample
+   */
+  public synchronized int getLastLevel() {
+    return last_level;
+  }
+
+  /**
+   * @return pyramid of the first image of the last transform, or null
+   *         if it is not a large gridded image
+   */
+  public synchronized ImagePyramid getLastPyramid() {
+    return level_pyramid;
+  }
+
+  /**
+   * @return number of image samples handed out by
+   *         {@link #getLevel(FlatField)} in the last transform
+   */
+  public synchronized int getTransformedSamples() {
+    return transformed_samples;
+  }
+
+  private ImagePyramid getPyramid(FlatField image)
+          throws VisADException {
+    ImagePyramid pyramid = (ImagePyramid) next_pyramids.get(image);
+    if (pyramid == null) {
+      pyramid = (ImagePyramid) pyramids.get(image);
+      if (pyramid == null) pyramid = ImagePyramid.getPyramid(image);
+      if (pyramid != null) next_pyramids.put(image, pyramid);
+    }
+    return pyramid;
+  }
+
+}
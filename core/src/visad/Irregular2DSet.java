@@ -44,7 +44,9 @@ package visad;
  * to scale your coordinates up so integer rounding does not merge values.
  * Another is to ensure that you use Watson's algorithm by using <code>new
  * DelaunayWatson(samples)</code> as the {@link Delaunay} argument of the {@link
- * Irregular2DSet} constructor.</p>
+ * Irregular2DSet} constructor.  For a very large set, <code>new
+ * DelaunayParallel(samples)</code> finds the same triangulation as Clarkson's
+ * algorithm using several threads.</p>
  */
 public class Irregular2DSet extends IrregularSet {
 
@@ -0,0 +1,293 @@
+//
+// RangeChunk.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+   RangeChunk is the immutable VisAD class for the values of some range
+   components of a FlatField over an interval of samples, packed into
+   bytes for transfer by {@link RemoteFlatField#getRangeChunk}.<P>
+
+   Values are floats or doubles in the default Units of the range.  A
+   compressed chunk regroups the bytes of its values by significance,
+   all the first bytes before all the second bytes and so on, and
+   deflates the result; neighbouring samples mostly share their sign
+   and exponent bytes, which then compress well.<P>
+*/
+public class RangeChunk implements java.io.Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /** range component indices of the values */
+  private final int[] components;
+
+  /** index of the first sample, and number of samples */
+  private final int start;
+  private final int length;
+
+  /** true for doubles, false for floats */
+  private final boolean doubles;
+
+  /** true if bytes are deflated */
+  private final boolean compressed;
+
+  /** the packed values */
+  private final byte[] bytes;
+
+  /**
+   * Pack float values.
+   *
+   * @param values      values[i][j] is the value of component
+   *                    components[i] at sample start + j
+   * @param components  range component indices
+   * @param start       index of the first sample
+   * @param compress    true to deflate the values
+   */
+  public RangeChunk(float[][] values, int[] components, int start,
+                    boolean compress) {
+    this.components = components.clone();
+    this.start = start;
+    length = (values.length == 0) ? 0 : values[0].length;
+    doubles = false;
+    compressed = compress;
+    int n = values.length * length;
+    byte[] raw = new byte[4 * n];
+    if (compress) {
+      int k = 0;
+      for (int i=0; i<values.length; i++) {
+        float[] v = values[i];
+        for (int j=0; j<length; j++, k++) {
+          int bits = Float.floatToRawIntBits(v[j]);
+          raw[k] = (byte) (bits >>> 24);
+          raw[n + k] = (byte) (bits >>> 16);
+          raw[2 * n + k] = (byte) (bits >>> 8);
+          raw[3 * n + k] = (byte) bits;
+        }
+      }
+      bytes = deflate(raw);
+    }
+    else {
+      ByteBuffer buffer = ByteBuffer.wrap(raw);
+      for (int i=0; i<values.length; i++) {
+        buffer.asFloatBuffer().put(values[i]);
+        buffer.position(buffer.position() + 4 * length);
+      }
+      bytes = raw;
+    }
+  }
+
+  /**
+   * Pack double values.
+   *
+   * @param values      values[i][j] is the value of component
+   *                    components[i] at sample start + j
+   * @param components  range component indices
+   * @param start       index of the first sample
+   * @param compress    true to deflate the values
+   */
+  public RangeChunk(double[][] values, int[] components, int start,
+                    boolean compress) {
+    this.components = components.clone();
+    this.start = start;
+    length = (values.length == 0) ? 0 : values[0].length;
+    doubles = true;
+    compressed = compress;
+    int n = values.length * length;
+    byte[] raw = new byte[8 * n];
+    if (compress) {
+      int k = 0;
+      for (int i=0; i<values.length; i++) {
+        double[] v = values[i];
+        for (int j=0; j<length; j++, k++) {
+          long bits = Double.doubleToRawLongBits(v[j]);
+          for (int b=0; b<8; b++) {
+            raw[b * n + k] = (byte) (bits >>> (56 - 8 * b));
+          }
+        }
+      }
+      bytes = deflate(raw);
+    }
+    else {
+      ByteBuffer buffer = ByteBuffer.wrap(raw);
+      for (int i=0; i<values.length; i++) {
+        buffer.asDoubleBuffer().put(values[i]);
+        buffer.position(buffer.position() + 8 * length);
+      }
+      bytes = raw;
+    }
+  }
+
+  /** return the range component indices of the values */
+  public int[] getComponents() {
+    return components.clone();
+  }
+
+  /** return the index of the first sample */
+  public int getStart() {
+    return start;
+  }
+
+  /** return the number of samples */
+  public int getLength() {
+    return length;
+  }
+
+  /** return true if the values were packed as doubles */
+  public boolean isDouble() {
+    return doubles;
+  }
+
+  /** return true if the values are deflated */
+  public boolean isCompressed() {
+    return compressed;
+  }
+
+  /** return the number of packed bytes, which is what a transfer of
+      this chunk costs */
+  public int getByteCount() {
+    return bytes.length;
+  }
+
+  /**
+   * Unpack the values as floats.
+   *
+   * @return  values[i][j] is the value of component getComponents()[i]
+   *          at sample getStart() + j
+   * @throws VisADException  the packed bytes are corrupt
+   */
+  public float[][] getFloats() throws VisADException {
+    if (doubles) return Set.doubleToFloat(getValues());
+    int n = components.length * length;
+    float[][] values = new float[components.length][length];
+    if (compressed) {
+      byte[] raw = inflate(4 * n);
+      int k = 0;
+      for (int i=0; i<values.length; i++) {
+        float[] v = values[i];
+        for (int j=0; j<length; j++, k++) {
+          v[j] = Float.intBitsToFloat(
+            ((raw[k] & 0xff) << 24) | ((raw[n + k] & 0xff) << 16) |
+            ((raw[2 * n + k] & 0xff) << 8) | (raw[3 * n + k] & 0xff));
+        }
+      }
+    }
+    else {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      for (int i=0; i<values.length; i++) {
+        buffer.asFloatBuffer().get(values[i]);
+        buffer.position(buffer.position() + 4 * length);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Unpack the values as doubles.
+   *
+   * @return  values[i][j] is the value of component getComponents()[i]
+   *          at sample getStart() + j
+   * @throws VisADException  the packed bytes are corrupt
+   */
+  public double[][] getValues() throws VisADException {
+    if (!doubles) return Set.floatToDouble(getFloats());
+    int n = components.length * length;
+    double[][] values = new double[components.length][length];
+    if (compressed) {
+      byte[] raw = inflate(8 * n);
+      int k = 0;
+      for (int i=0; i<values.length; i++) {
+        double[] v = values[i];
+        for (int j=0; j<length; j++, k++) {
+          long bits = 0;
+          for (int b=0; b<8; b++) {
+            bits = (bits << 8) | (raw[b * n + k] & 0xff);
+          }
+          v[j] = Double.longBitsToDouble(bits);
+        }
+      }
+    }
+    else {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      for (int i=0; i<values.length; i++) {
+        buffer.asDoubleBuffer().get(values[i]);
+        buffer.position(buffer.position() + 8 * length);
+      }
+    }
+    return values;
+  }
+
+  private static byte[] deflate(byte[] raw) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    deflater.setInput(raw);
+    deflater.finish();
+    byte[] out = new byte[raw.length / 2 + 64];
+    int n = 0;
+    while (!deflater.finished()) {
+      if (n == out.length) {
+        byte[] bigger = new byte[2 * out.length];
+        System.arraycopy(out, 0, bigger, 0, n);
+        out = bigger;
+      }
+      n += deflater.deflate(out, n, out.length - n);
+    }
+    deflater.end();
+    byte[] packed = new byte[n];
+    System.arraycopy(out, 0, packed, 0, n);
+    return packed;
+  }
+
+  private byte[] inflate(int size) throws VisADException {
+    Inflater inflater = new Inflater();
+    inflater.setInput(bytes);
+    byte[] raw = new byte[size];
+    try {
+      int n = 0;
+      while (n < size && !inflater.finished()) {
+        int m = inflater.inflate(raw, n, size - n);
+        if (m == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        n += m;
+      }
+      if (n < size) {
+        throw new VisADException("RangeChunk: truncated data");
+      }
+    }
+    catch (DataFormatException e) {
+      throw new VisADException("RangeChunk: " + e.getMessage());
+    }
+    finally {
+      inflater.end();
+    }
+    return raw;
+  }
+
+}
@@ -33,5 +33,25 @@ import java.rmi.*;
 */
 public interface RemoteFlatField extends Remote, FlatFieldIface {
 
+  /**
+   * Returns the values of some range components for an interval of
+   * samples, in the default Units of the range, packed for transfer.
+   * Pulling a large field as a sequence of chunks avoids both one call
+   * per sample and serializing the whole field at once; see
+   * {@link RemoteFlatFieldProxy}.
+   *
+   * @param components  range component indices, or null for all
+   * @param start       index of the first sample
+   * @param length      number of samples
+   * @param doubles     true to pack doubles, false to pack floats
+   * @param compress    true to deflate the packed values
+   * @return            the packed values
+   * @throws VisADException  bad components or sample interval
+   * @throws RemoteException an RMI error occurred
+   */
+  RangeChunk getRangeChunk(int[] components, int start, int length,
+                           boolean doubles, boolean compress)
+    throws VisADException, RemoteException;
+
 }
 
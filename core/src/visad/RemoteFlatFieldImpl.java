@@ -37,6 +37,8 @@ import java.rmi.RemoteException;
  * copies it over to the remote machine where it is cached for
  * fast access.  This would be a much better approach if the application
  * does a lot of computations on a set of static samples.
+ * {@link #getRangeChunk} and {@link RemoteFlatFieldProxy} do this for
+ * intervals of samples.
  */
 public class RemoteFlatFieldImpl
   extends RemoteFieldImpl
@@ -203,6 +205,56 @@ public class RemoteFlatFieldImpl
     return ((FlatField )AdaptedData).convertToField();
   }
 
+  /**
+   * Returns the values of some range components for an interval of
+   * samples, in the default Units of the range, packed for transfer.
+   *
+   * @param components  range component indices, or null for all
+   * @param start       index of the first sample
+   * @param length      number of samples
+   * @param doubles     true to pack doubles, false to pack floats
+   * @param compress    true to deflate the packed values
+   * @return            the packed values
+   * @throws VisADException  bad components or sample interval
+   */
+  public RangeChunk getRangeChunk(int[] components, int start, int length,
+                                  boolean doubles, boolean compress)
+    throws RemoteException, VisADException
+  {
+    if (AdaptedData == null) {
+      throw new RemoteVisADException("RemoteFlatFieldImpl.getRangeChunk: " +
+                                     "AdaptedData is null");
+    }
+    FlatField field = (FlatField) AdaptedData;
+    int dim = field.getRangeDimension();
+    if (components == null) {
+      components = new int[dim];
+      for (int i=0; i<dim; i++) components[i] = i;
+    }
+    if (start < 0 || length < 0 || start > field.getLength() - length) {
+      throw new FieldException("RemoteFlatFieldImpl.getRangeChunk: " +
+                               "bad sample interval");
+    }
+    for (int i=0; i<components.length; i++) {
+      if (components[i] < 0 || components[i] >= dim) {
+        throw new FieldException("RemoteFlatFieldImpl.getRangeChunk: " +
+                                 "bad range component " + components[i]);
+      }
+    }
+    if (doubles) {
+      double[][] values = new double[components.length][];
+      for (int i=0; i<components.length; i++) {
+        values[i] = field.getRangeValues(components[i], start, length);
+      }
+      return new RangeChunk(values, components, start, compress);
+    }
+    float[][] values = new float[components.length][];
+    for (int i=0; i<components.length; i++) {
+      values[i] = field.getRangeFloats(components[i], start, length);
+    }
+    return new RangeChunk(values, components, start, compress);
+  }
+
   /**
    * Gets the number of components in the "flat" range.
    *
@@ -0,0 +1,433 @@
+//
+// RemoteFlatFieldProxy.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+
+package visad;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.rmi.RemoteException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import visad.data.CachedFlatField;
+
+/**
+   RemoteFlatFieldProxy is the VisAD class for reading the range values
+   of a {@link RemoteFlatField} on a client machine.<P>
+
+   Values are fetched by {@link RemoteFlatField#getRangeChunk} in chunks
+   of a fixed number of samples, one remote call per chunk, and cached,
+   so a client pays once for each part of a large field it reads and
+   never for the parts it does not.  The cache holds a bounded number of
+   chunks, dropping the least recently used.  Values are in the default
+   Units of the range.  The cache assumes the remote field does not
+   change; call {@link #clearCache} if it may have.<P>
+
+   {@link #getFlatField} wraps the proxy as a local FlatField, for code
+   that takes a FlatField rather than reading values from the proxy.<P>
+*/
+public class RemoteFlatFieldProxy {
+
+  /** default number of samples in a chunk */
+  public static final int DEFAULT_CHUNK_LENGTH = 1 << 18;
+
+  /** default number of component chunks cached */
+  public static final int DEFAULT_MAX_CHUNKS = 16;
+
+  private final RemoteFlatField field;
+  private final int length;
+  private final int dimension;
+  private final int chunkLength;
+  private final boolean compress;
+  private final int maxChunks;
+
+  /** cached chunks, keyed by range component and chunk index, least
+      recently used first */
+  private final Map<Long, float[]> floatChunks;
+  private final Map<Long, double[]> doubleChunks;
+
+  private long bytesTransferred = 0;
+
+  /**
+   * Construct a proxy reading uncompressed chunks of
+   * DEFAULT_CHUNK_LENGTH samples.
+   *
+   * @param field  the remote field
+   * @throws VisADException  a VisAD error occurred
+   * @throws RemoteException an RMI error occurred
+   */
+  public RemoteFlatFieldProxy(RemoteFlatField field)
+         throws VisADException, RemoteException {
+    this(field, DEFAULT_CHUNK_LENGTH, false, DEFAULT_MAX_CHUNKS);
+  }
+
+  /**
+   * Construct a proxy caching at most DEFAULT_MAX_CHUNKS chunks.
+   *
+   * @param field        the remote field
+   * @param chunkLength  number of samples fetched per remote call
+   * @param compress     true to have chunks deflated for transfer,
+   *                     which pays on slow links
+   * @throws VisADException  a VisAD error occurred
+   * @throws RemoteException an RMI error occurred
+   */
+  public RemoteFlatFieldProxy(RemoteFlatField field, int chunkLength,
+                              boolean compress)
+         throws VisADException, RemoteException {
+    this(field, chunkLength, compress, DEFAULT_MAX_CHUNKS);
+  }
+
+  /**
+   * Construct a proxy.
+   *
+   * @param field        the remote field
+   * @param chunkLength  number of samples fetched per remote call
+   * @param compress     true to have chunks deflated for transfer,
+   *                     which pays on slow links
+   * @param maxChunks    number of chunks of one range component kept
+   *                     in each of the float and double caches
+   * @throws VisADException  a VisAD error occurred
+   * @throws RemoteException an RMI error occurred
+   */
+  public RemoteFlatFieldProxy(RemoteFlatField field, int chunkLength,
+                              boolean compress, int maxChunks)
+         throws VisADException, RemoteException {
+    if (field == null) {
+      throw new FieldException("RemoteFlatFieldProxy: field cannot be null");
+    }
+    if (chunkLength <= 0) {
+      throw new FieldException("RemoteFlatFieldProxy: chunkLength must " +
+                               "be positive");
+    }
+    if (maxChunks <= 0) {
+      throw new FieldException("RemoteFlatFieldProxy: maxChunks must " +
+                               "be positive");
+    }
+    this.field = field;
+    this.chunkLength = chunkLength;
+    this.compress = compress;
+    this.maxChunks = maxChunks;
+    floatChunks = new LruMap<float[]>(maxChunks);
+    doubleChunks = new LruMap<double[]>(maxChunks);
+    length = field.getLength();
+    dimension = field.getRangeDimension();
+  }
+
+  /** return the number of samples in the remote field */
+  public int getLength() {
+    return length;
+  }
+
+  /** return the number of components in the "flat" range */
+  public int getRangeDimension() {
+    return dimension;
+  }
+
+  /** return the number of samples fetched per remote call */
+  public int getChunkLength() {
+    return chunkLength;
+  }
+
+  /** return the number of chunks of one range component cached */
+  public int getMaxChunks() {
+    return maxChunks;
+  }
+
+  /** return the number of packed bytes fetched so far */
+  public synchronized long getBytesTransferred() {
+    return bytesTransferred;
+  }
+
+  /** discard all cached chunks */
+  public synchronized void clearCache() {
+    floatChunks.clear();
+    doubleChunks.clear();
+  }
+
+  /**
+   * @return  all range values as floats; values[i][j] is component i
+   *          at sample j
+   * @throws VisADException  a VisAD error occurred
+   * @throws RemoteException an RMI error occurred
+   */
+  public float[][] getFloats() throws VisADException, RemoteException {
+    return getFloats(null, 0, length);
+  }
+
+  /**
+   * @param components  range component indices, or null for all
+   * @param start       index of the first sample
+   * @param count       number of samples
+   * @return            values[i][j] is component components[i] at
+   *                    sample start + j
+   * @throws VisADException  a VisAD error occurred
+   * @throws RemoteException an RMI error occurred
+   */
+  public synchronized float[][] getFloats(int[] components, int start,
+                                          int count)
+         throws VisADException, RemoteException {
+    components = checkRequest(components, start, count);
+    float[][] values = new float[components.length][count];
+    int end = start + count;
+    for (int c=start/chunkLength; c*chunkLength<end; c++) {
+      Object[] chunks = fetch(components, c, false);
+      int base = c * chunkLength;
+      int lo = Math.max(start, base);
+      int hi = Math.min(end, base + chunkLength);
+      for (int i=0; i<components.length; i++) {
+        System.arraycopy((float[]) chunks[i], lo - base, values[i],
+                         lo - start, hi - lo);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * @return  all range values as doubles; values[i][j] is component i
+   *          at sample j
+   * @throws VisADException  a VisAD error occurred
+   * @throws RemoteException an RMI error occurred
+   */
+  public double[][] getValues() throws VisADException, RemoteException {
+    return getValues(null, 0, length);
+  }
+
+  /**
+   * @param index  sample index
+   * @return       the range values of the sample
+   * @throws VisADException  a VisAD error occurred
+   * @throws RemoteException an RMI error occurred
+   */
+  public double[] getValues(int index)
+         throws VisADException, RemoteException {
+    double[][] values = getValues(null, index, 1);
+    double[] sample = new double[dimension];
+    for (int i=0; i<dimension; i++) sample[i] = values[i][0];
+    return sample;
+  }
+
+  /**
+   * @param components  range component indices, or null for all
+   * @param start       index of the first sample
+   * @param count       number of samples
+   * @return            values[i][j] is component components[i] at
+   *                    sample start + j
+   * @throws VisADException  a VisAD error occurred
+   * @throws RemoteException an RMI error occurred
+   */
+  public synchronized double[][] getValues(int[] components, int start,
+                                           int count)
+         throws VisADException, RemoteException {
+    components = checkRequest(components, start, count);
+    double[][] values = new double[components.length][count];
+    int end = start + count;
+    for (int c=start/chunkLength; c*chunkLength<end; c++) {
+      Object[] chunks = fetch(components, c, true);
+      int base = c * chunkLength;
+      int lo = Math.max(start, base);
+      int hi = Math.min(end, base + chunkLength);
+      for (int i=0; i<components.length; i++) {
+        System.arraycopy((double[]) chunks[i], lo - base, values[i],
+                         lo - start, hi - lo);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Return a local FlatField adapting this proxy: it has the MathType,
+   * domain Set and default range Units of the remote field (and its
+   * range CoordinateSystem, if the range is a RealTupleType), and reads
+   * its values through this proxy when they are first needed.  Single
+   * samples and intervals of one range component read only the chunks
+   * that hold them; any other access reads all of the values once.
+   *
+   * @return  a FlatField reading the values of the remote field
+   * @throws VisADException  a VisAD error occurred
+   * @throws RemoteException an RMI error occurred
+   */
+  public FlatField getFlatField() throws VisADException, RemoteException {
+    FunctionType type = (FunctionType) field.getType();
+    CoordinateSystem cs = null;
+    if (type.getRange() instanceof RealTupleType) {
+      CoordinateSystem[] css = field.getRangeCoordinateSystem();
+      if (css != null && css.length > 0) cs = css[0];
+    }
+    return new ProxyFlatField(this, type, field.getDomainSet(), cs);
+  }
+
+  private int[] checkRequest(int[] components, int start, int count)
+          throws VisADException {
+    if (start < 0 || count < 0 || start > length - count) {
+      throw new FieldException("RemoteFlatFieldProxy: bad sample interval");
+    }
+    if (components == null) {
+      components = new int[dimension];
+      for (int i=0; i<dimension; i++) components[i] = i;
+      return components;
+    }
+    for (int i=0; i<components.length; i++) {
+      if (components[i] < 0 || components[i] >= dimension) {
+        throw new FieldException("RemoteFlatFieldProxy: bad range " +
+                                 "component " + components[i]);
+      }
+    }
+    return components;
+  }
+
+  /** return chunk c of each of components, fetching the ones not
+      cached in one remote call */
+  private Object[] fetch(int[] components, int c, boolean doubles)
+          throws VisADException, RemoteException {
+    Map<Long, ?> cache = doubles ? doubleChunks : floatChunks;
+    Object[] chunks = new Object[components.length];
+    int[] missing = new int[components.length];
+    int n = 0;
+    for (int i=0; i<components.length; i++) {
+      chunks[i] = cache.get(key(components[i], c));
+      if (chunks[i] == null) {
+        boolean repeated = false;
+        for (int j=0; j<n; j++) {
+          if (missing[j] == components[i]) repeated = true;
+        }
+        if (!repeated) missing[n++] = components[i];
+      }
+    }
+    if (n == 0) return chunks;
+    int[] request = new int[n];
+    System.arraycopy(missing, 0, request, 0, n);
+    int base = c * chunkLength;
+    RangeChunk chunk =
+      field.getRangeChunk(request, base, Math.min(chunkLength, length - base),
+                          doubles, compress);
+    bytesTransferred += chunk.getByteCount();
+    Object[] fetched;
+    if (doubles) {
+      double[][] values = chunk.getValues();
+      for (int i=0; i<n; i++) doubleChunks.put(key(request[i], c), values[i]);
+      fetched = values;
+    }
+    else {
+      float[][] values = chunk.getFloats();
+      for (int i=0; i<n; i++) floatChunks.put(key(request[i], c), values[i]);
+      fetched = values;
+    }
+    // the chunks just fetched may already have been dropped from the
+    // cache, so take them from the reply
+    for (int i=0; i<components.length; i++) {
+      if (chunks[i] == null) {
+        for (int j=0; j<n; j++) {
+          if (request[j] == components[i]) chunks[i] = fetched[j];
+        }
+      }
+    }
+    return chunks;
+  }
+
+  private static Long key(int component, int c) {
+    return Long.valueOf(((long) component << 32) | (c & 0xffffffffL));
+  }
+
+  /** FlatField reading its values through a RemoteFlatFieldProxy */
+  private static class ProxyFlatField extends CachedFlatField {
+    private static final long serialVersionUID = 1L;
+
+    private final transient RemoteFlatFieldProxy proxy;
+
+    ProxyFlatField(RemoteFlatFieldProxy proxy, FunctionType type,
+                   Set domainSet, CoordinateSystem cs)
+            throws VisADException {
+      super(type, domainSet, cs, (Set[]) null, (Unit[]) null, null);
+      this.proxy = proxy;
+    }
+
+    /** read all of the values; called by CachedFlatField */
+    public float[][] readData() {
+      try {
+        return proxy.getFloats();
+      }
+      catch (Exception e) {
+        throw new VisADError(getClass().getName() + ".readData(): " + e);
+      }
+    }
+
+    protected float[] unpackFloats(int s_index) throws VisADException {
+      if (haveData()) return super.unpackFloats(s_index);
+      try {
+        float[][] values = proxy.getFloats(null, s_index, 1);
+        float[] range = new float[values.length];
+        for (int i=0; i<values.length; i++) range[i] = values[i][0];
+        return range;
+      }
+      catch (RemoteException e) {
+        throw new VisADException(getClass().getName() + ": " + e);
+      }
+    }
+
+    protected float[] unpackRangeFloats(int comp, int start, int length)
+              throws VisADException {
+      if (haveData()) return super.unpackRangeFloats(comp, start, length);
+      try {
+        return proxy.getFloats(new int[] {comp}, start, length)[0];
+      }
+      catch (RemoteException e) {
+        throw new VisADException(getClass().getName() + ": " + e);
+      }
+    }
+
+    /** the proxy is not serializable, so serialize a plain FlatField */
+    protected Object writeReplace() throws ObjectStreamException {
+      try {
+        FlatField field = new FlatField((FunctionType) getType(),
+          getDomainSet(), RangeCoordinateSystem, getRangeSets(), RangeUnits);
+        field.setSamples(unpackFloats(true), false);
+        return field;
+      }
+      catch (Exception e) {
+        throw new InvalidObjectException(getClass().getName() +
+                                         ".writeReplace(): " + e);
+      }
+    }
+  }
+
+  /** map dropping its least recently used entry beyond a size */
+  private static class LruMap<V> extends LinkedHashMap<Long, V> {
+    private static final long serialVersionUID = 1L;
+
+    private final int maxSize;
+
+    LruMap(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    protected boolean removeEldestEntry(Map.Entry<Long, V> eldest) {
+      return size() > maxSize;
+    }
+  }
+
+}
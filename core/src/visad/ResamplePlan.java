@@ -0,0 +1,279 @@
+//
+// ResamplePlan.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad;
+
+/**
+   ResamplePlan holds the geometry of resampling a FlatField domain onto
+   a sampling Set: the sampling locations transformed into the domain's
+   coordinate system and units, and either the nearest neighbor index or
+   the interpolation indices and weights of every sampling location.<P>
+
+   Building a plan costs the same as one call to
+   FlatField.resample(Set, int, int); applying it with
+   FlatField.resample(ResamplePlan) only gathers range values.  A plan
+   can be applied to any FlatField whose domain Set, domain
+   CoordinateSystem and domain Units match those of the FlatField it was
+   built from (for example every time step of a sequence of grids).
+   Plans are immutable, so one plan may be applied by many threads at
+   once.<P>
+*/
+public class ResamplePlan {
+
+  /** domain of the FlatFields this plan applies to */
+  private final Set domainSet;
+  private final RealTupleType domainType;
+  private final CoordinateSystem domainCoordinateSystem;
+  private final Unit[] domainUnits;
+
+  /** sampling set and modes */
+  private final Set set;
+  private final int samplingMode;
+  private final int errorMode;
+
+  /** true if the sampling set equals the domain set */
+  private final boolean identity;
+
+  /** true if the domain set is a GriddedDoubleSet */
+  private final boolean doubleDomain;
+
+  /** sampling set indices, in the order of the vals arrays */
+  final int[] wedge;
+
+  /** true if the sampling locations were transformed */
+  final boolean coordTransform;
+
+  /** sampling locations before and after transformation to the domain */
+  final float[][] oldvals;
+  final float[][] vals;
+  final double[][] oldvalsDouble;
+  final double[][] valsDouble;
+
+  /** ErrorEstimates of the transformed sampling locations */
+  final ErrorEstimate[] errorsOut;
+
+  /** nearest neighbor domain indices, or null if interpolating */
+  final int[] indices;
+
+  /** interpolation domain indices and weights, or null if not */
+  final int[][] interpIndices;
+  final float[][] interpCoefs;
+  final double[][] interpCoefsDouble;
+
+  /**
+   * Construct the plan for resampling <code>field</code>, and any FlatField
+   * with the same domain, to <code>set</code>.
+   * @param field               FlatField defining the domain
+   * @param set                 The set of points at which to resample.
+   * @param sampling_mode       Resampling mode: Data.NEAREST_NEIGHBOR or
+   *                            Data.WEIGHTED_AVERAGE
+   * @param error_mode          Error estimation mode: Data.DEPENDENT,
+   *                            Data.INDEPENDENT, or Data.NO_ERRORS.
+   * @throws SetException       set dimension does not match the domain
+   * @throws VisADException     sampling set is not compatible with domain
+   */
+  public ResamplePlan(FlatField field, Set set, int sampling_mode,
+                      int error_mode) throws VisADException {
+    domainSet = field.getDomainSet();
+    domainType = ((FunctionType) field.getType()).getDomain();
+    domainCoordinateSystem = field.getDomainCoordinateSystem();
+    domainUnits = field.getDomainUnits();
+    this.set = set;
+    samplingMode = sampling_mode;
+    errorMode = error_mode;
+
+    int dim = domainSet.getDimension();
+    if (dim != set.getDimension()) {
+      throw new SetException("FlatField.resample: bad Set Dimension");
+    }
+
+    identity = domainSet.equals(set);
+    doubleDomain = domainSet instanceof GriddedDoubleSet;
+    if (identity) {
+      wedge = null;
+      coordTransform = false;
+      oldvals = vals = null;
+      oldvalsDouble = valsDouble = null;
+      errorsOut = null;
+      indices = null;
+      interpIndices = null;
+      interpCoefs = null;
+      interpCoefsDouble = null;
+      return;
+    }
+
+    CoordinateSystem coord_sys = set.getCoordinateSystem();
+    Unit[] units = set.getSetUnits();
+    ErrorEstimate[] errors =
+      (error_mode == Data.NO_ERRORS) ? new ErrorEstimate[dim] :
+                                       set.getSetErrors();
+    RealTupleType set_type = ((SetType) set.getType()).getDomain();
+
+    int length = set.getLength();
+    wedge = set.getWedge();
+    // holder for sampling errors of transformed set; these are
+    // only useful to help estmate range errors due to resampling
+    errorsOut = new ErrorEstimate[dim];
+
+    visad.util.Trace.call1("FlatField.resample:transformCoords");
+    if (doubleDomain) {
+      oldvals = vals = null;
+      oldvalsDouble = set.indexToDouble(wedge);
+      try {  // this is only to throw a more meaningful message
+        valsDouble = CoordinateSystem.transformCoordinates(
+                      domainType, domainCoordinateSystem, domainUnits,
+                      errorsOut, set_type, coord_sys, units, errors,
+                      oldvalsDouble, false);
+      } catch (UnitException ue) {
+        throw new VisADException("Sampling set is not compatible with domain");
+      }
+      coordTransform = !(valsDouble == oldvalsDouble);
+    }
+    else {
+      oldvalsDouble = valsDouble = null;
+      oldvals = set.indexToValue(wedge);
+      try {  // this is only to throw a more meaningful message
+        vals = CoordinateSystem.transformCoordinates(
+                      domainType, domainCoordinateSystem, domainUnits,
+                      errorsOut, set_type, coord_sys, units, errors,
+                      oldvals, false);
+      } catch (UnitException ue) {
+        throw new VisADException("Sampling set is not compatible with domain");
+      }
+      coordTransform = !(vals == oldvals);
+    }
+    visad.util.Trace.call2("FlatField.resample:transformCoords");
+
+    if (sampling_mode == Data.WEIGHTED_AVERAGE && doubleDomain) {
+      interpIndices = new int[length][];
+      interpCoefsDouble = new double[length][];
+      interpCoefs = null;
+      indices = null;
+      ((GriddedDoubleSet) domainSet).doubleToInterp(valsDouble, interpIndices,
+                                                    interpCoefsDouble);
+    }
+    else if (sampling_mode == Data.WEIGHTED_AVERAGE &&
+             domainSet instanceof SimpleSet) {
+      interpIndices = new int[length][];
+      interpCoefs = new float[length][];
+      interpCoefsDouble = null;
+      indices = null;
+      ((SimpleSet) domainSet).valueToInterp(vals, interpIndices, interpCoefs);
+    }
+    else { // NEAREST_NEIGHBOR or set is not SimpleSet
+      interpIndices = null;
+      interpCoefs = null;
+      interpCoefsDouble = null;
+      indices = doubleDomain ? domainSet.doubleToIndex(valsDouble)
+                             : domainSet.valueToIndex(vals);
+    }
+  }
+
+  /**
+   * @return the set of points at which this plan resamples
+   */
+  public Set getSet() {
+    return set;
+  }
+
+  /**
+   * @return Data.NEAREST_NEIGHBOR or Data.WEIGHTED_AVERAGE
+   */
+  public int getSamplingMode() {
+    return samplingMode;
+  }
+
+  /**
+   * @return Data.DEPENDENT, Data.INDEPENDENT, or Data.NO_ERRORS
+   */
+  public int getErrorMode() {
+    return errorMode;
+  }
+
+  /**
+   * @return the domain Set of the FlatFields this plan applies to
+   */
+  public Set getDomainSet() {
+    return domainSet;
+  }
+
+  /**
+   * @return true if the sampling set equals the domain set, in which
+   *         case resampling returns the FlatField itself
+   */
+  public boolean isIdentity() {
+    return identity;
+  }
+
+  /** @return true if the domain set is a GriddedDoubleSet */
+  boolean isDouble() {
+    return doubleDomain;
+  }
+
+  /**
+   * Test whether this plan can resample a FlatField: its domain Set,
+   * domain CoordinateSystem and domain Units must match those of the
+   * FlatField the plan was built from.
+   * @param field  FlatField to test
+   * @return true if this plan applies to field
+   */
+  public boolean isCompatible(FlatField field) {
+    Set fieldSet = field.getDomainSet();
+    if (fieldSet != domainSet && !domainSet.equals(fieldSet)) return false;
+    if (!domainType.equals(((FunctionType) field.getType()).getDomain())) {
+      return false;
+    }
+    CoordinateSystem cs = field.getDomainCoordinateSystem();
+    if (domainCoordinateSystem == null ? cs != null :
+        !domainCoordinateSystem.equals(cs)) {
+      return false;
+    }
+    Unit[] units = field.getDomainUnits();
+    if (domainUnits == null || units == null) return domainUnits == units;
+    if (domainUnits.length != units.length) return false;
+    for (int i=0; i<units.length; i++) {
+      if (domainUnits[i] == null ? units[i] != null :
+          !domainUnits[i].equals(units[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Resample a FlatField with this plan; equivalent to
+   * <code>field.resample(this)</code>.
+   * @param field  FlatField to resample
+   * @return Field of resampled data.  NOTE: May return field itself.
+   * @throws SetException     field does not match the plan's domain
+   * @throws VisADException   couldn't create the resampled Field
+   * @throws java.rmi.RemoteException  couldn't create the resampled Field
+   */
+  public Field resample(FlatField field)
+         throws VisADException, java.rmi.RemoteException {
+    return field.resample(this);
+  }
+}
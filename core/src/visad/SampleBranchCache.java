@@ -0,0 +1,187 @@
+//
+// SampleBranchCache.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad;
+
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+   SampleBranchCache keeps the scene graph branches made for the
+   samples of an animated (or SelectValue) Field by the last transform
+   of a DataDisplayLink, so that the next transform need only make
+   branches for the samples that were added or changed.<P>
+
+   A branch is reused only for the same sample object, unchanged since
+   its branch was made (see {@link DataImpl#getChangeCount}), with the
+   same inherited display values, and only if the scales of the
+   ScalarMap-s, the default values and the Control-s that require
+   re-transform are unchanged.  Branches whose transform registered
+   Switches with Control-s (see {@link DataRenderer#switchAdded}) are
+   not kept, since those registrations are cleared before every
+   transform.  Samples are therefore only recognized
+   if they are put into the Field without copying (e.g. by
+   <CODE>setSample(index, range, false)</CODE>).<P>
+*/
+final class SampleBranchCache {
+
+  /** branches of the last transform, by sample */
+  private Map last = new IdentityHashMap();
+
+  /** branches of the current transform, by sample */
+  private Map current = new IdentityHashMap();
+
+  /** map scales and default values of the last transform */
+  private double[] lastScales = null;
+  private float[] lastDefaults = null;
+
+  /** false after a change that invalidates every branch */
+  private boolean valid = false;
+
+  private static class Entry {
+    final long changeCount;
+    final float[] values;
+    final Object branch;
+
+    Entry(long changeCount, float[] values, Object branch) {
+      this.changeCount = changeCount;
+      this.values = values;
+      this.branch = branch;
+    }
+  }
+
+  /**
+   * Start a transform, and decide whether the branches of the last
+   * transform may be reused.
+   * @param link DataDisplayLink being transformed
+   * @param renderer DataRenderer doing the transform
+   * @param default_values default values for DisplayRealTypes
+   */
+  synchronized void begin(DataDisplayLink link, DataRenderer renderer,
+                          float[] default_values) {
+    double[] scales = getScales(link);
+    boolean reuse = valid && Arrays.equals(scales, lastScales) &&
+                    Arrays.equals(default_values, lastDefaults);
+    if (reuse) {
+      Enumeration maps = link.getSelectedMapVector().elements();
+      while (reuse && maps.hasMoreElements()) {
+        if (((ScalarMap) maps.nextElement()).checkTicks(renderer, link)) {
+          reuse = false;
+        }
+      }
+    }
+
+    last = reuse ? current : new IdentityHashMap();
+    current = new IdentityHashMap();
+    lastScales = scales;
+    lastDefaults = default_values.clone();
+    valid = true;
+  }
+
+  /**
+   * Return the branch made by the last transform for sample, or null
+   * if there is none or it cannot be reused; a branch is returned at
+   * most once.
+   * @param sample sample of the Field
+   * @param values display values inherited by the sample
+   * @param skip index into values of the Animation or SelectValue
+   *             value of the sample, which is not compared
+   */
+  synchronized Object take(Data sample, float[] values, int skip) {
+    if (!(sample instanceof DataImpl)) return null;
+    Entry entry = (Entry) last.remove(sample);
+    if (entry == null ||
+        entry.changeCount != ((DataImpl) sample).getChangeCount()) {
+      return null;
+    }
+    for (int i=0; i<values.length; i++) {
+      if (i != skip &&
+          Float.floatToIntBits(values[i]) !=
+          Float.floatToIntBits(entry.values[i])) {
+        return null;
+      }
+    }
+    return entry.branch;
+  }
+
+  /**
+   * Remember the branch made for sample by the current transform.
+   * @param sample sample of the Field
+   * @param values display values inherited by the sample
+   * @param branch branch made for the sample
+   */
+  synchronized void put(Data sample, float[] values, Object branch) {
+    if (!(sample instanceof DataImpl)) return;
+    current.put(sample, new Entry(((DataImpl) sample).getChangeCount(),
+                                  values.clone(), branch));
+  }
+
+  /**
+   * Finish a transform, dropping the branches of the last transform
+   * that were not reused.
+   */
+  synchronized void end() {
+    last = new IdentityHashMap();
+  }
+
+  /**
+   * Drop every branch, for example because the whole display is being
+   * re-transformed.
+   */
+  synchronized void clear() {
+    last = new IdentityHashMap();
+    current = new IdentityHashMap();
+    valid = false;
+  }
+
+  /** scales and offsets of the ScalarMaps applying to the linked Data,
+      except those consumed by the Switch (Animation and SelectValue) */
+  private static double[] getScales(DataDisplayLink link) {
+    Vector maps = link.getSelectedMapVector();
+    double[] scales = new double[6 * maps.size()];
+    double[] so = new double[2];
+    double[] data = new double[2];
+    double[] display = new double[2];
+    for (int i=0; i<maps.size(); i++) {
+      ScalarMap map = (ScalarMap) maps.elementAt(i);
+      DisplayRealType real = map.getDisplayScalar();
+      if (Display.Animation.equals(real) || Display.SelectValue.equals(real)) {
+        continue;
+      }
+      map.getScale(so, data, display);
+      scales[6 * i] = so[0];
+      scales[6 * i + 1] = so[1];
+      scales[6 * i + 2] = data[0];
+      scales[6 * i + 3] = data[1];
+      scales[6 * i + 4] = display[0];
+      scales[6 * i + 5] = display[1];
+    }
+    return scales;
+  }
+}
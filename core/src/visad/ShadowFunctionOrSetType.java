@@ -3173,57 +3173,116 @@ WLH 15 March 2000 */
       for (int j=0; j<display.getValueArrayLength(); j++) {
         range_value_array[j] = Float.NaN;
       }
-      for (int i=0; i<domain_length; i++) {
-        if (range_select[0] == null || range_select[0].length == 1 ||
-            range_select[0][i]) {
-          if (text_values != null && text_control != null) {
-            shadow_api.setText(text_values[i], text_control);
-          }
-          else {
-            shadow_api.setText(null, null);
-          }
-          for (int j=0; j<valueArrayLength; j++) {
-            if (display_values[j] != null) {
-              if (display_values[j].length == 1) {
-                range_value_array[j] = display_values[j][0];
+
+      // reuse the branches made by the last transform for samples
+      // that have not changed since
+      boolean top_level =
+        (getLink().getShadow().getAdaptedShadowType() == this);
+      SampleBranchCache cache = null;
+      if (control != null && text_values == null && top_level &&
+          !renderer.getIsDirectManipulation()) {
+        cache = getLink().getBranchCache();
+        cache.begin(getLink(), renderer, default_values);
+      }
+
+      // read samples ahead of their transform, except those not shown
+      boolean[] unselected = null;
+      if (range_select[0] != null && range_select[0].length > 1) {
+        unselected = new boolean[range_select[0].length];
+        for (int i=0; i<unselected.length; i++) {
+          unselected[i] = !range_select[0][i];
+        }
+      }
+      FramePrefetcher prefetcher =
+        new FramePrefetcher(top_level ? getLink() : null, (Field) data,
+                            null, unselected);
+
+      try {
+        for (int i=0; i<domain_length; i++) {
+          if (range_select[0] == null || range_select[0].length == 1 ||
+              range_select[0][i]) {
+            if (text_values != null && text_control != null) {
+              shadow_api.setText(text_values[i], text_control);
+            }
+            else {
+              shadow_api.setText(null, null);
+            }
+            for (int j=0; j<valueArrayLength; j++) {
+              if (display_values[j] != null) {
+                if (display_values[j].length == 1) {
+                  range_value_array[j] = display_values[j][0];
+                }
+                else {
+                  range_value_array[j] = display_values[j][i];
+                }
+              }
+            }
+
+            // push lat_index and lon_index for flow navigation
+            int[] lat_lon_indices = renderer.getLatLonIndices();
+            if (control != null) {
+              Data sample = ((Field) data).getSample(i);
+              Object branch = null;
+              if (cache != null) {
+                branch = cache.take(sample, range_value_array, index);
+                if (branch != null && !shadow_api.detachBranch(branch)) {
+                  branch = null;
+                }
+              }
+              boolean reusable = true;
+              if (branch != null) {
+                // not read; don't read it ahead either
+                prefetcher.skip(i);
               }
               else {
-                range_value_array[j] = display_values[j][i];
+                sample = prefetcher.getSample(i);
+                branch = shadow_api.makeBranch();
+                int switches = renderer.getSwitchesAdded();
+                boolean sample_post = shadow_api.recurseRange(branch, sample,
+                                               range_value_array, default_values,
+                                               renderer);
+                post |= sample_post;
+                // Switches registered with Controls (volume slice stacks,
+                // nested Animation or SelectValue) are cleared before the
+                // next transform, so such a branch cannot be reused
+                reusable = !sample_post &&
+                           renderer.getSwitchesAdded() == switches;
+              }
+              if (cache != null && reusable) {
+                cache.put(sample, range_value_array, branch);
               }
+              shadow_api.addToSwitch(swit, branch);
+              // System.out.println("addChild " + i + " of " + domain_length);
             }
-          }
+            else {
+              Object branch = shadow_api.makeBranch();
+              post |= shadow_api.recurseRange(branch, prefetcher.getSample(i),
+                                               range_value_array, default_values,
+                                               renderer);
+              shadow_api.addToGroup(group, branch);
+            }
+            // pop lat_index and lon_index for flow navigation
+            renderer.setLatLonIndices(lat_lon_indices);
 
-          // push lat_index and lon_index for flow navigation
-          int[] lat_lon_indices = renderer.getLatLonIndices();
-          if (control != null) {
-            Object branch = shadow_api.makeBranch();
-            post |= shadow_api.recurseRange(branch, ((Field) data).getSample(i),
-                                             range_value_array, default_values,
-                                             renderer);
-            shadow_api.addToSwitch(swit, branch);
-            // System.out.println("addChild " + i + " of " + domain_length);
-          }
-          else {
-            Object branch = shadow_api.makeBranch();
-            post |= shadow_api.recurseRange(branch, ((Field) data).getSample(i),
-                                             range_value_array, default_values,
-                                             renderer);
-            shadow_api.addToGroup(group, branch);
           }
-          // pop lat_index and lon_index for flow navigation
-          renderer.setLatLonIndices(lat_lon_indices);
-
-        }
-        else { // if (!range_select[0][i])
-          if (control != null) {
-            // add null BranchGroup as child to maintain order
-            Object branch = shadow_api.makeBranch();
-            shadow_api.addToSwitch(swit, branch);
-            // System.out.println("addChild " + i + " of " + domain_length +
-            //                    " MISSING");
+          else { // if (!range_select[0][i])
+            if (control != null) {
+              // add null BranchGroup as child to maintain order
+              Object branch = shadow_api.makeBranch();
+              shadow_api.addToSwitch(swit, branch);
+              // System.out.println("addChild " + i + " of " + domain_length +
+              //                    " MISSING");
+            }
           }
         }
       }
+      finally {
+        prefetcher.close();
+      }
+
+      if (cache != null) {
+        cache.end();
+      }
 
 /* why later than addPair & addChild(swit) ??
       if (control != null) {
@@ -33,6 +33,7 @@ import java.util.Enumeration;
 import java.util.Vector;
 
 import visad.util.HersheyFont;
+import visad.util.ParallelLoop;
 
 /**
  * The ShadowType hierarchy shadows the MathType hierarchy, within a
@@ -1100,41 +1101,25 @@ public abstract class ShadowType extends Object implements java.io.Serializable
    */
 
   /** map values to display_values according to ScalarMap-s in reals */
-  public static void mapValues(float[][] display_values, double[][] values,
-      ShadowRealType[] reals) throws VisADException {
+  public static void mapValues(final float[][] display_values,
+      final double[][] values, ShadowRealType[] reals) throws VisADException {
     int n = values.length;
     if (n != reals.length) {
       throw new DisplayException("lengths don't match " + n + " != "
           + reals.length + ": " + "ShadowType.mapValues");
     }
-    for (int i = 0; i < n; i++) {
-      Enumeration maps = reals[i].getSelectedMapVector().elements();
-      while (maps.hasMoreElements()) {
-        ScalarMap map = (ScalarMap) maps.nextElement();
-        int value_index = map.getValueIndex();
-        /*
-         * double[] range = map.getRange(); System.out.println(map.getScalar() +
-         * " -> " + map.getDisplayScalar() + " : " + range[0] + " " + range[1] +
-         * "  value_index = " + value_index);
-         */
-        // MEM
-        display_values[value_index] = map.scaleValues(values[i]);
-        /*
-         * int m = values[i].length; for (int j=0; j<m; j++)
-         * System.out.println("values["+i+"]["+j+"] = " + values[i][j] +
-         * " display_values["+value_index+"]["+j+"] = " +
-         * display_values[value_index][j]);
-         */
-        /*
-         * int total = 0; int missing = 0; total =
-         * display_values[value_index].length; for (int j=0;
-         * j<display_values[value_index].length; j++) { if
-         * (display_values[value_index][j] != display_values[value_index][j]) {
-         * missing++; } } System.out.println("  total = " + total +
-         * " missing = " + missing);
-         */
-      }
-    }
+    final MapTask[] tasks = getMapTasks(values, reals, true);
+    ParallelLoop.runTasks(tasks.length, getMapWork(tasks, values, false),
+      new ParallelLoop.Body() {
+        public void run(int start, int end) {
+          for (int t = start; t < end; t++) {
+            MapTask task = tasks[t];
+            // MEM
+            display_values[task.valueIndex] =
+              task.map.scaleValues(values[task.index]);
+          }
+        }
+      });
   }
 
   /** map values into display_values according to ScalarMap-s in reals */
@@ -1144,7 +1129,10 @@ public abstract class ShadowType extends Object implements java.io.Serializable
   }
 
   /**
-   * Map values into display_values according to ScalarMap-s in reals
+   * Map values into display_values according to ScalarMap-s in reals.
+   * The ScalarMap-s are independent, so when there are many values they
+   * are applied concurrently (see {@link ParallelLoop#runTasks}); the
+   * display values are the same either way.
    * 
    * @param display_values
    *          return display values
@@ -1157,44 +1145,82 @@ public abstract class ShadowType extends Object implements java.io.Serializable
    *          mapping. Use true if values represent a getSamples(false) or
    *          getFloats(false)
    */
-  public static void mapValues(float[][] display_values, float[][] values,
-      ShadowRealType[] reals, boolean copy) throws VisADException {
+  public static void mapValues(final float[][] display_values,
+      final float[][] values, ShadowRealType[] reals, boolean copy)
+      throws VisADException {
     int n = values.length;
     if (n != reals.length) {
       throw new DisplayException("lengths don't match: ShadowType.mapValues");
     }
-    for (int i = 0; i < n; i++) {
-      boolean doCopy = copy;
-      int size = reals[i].getSelectedMapVector().size();
-      if (!copy && size > 1)
-        doCopy = true;
-      Enumeration maps = reals[i].getSelectedMapVector().elements();
-      while (maps.hasMoreElements()) {
-        ScalarMap map = (ScalarMap) maps.nextElement();
-        int value_index = map.getValueIndex();
-        /*
-         * double[] range = map.getRange(); System.out.println(map.getScalar() +
-         * " -> " + map.getDisplayScalar() + " : " + range[0] + " " + range[1] +
-         * "  value_index = " + value_index);
-         */
-        // MEM
-        display_values[value_index] = map.scaleValues(values[i], doCopy);
-        /*
-         * int m = values[i].length; for (int j=0; j<m; j++)
-         * System.out.println("values["+i+"]["+j+"] = " + values[i][j] +
-         * " display_values["+value_index+"]["+j+"] = " +
-         * display_values[value_index][j]);
-         */
-        /*
-         * int total = 0; int missing = 0; total =
-         * display_values[value_index].length; for (int j=0;
-         * j<display_values[value_index].length; j++) { if
-         * (display_values[value_index][j] != display_values[value_index][j])
-         * missing++; } System.out.println("  total = " + total + " missing = "
-         * + missing);
-         */
+    final MapTask[] tasks = getMapTasks(values, reals, copy);
+    ParallelLoop.runTasks(tasks.length, getMapWork(tasks, values, !copy),
+      new ParallelLoop.Body() {
+        public void run(int start, int end) {
+          for (int t = start; t < end; t++) {
+            MapTask task = tasks[t];
+            // MEM
+            display_values[task.valueIndex] =
+              task.map.scaleValues(values[task.index], task.copy);
+          }
+        }
+      });
+  }
+
+  /** one ScalarMap applied by mapValues */
+  private static class MapTask {
+    final ScalarMap map;
+    final int index;
+    final int valueIndex;
+    final boolean copy;
+
+    MapTask(ScalarMap map, int index, boolean copy) {
+      this.map = map;
+      this.index = index;
+      this.valueIndex = map.getValueIndex();
+      this.copy = copy;
+    }
+  }
+
+  /** list the ScalarMap-s applied by mapValues, in order */
+  private static MapTask[] getMapTasks(Object[] values,
+      ShadowRealType[] reals, boolean copy) {
+    Vector tasks = new Vector();
+    for (int i = 0; i < values.length; i++) {
+      Vector maps = reals[i].getSelectedMapVector();
+      // scale in place only if values[i] has a single mapping
+      boolean doCopy = copy || maps.size() > 1;
+      Enumeration e = maps.elements();
+      while (e.hasMoreElements()) {
+        tasks.addElement(new MapTask((ScalarMap) e.nextElement(), i, doCopy));
+      }
+    }
+    MapTask[] array = new MapTask[tasks.size()];
+    tasks.copyInto(array);
+    return array;
+  }
+
+  /**
+   * Return the number of values scaled by the tasks, or 0 if they must
+   * run in order: if two of them write the same display value, or if
+   * one scales in place an array that another reads.
+   */
+  private static long getMapWork(MapTask[] tasks, Object[] values,
+      boolean inPlace) {
+    long work = 0;
+    for (int t = 0; t < tasks.length; t++) {
+      for (int u = 0; u < t; u++) {
+        if (tasks[t].valueIndex == tasks[u].valueIndex) return 0;
+        if (inPlace && (!tasks[t].copy || !tasks[u].copy) &&
+            tasks[t].index != tasks[u].index &&
+            values[tasks[t].index] == values[tasks[u].index]) {
+          return 0;
+        }
       }
+      Object v = values[tasks[t].index];
+      if (v instanceof float[]) work += ((float[]) v).length;
+      else if (v instanceof double[]) work += ((double[]) v).length;
     }
+    return work;
   }
 
   /* CTR: 13 Oct 1998 - BEGIN CHANGES */
@@ -3147,8 +3173,8 @@ System.out.println("adjusted flow values = " + flow_values[0][0] + " " +
       }
     } // end while (true)
 
-    int[] valueToMap = display.getValueToMap();
-    Vector MapVector = display.getMapVector();
+    float[][][] lookups = lookupColors(display_values, valueArrayLength,
+        valueToScalar, display, mark);
     for (int i = 0; i < valueArrayLength; i++) {
       float[] values = display_values[i];
       if (values != null && !mark[i]) {
@@ -3157,8 +3183,6 @@ System.out.println("adjusted flow values = " + flow_values[0][0] + " " +
         DisplayRealType real = display.getDisplayScalar(displayScalarIndex);
         if (real.equals(Display.RGB) || real.equals(Display.HSV)
             || real.equals(Display.CMY)) {
-          ColorControl control = (ColorControl) ((ScalarMap) MapVector
-              .elementAt(valueToMap[i])).getControl();
           /*
            * ScalarMap map = (ScalarMap) MapVector.elementAt(valueToMap[i]);
            * System.out.println("map = " + map); int nummissing = 0; for (int
@@ -3167,25 +3191,7 @@ System.out.println("adjusted flow values = " + flow_values[0][0] + " " +
            * nummissing);
            */
 
-          float[][] color_values = control.lookupValues(values);
-
-          /*
-           * nummissing = 0; for (int k=0; k<color_values[0].length; k++) { if
-           * (color_values[0][k] != color_values[0][k]) nummissing++; }
-           * System.out.println("color_values: nummissing = " + nummissing);
-           */
-          if (real.equals(Display.HSV)) {
-            // transform color_values to DisplayRGBTuple
-            color_values = Display.DisplayHSVCoordSys.toReference(color_values);
-          } else if (real.equals(Display.CMY)) {
-            // transform color_values to DisplayRGBTuple
-            color_values = Display.DisplayCMYCoordSys.toReference(color_values);
-          } else if (real.equals(Display.RGB)) {
-            // do nothing
-          } else {
-            throw new DisplayException("unrecognized color CoordinateSsystem: "
-                + "ShadowType.assembleColor");
-          }
+          float[][] color_values = lookups[i];
           if (len == 1) {
             for (int index = 0; index < 3; index++) {
               rgba_singles[index] += color_values[index][0];
@@ -3198,9 +3204,7 @@ System.out.println("adjusted flow values = " + flow_values[0][0] + " " +
           display_values[i] = null; // MEM_WLH 27 March 99
         } // end if (real.equals(Display.RGB) || HSV || CMY)
         if (real.equals(Display.RGBA)) {
-          ColorAlphaControl control = (ColorAlphaControl) ((ScalarMap) MapVector
-              .elementAt(valueToMap[i])).getControl();
-          float[][] color_values = control.lookupValues(values);
+          float[][] color_values = lookups[i];
           if (len == 1) {
             for (int index = 0; index < 4; index++) {
               rgba_singles[index] += color_values[index][0];
@@ -3262,8 +3266,14 @@ System.out.println("adjusted flow values = " + flow_values[0][0] + " " +
           default_values);
     }
 
-    // test for any missing values
     int big_len = rgba_values[0].length;
+    if (big_len > 1 && rgba_values[1].length == big_len
+        && rgba_values[2].length == big_len
+        && rgba_values[3].length == big_len) {
+      return colorsToBytes(rgba_values, range_select);
+    }
+
+    // test for any missing values
     for (int i = 0; i < 4; i++) {
       int len = rgba_values[i].length;
       for (int j = 0; j < len; j++) {
@@ -3314,6 +3324,121 @@ System.out.println("adjusted flow values = " + flow_values[0][0] + " " +
     return b;
   }
 
+  /**
+   * look up the colors of the unmarked display_values mapped to RGB,
+   * HSV, CMY or RGBA, as RGB or RGBA; the lookups are independent, so
+   * they are done concurrently when there are many values
+   */
+  private static float[][][] lookupColors(final float[][] display_values,
+      int valueArrayLength, int[] valueToScalar, DisplayImpl display,
+      boolean[] mark) throws VisADException, RemoteException {
+    int[] valueToMap = display.getValueToMap();
+    Vector MapVector = display.getMapVector();
+    final float[][][] lookups = new float[valueArrayLength][][];
+    final int[] indices = new int[valueArrayLength];
+    final DisplayRealType[] reals = new DisplayRealType[valueArrayLength];
+    final Control[] controls = new Control[valueArrayLength];
+    int count = 0;
+    long work = 0;
+    for (int i = 0; i < valueArrayLength; i++) {
+      float[] values = display_values[i];
+      if (values != null && !mark[i]) {
+        DisplayRealType real = display.getDisplayScalar(valueToScalar[i]);
+        if (real.equals(Display.RGB) || real.equals(Display.HSV)
+            || real.equals(Display.CMY) || real.equals(Display.RGBA)) {
+          indices[count] = i;
+          reals[count] = real;
+          controls[count] = ((ScalarMap) MapVector.elementAt(valueToMap[i]))
+              .getControl();
+          count++;
+          work += values.length;
+        }
+      }
+    }
+
+    final RemoteException[] remote = { null };
+    ParallelLoop.runTasks(count, work, new ParallelLoop.Body() {
+      public void run(int start, int end) throws VisADException {
+        for (int t = start; t < end; t++) {
+          int i = indices[t];
+          DisplayRealType real = reals[t];
+          try {
+            float[][] color_values;
+            if (real.equals(Display.RGBA)) {
+              color_values = ((ColorAlphaControl) controls[t])
+                  .lookupValues(display_values[i]);
+            } else {
+              color_values = ((ColorControl) controls[t])
+                  .lookupValues(display_values[i]);
+              if (real.equals(Display.HSV)) {
+                // transform color_values to DisplayRGBTuple
+                color_values =
+                  Display.DisplayHSVCoordSys.toReference(color_values);
+              } else if (real.equals(Display.CMY)) {
+                // transform color_values to DisplayRGBTuple
+                color_values =
+                  Display.DisplayCMYCoordSys.toReference(color_values);
+              }
+            }
+            lookups[i] = color_values;
+          } catch (RemoteException e) {
+            synchronized (remote) {
+              if (remote[0] == null) remote[0] = e;
+            }
+          }
+        }
+      }
+    });
+    if (remote[0] != null) throw remote[0];
+    return lookups;
+  }
+
+  /**
+   * convert equal length rgba_values to bytes; any sample with a missing
+   * component is set to zero and marked as not selected in range_select
+   */
+  private static byte[][] colorsToBytes(final float[][] rgba_values,
+      final boolean[][] range_select) throws VisADException {
+    final int len = rgba_values[0].length;
+    final byte[][] b = new byte[rgba_values.length][len];
+    ParallelLoop.run(len, new ParallelLoop.Body() {
+      public void run(int start, int end) {
+        boolean[] select = null;
+        for (int j = start; j < end; j++) {
+          boolean missing = false;
+          for (int i = 0; i < b.length; i++) {
+            float value = rgba_values[i][j];
+            if (value != value) {
+              missing = true;
+              value = 0.0f;
+            }
+            // page 291 of Java3D book says byte colors are [0, 255] range
+            int k = (int) (value * 255.0);
+            k = (k < 0) ? 0 : (k > 255) ? 255 : k;
+            b[i][j] = (byte) ((k < 128) ? k : k - 256);
+          }
+          if (missing) {
+            if (select == null) select = getRangeSelect(range_select, len);
+            select[j] = false;
+          }
+        }
+      }
+    });
+    return b;
+  }
+
+  /** return range_select[0], first setting it to all true if null */
+  private static boolean[] getRangeSelect(boolean[][] range_select, int len) {
+    synchronized (range_select) {
+      if (range_select[0] == null) {
+        range_select[0] = new boolean[len];
+        for (int k = 0; k < len; k++)
+          range_select[0][k] = true;
+      }
+      return range_select[0];
+    }
+  }
+
   public static final float byteToFloat(byte b) {
     return (b < 0) ? (((float) b) + 256.0f) / 255.0f : ((float) b) / 255.0f;
     //
@@ -4138,6 +4263,15 @@ System.out.println("adjusted flow values = " + flow_values[0][0] + " " +
     return null;
   }
 
+  /**
+   * detach a branch made by makeBranch() from its parent, so that it
+   * may be added to a new switch; return false if branches cannot be
+   * moved, in which case they are not reused between transforms
+   */
+  public boolean detachBranch(Object branch) throws VisADException {
+    return false;
+  }
+
   public void addToGroup(Object group, Object branch) throws VisADException {
   }
 
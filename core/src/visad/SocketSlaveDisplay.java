@@ -38,7 +38,14 @@ import visad.browser.*;
     for stand-alone remote displays (i.e., not dependent on the VisAD packages)
     that communicate with the server using sockets. For an example, see
     examples/Test68.java together with the stand-alone VisAD applet
-    visad.browser.VisADApplet, usable from within a web browser. */
+    visad.browser.VisADApplet, usable from within a web browser.<P>
+
+    Each client has its own sender thread and queue, so the display's
+    rendering thread never waits on a socket; a client that falls behind
+    skips to the latest image rather than receiving every stale one.
+    Clients that ask for it receive only the tiles of each image that
+    changed since the last image they were sent, encoded by
+    visad.browser.FrameCodec. */
 public class SocketSlaveDisplay implements RemoteSlaveDisplay {
 
   /** debugging flag */
@@ -61,14 +68,11 @@ public class SocketSlaveDisplay implements RemoteSlaveDisplay {
   /** flag that prevents getImage() calls from signaling a FRAME_DONE event */
   private boolean flag;
 
-  /** array of image data extracted from the VisAD display */
-  private byte[] pix;
+  /** latest image extracted from the VisAD display */
+  private Frame frame;
 
-  /** height of image */
-  private int h;
-
-  /** width of image */
-  private int w;
+  /** serial number of the latest image */
+  private int frameCount = 0;
 
   /** the server's associated socket */
   private ServerSocket serverSocket;
@@ -85,6 +89,9 @@ public class SocketSlaveDisplay implements RemoteSlaveDisplay {
   /** vector of client socket ids */
   private Vector clientIds = new Vector();
 
+  /** vector of client sockets' send queues */
+  private Vector clientQueues = new Vector();
+
   /** thread monitoring incoming clients */
   private Thread connectThread = null;
 
@@ -117,13 +124,21 @@ public class SocketSlaveDisplay implements RemoteSlaveDisplay {
               DataInputStream in =
                 new DataInputStream(socket.getInputStream());
               clientInputs.add(in);
-              DataOutputStream out =
-                new DataOutputStream(socket.getOutputStream());
+              DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream()));
               clientOutputs.add(out);
 
               // assign client an ID number
               out.writeInt(++clientID);
-              clientIds.add(new Integer(clientID));
+              out.flush();
+              clientIds.add(Integer.valueOf(clientID));
+
+              // start sending to the client
+              ClientQueue queue = new ClientQueue(socket, in, out);
+              clientQueues.add(queue);
+              Thread sender = new Thread(queue, "SocketSlaveDisplay-Send-" +
+                display.getName() + "-" + clientID);
+              sender.start();
             }
           }
         }
@@ -139,18 +154,20 @@ public class SocketSlaveDisplay implements RemoteSlaveDisplay {
     public void run() {
       while (alive) {
         boolean silence = true;
-        Object[] sockets, inputs, outputs, cids;
+        Object[] sockets, inputs, outputs, cids, queues;
         synchronized (clientSockets) {
           sockets = clientSockets.toArray();
           inputs = clientInputs.toArray();
           outputs = clientOutputs.toArray();
           cids = clientIds.toArray();
+          queues = clientQueues.toArray();
         }
         for (int i=0; i<sockets.length; i++) {
           Socket socket = (Socket) sockets[i];
           DataInputStream in = (DataInputStream) inputs[i];
           DataOutputStream out = (DataOutputStream) outputs[i];
           int cid = ((Integer) cids[i]).intValue();
+          ClientQueue queue = (ClientQueue) queues[i];
 
           // check for client requests in the form of MouseEvent data
           try {
@@ -165,8 +182,10 @@ public class SocketSlaveDisplay implements RemoteSlaveDisplay {
               int eventType = in.readInt();
 
               if (eventType == VisADApplet.REFRESH) {
-                // send latest display image to the client
-                updateClient(socket, in, out);
+                // send latest display image to the client, whole, since
+                // the client may have lost the one it had
+                queue.refresh();
+                updateClient(queue);
 
                 // send latest supported control states to the client
                 for (int j=0; j<supportedControls.length; j++) {
@@ -178,7 +197,7 @@ public class SocketSlaveDisplay implements RemoteSlaveDisplay {
                     Control control = (Control) v.elementAt(k);
                     String message = c.getName() + "\n" +
                       k + "\n" + control.getSaveString();
-                    updateClient(message, socket, in, out);
+                    updateClient(message, queue);
                   }
                 }
 
@@ -192,9 +211,13 @@ public class SocketSlaveDisplay implements RemoteSlaveDisplay {
                   String message = "visad.ScalarMap\n" +
                     scalar.getName() + " " + displayScalar.getName() + " " +
                     range[0] + " " + range[1];
-                  updateClient(message, socket, in, out);
+                  updateClient(message, queue);
                 }
               }
+              else if (eventType == VisADApplet.DELTA_FRAMES) {
+                // send only changed tiles to the client from now on
+                queue.setDelta(true);
+              }
               else if (eventType == VisADApplet.MOUSE_EVENT) {
                 int mid = in.readInt();
                 long when = in.readLong();
@@ -245,11 +268,7 @@ public class SocketSlaveDisplay implements RemoteSlaveDisplay {
                           // skip event source client
                           int kid = ((Integer) cids[k]).intValue();
                           if (kid != cid) {
-                            Socket ksocket = (Socket) sockets[k];
-                            DataInputStream kin = (DataInputStream) inputs[k];
-                            DataOutputStream kout =
-                              (DataOutputStream) outputs[k];
-                            updateClient(message, ksocket, kin, kout);
+                            updateClient(message, (ClientQueue) queues[k]);
                           }
                         }
                       }
@@ -325,84 +344,42 @@ public class SocketSlaveDisplay implements RemoteSlaveDisplay {
     return port;
   }
 
-  /** send the latest display image to the given socket */
-  private void updateClient(Socket socket, DataInputStream in,
-    DataOutputStream out)
-  {
-    if (pix != null) {
-      try {
-        // send image width, height and array length to the output stream
-        out.writeInt(w);
-        out.writeInt(h);
-        out.writeInt(pix.length);
-
-        // send pixel data to the output stream
-        out.write(pix);
-      }
-      catch (SocketException exc) {
-        // there is a problem with this socket, so kill it
-        killSocket(socket, in, out);
-      }
-      catch (IOException exc) {
-        if (DEBUG) exc.printStackTrace();
-      }
-    }
+  /** queue the latest display image for the given client */
+  private void updateClient(ClientQueue queue) {
+    Frame f = frame;
+    if (f != null) queue.post(f);
     else if (DEBUG) System.err.println("Null pixels!");
   }
 
-  /** send a message to the given client */
-  private void updateClient(String message, Socket socket,
-    DataInputStream in, DataOutputStream out)
-  {
-    try {
-      // send message to the output stream
-      out.writeInt(-1); // special code of width -1 indicates message
-      out.writeInt(message.length());
-      out.writeChars(message);
-    }
-    catch (SocketException exc) {
-      // there is a problem with this socket, so kill it
-      killSocket(socket, in, out);
-    }
-    catch (IOException exc) {
-      if (DEBUG) exc.printStackTrace();
-    }
+  /** queue a message for the given client */
+  private void updateClient(String message, ClientQueue queue) {
+    queue.post(message);
   }
 
   /** display automatically calls sendImage when its content changes */
   public synchronized void sendImage(int[] pixels, int width, int height,
     int type) throws RemoteException
   {
-    // convert pixels to byte array
-    pix = Convert.intToBytes(pixels);
-    w = width;
-    h = height;
+    frame = new Frame(pixels, width, height, ++frameCount);
 
     // update all clients with the new image
-    int numSockets;
-    Object[] sockets, inputs, outputs;
+    Object[] queues;
     synchronized (clientSockets) {
-      sockets = clientSockets.toArray();
-      inputs = clientInputs.toArray();
-      outputs = clientOutputs.toArray();
+      queues = clientQueues.toArray();
     }
-    for (int i=0; i<sockets.length; i++) {
-      updateClient((Socket) sockets[i], (DataInputStream) inputs[i],
-        (DataOutputStream) outputs[i]);
+    for (int i=0; i<queues.length; i++) {
+      updateClient((ClientQueue) queues[i]);
     }
   }
 
   /** send the given message to this slave display */
   public synchronized void sendMessage(String message) throws RemoteException {
-    Object[] sockets, inputs, outputs;
+    Object[] queues;
     synchronized (clientSockets) {
-      sockets = clientSockets.toArray();
-      inputs = clientInputs.toArray();
-      outputs = clientOutputs.toArray();
+      queues = clientQueues.toArray();
     }
-    for (int i=0; i<sockets.length; i++) {
-      updateClient(message, (Socket) sockets[i],
-        (DataInputStream) inputs[i], (DataOutputStream) outputs[i]);
+    for (int i=0; i<queues.length; i++) {
+      updateClient(message, (ClientQueue) queues[i]);
     }
   }
 
@@ -434,13 +411,17 @@ public class SocketSlaveDisplay implements RemoteSlaveDisplay {
       if (DEBUG) exc.printStackTrace();
     }
 
-    // remove socket from socket vectors
+    // remove socket from socket vectors, unless another thread has
     synchronized (clientSockets) {
       int index = clientSockets.indexOf(socket);
-      clientSockets.removeElementAt(index);
-      clientInputs.removeElementAt(index);
-      clientOutputs.removeElementAt(index);
-      clientIds.removeElementAt(index);
+      if (index >= 0) {
+        clientSockets.removeElementAt(index);
+        clientInputs.removeElementAt(index);
+        clientOutputs.removeElementAt(index);
+        clientIds.removeElementAt(index);
+        ((ClientQueue) clientQueues.elementAt(index)).close();
+        clientQueues.removeElementAt(index);
+      }
     }
   }
 
@@ -474,5 +455,183 @@ public class SocketSlaveDisplay implements RemoteSlaveDisplay {
     }
   }
 
-}
+  /** an image from the VisAD display, with its encodings for sending */
+  private static class Frame {
+
+    /** RLE-encoded pixels, as passed to sendImage */
+    private final int[] encoded;
+
+    /** width and height of image */
+    private final int width, height;
+
+    /** serial number of image */
+    private final int serial;
+
+    /** decoded pixels, computed when first needed */
+    private int[] pixels = null;
+
+    /** encoded pixels as bytes, computed when first needed */
+    private byte[] bytes = null;
+
+    /** FrameCodec encodings against earlier images, keyed by their
+        serial numbers, so clients in step share one encoding */
+    private final Hashtable deltas = new Hashtable();
+
+    Frame(int[] encoded, int width, int height, int serial) {
+      this.encoded = encoded;
+      this.width = width;
+      this.height = height;
+      this.serial = serial;
+    }
+
+    synchronized int[] getPixels() {
+      if (pixels == null) pixels = Convert.decodeRLE(encoded);
+      return pixels;
+    }
+
+    synchronized byte[] getBytes() {
+      if (bytes == null) bytes = Convert.intToBytes(encoded);
+      return bytes;
+    }
+
+    /** return this image encoded against previous, which may be null,
+        or an empty array if no tile changed */
+    byte[] getDelta(Frame previous) throws IOException {
+      if (previous != null &&
+          (previous.width != width || previous.height != height)) {
+        previous = null;
+      }
+      Integer key = Integer.valueOf(previous == null ? 0 : previous.serial);
+      synchronized (this) {
+        byte[] delta = (byte[]) deltas.get(key);
+        if (delta == null) {
+          int[] old = previous == null ? null : previous.getPixels();
+          delta = FrameCodec.encode(getPixels(), old, width, height);
+          if (delta == null) delta = new byte[0];
+          deltas.put(key, delta);
+        }
+        return delta;
+      }
+    }
+  }
+
+  /** images and messages waiting to be sent to a client, written to its
+      socket by a thread of its own */
+  private class ClientQueue implements Runnable {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
 
+    /** pending Frames and message Strings, in order; at most one Frame,
+        the latest */
+    private final Vector pending = new Vector();
+
+    /** whether the client accepts FrameCodec images */
+    private boolean delta = false;
+
+    /** latest image sent to the client */
+    private Frame sent = null;
+
+    /** whether the next image must be sent whole */
+    private boolean refresh = false;
+
+    private boolean closed = false;
+
+    ClientQueue(Socket socket, DataInputStream in, DataOutputStream out) {
+      this.socket = socket;
+      this.in = in;
+      this.out = out;
+    }
+
+    synchronized void setDelta(boolean delta) {
+      this.delta = delta;
+    }
+
+    /** queue a Frame, replacing any stale one, or a message */
+    synchronized void post(Object item) {
+      if (item instanceof Frame) {
+        for (int i=pending.size()-1; i>=0; i--) {
+          if (pending.elementAt(i) instanceof Frame) pending.removeElementAt(i);
+        }
+      }
+      pending.addElement(item);
+      notifyAll();
+    }
+
+    /** send the next image whole rather than as changes since the
+        client's latest image */
+    synchronized void refresh() {
+      refresh = true;
+    }
+
+    synchronized void close() {
+      closed = true;
+      notifyAll();
+    }
+
+    public void run() {
+      while (true) {
+        Object item;
+        boolean useDelta;
+        boolean whole = false;
+        synchronized (this) {
+          while (pending.isEmpty() && !closed) {
+            try {
+              wait();
+            }
+            catch (InterruptedException exc) { }
+          }
+          if (closed) return;
+          item = pending.elementAt(0);
+          pending.removeElementAt(0);
+          useDelta = delta;
+          if (item instanceof Frame) {
+            whole = refresh;
+            refresh = false;
+          }
+        }
+        try {
+          if (item instanceof Frame) {
+            Frame f = (Frame) item;
+            if (useDelta) {
+              byte[] data = f.getDelta(whole ? null : sent);
+              if (data.length > 0) {
+                // send tiles changed since the client's latest image
+                out.writeInt(VisADApplet.DELTA_FRAME);
+                out.writeInt(f.width);
+                out.writeInt(f.height);
+                out.writeInt(data.length);
+                out.write(data);
+              }
+            }
+            else {
+              // send image width, height, array length and pixel data
+              byte[] data = f.getBytes();
+              out.writeInt(f.width);
+              out.writeInt(f.height);
+              out.writeInt(data.length);
+              out.write(data);
+            }
+            sent = f;
+          }
+          else {
+            String message = (String) item;
+            out.writeInt(VisADApplet.MESSAGE_FRAME);
+            out.writeInt(message.length());
+            out.writeChars(message);
+          }
+          out.flush();
+        }
+        catch (IOException exc) {
+          // the client can no longer follow the stream after a partly
+          // written frame, so kill its socket
+          if (DEBUG) exc.printStackTrace();
+          killSocket(socket, in, out);
+          return;
+        }
+      }
+    }
+  }
+
+}
@@ -163,7 +163,8 @@ public abstract class Unit implements Serializable {
                 }
                 else {
                     // else do the conversion (creates a new array)
-                    new_value[i] = units_out[i].toThis(value[i], units_in[i]);
+                    new_value[i] = UnitConverter.get(units_in[i], units_out[i])
+                            .convert(value[i]);
                 }
             }
         }
@@ -279,7 +280,8 @@ public abstract class Unit implements Serializable {
                 }
                 else {
                     // else do the conversion
-                    new_value[i] = units_out[i].toThis(value[i], units_in[i]);
+                    new_value[i] = UnitConverter.get(units_in[i], units_out[i])
+                            .convert(value[i]);
                 }
             }
         }
@@ -535,7 +537,12 @@ public abstract class Unit implements Serializable {
         }
         else {
             // convert value array
-            final double[] val = unit_out.toThis(value, unit_in, copy);
+            final UnitConverter converter = UnitConverter.get(unit_in,
+                    unit_out);
+            // convert in place unless a copy is wanted, as toThis does
+            final double[] val = (copy)
+                    ? converter.convert(value)
+                    : converter.convert(value, value);
 
             // construct new ErrorEstimate, if needed
             if (error_in == null) {
@@ -545,9 +552,9 @@ public abstract class Unit implements Serializable {
                 // scale data.ErrorEstimate for Unit.toThis
                 final double error = 0.5 * error_in.getErrorValue();
                 final double mean = error_in.getMean();
-                final double new_error = Math.abs(unit_out.toThis(mean + error,
-                        unit_in)
-                        - unit_out.toThis(mean - error, unit_in));
+                final double new_error = Math.abs(converter.convert(mean
+                        + error)
+                        - converter.convert(mean - error));
                 errors_out[0] = new ErrorEstimate(val, new_error, unit_out);
             }
 
@@ -600,7 +607,12 @@ public abstract class Unit implements Serializable {
         }
         else {
             // convert value array
-            final float[] val = unit_out.toThis(value, unit_in, copy);
+            final UnitConverter converter = UnitConverter.get(unit_in,
+                    unit_out);
+            // convert in place unless a copy is wanted, as toThis does
+            final float[] val = (copy)
+                    ? converter.convert(value)
+                    : converter.convert(value, value);
 
             // construct new ErrorEstimate, if needed
             if (error_in == null) {
@@ -610,9 +622,9 @@ public abstract class Unit implements Serializable {
                 // scale data.ErrorEstimate for Unit.toThis
                 final double error = 0.5 * error_in.getErrorValue();
                 final double mean = error_in.getMean();
-                final double new_error = Math.abs(unit_out.toThis(mean + error,
-                        unit_in)
-                        - unit_out.toThis(mean - error, unit_in));
+                final double new_error = Math.abs(converter.convert(mean
+                        + error)
+                        - converter.convert(mean - error));
                 errors_out[0] = new ErrorEstimate(val, new_error, unit_out);
             }
 
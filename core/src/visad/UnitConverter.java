@@ -0,0 +1,324 @@
+//
+// UnitConverter.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A conversion of values from one unit to another, resolved once and
+ * cached.
+ * <p>
+ * Converting with {@link Unit#toThis(float[], Unit)} walks the chain of
+ * {@link ScaledUnit}s and {@link OffsetUnit}s of both units on every call,
+ * allocating an intermediate array at each link.  When both units reduce
+ * to a scale and an offset of derived units of the same dimensionality
+ * (e.g. km and m, or Celsius and Fahrenheit), the whole chain collapses
+ * into a single <code>y = (a*x + b)/c</code>, applied in one pass and,
+ * if the caller wishes, in place.  Any other conversion (e.g. one
+ * involving a logarithmic unit, or between reciprocal units) is delegated
+ * to {@link Unit#toThis(float[], Unit, boolean)}.
+ * <p>
+ * The composed scale and offset are applied in double precision and a
+ * converted float is rounded once, so it may differ slightly from (and is
+ * usually closer than) the one produced by the step-by-step conversion,
+ * which rounds to float at every link.
+ * <p>
+ * Instances are immutable and may be shared between threads.
+ */
+public final class UnitConverter {
+
+  /** maximum number of cached converters */
+  private static final int CACHE_SIZE = 512;
+
+  private static final Map<Key, UnitConverter> cache =
+    new LinkedHashMap<Key, UnitConverter>(64, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      protected boolean removeEldestEntry(
+              Map.Entry<Key, UnitConverter> eldest) {
+        return size() > CACHE_SIZE;
+      }
+    };
+
+  private final Unit from;
+  private final Unit to;
+
+  /** true if this conversion is affine and may be applied in one pass */
+  private final boolean affine;
+
+  /** y = (scale*x + shift)/divisor */
+  private final double scale;
+  private final double shift;
+  private final double divisor;
+
+  /** true if values are unchanged by this conversion */
+  private final boolean identity;
+
+  private UnitConverter(Unit from, Unit to)
+          throws UnitException {
+    this.from = from;
+    this.to = to;
+
+    if (!Unit.canConvert(from, to)) {
+      throw new UnitException("Attempt to convert from unit \"" + from +
+                              "\" to unit \"" + to + "\"");
+    }
+
+    final double[] f = new double[2];
+    final double[] t = new double[2];
+    if (from == null || to == null || from instanceof PromiscuousUnit ||
+        to instanceof PromiscuousUnit || to.equals(from)) {
+      affine = true;
+      scale = 1;
+      shift = 0;
+      divisor = 1;
+    }
+    else {
+      final DerivedUnit fd = decompose(from, f);
+      final DerivedUnit td = decompose(to, t);
+      affine = fd != null && td != null && td.sameDimensionality(fd);
+      scale = affine ? f[0] : 1;
+      shift = affine ? f[1] - t[1] : 0;
+      divisor = affine ? t[0] : 1;
+    }
+    identity = affine && scale == 1 && shift == 0 && divisor == 1;
+  }
+
+  /**
+   * Returns the conversion of values in one unit to another.
+   *
+   * @param from  The unit of the values to be converted.
+   * @param to    The unit to which to convert.  Either unit may be
+   *              <code>null</code> if the other is <code>null</code> or a
+   *              {@link PromiscuousUnit}, in which case values are not
+   *              changed.
+   * @return      The conversion.
+   * @throws UnitException if the units are not convertible.
+   */
+  public static UnitConverter get(Unit from, Unit to)
+          throws UnitException {
+    final Key key = new Key(from, to);
+    UnitConverter converter;
+    synchronized (cache) {
+      converter = cache.get(key);
+    }
+    if (converter == null) {
+      converter = new UnitConverter(from, to);
+      synchronized (cache) {
+        cache.put(key, converter);
+      }
+    }
+    return converter;
+  }
+
+  /**
+   * Reduces a unit to <code>x_derived = a*x + b</code>.
+   *
+   * @param unit  The unit.
+   * @param ab    Set to { a, b }.
+   * @return      The underlying derived unit, or <code>null</code> if the
+   *              unit is not a (possibly scaled and offset) base or derived
+   *              unit.
+   */
+  private static DerivedUnit decompose(Unit unit, double[] ab) {
+    if (unit instanceof DerivedUnit) {
+      ab[0] = 1;
+      ab[1] = 0;
+      return (DerivedUnit) unit;
+    }
+    if (unit instanceof BaseUnit) {
+      ab[0] = 1;
+      ab[1] = 0;
+      return ((BaseUnit) unit).getDerivedUnit();
+    }
+    if (unit instanceof ScaledUnit) {
+      final ScaledUnit scaled = (ScaledUnit) unit;
+      final DerivedUnit derived = decompose(scaled.underUnit, ab);
+      ab[0] *= scaled.amount;
+      return derived;
+    }
+    if (unit instanceof OffsetUnit) {
+      final OffsetUnit offset = (OffsetUnit) unit;
+      final DerivedUnit derived = decompose(offset.underUnit, ab);
+      ab[1] += ab[0] * offset.offset;
+      return derived;
+    }
+    return null;
+  }
+
+  /**
+   * @return the unit of the values to be converted
+   */
+  public Unit getFromUnit() {
+    return from;
+  }
+
+  /**
+   * @return the unit to which values are converted
+   */
+  public Unit getToUnit() {
+    return to;
+  }
+
+  /**
+   * @return <code>true</code> if values are not changed by this conversion
+   */
+  public boolean isIdentity() {
+    return identity;
+  }
+
+  /**
+   * Converts values into a new array.
+   *
+   * @param values  The values to be converted.  They are not modified.
+   * @return        The converted values.
+   * @throws UnitException if the conversion fails.
+   */
+  public float[] convert(float[] values)
+          throws UnitException {
+    return convert(values, new float[values.length]);
+  }
+
+  /**
+   * Converts values into a new array.
+   *
+   * @param values  The values to be converted.  They are not modified.
+   * @return        The converted values.
+   * @throws UnitException if the conversion fails.
+   */
+  public double[] convert(double[] values)
+          throws UnitException {
+    return convert(values, new double[values.length]);
+  }
+
+  /**
+   * Converts values into a caller supplied array.
+   *
+   * @param in    The values to be converted.
+   * @param out   The array to hold the converted values.  May be
+   *              <code>in</code>, and must be at least as long.
+   * @return      <code>out</code>
+   * @throws UnitException if the conversion fails.
+   */
+  public float[] convert(float[] in, float[] out)
+          throws UnitException {
+    final int n = in.length;
+    if (!affine) {
+      final float[] values = to.toThis(in, from, true);
+      System.arraycopy(values, 0, out, 0, n);
+    }
+    else if (identity) {
+      if (out != in) System.arraycopy(in, 0, out, 0, n);
+    }
+    else if (divisor == 1) {
+      for (int i=0; i<n; i++) {
+        out[i] = (float) (scale * in[i] + shift);
+      }
+    }
+    else {
+      for (int i=0; i<n; i++) {
+        out[i] = (float) ((scale * in[i] + shift) / divisor);
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Converts values into a caller supplied array.
+   *
+   * @param in    The values to be converted.
+   * @param out   The array to hold the converted values.  May be
+   *              <code>in</code>, and must be at least as long.
+   * @return      <code>out</code>
+   * @throws UnitException if the conversion fails.
+   */
+  public double[] convert(double[] in, double[] out)
+          throws UnitException {
+    final int n = in.length;
+    if (!affine) {
+      final double[] values = to.toThis(in, from, true);
+      System.arraycopy(values, 0, out, 0, n);
+    }
+    else if (identity) {
+      if (out != in) System.arraycopy(in, 0, out, 0, n);
+    }
+    else if (divisor == 1) {
+      for (int i=0; i<n; i++) {
+        out[i] = scale * in[i] + shift;
+      }
+    }
+    else {
+      for (int i=0; i<n; i++) {
+        out[i] = (scale * in[i] + shift) / divisor;
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Converts a single value.
+   *
+   * @param value  The value to be converted.
+   * @return       The converted value.
+   * @throws UnitException if the conversion fails.
+   */
+  public double convert(double value)
+          throws UnitException {
+    if (!affine) {
+      return to.toThis(value, from);
+    }
+    return (scale * value + shift) / divisor;
+  }
+
+  public String toString() {
+    return "UnitConverter: " + from + " -> " + to;
+  }
+
+  /** a (from, to) pair of units; either may be null */
+  private static final class Key {
+    private final Unit from;
+    private final Unit to;
+
+    Key(Unit from, Unit to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) return false;
+      final Key that = (Key) obj;
+      return (from == null ? that.from == null : from.equals(that.from)) &&
+             (to == null ? that.to == null : to.equals(that.to));
+    }
+
+    public int hashCode() {
+      return 31 * (from == null ? 0 : from.hashCode()) +
+             (to == null ? 0 : to.hashCode());
+    }
+  }
+}
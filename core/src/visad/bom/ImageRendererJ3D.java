@@ -46,6 +46,7 @@ import visad.Data;
 import visad.DataDisplayLink;
 import visad.DataReference;
 import visad.DataReferenceImpl;
+import visad.DataShadow;
 import visad.Display;
 import visad.DisplayException;
 import visad.DisplayImpl;
@@ -56,6 +57,8 @@ import visad.FieldImpl;
 import visad.FlatField;
 import visad.FunctionType;
 import visad.Gridded1DDoubleSet;
+import visad.ImagePyramid;
+import visad.ImagePyramidLevels;
 import visad.MathType;
 import visad.RealTupleType;
 import visad.RealType;
@@ -369,6 +372,12 @@ public class ImageRendererJ3D extends DefaultRendererJ3D {
 
   private boolean lastByRef = false;
 
+  // level of detail pyramids of the images, and the level transformed
+  private ImagePyramidLevels pyramid_levels = new ImagePyramidLevels();
+
+  // true if the projection now calls for another level
+  private boolean pyramid_pending = false;
+
 
   public static boolean isByRefUsable(DataDisplayLink link, ShadowType shadow) throws VisADException, RemoteException {
         ShadowFunctionOrSetType shadowType = (ShadowFunctionOrSetType) shadow.getAdaptedShadowType();
@@ -537,9 +546,51 @@ public class ImageRendererJ3D extends DefaultRendererJ3D {
 
   public void clearScene() {
     vbranch = null;
+    pyramid_levels.clear();
+    pyramid_pending = false;
     super.clearScene();
   }
 
+  /** re-transform if zooming has changed the level of detail the
+      image should be transformed at */
+  public DataShadow prepareAction(boolean go, boolean initialize,
+                                  DataShadow shadow)
+         throws VisADException, RemoteException {
+    pyramid_pending = checkPyramidLevel();
+    return super.prepareAction(go || pyramid_pending, initialize, shadow);
+  }
+
+  public boolean checkAction() {
+    return pyramid_pending || super.checkAction();
+  }
+
+  private boolean checkPyramidLevel() throws VisADException {
+    return pyramid_levels.isLevelPending(getDisplay());
+  }
+
+  /** select the level of detail for the images in data, from the
+      footprint of its first image under the current projection */
+  private void beginPyramids(Data data)
+          throws VisADException, RemoteException {
+    pyramid_levels.begin(data, getDisplay());
+    pyramid_pending = false;
+  }
+
+  private void endPyramids() {
+    pyramid_levels.end();
+  }
+
+  /** return the level of image to transform */
+  FlatField getPyramidLevel(FlatField image)
+            throws VisADException, RemoteException {
+    return pyramid_levels.getLevel(image);
+  }
+
+  /** true if the level of detail differs from the last transform */
+  boolean getPyramidLevelChanged() {
+    return pyramid_levels.getLevelChanged();
+  }
+
   void setVisADBranch(VisADBranchGroup branch) {
     vbranch = branch;
   }
@@ -625,12 +676,16 @@ public class ImageRendererJ3D extends DefaultRendererJ3D {
       try {
 	if (type instanceof ShadowImageByRefFunctionTypeJ3D) { //GEOMETRY/COLORBYTE REUSE LOGIC Only for ByRef for Time being
 		if (checkAction()) { //This generally decides whether at all retransformation is required or not.
+			beginPyramids(data);
 	        	type.doTransform(branch, data, valueArray,
                          	link.getDefaultValues(), this);
+			endPyramids();
 		}
 	} else {	//Not byRef (ShadowImageFunctionTypeJ3D)
+		beginPyramids(data);
 		type.doTransform(branch, data, valueArray,
                          link.getDefaultValues(), this);
+		endPyramids();
 	}
       } catch (RemoteException re) {
         if (visad.collab.CollabUtil.isDisconnectException(re)) {
@@ -848,6 +903,31 @@ public class ImageRendererJ3D extends DefaultRendererJ3D {
   }
   //27FEB2012: Projection Seam Change Bug Fix (ends here)
 
+  /**
+   * @return level of detail of the images of the last transform;
+   *         0 for full resolution, L for every 2^L-th sample
+   */
+  public int getLastPyramidLevel() {
+        return pyramid_levels.getLastLevel();
+  }
+
+  /**
+   * @return level of detail pyramid of the first image of the last
+   *         transform, or null if it was transformed at full resolution
+   *         because it is not a large gridded image
+   */
+  public ImagePyramid getLastPyramid() {
+        return pyramid_levels.getLastPyramid();
+  }
+
+  /**
+   * @return number of image samples transformed by the last transform,
+   *         summed over all of its images
+   */
+  public int getLastTransformedSamples() {
+        return pyramid_levels.getTransformedSamples();
+  }
+
 
 //GEOMETRY/COLORBYTE REUSE UTILITY METHODS (ENDS HERE)
 
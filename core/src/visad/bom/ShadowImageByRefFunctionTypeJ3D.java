@@ -463,6 +463,10 @@ public class ShadowImageByRefFunctionTypeJ3D extends ShadowFunctionTypeJ3D {
       		imgFlatField = (FlatField)data;
     	}
 
+	//LEVEL OF DETAIL: transform the pyramid level matching the current projection
+	boolean pyramid_level_changed = ((ImageRendererJ3D) renderer).getPyramidLevelChanged();
+	imgFlatField = ((ImageRendererJ3D) renderer).getPyramidLevel(imgFlatField);
+
 	 // check that range is single RealType mapped to RGB only
     	ShadowRealType[] RangeComponents = adaptedShadowType.getRangeComponents();
     	int rangesize = RangeComponents.length;
@@ -597,6 +601,11 @@ public class ShadowImageByRefFunctionTypeJ3D extends ShadowFunctionTypeJ3D {
 		regen_colbytes = true;
 		apply_alpha = true;
 	}
+	if (pyramid_level_changed) { //LEVEL OF DETAIL: image dimensions have changed
+		regen_geom = true;
+		regen_colbytes = true;
+		apply_alpha = true;
+	}
 
         /**
         System.err.println("Regenerate Color Bytes:" + regen_colbytes);
@@ -944,6 +953,7 @@ public class ShadowImageByRefFunctionTypeJ3D extends ShadowFunctionTypeJ3D {
 
       for (int k=1; k<numImages; k++) {
         FlatField ff = (FlatField) ((Field)data).getSample(k);
+        ff = ((ImageRendererJ3D) renderer).getPyramidLevel(ff);
         CoordinateSystem dcs = ff.getDomainCoordinateSystem();
         GriddedSet domSet = (GriddedSet) ff.getDomainSet();
         int[] lens = domSet.getLengths();
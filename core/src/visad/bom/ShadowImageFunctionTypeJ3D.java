@@ -75,6 +75,11 @@ public class ShadowImageFunctionTypeJ3D extends ShadowFunctionTypeJ3D {
     }
     if (getLevelOfDifficulty() == NOTHING_MAPPED) return false;
 
+    // transform the level of detail matching the current projection
+    if (data instanceof FlatField) {
+      data = ((ImageRendererJ3D) renderer).getPyramidLevel((FlatField) data);
+    }
+
     ShadowFunctionOrSetType adaptedShadowType =
       (ShadowFunctionOrSetType) getAdaptedShadowType();
     DisplayImpl display = getDisplay();
@@ -878,7 +883,9 @@ public class ShadowImageFunctionTypeJ3D extends ShadowFunctionTypeJ3D {
       double[] old_times = null;
       boolean[] old_mark = null;
       int old_len = 0;
-      boolean reuse = ((ImageRendererJ3D) renderer).getReUseFrames();
+      // frames at another level of detail cannot be reused
+      boolean reuse = ((ImageRendererJ3D) renderer).getReUseFrames() &&
+                      !((ImageRendererJ3D) renderer).getPyramidLevelChanged();
       if (group instanceof BranchGroup &&
           ((BranchGroup) group).numChildren() > 0) {
         Node g = ((BranchGroup) group).getChild(0);
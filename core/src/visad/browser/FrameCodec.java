@@ -0,0 +1,173 @@
+//
+// FrameCodec.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.browser;
+
+import java.io.*;
+import java.util.zip.*;
+
+/**
+ * Delta encoding of display images for sending to VisADApplet clients.
+ * An image is cut into square tiles; only the tiles that differ from the
+ * client's previous image are sent, each as its pixels XORed with the
+ * previous ones, so unchanged pixels within a changed tile become zeroes.
+ * The tiles are then deflated.
+ */
+public class FrameCodec {
+
+  /**
+   * Width and height of a tile, in pixels.
+   */
+  public static final int TILE_SIZE = 32;
+
+  /**
+   * Marks the end of the tiles of an encoded image.
+   */
+  private static final int END = -1;
+
+  /**
+   * Encodes an image as its difference from a previous image.
+   *
+   * @param pixels The image, in rows of width pixels
+   * @param previous The previous image, of the same width and height,
+   *                 or null to encode every tile
+   * @param width The width of the image
+   * @param height The height of the image
+   *
+   * @return The encoded image, or null if previous is not null and no
+   *         tile differs from it.
+   */
+  public static byte[] encode(int[] pixels, int[] previous, int width,
+    int height) throws IOException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    DataOutputStream out =
+      new DataOutputStream(new DeflaterOutputStream(bytes, deflater));
+    byte[] tile = new byte[4 * TILE_SIZE * TILE_SIZE];
+    int tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+    int tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+    out.writeBoolean(previous != null);
+    boolean changed = false;
+    for (int ty = 0; ty < tilesY; ty++) {
+      int y0 = ty * TILE_SIZE;
+      int y1 = Math.min(y0 + TILE_SIZE, height);
+      for (int tx = 0; tx < tilesX; tx++) {
+        int x0 = tx * TILE_SIZE;
+        int x1 = Math.min(x0 + TILE_SIZE, width);
+        if (previous != null && same(pixels, previous, width, x0, x1, y0, y1)) {
+          continue;
+        }
+        int p = 0;
+        for (int y = y0; y < y1; y++) {
+          for (int i = y * width + x0; i < y * width + x1; i++) {
+            int q = previous == null ? pixels[i] : pixels[i] ^ previous[i];
+            tile[p++] = (byte) (q >>> 24);
+            tile[p++] = (byte) (q >>> 16);
+            tile[p++] = (byte) (q >>> 8);
+            tile[p++] = (byte) q;
+          }
+        }
+        out.writeInt(ty * tilesX + tx);
+        out.write(tile, 0, p);
+        changed = true;
+      }
+    }
+    out.writeInt(END);
+    out.close();
+    deflater.end();
+    return (changed || previous == null) ? bytes.toByteArray() : null;
+  }
+
+  /**
+   * Decodes an image encoded by encode().
+   *
+   * @param data The encoded image
+   * @param previous The latest decoded image; ignored unless data was
+   *                 encoded against it
+   * @param width The width of the image
+   * @param height The height of the image
+   *
+   * @return A new array holding the decoded image; previous is
+   *         left unchanged.
+   */
+  public static int[] decode(byte[] data, int[] previous, int width,
+    int height) throws IOException
+  {
+    int[] pixels = new int[width * height];
+    Inflater inflater = new Inflater();
+    DataInputStream in = new DataInputStream(
+      new InflaterInputStream(new ByteArrayInputStream(data), inflater));
+    byte[] tile = new byte[4 * TILE_SIZE * TILE_SIZE];
+    int tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+    try {
+      if (in.readBoolean()) {
+        if (previous == null || previous.length != pixels.length) {
+          throw new IOException("no previous image to decode against");
+        }
+        System.arraycopy(previous, 0, pixels, 0, pixels.length);
+      }
+      while (true) {
+        int t = in.readInt();
+        if (t == END) break;
+        int x0 = (t % tilesX) * TILE_SIZE;
+        int x1 = Math.min(x0 + TILE_SIZE, width);
+        int y0 = (t / tilesX) * TILE_SIZE;
+        int y1 = Math.min(y0 + TILE_SIZE, height);
+        if (t < 0 || y0 >= height) throw new IOException("bad tile " + t);
+        in.readFully(tile, 0, 4 * (x1 - x0) * (y1 - y0));
+        int p = 0;
+        for (int y = y0; y < y1; y++) {
+          for (int i = y * width + x0; i < y * width + x1; i++) {
+            int q = ((tile[p] & 0xff) << 24) | ((tile[p + 1] & 0xff) << 16) |
+              ((tile[p + 2] & 0xff) << 8) | (tile[p + 3] & 0xff);
+            pixels[i] ^= q;
+            p += 4;
+          }
+        }
+      }
+    }
+    finally {
+      inflater.end();
+    }
+    return pixels;
+  }
+
+  /**
+   * Tests whether a tile is the same in two images.
+   */
+  private static boolean same(int[] a, int[] b, int width,
+    int x0, int x1, int y0, int y1)
+  {
+    for (int y = y0; y < y1; y++) {
+      for (int i = y * width + x0; i < y * width + x1; i++) {
+        if (a[i] != b[i]) return false;
+      }
+    }
+    return true;
+  }
+
+}
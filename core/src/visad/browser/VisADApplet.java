@@ -74,6 +74,21 @@ public class VisADApplet extends Applet
    */
   public static final int MESSAGE = 2;
 
+  /**
+   * Code for asking the server to send images encoded by FrameCodec.
+   */
+  public static final int DELTA_FRAMES = 3;
+
+  /**
+   * Image width code for a message from the server.
+   */
+  public static final int MESSAGE_FRAME = -1;
+
+  /**
+   * Image width code for an image encoded by FrameCodec.
+   */
+  public static final int DELTA_FRAME = -2;
+
   /**
    * Whether the applet client is connected to a server.
    */
@@ -109,6 +124,12 @@ public class VisADApplet extends Applet
    */
   private Image image = null;
 
+  /**
+   * Pixels of the latest image, against which the next delta-encoded
+   * image is decoded.
+   */
+  private int[] pixels = null;
+
   /**
    * Text field for typing in IP address of server.
    */
@@ -312,6 +333,22 @@ public class VisADApplet extends Applet
     }
   }
 
+  /**
+   * Asks the server to send only the changed parts of each image.
+   */
+  private void requestDeltaFrames() {
+    if (out != null) {
+      try {
+        out.writeInt(id);
+        out.writeInt(DELTA_FRAMES);
+      }
+      catch (IOException exc) {
+        // problem communicating with server; it has probably disconnected
+        disconnect();
+      }
+    }
+  }
+
   /**
    * Sends the specified mouse event through the socket to the server.
    */
@@ -451,6 +488,8 @@ public class VisADApplet extends Applet
       public void run() {
         try {
           // request a refresh so that the server sends the image
+          pixels = null;
+          requestDeltaFrames();
           requestRefresh();
 
           // loop until the socket gets closed
@@ -458,7 +497,8 @@ public class VisADApplet extends Applet
             // read the latest display image
             int w = in.readInt();
             if (w == 0) continue;
-            if (w == -1) {
+            int[] decoded = null;
+            if (w == MESSAGE_FRAME) {
               // server is sending a message
               int len = in.readInt();
               char[] c = new char[len];
@@ -568,17 +608,30 @@ public class VisADApplet extends Applet
                 }
               }
             }
+            else if (w == DELTA_FRAME) {
+              // server is sending the changed tiles of an image
+              w = in.readInt();
+              int h = in.readInt();
+              int len = in.readInt();
+              byte[] data = new byte[len];
+              in.readFully(data);
+              decoded = FrameCodec.decode(data, pixels, w, h);
+            }
             else {
               // server is sending an image
               int h = in.readInt();
               int len = in.readInt();
-              byte[] pixels = new byte[len];
+              byte[] data = new byte[len];
               int p = 0;
-              while (p < len) p += in.read(pixels, p, len - p);
-              int[] pix = Convert.bytesToInt(pixels);
+              while (p < len) p += in.read(data, p, len - p);
+              int[] pix = Convert.bytesToInt(data);
 
               // decode pixels from RLE
-              int[] decoded = Convert.decodeRLE(pix);
+              decoded = Convert.decodeRLE(pix);
+            }
+            if (decoded != null) {
+              pixels = decoded;
+              int h = decoded.length / w;
 
               // reconstruct the image locally
               if (image != null) image.flush();
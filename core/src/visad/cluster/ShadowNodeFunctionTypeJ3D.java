@@ -259,6 +259,11 @@ public class ShadowNodeFunctionTypeJ3D extends ShadowFunctionTypeJ3D {
     return branch;
   }
 
+  public boolean detachBranch(Object branch) throws VisADException {
+    ((VisADGroup) branch).detach();
+    return true;
+  }
+
   public void addToGroup(Object group, Object branch)
          throws VisADException {
     ((VisADGroup) group).addChild((VisADGroup) branch);
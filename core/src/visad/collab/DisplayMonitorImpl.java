@@ -103,6 +103,20 @@ The event for state C would overwrite the event for state B
 in the MonitorSyncer's cache as long as the MonitorSyncer
 received that event before it received the DisplaySync
 request for the event.
+
+Forwarding keys and requesting events cost two remote calls
+per event, which lagged remote Displays by seconds when an
+animated Display changed its projection or animation step
+many times a second.  The MonitorSyncer now takes every event
+in its cache at once and delivers them, in order of creation,
+as one batch; events are superceded up to the point the batch
+is taken.  A batch holding only CONTROL_CHANGED events is sent
+no sooner than visad.collab.batchInterval milliseconds (20 by
+default) after the previous batch, so a flood of Control
+changes reaches each remote Display as at most one change per
+Control per interval; other events are sent at once.  Queue
+depth and delivery latency are available from getQueueDepth(),
+getMaxLatency() and getStats().
 */
 
 package visad.collab;
@@ -142,6 +156,13 @@ import visad.VisADException;
 public class DisplayMonitorImpl
   implements DisplayMonitor
 {
+  /**
+   * System property giving the minimum milliseconds between batches
+   * of Control changes sent to each listener.
+   */
+  public static final String BATCH_INTERVAL_PROPERTY =
+    "visad.collab.batchInterval";
+
   private int nextListenerID = UNKNOWN_LISTENER_ID + 1;
 
   /**
@@ -609,6 +630,74 @@ public class DisplayMonitorImpl
     return result;
   }
 
+  /**
+   * Returns the number of {@link MonitorEvent MonitorEvents} waiting to
+   * be sent, summed over all listeners.
+   */
+  public int getQueueDepth()
+  {
+    int depth = 0;
+    synchronized (listeners) {
+      ListIterator iter = listeners.listIterator();
+      while (iter.hasNext()) {
+        depth += ((MonitorSyncer )iter.next()).getQueueDepth();
+      }
+    }
+    return depth;
+  }
+
+  /**
+   * Returns the most milliseconds any {@link MonitorEvent MonitorEvent}
+   * has waited between being queued and being delivered to a listener.
+   */
+  public long getMaxLatency()
+  {
+    long latency = 0;
+    synchronized (listeners) {
+      ListIterator iter = listeners.listIterator();
+      while (iter.hasNext()) {
+        latency = Math.max(latency,
+                           ((MonitorSyncer )iter.next()).getMaxLatency());
+      }
+    }
+    return latency;
+  }
+
+  /**
+   * Returns a line per listener giving its queue depth, the events
+   * queued, superceded and sent, the batches sent, and the mean and
+   * maximum delivery latency in milliseconds.
+   */
+  public String getStats()
+  {
+    StringBuffer buf = new StringBuffer();
+    synchronized (listeners) {
+      ListIterator iter = listeners.listIterator();
+      while (iter.hasNext()) {
+        MonitorSyncer li = (MonitorSyncer )iter.next();
+        buf.append(li.getName());
+        buf.append(" #");
+        buf.append(li.getID());
+        buf.append(": depth ");
+        buf.append(li.getQueueDepth());
+        buf.append(", queued ");
+        buf.append(li.getEventsQueued());
+        buf.append(", merged ");
+        buf.append(li.getEventsMerged());
+        buf.append(", sent ");
+        buf.append(li.getEventsSent());
+        buf.append(" in ");
+        buf.append(li.getBatchesSent());
+        buf.append(" batches, latency mean ");
+        buf.append(li.getMeanLatency());
+        buf.append(" max ");
+        buf.append(li.getMaxLatency());
+        buf.append('\n');
+      }
+    }
+    return buf.toString();
+  }
+
   /**
    * Returns <tt>true</tt> if there are listeners for this display.
    */
@@ -60,6 +60,11 @@ public class DisplaySyncImpl
   private HashMap current = new HashMap();
   private HashMap diverted = null;
 
+  /**
+   * Events delivered in batches and not yet processed, by key.
+   */
+  private HashMap received = new HashMap();
+
   public DisplaySyncImpl(DisplayImpl dpy)
     throws RemoteException
   {
@@ -190,7 +195,12 @@ public class DisplaySyncImpl
 
   /**
    * Start event callback.
+   *
+   * @deprecated Events are delivered in batches through
+   *             {@link #eventsReady(MonitorEvent[])}; this is only
+   *             called by peers which predate batches.
    */
+  @Deprecated
   public void eventReady(RemoteEventProvider provider, Object key)
   {
     synchronized (tableLock) {
@@ -207,6 +217,24 @@ public class DisplaySyncImpl
     }
   }
 
+  /**
+   * Start callback for a batch of events.
+   */
+  public void eventsReady(MonitorEvent[] events)
+  {
+    synchronized (tableLock) {
+      // later events for a key supersede earlier ones
+      for (int i = 0; i < events.length; i++) {
+        received.put(events[i].getKey(), events[i]);
+      }
+
+      if (thisThread == null) {
+        thisThread = new Thread(this);
+        thisThread.start();
+      }
+    }
+  }
+
   public String getName() { return Name; }
 
   public boolean isLocalClear()
@@ -442,6 +470,17 @@ public class DisplaySyncImpl
       return null;
     }
 
+    return filterEvent(evt);
+  }
+
+  /**
+   * Notes a <TT>MAPS_CLEARED</TT> event, and drops a
+   * <TT>CONTROL_CHANGED</TT> event which local changes will override.
+   *
+   * @return the event, or <TT>null</TT> if it was dropped.
+   */
+  private MonitorEvent filterEvent(MonitorEvent evt)
+  {
     switch (evt.getType()) {
     case MonitorEvent.MAPS_CLEARED:
       synchronized (mapClearSync) {
@@ -469,58 +508,89 @@ public class DisplaySyncImpl
   }
 
   /**
-   * Requests events from the remote provider(s).
+   * Requests events from the remote provider(s), and processes them
+   * along with events delivered in batches.
    */
   public void run()
   {
-    HashMap map = null;
-
-    boolean done = false;
     try {
+      while (true) {
+        HashMap map = null;
 
-      int attempts = 0;
-      while (!done) {
-        HashMap newMap;
-        try {
-          newMap = requestEventTable(current);
-          done = true;
-        } catch (RemoteException re) {
-          if (attempts++ < 5) {
-            // wait a bit, then try again to request the events
-            try { Thread.sleep(500); } catch (InterruptedException ie) { }
-            newMap = null;
-          } else {
-            // if we failed to connect for 10 times, give up
-            dead = true;
-            break;
+        boolean done = false;
+        int attempts = 0;
+        while (!done) {
+          HashMap newMap;
+          try {
+            newMap = requestEventTable(current);
+            done = true;
+          } catch (RemoteException re) {
+            if (attempts++ < 5) {
+              // wait a bit, then try again to request the events
+              try { Thread.sleep(500); } catch (InterruptedException ie) { }
+              newMap = null;
+            } else {
+              // if we failed to connect for 10 times, give up
+              dead = true;
+              break;
+            }
           }
-        }
 
-        if (map == null) {
-          map = newMap;
-        } else if (newMap != null) {
-          map.putAll(newMap);
+          if (map == null) {
+            map = newMap;
+          } else if (newMap != null) {
+            map.putAll(newMap);
+          }
+
+          if (done) {
+            synchronized (tableLock) {
+              if (!undivertEvents()) {
+                break;
+              }
+
+              done = false;
+            }
+          }
         }
 
-        if (done) {
-          synchronized (tableLock) {
-            if (!undivertEvents()) {
-              break;
+        // add the events delivered in batches
+        HashMap batch;
+        synchronized (tableLock) {
+          batch = received;
+          received = new HashMap();
+        }
+        Iterator iter = batch.values().iterator();
+        while (iter.hasNext()) {
+          MonitorEvent evt = filterEvent((MonitorEvent )iter.next());
+          if (evt != null) {
+            if (map == null) {
+              map = new HashMap();
+            }
+            MonitorEvent old = (MonitorEvent )map.get(evt.getKey());
+            if (old == null || compare(old, evt) < 0) {
+              map.put(evt.getKey(), evt);
             }
+          }
+        }
+
+        if (map != null) {
+          processMap(map);
+        }
 
-            done = false;
+        // keep going if more events arrived while these were processed
+        synchronized (tableLock) {
+          if (dead || (received.isEmpty() && !undivertEvents())) {
+            thisThread = null;
+            break;
           }
         }
       }
     } finally {
-
-      if (map != null) {
-        processMap(map);
-      }
-
       // indicate that the thread has exited
       synchronized (tableLock) {
-        thisThread = null;
+        if (thisThread == Thread.currentThread()) {
+          thisThread = null;
+        }
       }
     }
   }
@@ -37,7 +37,23 @@ public interface MonitorCallback
    *
    * @exception RemoteException If there was an RMI-related problem.
    * @exception RemoteVisADException If there was an internal problem.
+   *
+   * @deprecated Events are delivered in batches through
+   *             {@link #eventsReady(MonitorEvent[])}; this is only
+   *             called for peers which predate batches.
    */
+  @Deprecated
   void eventReady(RemoteEventProvider provider, Object key)
     throws RemoteException, RemoteVisADException;
+
+  /**
+   * Deliver a batch of events, in the order in which they were created.
+   * Each is the latest event for its key; superseded events have
+   * already been dropped.
+   *
+   * @exception RemoteException If there was an RMI-related problem.
+   * @exception RemoteVisADException If there was an internal problem.
+   */
+  void eventsReady(MonitorEvent[] events)
+    throws RemoteException, RemoteVisADException;
 }
@@ -23,8 +23,11 @@ MA 02111-1307, USA
 package visad.collab;
 
 import java.rmi.RemoteException;
+import java.rmi.ServerException;
+import java.rmi.UnmarshalException;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 
 import visad.Control;
@@ -34,8 +37,15 @@ import visad.RemoteVisADException;
 import visad.util.ThreadPool;
 
 class MonitorSyncer
-  implements Runnable
+  implements Comparator, Runnable
 {
+  /**
+   * Minimum milliseconds between batches made up only of
+   * <tt>CONTROL_CHANGED</tt> events.
+   */
+  private static final long batchInterval =
+    Long.getLong(DisplayMonitorImpl.BATCH_INTERVAL_PROPERTY, 20).longValue();
+
   private String Name;
 
   private boolean dead = false;
@@ -43,16 +53,49 @@ class MonitorSyncer
   private Object cacheLock = new Object();
   private Thread thisThread = null;
 
-  private ArrayList current = new ArrayList();
-  private ArrayList diverted = null;
-
   private HashMap eventCache = null;
- 
+
+  /**
+   * Time at which each cached event's key was first queued, so
+   * superseded events count from the oldest unsent change.
+   */
+  private HashMap queuedTime = new HashMap();
+
+  /**
+   * <tt>true</tt> if the cache holds an event other than
+   * <tt>CONTROL_CHANGED</tt>, which is sent without waiting.
+   */
+  private boolean urgent = false;
+
+  private long lastBatchTime = 0;
+
+  /**
+   * Metrics.
+   */
+  private long eventsQueued = 0;
+  private long eventsMerged = 0;
+  private long eventsSent = 0;
+  private long batchesSent = 0;
+  private long totalLatency = 0;
+  private long maxLatency = 0;
+
   private RemoteDisplay rmtDpy;
   private MonitorCallback callback;
   private int id;
 
-  private RemoteEventProvider provider;
+  /**
+   * <tt>true</tt> once the callback has been found not to support
+   * <tt>eventsReady</tt>, after which each event is announced through
+   * <tt>eventReady</tt> and fetched by the peer with <tt>getEvent</tt>.
+   */
+  private boolean legacy = false;
+
+  /**
+   * Events announced through <tt>eventReady</tt> and not yet fetched,
+   * by key, and the provider from which they are fetched.
+   */
+  private HashMap announced = new HashMap();
+  private RemoteEventProvider provider = null;
 
   /**
    * The event callback thread pool and its lock.
@@ -70,8 +113,6 @@ class MonitorSyncer
     this.rmtDpy = null;
     this.callback = callback;
     this.id = id;
-
-    this.provider = new RemoteEventProviderImpl(this);
   }
 
   public MonitorSyncer(String name, RemoteDisplay rmtDpy, int id)
@@ -84,8 +125,6 @@ class MonitorSyncer
     this.rmtDpy = rmtDpy;
     this.callback = rmtDpy.getRemoteDisplaySync();
     this.id = id;
-
-    this.provider = new RemoteEventProviderImpl(this);
   }
 
   public void addEvent(MonitorEvent evt)
@@ -94,24 +133,54 @@ class MonitorSyncer
     synchronized (cacheLock) {
       MonitorEvent oldEvt = (MonitorEvent )eventCache.put(key, evt);
 
+      eventsQueued++;
+      if (oldEvt != null) {
+        eventsMerged++;
+      } else {
+        queuedTime.put(key, Long.valueOf(System.currentTimeMillis()));
+      }
+      if (evt.getType() != MonitorEvent.CONTROL_CHANGED) {
+        urgent = true;
+      }
+
       if (thisThread != null) {
-        if (diverted == null) {
-          diverted = new ArrayList();
-        }
-        diverted.add(key);
+        // wake the thread if it is waiting out the batch interval
+        cacheLock.notifyAll();
       } else {
-        current.add(key);
         thisThread = new Thread(this);
         thisThread.start();
       }
     }
   }
 
+  public int compare(Object o1, Object o2)
+  {
+    return (((MonitorEvent )o1).getSequenceNumber() -
+            ((MonitorEvent )o2).getSequenceNumber());
+  }
+
+  /**
+   * Get the event announced to a peer which does not support
+   * batches.
+   *
+   * @param key Key of the event.
+   *
+   * @return the event, or <tt>null</tt> if it was already fetched.
+   *
+   * @deprecated Events are delivered in batches through
+   *             {@link MonitorCallback#eventsReady(MonitorEvent[])};
+   *             this is only used by peers which predate batches.
+   */
+  @Deprecated
   public MonitorEvent getEvent(Object key)
   {
     MonitorEvent evt;
     synchronized (cacheLock) {
-      evt = (MonitorEvent )eventCache.remove(key);
+      evt = (MonitorEvent )announced.remove(key);
+      if (evt == null) {
+        evt = (MonitorEvent )eventCache.remove(key);
+        queuedTime.remove(key);
+      }
     }
 
     // mark message as coming from this connection, so we don't see it again
@@ -133,13 +202,90 @@ class MonitorSyncer
 
   public String getName() { return Name; }
 
+  /**
+   * Get the number of events waiting to be sent.
+   */
+  public int getQueueDepth()
+  {
+    synchronized (cacheLock) {
+      return eventCache.size();
+    }
+  }
+
+  /**
+   * Get the number of events queued, including those which were
+   * superseded before they were sent.
+   */
+  public long getEventsQueued()
+  {
+    synchronized (cacheLock) {
+      return eventsQueued;
+    }
+  }
+
+  /**
+   * Get the number of events superseded by a later event with the
+   * same key before they were sent.
+   */
+  public long getEventsMerged()
+  {
+    synchronized (cacheLock) {
+      return eventsMerged;
+    }
+  }
+
+  /**
+   * Get the number of events sent.
+   */
+  public long getEventsSent()
+  {
+    synchronized (cacheLock) {
+      return eventsSent;
+    }
+  }
+
+  /**
+   * Get the number of batches sent.
+   */
+  public long getBatchesSent()
+  {
+    synchronized (cacheLock) {
+      return batchesSent;
+    }
+  }
+
+  /**
+   * Get the mean milliseconds from an event being queued to its
+   * batch being delivered.
+   */
+  public long getMeanLatency()
+  {
+    synchronized (cacheLock) {
+      return (eventsSent == 0 ? 0 : totalLatency / eventsSent);
+    }
+  }
+
+  /**
+   * Get the most milliseconds from an event being queued to its
+   * batch being delivered.
+   */
+  public long getMaxLatency()
+  {
+    synchronized (cacheLock) {
+      return maxLatency;
+    }
+  }
+
   public boolean hasControlEventQueued(Control ctl)
   {
     if (ctl == null) {
       return false;
     }
 
-    return eventCache.containsKey(ControlMonitorEvent.getControlKey(ctl));
+    String key = ControlMonitorEvent.getControlKey(ctl);
+    synchronized (cacheLock) {
+      return eventCache.containsKey(key);
+    }
   }
 
   // WLH 12 April 2001
@@ -169,53 +315,148 @@ class MonitorSyncer
 
   public void run()
   {
-    boolean done = false;
     try {
+      while (true) {
+        MonitorEvent[] batch;
+        long[] queued;
+        synchronized (cacheLock) {
+          // let control changes accumulate until the batch interval passes
+          long now = System.currentTimeMillis();
+          while (!urgent && !eventCache.isEmpty() &&
+                 now < lastBatchTime + batchInterval)
+          {
+            try {
+              cacheLock.wait(lastBatchTime + batchInterval - now);
+            } catch (InterruptedException ie) { }
+            now = System.currentTimeMillis();
+          }
 
-      int attempts = 0;
-      while (!done) {
-        try {
-          sendEventKeys(current);
-          done = true;
-        } catch (RemoteException re) {
-          if (attempts++ < 5) {
-            // wait a bit, then try again to notify the remote Display
-            try { Thread.sleep(500); } catch (InterruptedException ie) { }
-          } else {
-            // if we failed to connect for 10 times, give up
-            dead = true;
+          if (eventCache.isEmpty()) {
+            thisThread = null;
             break;
           }
-        } catch (RemoteVisADException rve) {
-          rve.printStackTrace();
-          done = true;
+
+          // take every cached event, in order of creation
+          batch = new MonitorEvent[eventCache.size()];
+          eventCache.values().toArray(batch);
+          Arrays.sort(batch, this);
+          queued = new long[batch.length];
+          for (int i = 0; i < batch.length; i++) {
+            Long time = (Long )queuedTime.get(batch[i].getKey());
+            queued[i] = (time == null ? now : time.longValue());
+          }
+          eventCache.clear();
+          queuedTime.clear();
+          urgent = false;
+          lastBatchTime = now;
         }
 
-        if (done) {
-          synchronized (cacheLock) {
-            if (!undivertEvents()) {
-              break;
-            }
+        // mark messages as coming from this connection
+        for (int i = 0; i < batch.length; i++) {
+          batch[i].setOriginator(id);
+        }
 
-            done = false;
+        if (!sendBatch(batch)) {
+          break;
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (cacheLock) {
+          batchesSent++;
+          eventsSent += batch.length;
+          for (int i = 0; i < queued.length; i++) {
+            long latency = now - queued[i];
+            totalLatency += latency;
+            if (latency > maxLatency) {
+              maxLatency = latency;
+            }
           }
         }
       }
     } finally {
       // indicate that the thread has exited
       synchronized (cacheLock) {
-        thisThread = null;
+        if (thisThread == Thread.currentThread()) {
+          thisThread = null;
+        }
       }
     }
   }
 
-  private void sendEventKeys(ArrayList list)
+  /**
+   * Send a batch of events in a single call, retrying if the
+   * connection fails.  If the callback predates batches, announce
+   * each event separately instead.
+   *
+   * @return <tt>false</tt> if the connection is dead.
+   */
+  private boolean sendBatch(MonitorEvent[] batch)
+  {
+    int attempts = 0;
+    while (true) {
+      try {
+        if (legacy) {
+          announceEvents(batch);
+        } else {
+          callback.eventsReady(batch);
+        }
+        return true;
+      } catch (AbstractMethodError ame) {
+        // a local callback compiled before eventsReady was added
+        legacy = true;
+      } catch (RemoteException re) {
+        if (!legacy && isUnsupported(re)) {
+          // the remote callback predates eventsReady
+          legacy = true;
+        } else if (attempts++ < 5) {
+          // wait a bit, then try again to notify the remote Display
+          try { Thread.sleep(500); } catch (InterruptedException ie) { }
+        } else {
+          // if we failed to connect for 5 times, give up
+          dead = true;
+          return false;
+        }
+      } catch (RemoteVisADException rve) {
+        rve.printStackTrace();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Announce each event through <tt>eventReady</tt>, leaving it to be
+   * fetched through <tt>getEvent</tt>.
+   */
+  private void announceEvents(MonitorEvent[] batch)
     throws RemoteException, RemoteVisADException
   {
-    while (list.size() > 0) {
-      String key = (String )list.remove(0);
-      callback.eventReady(provider, key);
+    synchronized (cacheLock) {
+      if (provider == null) {
+        provider = new RemoteEventProviderImpl(this);
+      }
+      for (int i = 0; i < batch.length; i++) {
+        announced.put(batch[i].getKey(), batch[i]);
+      }
+    }
+
+    for (int i = 0; i < batch.length; i++) {
+      callback.eventReady(provider, batch[i].getKey());
+    }
+  }
+
+  /**
+   * Returns <tt>true</tt> if the exception reports that the remote
+   * object does not have the method which was called.
+   */
+  private static boolean isUnsupported(RemoteException re)
+  {
+    Throwable t = re;
+    if (t instanceof ServerException) {
+      t = t.getCause();
     }
+    return (t instanceof UnmarshalException &&
+            t.getMessage() != null &&
+            t.getMessage().indexOf("unrecognized method hash") >= 0);
   }
 
   public String toString()
@@ -228,24 +469,6 @@ class MonitorSyncer
     return buf.toString();
   }
 
-  /**
-   * Returns <TT>true</TT> if there were diverted requests.
-   */
-  private boolean undivertEvents()
-  {
-    final boolean undivert;
-    synchronized (cacheLock) {
-      // if there are events queued, restore them to the main table
-      undivert = (diverted != null);
-      if (undivert) {
-        current = diverted;
-        diverted = null;
-      }
-    }
-
-    return undivert;
-  }
-
   /**
    * Used as key for ControlEvents in listener queue
    */
@@ -72,7 +72,11 @@ public class RemoteDisplaySyncImpl
    *
    * @exception RemoteException If there was an RMI-related problem.
    * @exception RemoteVisADException If there was an internal problem.
+   *
+   * @deprecated Events are delivered in batches through
+   *             {@link #eventsReady(MonitorEvent[])}.
    */
+  @Deprecated
   public void eventReady(RemoteEventProvider provider, Object key)
     throws RemoteException, RemoteVisADException
   {
@@ -82,4 +86,22 @@ public class RemoteDisplaySyncImpl
 
     AdaptedSync.eventReady(provider, key);
   }
+
+  /**
+   * Delivers a batch of events to the remote event consumer.
+   *
+   * @param events The events, in the order in which they were created.
+   *
+   * @exception RemoteException If there was an RMI-related problem.
+   * @exception RemoteVisADException If there was an internal problem.
+   */
+  public void eventsReady(MonitorEvent[] events)
+    throws RemoteException, RemoteVisADException
+  {
+    if (AdaptedSync == null) {
+      throw new RemoteVisADException("AdaptedSync is null");
+    }
+
+    AdaptedSync.eventsReady(events);
+  }
 }
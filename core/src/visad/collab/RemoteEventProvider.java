@@ -27,6 +27,16 @@ import java.rmi.RemoteException;
 
 import visad.RemoteVisADException;
 
+/**
+ * <CODE>RemoteEventProvider</CODE> is the interface from which a peer
+ * fetches an event announced through
+ * {@link MonitorCallback#eventReady(RemoteEventProvider, Object)}.
+ *
+ * @deprecated Events are delivered in batches through
+ *             {@link MonitorCallback#eventsReady(MonitorEvent[])};
+ *             this is only used by peers which predate batches.
+ */
+@Deprecated
 public interface RemoteEventProvider
   extends Remote
 {
@@ -28,6 +28,15 @@ import java.rmi.server.UnicastRemoteObject;
 
 import visad.RemoteVisADException;
 
+/**
+ * <CODE>RemoteEventProviderImpl</CODE> is the implementation of
+ * {@link RemoteEventProvider}.
+ *
+ * @deprecated Events are delivered in batches through
+ *             {@link MonitorCallback#eventsReady(MonitorEvent[])};
+ *             this is only used by peers which predate batches.
+ */
+@Deprecated
 public class RemoteEventProviderImpl
   extends UnicastRemoteObject
   implements RemoteEventProvider
@@ -1,5 +1,6 @@
 package visad.data;
 
+import java.io.File;
 import java.util.Date;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -8,11 +9,17 @@ import visad.VisADException;
 import edu.wisc.ssec.mcidas.AreaFile;
 import edu.wisc.ssec.mcidas.AreaFileException;
 import edu.wisc.ssec.mcidas.AreaFileFactory;
+import edu.wisc.ssec.mcidas.AreaTileReader;
 import edu.wisc.ssec.mcidas.adde.AddeImageURL;
 import edu.wisc.ssec.mcidas.adde.AddeURLException;
 
 /**
  * Knows how to read local satellite data to be used by a cache adaptor.
+ * <p>
+ * Local, uncompressed AREA files are read with an {@link AreaTileReader},
+ * so only the lines and elements of the sub-region (or decimated view)
+ * given by {@link #setAreaParams} are read from the file.  Other
+ * sources are read through {@link AreaFileFactory}.
  * 
  * TODO: Add capability to work in conjunciton with ADDE data sources 
  * including the IDV <code>ucar.visad.data.CachedFlatField</code>.
@@ -34,6 +41,9 @@ public class AreaImageAccessor implements FlatFieldCacheAccessor,
   private int[][][] readCache;
   
   private boolean isAddeSource;
+
+  /** false if the source cannot be read by an AreaTileReader */
+  private boolean tileReadable;
   
   /**
    * Create an instance. No data is read at this time.
@@ -59,10 +69,13 @@ public class AreaImageAccessor implements FlatFieldCacheAccessor,
     } catch (Exception e) {
       isAddeSource = false;
     }
+    tileReadable = !isAddeSource && new File(source).isFile();
   }
 
   /**
-   * Set AREA file subsetting parameters.
+   * Set AREA file subsetting parameters. Magnifications follow 
+   * {@link AreaFile}: -n keeps every n-th line or element, which is only 
+   * supported for local, uncompressed files.
    * 
    * @param startLine
    * @param numLines
@@ -85,8 +98,44 @@ public class AreaImageAccessor implements FlatFieldCacheAccessor,
     return isAddeSource;
   }
 
+  /**
+   * Open a reader for tiles of a local, uncompressed file.
+   * @return the reader, or null if the source cannot be read at random.
+   */
+  protected AreaTileReader getTileReader() {
+    if (!tileReadable) {
+      return null;
+    }
+    try {
+      AreaTileReader reader = new AreaTileReader(source);
+      if (nominalTime == null) {
+        nominalTime = reader.getAreaDirectory().getNominalTime();
+      }
+      return reader;
+    } catch (AreaFileException e) {
+      log.fine("tile reads disabled for " + source + ": " + e.getMessage());
+      tileReadable = false;
+      return null;
+    }
+  }
+
   protected int[][][] getAreaData() throws AreaFileException, AddeURLException {
     
+    AreaTileReader reader = getTileReader();
+    if (reader != null) {
+      try {
+        int[][][] raw = readCache;
+        if (raw == null || raw[0].length != numLines || raw[0][0].length != numElems) {
+          raw = new int[1][numLines][numElems];
+        }
+        reader.readTile(band, startLine, numLines, lineMag, 
+            startElem, numElems, elemMag, raw[0]);
+        return raw;
+      } finally {
+        reader.close();
+      }
+    }
+    
     AreaFile af = null;
     if (!isAddeSource) {
       af = AreaFileFactory.getAreaFileInstance(source.toString(), startLine, numLines, lineMag,
@@ -139,6 +188,19 @@ public class AreaImageAccessor implements FlatFieldCacheAccessor,
     float[][] range = null;
     try {
       
+      // read straight into the range array, without an int copy
+      AreaTileReader reader = getTileReader();
+      if (reader != null) {
+        try {
+          float[][] values = new float[1][numLines * numElems];
+          reader.readTile(band, startLine, numLines, lineMag, 
+              startElem, numElems, elemMag, values[0], 0);
+          return values;
+        } finally {
+          reader.close();
+        }
+      }
+      
       int[][][] raw = getAreaData();
       
       range = new float[1][numLines * numElems];
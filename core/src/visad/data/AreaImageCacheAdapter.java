@@ -190,6 +190,20 @@ public class AreaImageCacheAdapter extends SatelliteImage implements FlatFieldCa
     return fld.getFloats(copy);
   }
 
+  public float[] getRangeFloats(int comp, int start, int length)
+      throws VisADException {
+    log.finest("getRangeFloats");
+    FlatField fld = getAdaptedFlatField();
+    return fld.getRangeFloats(comp, start, length);
+  }
+
+  public double[] getRangeValues(int comp, int start, int length)
+      throws VisADException {
+    log.finest("getRangeValues");
+    FlatField fld = getAdaptedFlatField();
+    return fld.getRangeValues(comp, start, length);
+  }
+
   public Set getDomainSet() {
     log.finest("getDomainSet");
     Set domainSet = null;
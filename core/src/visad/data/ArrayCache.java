@@ -24,20 +24,38 @@ Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
 MA 02111-1307, USA
 */
 
+
 package visad.data;
 
+import java.lang.ref.SoftReference;
+
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import visad.util.Util;
 
 /**
- * This class is used by the CachingCoordinateSystem to do the actual caching mapping one array to another one
+ * This class is used by the CachingCoordinateSystem to do the actual caching mapping one array to another one.
+ * <p>
+ * Up to getMaxEntries() input/output pairs are kept, least recently used first out.
+ * An entry is found by a hash of the input's shape and a sample of its values, so looking
+ * up an input that is not cached costs no array comparison; a candidate entry is checked
+ * against the whole input before it is used. Entries are held through soft references
+ * (or as volatile DataCacheManager entries) so the garbage collector can drop them.
+ * <p>
+ * By default a hit returns a copy of the cached output. If copyResults is false the cached
+ * array itself is returned, and callers must treat it as read only.
  * @version $Revision: 1.5 $ $Date: 2010-01-05 21:02:43 $
  */
 public class ArrayCache {
 
+  /** Number of values sampled from each row when hashing an input */
+  private static final int HASH_SAMPLES = 64;
+
   /** Do we cache */
   private boolean enabled =
     Boolean.parseBoolean(System.getProperty("visad.data.arraycache.enabled",
@@ -59,6 +77,16 @@ public class ArrayCache {
       Boolean.parseBoolean(System.getProperty("visad.data.arraycache.usedatacachemanager",
                                               "false"));
 
+  /** maximum number of cached input/output pairs */
+  private int maxEntries =
+    Integer.parseInt(System.getProperty("visad.data.arraycache.maxentries",
+                                        "8"));
+
+  /** Do hits return a copy of the cached output */
+  private boolean copyResults =
+    Boolean.parseBoolean(System.getProperty("visad.data.arraycache.copyresults",
+                                            "true"));
+
 
 
   private Hashtable<String,Integer>  misses = new Hashtable<String,Integer>();
@@ -82,10 +110,55 @@ public class ArrayCache {
     this.enabled = enabled;
   }
 
+
+  /**
+   * Set whether hits return a copy of the cached output. If not, callers
+   * must not modify the returned arrays.
+   *
+   * @param copy  true to copy
+   */
+  public void setCopyResults(boolean copy) {
+    copyResults = copy;
+  }
+
+  /**
+   * Do hits return a copy of the cached output
+   *
+   * @return true if copying
+   */
+  public boolean getCopyResults() {
+    return copyResults;
+  }
+
+  /**
+   * Set the maximum number of cached input/output pairs
+   *
+   * @param max  the maximum
+   */
+  public synchronized void setMaxEntries(int max) {
+    maxEntries = Math.max(max, 1);
+    while (map.size() > maxEntries) {
+      removeValue(map.keySet().iterator().next());
+    }
+  }
+
+  /**
+   * Get the maximum number of cached input/output pairs
+   *
+   * @return the maximum
+   */
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
    private String getKey(String key, int size) {
        return key +"_" + size;
    }
 
+   private String getEntryKey(String key, int hash) {
+       return key +"_" + hash;
+   }
+
   /**
    * Get the converted value for the specified key and input pairs
    *
@@ -105,22 +178,16 @@ public class ArrayCache {
 
    private synchronized FloatResult getInner(String key, float[][] input) {
     key = getKey(key, input[0].length);
-    float[][][] pair = getFloatValue(key);
-    if (pair == null) {
-      return handleCacheMiss(key, input);
-    }
-
-    float[][] lastInput = pair[0];
-    float[][] lastOutput = pair[1];
-    if (lastInput.length != input.length) return null;
-    for (int i = 0; i < input.length; i++) {
-      if (!Arrays.equals(input[i], lastInput[i])) {
-          return handleCacheMiss(key, input);
-      }
+    int hash = hash(input);
+    float[][][] pair = getFloatValue(getEntryKey(key, hash));
+    if (pair == null || !equals(pair[0], input)) {
+      FloatResult results = handleCacheMiss(key, input);
+      results.hash = hash;
+      results.hashed = true;
+      return results;
     }
     misses.remove(key);
-    //?? should we clone the output
-    return new FloatResult(Util.clone(lastOutput));
+    return new FloatResult(copyResults ? Util.clone(pair[1]) : pair[1]);
   }
 
 
@@ -146,55 +213,130 @@ public class ArrayCache {
 
 
  private synchronized  DoubleResult getInner(String key, double[][] input) {
-
     key = getKey(key, input[0].length);
-    double[][][] pair = getDoubleValue(key);
-    if (pair == null) {
-        return handleCacheMiss(key, input);
-    }        
-
-    double[][] lastInput = pair[0];
-    double[][] lastOutput = pair[1];
-    if (lastInput.length != input.length) return null;
-    for (int i = 0; i < input.length; i++) {
-       if (!Arrays.equals(input[i], lastInput[i])) {
-         return handleCacheMiss(key, input);
-      }
+    int hash = hash(input);
+    double[][][] pair = getDoubleValue(getEntryKey(key, hash));
+    if (pair == null || !equals(pair[0], input)) {
+      DoubleResult results = handleCacheMiss(key, input);
+      results.hash = hash;
+      results.hashed = true;
+      return results;
     }
     misses.remove(key);
-    return new DoubleResult(Util.clone(lastOutput));
+    return new DoubleResult(copyResults ? Util.clone(pair[1]) : pair[1]);
   }
 
 
 
   private DoubleResult handleCacheMiss(String key, double[][]input) {
-        Integer numMisses = misses.get(key);
-        if(numMisses==null) {
-            misses.put(key, numMisses = new Integer(1));
-        } else {
-            misses.put(key, new Integer(numMisses.intValue()+1));
-        }
-        if(numMisses.intValue()>3) {
-            removeValue(key);
-        }
-        return new DoubleResult(numMisses.intValue()<=1);
+        return new DoubleResult(countCacheMiss(key));
   }
 
 
   private FloatResult handleCacheMiss(String key, float[][]input) {
+        return new FloatResult(countCacheMiss(key));
+  }
+
+
+  /**
+   * Count a miss for the key. A key that keeps missing is one whose inputs
+   * do not repeat, so after the first few misses its results are no longer
+   * cached, and its entries are dropped.
+   *
+   * @param key the key
+   *
+   * @return should the result of this miss be cached
+   */
+  private boolean countCacheMiss(String key) {
         Integer numMisses = misses.get(key);
         if(numMisses==null) {
             misses.put(key, numMisses = new Integer(1));
         } else {
-            misses.put(key, new Integer(numMisses.intValue()+1));
+            misses.put(key, numMisses = new Integer(numMisses.intValue()+1));
         }
-        if(numMisses.intValue()>3) {
-            removeValue(key);
+        if(numMisses.intValue()>maxEntries+2) {
+            removeValues(key);
         }
-        return new FloatResult(numMisses.intValue()<=1);
+        return numMisses.intValue()<=maxEntries;
+  }
+
+
+  /**
+   * Hash the shape of the input and a sample of its values
+   *
+   * @param input the input
+   *
+   * @return the hash
+   */
+  private static int hash(float[][] input) {
+    int hash = input.length;
+    for (int i = 0; i < input.length; i++) {
+      float[] row = input[i];
+      if (row == null) {
+        hash = 31 * hash;
+        continue;
+      }
+      int n    = row.length;
+      int step = Math.max(1, n / HASH_SAMPLES);
+      hash = 31 * hash + n;
+      for (int j = 0; j < n; j += step) {
+        hash = 31 * hash + Float.floatToIntBits(row[j]);
+      }
+      if (n > 0) {
+        hash = 31 * hash + Float.floatToIntBits(row[n - 1]);
+      }
+    }
+    return hash;
+  }
+
+
+  /**
+   * Hash the shape of the input and a sample of its values
+   *
+   * @param input the input
+   *
+   * @return the hash
+   */
+  private static int hash(double[][] input) {
+    int hash = input.length;
+    for (int i = 0; i < input.length; i++) {
+      double[] row = input[i];
+      if (row == null) {
+        hash = 31 * hash;
+        continue;
+      }
+      int n    = row.length;
+      int step = Math.max(1, n / HASH_SAMPLES);
+      hash = 31 * hash + n;
+      for (int j = 0; j < n; j += step) {
+        long bits = Double.doubleToLongBits(row[j]);
+        hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+      }
+      if (n > 0) {
+        long bits = Double.doubleToLongBits(row[n - 1]);
+        hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+      }
+    }
+    return hash;
+  }
+
+
+  private static boolean equals(float[][] a, float[][] b) {
+    if (a.length != b.length) return false;
+    for (int i = 0; i < a.length; i++) {
+      if (!Arrays.equals(a[i], b[i])) return false;
+    }
+    return true;
   }
 
 
+  private static boolean equals(double[][] a, double[][] b) {
+    if (a.length != b.length) return false;
+    for (int i = 0; i < a.length; i++) {
+      if (!Arrays.equals(a[i], b[i])) return false;
+    }
+    return true;
+  }
 
 
 
@@ -238,9 +380,14 @@ public class ArrayCache {
   private synchronized void putInner(String key, double[][] input, DoubleResult results) {
     if(!results.shouldCache || results.values==null) return;
     key = getKey(key, input[0].length);
-    storeValue(key,
+    //The input from cloneForCache is already a private copy
+    if (input != results.cachedInput) {
+      input = (double[][])Util.clone(input);
+    }
+    int hash = results.hashed ? results.hash : hash(input);
+    storeValue(getEntryKey(key, hash),
              new double[][][] {
-                 (double[][])Util.clone(input), (double[][])Util.clone(results.values)
+                 input, (double[][])Util.clone(results.values)
     });
 
   }
@@ -263,8 +410,13 @@ public class ArrayCache {
   private synchronized void putInner(String key, float[][] input, FloatResult results) {
     if(!results.shouldCache || results.values==null) return;
     key = getKey(key, input[0].length);
-    storeValue(key, new float[][][] {
-      (float[][])Util.clone(input), (float[][])Util.clone(results.values)
+    //The input from cloneForCache is already a private copy
+    if (input != results.cachedInput) {
+      input = (float[][])Util.clone(input);
+    }
+    int hash = results.hashed ? results.hash : hash(input);
+    storeValue(getEntryKey(key, hash), new float[][][] {
+      input, (float[][])Util.clone(results.values)
     });
 
   }
@@ -273,24 +425,32 @@ public class ArrayCache {
 
 
 
-    /** holds float arrays or DataCacheManager ids */
-    private Hashtable<Object, Object> map = new Hashtable<Object, Object>();
+    /**
+     * holds SoftReferences to the input/output pairs or DataCacheManager ids,
+     * in least recently used order
+     */
+    private LinkedHashMap<String, Object> map =
+        new LinkedHashMap<String, Object>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                if (size() <= maxEntries) return false;
+                releaseValue(eldest.getValue());
+                return true;
+            }
+        };
 
     private void storeValue(String key, double[][][]value) {
-        checkCache();
-        Object object = value;
+        removeValue(key);
+        Object object = new SoftReference<Object>(value);
         if(useDataCacheManager) {
-            removeValue(key);
             object = DataCacheManager.getCacheManager().addToCache("ArrayCache", value, true);
         }
         map.put(key, object);
     }
 
     private void storeValue(String key, float[][][]value) {
-        checkCache();
-        Object object = value;
+        removeValue(key);
+        Object object = new SoftReference<Object>(value);
         if(useDataCacheManager) {
-            removeValue(key);
             object = DataCacheManager.getCacheManager().addToCache("ArrayCache", value, true);
         }
         map.put(key, object);
@@ -305,35 +465,57 @@ public class ArrayCache {
     }
 
 
-    private void checkCache() {
-        if(map.size()>4) {
-            clearCache();
-        }
+    private void releaseValue(Object object) {
+        if(useDataCacheManager)
+            DataCacheManager.getCacheManager().removeFromCache(object);
     }
 
     private void removeValue(Object key) {
-        Object object  = map.get(key);
+        Object object  = map.remove(key);
         if(object!=null) {
-            if(useDataCacheManager)
-                DataCacheManager.getCacheManager().removeFromCache(object);
-            map.remove(key);
+            releaseValue(object);
         }
     }
 
-    private void clearCache() {
-        for(Enumeration keys= map.keys();keys.hasMoreElements(); ) {
-            Object key= keys.nextElement();
-            Object object  = map.get(key);
-            if(useDataCacheManager) {
-                DataCacheManager.getCacheManager().removeFromCache(object);
-            }
+    /**
+     * Remove all entries for the key, whatever their hash
+     *
+     * @param key the key
+     */
+    private void removeValues(String key) {
+        String prefix = key + "_";
+        List<String> keys = new ArrayList<String>();
+        for (String k : map.keySet()) {
+            if (k.startsWith(prefix)) keys.add(k);
+        }
+        for (String k : keys) {
+            removeValue(k);
+        }
+    }
+
+    private synchronized void clearCache() {
+        for (Object object : map.values()) {
+            releaseValue(object);
         }
-        map = new Hashtable<Object, Object>();
+        map.clear();
     }
 
 
-    private double[][][] getDoubleValue(String key) {
+    private Object getValue(String key) {
         Object object = map.get(key);
+        if(object==null || useDataCacheManager) {
+            return object;
+        }
+        Object value = ((SoftReference) object).get();
+        if(value==null) {
+            //Collected
+            map.remove(key);
+        }
+        return value;
+    }
+
+    private double[][][] getDoubleValue(String key) {
+        Object object = getValue(key);
         if(object==null) {
             return null;
         }
@@ -343,7 +525,7 @@ public class ArrayCache {
     }
 
     private float[][][] getFloatValue(String key) {
-        Object object = map.get(key);
+        Object object = getValue(key);
         if(object==null) {
             return null;
         }
@@ -362,6 +544,13 @@ public class ArrayCache {
         public boolean shouldCache = true;
         public double[][]values;
 
+        /** the copy made by cloneForCache */
+        private double[][] cachedInput;
+
+        /** hash of the input */
+        private int hash;
+        private boolean hashed = false;
+
         public DoubleResult() {
             shouldCache = false;
             values = null;
@@ -379,7 +568,7 @@ public class ArrayCache {
 
         public double[][]cloneForCache(double[][]a) {
             if(!shouldCache) return null;
-            return Util.clone(a);
+            return cachedInput = Util.clone(a);
         }
 
         public boolean getShouldCache() {
@@ -395,6 +584,13 @@ public class ArrayCache {
         public boolean shouldCache = true;
         public float[][]values;
 
+        /** the copy made by cloneForCache */
+        private float[][] cachedInput;
+
+        /** hash of the input */
+        private int hash;
+        private boolean hashed = false;
+
         public FloatResult() {
             shouldCache = false;
             values = null;
@@ -411,7 +607,7 @@ public class ArrayCache {
 
         public float[][]cloneForCache(float[][]a) {
             if(!shouldCache) return null;
-            return Util.clone(a);
+            return cachedInput = Util.clone(a);
         }
 
         public boolean getShouldCache() {
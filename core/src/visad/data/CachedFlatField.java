@@ -29,14 +29,33 @@ package visad.data;
 
 import visad.*;
 import visad.util.DataUtility;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
 import java.rmi.RemoteException;
 
 
 /**
  * This is a FloatField that caches to disk its float array.
+ * <p>
+ * If mapped storage is on (see {@link #setDefaultUseMappedStorage(boolean)}
+ * or the <code>visad.data.cachedflatfield.mapped</code> system property)
+ * the float array is instead written once to a memory mapped file in the
+ * DataCacheManager's cache directory. Single samples and the ranges are read
+ * straight from the mapped file, which is the only copy of the values that
+ * is kept, so the data is never read again with readData and the range takes
+ * no heap space of its own. unpackFloats and getFloats copy the values out of
+ * the mapped file for each caller, even when asked not to copy; changes made
+ * to the returned arrays do not reach the field, so use setSamples to change
+ * the values.
  */
 public class CachedFlatField extends FlatField {
 
+    /** Do new instances use mapped storage */
+    private static boolean defaultUseMappedStorage =
+        Boolean.parseBoolean(
+            System.getProperty("visad.data.cachedflatfield.mapped", "false"));
+
 
     /** the id for this instance */
     private Object cacheId;
@@ -55,6 +74,12 @@ public class CachedFlatField extends FlatField {
 
     private  CachedFlatField parent;
 
+    /** Does this instance use mapped storage */
+    private boolean useMappedStorage = defaultUseMappedStorage;
+
+    /** The memory mapped range values, if using mapped storage */
+    private transient MappedRangeData mappedData;
+
     /**
      * Create a new CachedFlatField
      *
@@ -227,6 +252,41 @@ public class CachedFlatField extends FlatField {
         if(cacheId!=null) {
             DataCacheManager.getCacheManager().removeFromCache(cacheId);
         }
+        if(mappedData!=null) {
+            mappedData.delete();
+        }
+    }
+
+
+    /**
+     * Set whether CachedFlatFields created from now on keep their values
+     * in a memory mapped file. The default comes from the
+     * <code>visad.data.cachedflatfield.mapped</code> system property.
+     *
+     * @param value true to use mapped storage
+     */
+    public static void setDefaultUseMappedStorage(boolean value) {
+        defaultUseMappedStorage = value;
+    }
+
+
+    /**
+     * Do CachedFlatFields created from now on use mapped storage
+     *
+     * @return true if new instances use mapped storage
+     */
+    public static boolean getDefaultUseMappedStorage() {
+        return defaultUseMappedStorage;
+    }
+
+
+    /**
+     * Does this instance keep its values in a memory mapped file
+     *
+     * @return true if using mapped storage
+     */
+    public boolean getUseMappedStorage() {
+        return useMappedStorage;
     }
 
 
@@ -254,7 +314,7 @@ public class CachedFlatField extends FlatField {
         }
         setRangeErrors(errors);
         this.getRanges(values);
-        if(inCache) {
+        if(inCache && !useMappedStorage) {
             DataCacheManager.getCacheManager().updateData(cacheId, myFloatValues);
         } else {
             initCache(myFloatValues);
@@ -279,6 +339,8 @@ public class CachedFlatField extends FlatField {
             CachedFlatField ccf = (CachedFlatField) super.clone();
             ccf.cacheId = null;
             float[][]newValues = ccf.unpackFloats(false);
+            //Don't share (and later delete) our mapped file
+            ccf.mappedData = null;
             ccf.nullRanges();
             ccf.initCache(newValues);
             return ccf;
@@ -298,7 +360,9 @@ public class CachedFlatField extends FlatField {
      * @throws VisADException initializing field
      */
     protected void initCache(float[][] data) throws VisADException {
-        if(data!=null) {
+        if(data!=null && useMappedStorage) {
+            initMappedData(data);
+        } else if(data!=null) {
             if(cacheId!=null) {
                 DataCacheManager.getCacheManager().updateData(cacheId, data);
             } else {
@@ -314,6 +378,49 @@ public class CachedFlatField extends FlatField {
     }
 
 
+    /**
+     * Write the data to a new memory mapped file, replacing any old one.
+     * The data array itself is not kept, since the caller may still change
+     * it; values are copied out of the file whenever they are asked for.
+     *
+     * @param data data
+     *
+     * @throws VisADException writing the file
+     */
+    private void initMappedData(float[][] data) throws VisADException {
+        DataCacheManager cacheManager = DataCacheManager.getCacheManager();
+        MappedRangeData newData;
+        try {
+            newData = new MappedRangeData(cacheManager.getCacheFile(), data);
+        } catch (IOException exc) {
+            throw new VisADException("CachedFlatField: " + exc);
+        }
+        synchronized (MUTEX) {
+            if (mappedData != null) {
+                mappedData.delete();
+            }
+            mappedData = newData;
+            if (cacheId != null) {
+                cacheManager.removeFromCache(cacheId);
+                cacheId = null;
+            }
+            inCache = true;
+        }
+    }
+
+
+    /**
+     * Get the values of a field using mapped storage, copied out of the
+     * mapped file. The copy is not kept, so the heap holds the values only
+     * while the caller does.
+     *
+     * @return the values
+     */
+    private float[][] getMappedValues() {
+        return mappedData.getValues();
+    }
+
+
     /**
      * Set the sample ranges
      *
@@ -366,10 +473,44 @@ public class CachedFlatField extends FlatField {
             return sampleRanges;
         }
         //        msg("making ranges");
+        if (mappedData != null) {
+            return getRanges(mappedData);
+        }
         return getRanges(unpackFloats(false));
     }
 
 
+    /**
+     * Get the ranges from the memory mapped values
+     *
+     * @param data the values
+     *
+     * @return the ranges
+     */
+    private DataRange[] getRanges(MappedRangeData data) {
+        sampleRanges = null;
+        DataRange[] newRanges = new DataRange[data.getDimension()];
+        for (int rangeIdx = 0; rangeIdx < newRanges.length; rangeIdx++) {
+            float       pMin   = Float.POSITIVE_INFINITY;
+            float       pMax   = Float.NEGATIVE_INFINITY;
+            FloatBuffer buffer = data.getBuffer(rangeIdx);
+            int         length = buffer.capacity();
+            for (int i = 0; i < length; i++) {
+                float value = buffer.get(i);
+                if (pMax < value) {
+                    pMax = value;
+                }
+                if (pMin > value) {
+                    pMin = value;
+                }
+            }
+            newRanges[rangeIdx] = new DataRange(pMin, pMax);
+        }
+        ranges = newRanges;
+        return ranges;
+    }
+
+
     /**
      * Get the ranges for the values
      *
@@ -440,6 +581,9 @@ public class CachedFlatField extends FlatField {
      */
     private float[][] getMyValues() throws VisADException {
         //        msg("CCF - getMyValues " + inCache);
+        if(mappedData != null) {
+            return getMappedValues();
+        }
         if(inCache) {
             if(cacheId == null) {
                 //                msg("CCF - WHoa, inCache=true but no cacheId");
@@ -500,9 +644,7 @@ public class CachedFlatField extends FlatField {
      */
     public Data getSample(int index) throws VisADException, RemoteException {
         //        msg("getSample");
-        float[][] values = getMyValues();
-
-        if (values == null) {
+        if (mappedData == null && getMyValues() == null) {
             //            msg("Floats still null");
             return null;
         }
@@ -513,9 +655,10 @@ public class CachedFlatField extends FlatField {
             //            msg("is missing");
             return ((FunctionType) Type).getRange().missingData();
         }
-        double[][] range = new double[TupleDimension][1];
+        float[]    values = unpackFloats(index);
+        double[][] range  = new double[TupleDimension][1];
         for (int i = 0; i < TupleDimension; i++) {
-            range[i][0] = (double) values[i][index];
+            range[i][0] = (double) values[i];
         }
 
         MathType RangeType = ((FunctionType) Type).getRange();
@@ -591,7 +734,8 @@ public class CachedFlatField extends FlatField {
     /**
      * get the float values
      *
-     * @param copy copy the values
+     * @param copy copy the values; ignored with mapped storage, which
+     *             always returns a copy
      *
      * @return The values
      *
@@ -605,6 +749,11 @@ public class CachedFlatField extends FlatField {
             //      System.err.println(mycnt+" CCF.unpackFloats - values are still null");
             return super.unpackFloats(copy);
         }
+        //Mapped values are already a fresh copy of the mapped file, which
+        //is the only copy kept
+        if (mappedData != null) {
+            return values;
+        }
         float[][] result = null;
         result = new float[values.length][];
         for (int i = 0; i < result.length; i++) {
@@ -628,6 +777,14 @@ public class CachedFlatField extends FlatField {
      * @throws VisADException  Problem in VisAD land
      */
     protected float[] unpackFloats(int s_index) throws VisADException {
+        MappedRangeData data = mappedData;
+        if (data != null) {
+            float[] range = new float[data.getDimension()];
+            for (int i = 0; i < TupleDimension; i++) {
+                range[i] = data.getValue(i, s_index);
+            }
+            return range;
+        }
         float[][] values = getMyValues();
         if (values == null) {
             return null;
@@ -643,6 +800,56 @@ public class CachedFlatField extends FlatField {
 
 
 
+    /**
+     * Unpack the floats of one range component for an interval of samples,
+     * reading only that interval from the mapped file or the cache
+     *
+     * @param comp the range component
+     * @param start index of the first sample
+     * @param length number of samples
+     *
+     * @return the floats
+     *
+     * @throws VisADException  Problem in VisAD land
+     */
+    protected float[] unpackRangeFloats(int comp, int start, int length)
+            throws VisADException {
+        MappedRangeData data = mappedData;
+        if (data != null) {
+            return data.getValues(comp, start, length);
+        }
+        float[][] values = getMyValues();
+        if (values == null) {
+            return super.unpackRangeFloats(comp, start, length);
+        }
+        float[] range = new float[length];
+        System.arraycopy(values[comp], start, range, 0, length);
+        return range;
+    }
+
+
+    /**
+     * Unpack the values of one range component for an interval of samples
+     *
+     * @param comp the range component
+     * @param start index of the first sample
+     * @param length number of samples
+     *
+     * @return the values
+     *
+     * @throws VisADException  Problem in VisAD land
+     */
+    protected double[] unpackRangeValues(int comp, int start, int length)
+            throws VisADException {
+        float[]  range   = unpackRangeFloats(comp, start, length);
+        double[] doubles = new double[length];
+        for (int j = 0; j < length; j++) {
+            doubles[j] = range[j];
+        }
+        return doubles;
+    }
+
+
     /**
      * Make a clone of this using the new type, units and errors.  Called
      * from unary and binar
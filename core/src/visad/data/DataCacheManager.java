@@ -30,12 +30,22 @@ package visad.data;
 
 import java.io.*;
 
+import java.lang.reflect.Array;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.Enumeration;
-import java.util.Hashtable;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import java.awt.*;
 import javax.swing.*;
@@ -69,7 +79,15 @@ import javax.swing.*;
       DataCacheManager.getCacheManager().getDoubleArray2D(cacheId); 
 </pre>
 
-* The cachemanager will keep the data arrays in memory until the total size is greater than getMaxSize(). Then it will serialize the data arrays in a least recently used manner until the totalSize less than the max size.
+* The cachemanager will keep the data arrays in memory until the total size is greater than getMaxSize(). Then it will write the data arrays to disk, choosing them with a clock (second chance) approximation of least recently used, until the totalSize less than the max size.
+* Entries added with removeIfNeeded are dropped before any other entry is written out.
+* <p>
+* The cache entries are kept in a concurrent map and each entry is guarded by
+* one of a fixed set of striped locks, so threads working with different
+* entries do not block each other. Only one thread evicts at a time; others
+* that find the cache over its limit simply carry on. Arrays are written to
+* and read from the cache directory in a raw, native byte order format, a
+* buffer at a time.
  */
 
 public class DataCacheManager  implements Runnable {
@@ -80,26 +98,40 @@ public class DataCacheManager  implements Runnable {
   /** the singleton */
   private static DataCacheManager cacheManager;
 
+  /** number of lock stripes */
+  private static final int NUM_LOCKS = 32;
+
 
   /** Where to store the cached data */
   private File cacheDir;
 
   /** for unique ids */
-  private int idCnt = 0;
+  private AtomicInteger idCnt = new AtomicInteger(0);
 
   /** for unique ids */
   private long baseTime;
 
 
   /** The cache */
-  private Hashtable<Object, CacheInfo> cache = new Hashtable<Object,
-                                                 CacheInfo>();
+  private ConcurrentHashMap<Object, CacheInfo> cache =
+    new ConcurrentHashMap<Object, CacheInfo>();
+
+  /** striped locks guarding the cache entries */
+  private final Object[] locks = new Object[NUM_LOCKS];
 
-  /** a mutex */
-  private Object MUTEX = new Object();
+  /** clock of in-memory entries that are removed when the cache is full */
+  private Queue<CacheInfo> volatileClock =
+    new ConcurrentLinkedQueue<CacheInfo>();
+
+  /** clock of in-memory entries that are written to disk when the cache is full */
+  private Queue<CacheInfo> persistentClock =
+    new ConcurrentLinkedQueue<CacheInfo>();
+
+  /** set while a thread is evicting */
+  private AtomicBoolean evicting = new AtomicBoolean(false);
 
   /** Total number of bytes in memory */
-  private int totalSize = 0;
+  private AtomicLong totalSize = new AtomicLong(0);
 
   private boolean running = false;
 
@@ -110,6 +142,9 @@ public class DataCacheManager  implements Runnable {
    */
   private DataCacheManager() {
     baseTime = System.currentTimeMillis();
+    for (int i = 0; i < NUM_LOCKS; i++) {
+      locks[i] = new Object();
+    }
     try {
         //Start  the cache monitor in a thread
         Thread t = new Thread(this);
@@ -125,7 +160,7 @@ public class DataCacheManager  implements Runnable {
    *
    * @return the cache manager
    */
-  public static DataCacheManager getCacheManager() {
+  public static synchronized DataCacheManager getCacheManager() {
     if (cacheManager == null) {
       cacheManager = new DataCacheManager();
     }
@@ -179,7 +214,37 @@ public class DataCacheManager  implements Runnable {
    * @return unique id
    */
   public Object getId() {
-    return "data_" + baseTime + "_" + (idCnt++);
+    return "data_" + baseTime + "_" + idCnt.getAndIncrement();
+  }
+
+
+  /**
+   * Get the lock guarding the entry with the given id
+   *
+   * @param cacheId  the cache id
+   *
+   * @return the lock
+   */
+  private Object getLock(Object cacheId) {
+    return locks[(cacheId.hashCode() & 0x7fffffff) % NUM_LOCKS];
+  }
+
+
+  /**
+   * Put the in-memory entry on its eviction clock if it is not already on it.
+   * Call with the entry's lock held.
+   *
+   * @param info the cacheinfo
+   */
+  private void enqueue(CacheInfo info) {
+    if (!info.queued) {
+      info.queued = true;
+      if (info.removeIfNeeded) {
+        volatileClock.offer(info);
+      } else {
+        persistentClock.offer(info);
+      }
+    }
   }
 
 
@@ -192,14 +257,15 @@ public class DataCacheManager  implements Runnable {
    * @return the unique id
    */
     private Object addToCache(String what, Object data, int type, boolean removeIfNeeded) {
-    synchronized (MUTEX) {
-        CacheInfo info = new CacheInfo(this, getId(), data, type, removeIfNeeded);
+      CacheInfo info = new CacheInfo(this, getId(), data, type, removeIfNeeded);
       if(what!=null) info.what = what;
-      cache.put(info.getId(), info);
-      totalSize += info.getSize();
+      synchronized (getLock(info.getId())) {
+        cache.put(info.getId(), info);
+        totalSize.addAndGet(info.getSize());
+        enqueue(info);
+      }
       checkCache();
       return info.getId();
-    }
   }
 
 
@@ -213,7 +279,7 @@ public class DataCacheManager  implements Runnable {
    * @param data  the new data
    */
   public void updateData(Object cacheId, Object data) {
-    synchronized (MUTEX) {
+    synchronized (getLock(cacheId)) {
         //      if(cacheId == null)
         //          return addToCache(data, findType(data));
         CacheInfo info = cache.get(cacheId);
@@ -225,15 +291,17 @@ public class DataCacheManager  implements Runnable {
                     ? info.getSize()
                     : 0;
       info.setData(data);
-      int newSize = info.getSize();
-      totalSize -= oldSize;
-      totalSize += newSize;
-      checkCache();
+      int newSize = info.data != null
+                    ? info.getSize()
+                    : 0;
+      totalSize.addAndGet(newSize - oldSize);
+      if (info.data != null) enqueue(info);
     }
+    checkCache();
   }
 
     public boolean inMemory(Object cacheId) {
-        synchronized (MUTEX) {
+        synchronized (getLock(cacheId)) {
         CacheInfo info =  cache.get(cacheId);
         if(info == null)return false;
         info.dataAccessed();
@@ -251,34 +319,28 @@ public class DataCacheManager  implements Runnable {
    * @return 
    */
   private Object getData(Object cacheId) {
-    CacheInfo info = null;
+    CacheInfo info = cache.get(cacheId);
+    if (info == null) return null;
     Object data = null;
-    synchronized (MUTEX) {
-      info = cache.get(cacheId);
-      if (info == null) return null;
+    synchronized (getLock(cacheId)) {
       data = info.data;
       info.dataAccessed();
-      if (data != null) return data;
+      if (data != null || info.removed) return data;
       try {
-          long t1 = System.currentTimeMillis();
-        FileInputStream fis = new FileInputStream(info.cacheFile);
-        BufferedInputStream bis = new BufferedInputStream(fis,100000);
-        ObjectInputStream ois = new ObjectInputStream(bis);
-        info.setDataFromCache(data = ois.readObject());
+        long t1 = System.currentTimeMillis();
+        info.setDataFromCache(data = readArray(info.cacheFile, info.type));
         long t2 = System.currentTimeMillis();
         System.err.println("Read " + info.getSize() +" bytes from file in " + (t2-t1) +" ms");
-        totalSize += info.getSize();
-        ois.close();
-        bis.close();
-        fis.close();
-        checkCache();
+        totalSize.addAndGet(info.getSize());
         info.cacheMissed();
-        return data;
+        enqueue(info);
       }
       catch (Exception exc) {
         throw new RuntimeException(exc);
       }
     }
+    checkCache();
+    return data;
   }
 
     public  File getCacheFile() {
@@ -296,9 +358,7 @@ public class DataCacheManager  implements Runnable {
    * @param cacheId  the cache id 
    */
   public void removeFromCache(Object cacheId) {
-    synchronized (MUTEX) {
-        removeFromCache(cache.get(cacheId));
-    }
+    removeFromCache(cache.get(cacheId));
   }
 
 
@@ -306,11 +366,12 @@ public class DataCacheManager  implements Runnable {
         if (info == null) {
             return;
         }
-        synchronized (MUTEX) {
+        synchronized (getLock(info.id)) {
             if (info.data != null) {
                 info.data = null;
-                totalSize -= info.getSize();
+                totalSize.addAndGet(-info.getSize());
             }
+            info.removed = true;
             cache.remove(info.id);
             info.remove();
         }
@@ -318,18 +379,18 @@ public class DataCacheManager  implements Runnable {
 
 
     public void flushAllCachedData() {
-      synchronized (MUTEX) {
-          for (CacheInfo info : getCacheInfos()) {
+      for (CacheInfo info : cache.values()) {
+          synchronized (getLock(info.id)) {
               flushCachedData(info);
           }
-          Runtime.getRuntime().gc();
       }
+      Runtime.getRuntime().gc();
     }
 
 
   /**
    * If this cacheinfo has never been written to disk then write it
-   * null out the data reference
+   * null out the data reference. Call with the entry's lock held.
    *
    * @param info  the cacheinfo
    */
@@ -341,23 +402,17 @@ public class DataCacheManager  implements Runnable {
       }
 
 
-      if (info.data == null) {
+      if (info.data == null || info.removed) {
         return;
       }
 
 
 
       if (!info.cacheFileGood) {
-        FileOutputStream fos = new FileOutputStream(info.cacheFile);
-        BufferedOutputStream bos = new BufferedOutputStream(fos,100000);
-        ObjectOutputStream oos = new ObjectOutputStream(fos);
-        oos.writeObject(info.data);
-        oos.close();
-        bos.close();
-        fos.close();
+        writeArray(info.cacheFile, info.type, info.data);
       }
       info.data = null;
-      totalSize -= info.getSize();
+      totalSize.addAndGet(-info.getSize());
     }
     catch (Exception exc) {
       throw new RuntimeException(exc);
@@ -372,15 +427,9 @@ public class DataCacheManager  implements Runnable {
    * @return  Sorted list of cacheinfos
    */
   private List<CacheInfo> getCacheInfos() {
-    synchronized (MUTEX) {
-      List<CacheInfo> infos = new ArrayList<CacheInfo>();
-      for (Enumeration keys = cache.keys(); keys.hasMoreElements(); ) {
-        CacheInfo info = cache.get(keys.nextElement());
-        infos.add(info);
-      }
+      List<CacheInfo> infos = new ArrayList<CacheInfo>(cache.values());
       Collections.sort(infos);
       return infos;
-    }
   }
 
 
@@ -395,30 +444,54 @@ public class DataCacheManager  implements Runnable {
   }
 
   /**
-   *  Check if we are above the max size. If so then flush data from memory  until we are below the threshold
+   *  Check if we are above the max size. If so then flush data from memory  until we are below the threshold.
+   *  If another thread is already flushing then this returns immediately.
    */
     public  void checkCache() {
-        if (totalSize < getMaxSize()) {
+        long maxSize = getMaxSize();
+        if (totalSize.get() < maxSize) {
             return;
         }
-        synchronized (MUTEX) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
             //First do the volatile ones
-            for (CacheInfo info : getCacheInfos()) {
-                if(info.removeIfNeeded) {
-                    flushCachedData(info);
-                    if (totalSize <= getMaxSize()) {
-                        break;
-                    }
-                }
-            }
+            evict(volatileClock, maxSize);
+            evict(persistentClock, maxSize);
+        } finally {
+            evicting.set(false);
+        }
+    }
+
 
-            if (totalSize <= getMaxSize()) {
-                for (CacheInfo info : getCacheInfos()) {
-                    flushCachedData(info);
-                    if (totalSize <= getMaxSize()) {
-                        break;
-                    }
+  /**
+   * Flush entries from one clock until the total size is at most maxSize.
+   * An entry that was accessed since the clock hand last passed it gets a
+   * second chance; the rest are flushed.
+   *
+   * @param clock the clock
+   * @param maxSize the size to get below
+   */
+    private void evict(Queue<CacheInfo> clock, long maxSize) {
+        // each entry is passed at most twice: once to clear its bit, once to flush
+        int steps = 2 * cache.size() + 1;
+        while (totalSize.get() > maxSize && steps-- > 0) {
+            CacheInfo info = clock.poll();
+            if (info == null) {
+                return;
+            }
+            synchronized (getLock(info.id)) {
+                info.queued = false;
+                if (info.removed || info.data == null) {
+                    continue;
                 }
+                if (info.referenced) {
+                    info.referenced = false;
+                    enqueue(info);
+                    continue;
+                }
+                flushCachedData(info);
             }
         }
     }
@@ -436,10 +509,9 @@ public class DataCacheManager  implements Runnable {
 
 
   public String getStats() {
-    synchronized (MUTEX) {
         StringBuffer sb = new StringBuffer();
         int mb =(int)( getMaxSize()/(double)1000000.0);
-        int total =(int)( totalSize/(double)1000000.0);
+        int total =(int)( totalSize.get()/(double)1000000.0);
         sb.append("Cache total size:" + total +" MB   max size:" + mb +" MB  (" + (100*memoryPercentage)+"% of max memory)");
         sb.append("\n");
         List<CacheInfo> infos= getCacheInfos();
@@ -470,7 +542,6 @@ public class DataCacheManager  implements Runnable {
 
       }
         return sb.toString();
-    }
   }
 
 
@@ -481,22 +552,222 @@ public class DataCacheManager  implements Runnable {
    * @param where 
    */
   private void checkStats(String where) {
-    synchronized (MUTEX) {
-      int tmp = 0;
-      for (Enumeration keys = cache.keys(); keys.hasMoreElements(); ) {
-        CacheInfo info = cache.get(keys.nextElement());
+      long tmp = 0;
+      for (CacheInfo info : cache.values()) {
         if (info.data != null) tmp += info.getSize();
       }
 
-      if (tmp != totalSize) {
+      if (tmp != totalSize.get()) {
         System.err.println(
-          "WHOAA: " + where + "  " + tmp + " != total size:" + totalSize);
-        for (Enumeration keys = cache.keys(); keys.hasMoreElements(); ) {
-          CacheInfo info = cache.get(keys.nextElement());
+          "WHOAA: " + where + "  " + tmp + " != total size:" + totalSize.get());
+        for (CacheInfo info : cache.values()) {
           System.err.println(
             "   cache entry:" + info.getSize() + " " + (info.data != null));
         }
       }
+  }
+
+
+  /** size of the buffer arrays are written and read through */
+  private static final int IO_BUFFER_SIZE = 1 << 18;
+
+  /**
+   * Write an array to a file. Every array is written as its length (-1 for
+   * null) followed by its elements in native byte order, or, for 2D and 3D
+   * arrays, by its sub arrays. The file is written through one buffer and
+   * FileChannel.write, rather than mapped, so it can be deleted or rewritten
+   * as soon as it is closed.
+   *
+   * @param file the file
+   * @param type the type of the array
+   * @param data the array
+   *
+   * @throws IOException On badness
+   */
+  private static void writeArray(File file, int type, Object data)
+          throws IOException {
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      FileChannel channel = out.getChannel();
+      ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+      buffer.order(ByteOrder.nativeOrder());
+      putArray(channel, buffer, type, getRank(type), data);
+      drain(channel, buffer);
+    } finally {
+      out.close();
+    }
+  }
+
+
+  /**
+   * Read an array written by writeArray
+   *
+   * @param file the file
+   * @param type the type of the array
+   *
+   * @return the array
+   *
+   * @throws IOException On badness
+   */
+  private static Object readArray(File file, int type) throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    try {
+      FileChannel channel = in.getChannel();
+      ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+      buffer.order(ByteOrder.nativeOrder());
+      buffer.limit(0);
+      return getArray(channel, buffer, type, getRank(type));
+    } finally {
+      in.close();
+    }
+  }
+
+
+  /**
+   * The TYPE_ constants run through double, float, int, short and byte
+   * for each of 1D, 2D and 3D.
+   */
+  private static int getRank(int type) {
+    return type / 5 + 1;
+  }
+
+  /** Get the size in bytes of one element of the given type */
+  private static int getElementSize(int type) {
+    switch (type % 5) {
+      case TYPE_DOUBLE1D: return 8;
+      case TYPE_FLOAT1D: return 4;
+      case TYPE_INT1D: return 4;
+      case TYPE_SHORT1D: return 2;
+      default: return 1;
+    }
+  }
+
+  /** Write out and clear the contents of the buffer */
+  private static void drain(FileChannel channel, ByteBuffer buffer)
+          throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /** Read until at least count bytes remain in the buffer */
+  private static void fill(FileChannel channel, ByteBuffer buffer, int count)
+          throws IOException {
+    if (buffer.remaining() >= count) return;
+    buffer.compact();
+    while (buffer.position() < count) {
+      if (channel.read(buffer) < 0) {
+        throw new EOFException("Truncated cache file");
+      }
+    }
+    buffer.flip();
+  }
+
+  private static void putArray(FileChannel channel, ByteBuffer buffer,
+                               int type, int rank, Object data)
+          throws IOException {
+    if (buffer.remaining() < 4) drain(channel, buffer);
+    if (data == null) {
+      buffer.putInt(-1);
+      return;
+    }
+    int length = Array.getLength(data);
+    buffer.putInt(length);
+    if (rank > 1) {
+      Object[] sub = (Object[]) data;
+      for (int i = 0; i < length; i++) {
+        putArray(channel, buffer, type, rank - 1, sub[i]);
+      }
+      return;
+    }
+    // copy the elements a buffer full at a time
+    int elementSize = getElementSize(type);
+    int offset = 0;
+    while (offset < length) {
+      int n = Math.min(length - offset, buffer.remaining() / elementSize);
+      if (n == 0) {
+        drain(channel, buffer);
+        continue;
+      }
+      switch (type % 5) {
+        case TYPE_DOUBLE1D:
+          buffer.asDoubleBuffer().put((double[]) data, offset, n);
+          break;
+        case TYPE_FLOAT1D:
+          buffer.asFloatBuffer().put((float[]) data, offset, n);
+          break;
+        case TYPE_INT1D:
+          buffer.asIntBuffer().put((int[]) data, offset, n);
+          break;
+        case TYPE_SHORT1D:
+          buffer.asShortBuffer().put((short[]) data, offset, n);
+          break;
+        default:
+          buffer.put((byte[]) data, offset, n);
+          offset += n;
+          continue;
+      }
+      buffer.position(buffer.position() + n * elementSize);
+      offset += n;
+    }
+  }
+
+  private static Object getArray(FileChannel channel, ByteBuffer buffer,
+                                 int type, int rank) throws IOException {
+    fill(channel, buffer, 4);
+    int length = buffer.getInt();
+    if (length < 0) return null;
+    if (rank > 1) {
+      // class of the sub arrays, e.g. float[] for a float[][]
+      Class<?> subClass =
+        Array.newInstance(getElementClass(type), new int[rank - 1]).getClass();
+      Object[] data = (Object[]) Array.newInstance(subClass, length);
+      for (int i = 0; i < length; i++) {
+        data[i] = getArray(channel, buffer, type, rank - 1);
+      }
+      return data;
+    }
+    Object data = Array.newInstance(getElementClass(type), length);
+    // copy the elements a buffer full at a time
+    int elementSize = getElementSize(type);
+    int offset = 0;
+    while (offset < length) {
+      fill(channel, buffer, elementSize);
+      int n = Math.min(length - offset, buffer.remaining() / elementSize);
+      switch (type % 5) {
+        case TYPE_DOUBLE1D:
+          buffer.asDoubleBuffer().get((double[]) data, offset, n);
+          break;
+        case TYPE_FLOAT1D:
+          buffer.asFloatBuffer().get((float[]) data, offset, n);
+          break;
+        case TYPE_INT1D:
+          buffer.asIntBuffer().get((int[]) data, offset, n);
+          break;
+        case TYPE_SHORT1D:
+          buffer.asShortBuffer().get((short[]) data, offset, n);
+          break;
+        default:
+          buffer.get((byte[]) data, offset, n);
+          offset += n;
+          continue;
+      }
+      buffer.position(buffer.position() + n * elementSize);
+      offset += n;
+    }
+    return data;
+  }
+
+  /** Get the primitive element class of the given type */
+  private static Class<?> getElementClass(int type) {
+    switch (type % 5) {
+      case TYPE_DOUBLE1D: return double.class;
+      case TYPE_FLOAT1D: return float.class;
+      case TYPE_INT1D: return int.class;
+      case TYPE_SHORT1D: return short.class;
+      default: return byte.class;
     }
   }
 
@@ -546,6 +817,15 @@ public class DataCacheManager  implements Runnable {
 
     private boolean removeIfNeeded = false;
 
+    /** accessed since the clock hand last passed */
+    private volatile boolean referenced = true;
+
+    /** on an eviction clock */
+    private boolean queued = false;
+
+    /** removed from the cache */
+    private boolean removed = false;
+
 
     /**
      * 
@@ -574,6 +854,7 @@ public class DataCacheManager  implements Runnable {
      */
     private void dataAccessed() {
       lastTime = System.currentTimeMillis();
+      referenced = true;
       dataAccessedCnt++;
     }
 
@@ -86,6 +86,11 @@ public class FileFlatField extends FlatField {
 
        private transient CacheStrategy cacheStrategy;
 
+  // lock serializing FileAccessor reads; accessors may share one
+  // file handle, so their reads must not interleave
+
+       private static final Object accessorLock = new Object();
+
   static
   {
     // initialize cache of FlatFields
@@ -145,18 +150,53 @@ public class FileFlatField extends FlatField {
     }
 
     synchronized (adaptedFlatFields) {
-      for ( int ii = 0; ii < MAX_FILE_FLAT_FIELDS; ii++ )
-      {
-        if (this == adaptedFlatFieldOwner[ii]) {
-
-          // mark time of most recent access
+      FlatField fld = findAdaptedFlatField();
+      if (fld != null) {
+        return fld;
+      }
+    }
 
-          adaptedFlatFieldTimes[ii] = System.currentTimeMillis();
+    // read data values from fileAccessor without holding the lock
+    // on adaptedFlatFields, so FileFlatFields already in the cache
+    // (e.g. the frames of an animation read ahead by a FramePrefetcher)
+    // may be used meanwhile; but FileAccessors may share one file
+    // handle (seek then read), so reads are serialized on accessorLock
 
-          return adaptedFlatFields[ii];
+    synchronized (accessorLock) {
+      synchronized (adaptedFlatFields) {
+        // another thread may have read this FileFlatField meanwhile
+        FlatField cached = findAdaptedFlatField();
+        if (cached != null) {
+          return cached;
         }
       }
 
+      FlatField fld = null;
+      try
+      {
+        fld = fileAccessor.getFlatField();
+      }
+      catch ( VisADException e1 )
+      {
+        System.out.println( e1.getMessage() );
+      }
+      catch ( RemoteException e2 )
+      {
+        System.out.println( e2.getMessage() );
+      }
+
+      return cacheAdaptedFlatField(fld);
+    }
+  }
+
+  /**
+   * Put FlatField values read from fileAccessor into a cache entry
+   * owned by this FileFlatField, and return them.
+   */
+  private FlatField cacheAdaptedFlatField(FlatField fld)
+  {
+    synchronized (adaptedFlatFields) {
+
       // this FileFlatField does not own a cache entry, so invoke
       // CahceStrategy.allocate to allocate one, possibly by taking
       // one, possibly by taking one from another FileFlatField;
@@ -180,20 +220,9 @@ public class FileFlatField extends FlatField {
         }
       }
 
-      // create a new entry in adaptedFlatFields at adaptedFlatFieldIndex
-      // and read data values from fileAccessor at fileLocation
-      try
-      {
-        adaptedFlatFields[adaptedFlatFieldIndex] = fileAccessor.getFlatField();
-      }
-      catch ( VisADException e1 )
-      {
-        System.out.println( e1.getMessage() );
-      }
-      catch ( RemoteException e2 )
-      {
-        System.out.println( e2.getMessage() );
-      }
+      // put the values read into the entry at adaptedFlatFieldIndex
+
+      adaptedFlatFields[adaptedFlatFieldIndex] = fld;
 
       // mark cache entry as belonging to this FileFlatField
 
@@ -211,6 +240,26 @@ public class FileFlatField extends FlatField {
     }
   }
 
+  /**
+   * Return the cache entry owned by this FileFlatField, or null if it
+   * owns none; the caller must hold the lock on adaptedFlatFields.
+   */
+  private FlatField findAdaptedFlatField()
+  {
+    for ( int ii = 0; ii < MAX_FILE_FLAT_FIELDS; ii++ )
+    {
+      if (this == adaptedFlatFieldOwner[ii]) {
+
+        // mark time of most recent access
+
+        adaptedFlatFieldTimes[ii] = System.currentTimeMillis();
+
+        return adaptedFlatFields[ii];
+      }
+    }
+    return null;
+  }
+
   private void flushCache()
       throws VisADException
   {
@@ -360,6 +409,28 @@ public class FileFlatField extends FlatField {
     return fld.getFloats(copy);
   }
 
+  public float[] getRangeFloats(int comp, int start, int length)
+         throws VisADException
+  {
+    FlatField fld = getAdaptedFlatField();
+    if (fld == null) {
+      throw new VisADException("Cannot get cached FlatField");
+    }
+
+    return fld.getRangeFloats(comp, start, length);
+  }
+
+  public double[] getRangeValues(int comp, int start, int length)
+         throws VisADException
+  {
+    FlatField fld = getAdaptedFlatField();
+    if (fld == null) {
+      throw new VisADException("Cannot get cached FlatField");
+    }
+
+    return fld.getRangeValues(comp, start, length);
+  }
+
   public Set getDomainSet()
   {
     FlatField fld = getAdaptedFlatField();
@@ -378,14 +449,17 @@ public class FileFlatField extends FlatField {
       throw new VisADException("Cannot access serialized FileFlatField");
     }
 
-    synchronized (adaptedFlatFields) {
-      FlatField fld = getAdaptedFlatField();
-      if (fld == null) {
-        throw new VisADException("Cannot get cached FlatField");
-      }
+    // take accessorLock first, as getAdaptedFlatField does
+    synchronized (accessorLock) {
+      synchronized (adaptedFlatFields) {
+        FlatField fld = getAdaptedFlatField();
+        if (fld == null) {
+          throw new VisADException("Cannot get cached FlatField");
+        }
 
-      adaptedFlatFieldDirty[adaptedFlatFieldIndex] = true;
-      fld.setSample(index, range);
+        adaptedFlatFieldDirty[adaptedFlatFieldIndex] = true;
+        fld.setSample(index, range);
+      }
     }
   }
 
@@ -396,15 +470,16 @@ public class FileFlatField extends FlatField {
       throw new VisADException("Cannot access serialized FileFlatField");
     }
 
-    synchronized (adaptedFlatFields)
-    {
-      FlatField fld = getAdaptedFlatField();
-      if (fld == null) {
-        throw new VisADException("Cannot get cached FlatField");
-      }
+    synchronized (accessorLock) {
+      synchronized (adaptedFlatFields) {
+        FlatField fld = getAdaptedFlatField();
+        if (fld == null) {
+          throw new VisADException("Cannot get cached FlatField");
+        }
 
-      adaptedFlatFieldDirty[adaptedFlatFieldIndex] = true;
-      fld.setSample( domain, range );
+        adaptedFlatFieldDirty[adaptedFlatFieldIndex] = true;
+        fld.setSample( domain, range );
+      }
     }
   }
 
@@ -415,15 +490,16 @@ public class FileFlatField extends FlatField {
       throw new VisADException("Cannot access serialized FileFlatField");
     }
 
-    synchronized (adaptedFlatFields)
-    {
-      FlatField fld = getAdaptedFlatField();
-      if (fld == null) {
-        throw new VisADException("Cannot get cached FlatField");
-      }
+    synchronized (accessorLock) {
+      synchronized (adaptedFlatFields) {
+        FlatField fld = getAdaptedFlatField();
+        if (fld == null) {
+          throw new VisADException("Cannot get cached FlatField");
+        }
 
-      adaptedFlatFieldDirty[adaptedFlatFieldIndex] = true;
-      fld.setSample( index, range, copy );
+        adaptedFlatFieldDirty[adaptedFlatFieldIndex] = true;
+        fld.setSample( index, range, copy );
+      }
     }
   }
 
@@ -0,0 +1,181 @@
+//
+// MappedRangeData
+//
+
+/*
+ * VisAD system for interactive analysis and visualization of numerical
+ * data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+ * Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+ * Tommy Jasmin, Jeff McWhirter.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, write to the Free
+ * Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+ * MA 02111-1307, USA
+ */
+
+
+package visad.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * Range values of a CachedFlatField held in a memory mapped file, with
+ * one FloatBuffer per range component. The values live in the file
+ * system cache rather than on the Java heap, and single samples are read
+ * straight from the mapped region.
+ */
+class MappedRangeData {
+
+    /** the backing file */
+    private final File file;
+
+    /** one buffer per range component, null for a null component */
+    private final FloatBuffer[] buffers;
+
+
+    /**
+     * Write the values to a new memory mapped file
+     *
+     * @param file the file to create
+     * @param values the range values
+     *
+     * @throws IOException On badness
+     */
+    public MappedRangeData(File file, float[][] values) throws IOException {
+        this.file = file;
+        buffers   = new FloatBuffer[values.length];
+        long size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                size += 4L * values[i].length;
+            }
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(size);
+            FileChannel channel = raf.getChannel();
+            long        offset  = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null) {
+                    continue;
+                }
+                long length = 4L * values[i].length;
+                MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_WRITE, offset,
+                                length);
+                buffer.order(ByteOrder.nativeOrder());
+                buffers[i] = buffer.asFloatBuffer();
+                buffers[i].put(values[i]);
+                offset += length;
+            }
+        } finally {
+            //The mappings stay valid after the channel is closed
+            raf.close();
+        }
+    }
+
+
+    /**
+     * Get the number of range components
+     *
+     * @return number of components
+     */
+    public int getDimension() {
+        return buffers.length;
+    }
+
+
+    /**
+     * Get the buffer for one range component. The buffer is shared, so
+     * use absolute gets or a duplicate.
+     *
+     * @param component the range component
+     *
+     * @return the buffer or null
+     */
+    public FloatBuffer getBuffer(int component) {
+        return buffers[component];
+    }
+
+
+    /**
+     * Get one value
+     *
+     * @param component the range component
+     * @param index the sample index
+     *
+     * @return the value
+     */
+    public float getValue(int component, int index) {
+        return buffers[component].get(index);
+    }
+
+
+    /**
+     * Copy an interval of the values of one range component onto the heap
+     *
+     * @param component the range component
+     * @param start index of the first sample
+     * @param length number of samples
+     *
+     * @return the values
+     */
+    public float[] getValues(int component, int start, int length) {
+        FloatBuffer buffer = buffers[component].duplicate();
+        buffer.position(start);
+        float[] values = new float[length];
+        buffer.get(values);
+        return values;
+    }
+
+
+    /**
+     * Copy the values of all range components onto the heap
+     *
+     * @return the values
+     */
+    public float[][] getValues() {
+        float[][] values = new float[buffers.length][];
+        for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] == null) {
+                continue;
+            }
+            FloatBuffer buffer = buffers[i].duplicate();
+            buffer.clear();
+            values[i] = new float[buffer.capacity()];
+            buffer.get(values[i]);
+        }
+        return values;
+    }
+
+
+    /**
+     * Delete the file. On some platforms the file cannot be deleted until
+     * the buffers are garbage collected, so it is then marked for deletion
+     * on exit.
+     */
+    public void delete() {
+        if ( !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
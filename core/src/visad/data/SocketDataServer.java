@@ -28,17 +28,52 @@ package visad.data;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
 import java.rmi.RemoteException;
+import java.util.Iterator;
 import java.util.Vector;
 import visad.*;
 
 /**
  * A class for exporting data to a socket stream. Whenever the given
  * DataReference's data changes, it is sent across the socket to any clients
- * that are listening.
+ * that are listening.<P>
+ *
+ * Each change is encoded once, as a message whose bytes are shared by all
+ * clients, and written by a single thread using non-blocking sockets, so
+ * a slow client does not hold up the others. When the data is a FlatField
+ * whose type and domain have not changed and only some of its samples
+ * have, the message carries only the interval of samples that changed.
+ * A client whose unsent messages grow beyond a limit has them replaced by
+ * one message carrying all of the current data.<P>
+ *
+ * A message is the int DATA_MESSAGE or SAMPLES_MESSAGE, the int length of
+ * its payload, and the payload. A DATA_MESSAGE payload is a Data object
+ * serialized by its own ObjectOutputStream. A SAMPLES_MESSAGE payload is a
+ * RangeChunk, serialized the same way, holding all range components of
+ * the changed samples, in default units. See SocketDataSource.<P>
+ *
+ * Clients are no longer written through per-client ObjectOutputStreams,
+ * so the protected list of them is not used and remains empty.
  */
 public class SocketDataServer {
 
+  /**
+   * Message code for a complete Data object.
+   */
+  public static final int DATA_MESSAGE = 1;
+
+  /**
+   * Message code for new values of an interval of FlatField samples.
+   */
+  public static final int SAMPLES_MESSAGE = 2;
+
+  /**
+   * Default limit on the bytes waiting to be sent to a client.
+   */
+  public static final int DEFAULT_MAX_BACKLOG = 1 << 24;
+
   /**
    * The main socket for this SocketDataServer.
    */
@@ -51,7 +86,11 @@ public class SocketDataServer {
 
   /**
    * List of output streams for client sockets.
+   *
+   * @deprecated No longer used, and always empty; each client is written
+   * from a queue of encoded messages.
    */
+  @Deprecated
   protected Vector outs = new Vector();
 
   /**
@@ -70,33 +109,78 @@ public class SocketDataServer {
   protected boolean alive = true;
 
   /**
-   * Code for monitoring incoming clients.
+   * Channel of the main socket.
    */
-  private Runnable connect = new Runnable() {
+  private ServerSocketChannel server;
+
+  /**
+   * Selector for the main and client sockets.
+   */
+  private Selector selector;
+
+  /**
+   * List of Clients, parallel to sockets.
+   */
+  private Vector clients = new Vector();
+
+  /**
+   * Limit on the bytes waiting to be sent to a client.
+   */
+  private int maxBacklog = DEFAULT_MAX_BACKLOG;
+
+  /**
+   * Type, domain and default-unit range values of the latest FlatField
+   * sent, against which the next one is compared; null if the latest
+   * data sent was not a FlatField.
+   */
+  private MathType sentType = null;
+  private Set sentDomain = null;
+  private double[][] sentValues = null;
+
+  /**
+   * Code for accepting clients and writing to them.
+   */
+  private Runnable comm = new Runnable() {
     public void run() {
       while (alive) {
         try {
-          // wait for a new socket to connect
-          Socket s = socket.accept();
+          selector.select();
           if (!alive) break;
+          Iterator it = selector.selectedKeys().iterator();
+          while (it.hasNext()) {
+            SelectionKey key = (SelectionKey) it.next();
+            it.remove();
+            if (!key.isValid()) continue;
+            if (key.isAcceptable()) accept();
+            else {
+              Client client = (Client) key.attachment();
+              if (key.isReadable()) client.read();
+              if (key.isValid() && key.isWritable()) client.write();
+            }
+          }
+
+          // watch for writability only where something is waiting
           synchronized (sockets) {
-            if (s != null) {
-              // add client to the list
-              sockets.add(s);
-
-              // add client's input and output streams to the list
-              ObjectOutputStream out =
-                new ObjectOutputStream(s.getOutputStream());
-              outs.add(out);
-
-              // send the current data to the client
-              Data data = SocketDataServer.this.ref.getData();
-              out.writeObject(data);
+            for (int i=0; i<clients.size(); i++) {
+              Client client = (Client) clients.elementAt(i);
+              if (client.key.isValid()) {
+                client.key.interestOps(client.hasPending() ?
+                  SelectionKey.OP_READ | SelectionKey.OP_WRITE :
+                  SelectionKey.OP_READ);
+              }
             }
           }
         }
         catch (IOException exc) { }
+        catch (CancelledKeyException exc) { }
+        catch (ClosedSelectorException exc) {
+          break;
+        }
+      }
+      try {
+        selector.close();
       }
+      catch (IOException exc) { }
     }
   };
 
@@ -107,23 +191,34 @@ public class SocketDataServer {
     public synchronized void doAction()
       throws VisADException, RemoteException
     {
-      // send new data to each client using its socket
+      // encode the new data once, without holding up the comm thread,
+      // and queue it for each client
+      Data data = SocketDataServer.this.ref.getData();
+      ByteBuffer message = encode(data);
+      if (message == null) return;
+      Vector behind = new Vector();
       synchronized (sockets) {
-        Data data = SocketDataServer.this.ref.getData();
-        int i = 0;
-        while (i < sockets.size()) {
-          Socket s = (Socket) sockets.elementAt(i);
-          ObjectOutputStream out = (ObjectOutputStream) outs.elementAt(i);
-          try {
-            out.writeObject(data);
-            i++;
+        for (int i=0; i<clients.size(); i++) {
+          Client client = (Client) clients.elementAt(i);
+          if (client.backlog() + message.remaining() > maxBacklog) {
+            behind.add(client);
           }
-          catch (IOException exc) {
-            // something wrong with this socket; kill it
-            killSocket(i);
+          else client.post(message.duplicate());
+        }
+      }
+
+      if (behind.size() > 0) {
+        // clients that have fallen behind get all of the data instead
+        ByteBuffer full = (message.getInt(0) == DATA_MESSAGE) ? message :
+          encodeData(data);
+        synchronized (sockets) {
+          for (int i=0; i<behind.size(); i++) {
+            Client client = (Client) behind.elementAt(i);
+            if (clients.contains(client)) client.resync(full.duplicate());
           }
         }
       }
+      selector.wakeup();
     }
   };
 
@@ -137,38 +232,176 @@ public class SocketDataServer {
     this.ref = ref;
 
     // create a server socket at the given port
-    socket = new ServerSocket(port);
+    selector = Selector.open();
+    server = ServerSocketChannel.open();
+    socket = server.socket();
+    socket.bind(new InetSocketAddress(port));
+    server.configureBlocking(false);
+    server.register(selector, SelectionKey.OP_ACCEPT);
 
-    // monitor incoming client socket connections
-    Thread connectThread = new Thread(connect);
-    connectThread.start();
+    // accept and write to client sockets
+    Thread commThread = new Thread(comm, "SocketDataServer-" + port);
+    commThread.start();
 
     // monitor data changes
     commCell.addReference(ref);
   }
 
   /**
-   * Shut down the given socket, and removes it from the socket vector.
+   * Set the limit on the bytes waiting to be sent to any one client,
+   * beyond which its unsent messages are replaced by the current data.
    */
-  private void killSocket(int i) {
-    ObjectOutputStream out = (ObjectOutputStream) outs.elementAt(i);
-    Socket s = (Socket) sockets.elementAt(i);
+  public void setMaxBacklog(int maxBacklog) {
+    this.maxBacklog = maxBacklog;
+  }
+
+  /**
+   * Accept a new client and queue the current data for it.
+   */
+  private void accept() throws IOException {
+    SocketChannel channel = server.accept();
+    if (channel == null) return;
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+    Client client = new Client(channel, key);
+    key.attach(client);
+    synchronized (sockets) {
+      sockets.add(channel.socket());
+      clients.add(client);
+      try {
+        // clients already connected may not have this data yet, so
+        // leave what they were sent alone
+        client.post(encodeMessage(DATA_MESSAGE, ref.getData()));
+      }
+      catch (VisADException exc) {
+        killSocket(clients.size() - 1);
+      }
+    }
+  }
+
+  /**
+   * Encode data as the message that brings clients up to date, or
+   * return null if they are already.
+   */
+  private ByteBuffer encode(Data data) throws VisADException {
+    if (data == null || data.getClass() != FlatField.class) {
+      sentValues = null;
+      return encodeData(data);
+    }
+    FlatField field = (FlatField) data;
+    MathType type = field.getType();
+    Set domain = field.getDomainSet();
+    double[][] values = field.getValues(false);
+    double[][] old = sentValues;
+    if (old == null || !type.equals(sentType) ||
+        !domain.equals(sentDomain) || old.length != values.length ||
+        old[0].length != values[0].length) {
+      return encodeData(data);
+    }
+
+    // find the interval of samples that changed
+    int length = values[0].length;
+    int first = length;
+    int last = -1;
+    for (int i=0; i<values.length; i++) {
+      double[] v = values[i];
+      double[] o = old[i];
+      int j = 0;
+      while (j < first && same(v[j], o[j])) j++;
+      if (j < first) first = j;
+      j = length - 1;
+      while (j > last && same(v[j], o[j])) j--;
+      if (j > last) last = j;
+    }
+    if (last < first) return null;
+    int count = last - first + 1;
+    if (count > length / 2) return encodeData(data);
+
+    double[][] changed = new double[values.length][count];
+    for (int i=0; i<values.length; i++) {
+      System.arraycopy(values[i], first, changed[i], 0, count);
+      System.arraycopy(values[i], first, old[i], first, count);
+    }
+    int[] components = new int[values.length];
+    for (int i=0; i<components.length; i++) components[i] = i;
+    return encodeMessage(SAMPLES_MESSAGE,
+      new RangeChunk(changed, components, first, false));
+  }
+
+  /**
+   * Encode data as a DATA_MESSAGE, remembering it as the data clients
+   * have.
+   */
+  private ByteBuffer encodeData(Data data) throws VisADException {
+    if (data != null && data.getClass() == FlatField.class) {
+      FlatField field = (FlatField) data;
+      sentType = field.getType();
+      sentDomain = field.getDomainSet();
+      double[][] values = field.getValues(false);
+      sentValues = new double[values.length][];
+      for (int i=0; i<values.length; i++) {
+        sentValues[i] = values[i].clone();
+      }
+    }
+    else sentValues = null;
+    return encodeMessage(DATA_MESSAGE, data);
+  }
 
-    // shut down socket output stream
+  /**
+   * Serialize an object as the payload of a message.
+   */
+  private static ByteBuffer encodeMessage(int kind, Object o)
+    throws VisADException
+  {
     try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream header = new DataOutputStream(bytes);
+      header.writeInt(kind);
+      header.writeInt(0);
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.writeObject(o);
       out.close();
+      ByteBuffer message = ByteBuffer.wrap(bytes.toByteArray());
+      message.putInt(4, message.remaining() - 8);
+      return message.asReadOnlyBuffer();
     }
-    catch (IOException exc) { }
+    catch (IOException exc) {
+      throw new VisADException("SocketDataServer: " + exc.getMessage());
+    }
+  }
 
-    // shut down socket itself
+  /** compare values, treating all NaNs as the same */
+  private static boolean same(double a, double b) {
+    return a == b || (a != a && b != b);
+  }
+
+  /**
+   * Shut down the given socket, and removes it from the socket vector.
+   */
+  private void killSocket(int i) {
+    Client client = (Client) clients.elementAt(i);
+
+    // shut down socket channel, which closes the socket itself
+    client.key.cancel();
     try {
-      s.close();
+      client.channel.close();
     }
     catch (IOException exc) { }
 
     // remove socket from socket vectors
     sockets.remove(i);
-    outs.remove(i);
+    clients.remove(i);
+  }
+
+  /**
+   * Shut down the given client.
+   */
+  private void killClient(Client client) {
+    synchronized (sockets) {
+      int i = clients.indexOf(client);
+      if (i >= 0) killSocket(i);
+    }
   }
 
   /** destroys this server and kills all associated threads */
@@ -183,10 +416,88 @@ public class SocketDataServer {
 
     // shut down server socket
     try {
-      socket.close();
+      server.close();
     }
     catch (IOException exc) { }
+    selector.wakeup();
   }
 
-}
+  /**
+   * A client socket and the messages waiting to be written to it.
+   */
+  private class Client {
 
+    private final SocketChannel channel;
+    private final SelectionKey key;
+
+    /** messages waiting to be written; the first may be partly written */
+    private final Vector pending = new Vector();
+
+    /** bytes in pending not yet written */
+    private long backlog = 0;
+
+    /** buffer for discarding what the client sends */
+    private final ByteBuffer input = ByteBuffer.allocate(1024);
+
+    Client(SocketChannel channel, SelectionKey key) {
+      this.channel = channel;
+      this.key = key;
+    }
+
+    synchronized boolean hasPending() {
+      return !pending.isEmpty();
+    }
+
+    synchronized long backlog() {
+      return backlog;
+    }
+
+    synchronized void post(ByteBuffer message) {
+      pending.add(message);
+      backlog += message.remaining();
+    }
+
+    /** replace all messages not yet started with the given one */
+    synchronized void resync(ByteBuffer message) {
+      ByteBuffer head = pending.isEmpty() ? null :
+        (ByteBuffer) pending.elementAt(0);
+      pending.clear();
+      backlog = 0;
+      if (head != null && head.position() > 0) {
+        pending.add(head);
+        backlog = head.remaining();
+      }
+      post(message);
+    }
+
+    /** write as much as the socket will take */
+    void write() {
+      try {
+        synchronized (this) {
+          while (!pending.isEmpty()) {
+            ByteBuffer head = (ByteBuffer) pending.elementAt(0);
+            backlog -= channel.write(head);
+            if (head.hasRemaining()) break;
+            pending.removeElementAt(0);
+          }
+        }
+      }
+      catch (IOException exc) {
+        // something wrong with this socket; kill it
+        killClient(this);
+      }
+    }
+
+    /** discard input, and notice when the client closes */
+    void read() {
+      try {
+        input.clear();
+        if (channel.read(input) < 0) killClient(this);
+      }
+      catch (IOException exc) {
+        killClient(this);
+      }
+    }
+  }
+
+}
@@ -34,7 +34,13 @@ import visad.*;
 /**
  * A class for linking a socket stream to a DataReference. Whenever the source
  * data changes, the source presumably sends the change through the linked
- * socket, and the DataReference is set to point at the new data.
+ * socket, and the DataReference is set to point at the new data.<P>
+ *
+ * The source sends messages as SocketDataServer does: either new data, or
+ * new values for an interval of samples of the FlatField last received,
+ * which are set into that FlatField. Messages are no longer a stream of
+ * serialized objects, so the protected ObjectInputStream is not used and
+ * remains null; subclasses that read it directly must be changed.
  */
 public class SocketDataSource extends LinkedDataSource {
 
@@ -49,10 +55,24 @@ public class SocketDataSource extends LinkedDataSource {
   protected ObjectOutputStream out;
   
   /**
-   * The input stream for the socket connection.
+   * The object input stream the socket connection used to be read with.
+   *
+   * @deprecated No longer used, and always null; the socket carries
+   * framed messages rather than a stream of objects.
    */
+  @Deprecated
   protected ObjectInputStream in;
 
+  /**
+   * The input stream for the socket connection.
+   */
+  private DataInputStream input;
+
+  /**
+   * The latest data received, if a FlatField.
+   */
+  private FlatField field = null;
+
   /**
    * Code for monitoring socket for incoming source data changes.
    */
@@ -60,33 +80,52 @@ public class SocketDataSource extends LinkedDataSource {
     public void run() {
       Object o;
 
-      // read objects until stream closes
+      // read messages until stream closes
       while (true) {
+        int kind;
         o = null;
         try {
-          o = in.readObject();
+          kind = input.readInt();
+          byte[] payload = new byte[input.readInt()];
+          input.readFully(payload);
+          if (kind != SocketDataServer.DATA_MESSAGE &&
+            kind != SocketDataServer.SAMPLES_MESSAGE)
+          {
+            // ignore unknown messages
+            continue;
+          }
+          ObjectInputStream oin =
+            new ObjectInputStream(new ByteArrayInputStream(payload));
+          o = oin.readObject();
+          oin.close();
         }
         catch (ClassNotFoundException exc) {
           if (DEBUG) exc.printStackTrace();
+          continue;
         }
         catch (IOException exc) {
           if (DEBUG) exc.printStackTrace();
+          break;
         }
-        if (o == null) break;
 
         // process object
-        if (o instanceof DataImpl) {
-          // object is updated data
-          try {
-            dataChanged((Data) o);
-          }
-          catch (VisADException exc) {
-            if (DEBUG) exc.printStackTrace();
+        try {
+          if (kind == SocketDataServer.DATA_MESSAGE) {
+            // object is updated data
+            field = (o instanceof FlatField) ? (FlatField) o : null;
+            if (o instanceof DataImpl) dataChanged((Data) o);
           }
-          catch (RemoteException exc) {
-            if (DEBUG) exc.printStackTrace();
+          else if (field != null && o instanceof RangeChunk) {
+            // object is new values for some samples of the latest data
+            setSamples(field, (RangeChunk) o);
           }
         }
+        catch (VisADException exc) {
+          if (DEBUG) exc.printStackTrace();
+        }
+        catch (RemoteException exc) {
+          if (DEBUG) exc.printStackTrace();
+        }
       }
 
       // socket has died; shut everything down
@@ -100,7 +139,7 @@ public class SocketDataSource extends LinkedDataSource {
         if (DEBUG) exc.printStackTrace();
       }
       try {
-        in.close();
+        input.close();
       }
       catch (IOException exc) {
         if (DEBUG) exc.printStackTrace();
@@ -151,13 +190,29 @@ public class SocketDataSource extends LinkedDataSource {
     // open the socket
     socket = new Socket(host, port);
     out = new ObjectOutputStream(socket.getOutputStream());
-    in = new ObjectInputStream(socket.getInputStream());
+    input = new DataInputStream(
+      new BufferedInputStream(socket.getInputStream()));
 
     // set up socket input thread
     Thread t = new Thread(comm);
     t.start();
   }
 
+  /**
+   * Set new values, in default units, for some samples of a FlatField.
+   */
+  private static void setSamples(FlatField field, RangeChunk chunk)
+    throws VisADException, RemoteException
+  {
+    double[][] values = chunk.getValues();
+    Unit[][] units = field.getRangeUnits();
+    Unit[] rangeUnits = new Unit[units.length];
+    for (int i=0; i<units.length; i++) rangeUnits[i] = units[i][0];
+    values =
+      Unit.convertTuple(values, field.getDefaultRangeUnits(), rangeUnits, false);
+    field.setSamples(chunk.getStart(), values);
+  }
+
   /**
    * Return the socket connection for this SocketDataSource.
    */
@@ -36,6 +36,7 @@ import visad.QuickSort;
 import visad.RealTupleType;
 import visad.Unit;
 import visad.VisADException;
+import visad.util.ParallelLoop;
 
 /**
  * AREACoordinateSystem is the VisAD CoordinateSystem class
@@ -55,6 +56,12 @@ public class AREACoordinateSystem
   private int[] auxBlock;
   private boolean useSpline = true;
 
+  /** points navigated by one task when navigating in parallel */
+  private static final int NAV_BLOCK = 4096;
+
+  /** cost of navigating one point, in samples of ParallelLoop work */
+  private static final int NAV_WORK = 32;
+
   private static Unit[] coordinate_system_units =
     {null, null};
 
@@ -310,7 +317,7 @@ public class AREACoordinateSystem
     double[][] newval = makeSpline(tuples, mins, maxs, nums);
     if (newval != null) {
 // System.out.println("new 1 " + tuples[0].length + " " + newval[0].length);
-      double[][] newtrans = anav.toLatLon(newval);
+      double[][] newtrans = navLatLon(anav, newval);
 
       int len = tuples[0].length;
       double[][] misstrans = new double[2][len];
@@ -318,7 +325,7 @@ public class AREACoordinateSystem
       double[][] val = applySpline(tuples, mins, maxs, nums, newtrans,
                                    misstrans, miss_to_trans);
       if (miss_to_trans[0] != null) {
-        double[][] newmiss = anav.toLatLon(misstrans);
+        double[][] newmiss = navLatLon(anav, misstrans);
         for (int i=0; i<miss_to_trans[0].length; i++) {
           val[0][miss_to_trans[0][i]] = newmiss[0][i];
           val[1][miss_to_trans[0][i]] = newmiss[1][i];
@@ -327,7 +334,7 @@ public class AREACoordinateSystem
       return val;
     }
     else {
-      return anav.toLatLon(tuples);
+      return navLatLon(anav, tuples);
     }
   }
 
@@ -353,7 +360,7 @@ public class AREACoordinateSystem
     double[][] newval = makeSpline(tuples, mins, maxs, nums);
     if (newval != null) {
 // System.out.println("new 2 " + tuples[0].length + " " + newval[0].length);
-      double[][] newtrans = anav.toLinEle(newval);
+      double[][] newtrans = navLinEle(anav, newval);
 
       int len = tuples[0].length;
       double[][] misstrans = new double[2][len];
@@ -361,7 +368,7 @@ public class AREACoordinateSystem
       double[][] val = applySpline(tuples, mins, maxs, nums, newtrans,
                                    misstrans, miss_to_trans);
       if (miss_to_trans[0] != null) {
-        double[][] newmiss = anav.toLinEle(misstrans);
+        double[][] newmiss = navLinEle(anav, misstrans);
         for (int i=0; i<miss_to_trans[0].length; i++) {
           val[0][miss_to_trans[0][i]] = newmiss[0][i];
           val[1][miss_to_trans[0][i]] = newmiss[1][i];
@@ -370,7 +377,7 @@ public class AREACoordinateSystem
       return val;
     }
     else {
-      return anav.toLinEle(tuples);
+      return navLinEle(anav, tuples);
     }
 
   }
@@ -400,7 +407,7 @@ public class AREACoordinateSystem
     float[][] newval = makeSpline(val, mins, maxs, nums);
     if (newval != null) {
 // System.out.println("new 3");
-      float[][] newtrans = anav.toLatLon(newval);
+      float[][] newtrans = navLatLon(anav, newval);
 
       int len = tuples[0].length;
       float[][] misstrans = new float[2][len];
@@ -408,7 +415,7 @@ public class AREACoordinateSystem
       val = applySpline(val, mins, maxs, nums, newtrans,
                         misstrans, miss_to_trans);
       if (miss_to_trans[0] != null) {
-        float[][] newmiss = anav.toLatLon(misstrans);
+        float[][] newmiss = navLatLon(anav, misstrans);
         for (int i=0; i<miss_to_trans[0].length; i++) {
           val[0][miss_to_trans[0][i]] = newmiss[0][i];
           val[1][miss_to_trans[0][i]] = newmiss[1][i];
@@ -416,7 +423,7 @@ public class AREACoordinateSystem
       }
     }
     else {
-      val = anav.toLatLon(val);
+      val = navLatLon(anav, val);
     }
     //return Set.doubleToFloat(val);
     return val;
@@ -448,7 +455,7 @@ public class AREACoordinateSystem
     float[][] newval = makeSpline(val, mins, maxs, nums);
     if (newval != null) {
 // System.out.println("new 4");
-      float[][] newtrans = anav.toLinEle(newval);
+      float[][] newtrans = navLinEle(anav, newval);
 
       int len = tuples[0].length;
       float[][] misstrans = new float[2][len];
@@ -456,7 +463,7 @@ public class AREACoordinateSystem
       val = applySpline(val, mins, maxs, nums, newtrans,
                         misstrans, miss_to_trans);
       if (miss_to_trans[0] != null) {
-        float[][] newmiss = anav.toLinEle(misstrans);
+        float[][] newmiss = navLinEle(anav, misstrans);
         for (int i=0; i<miss_to_trans[0].length; i++) {
           val[0][miss_to_trans[0][i]] = newmiss[0][i];
           val[1][miss_to_trans[0][i]] = newmiss[1][i];
@@ -464,13 +471,97 @@ public class AREACoordinateSystem
       }
     }
     else {
-      val = anav.toLinEle(val);
+      val = navLinEle(anav, val);
     }
     //return Set.doubleToFloat(val);
     return val;
 
   }
 
+  /**
+   * Convert with {@link AREAnav#toLatLon(double[][])}, splitting the
+   * points across threads when the navigation allows it.
+   */
+  private static double[][] navLatLon(final AREAnav anav, final double[][] linele)
+          throws VisADException {
+    if (!anav.canNavigateInParallel()) return anav.toLatLon(linele);
+    final int len = linele[0].length;
+    final double[][] latlon = new double[2][len];
+    int blocks = (len + NAV_BLOCK - 1) / NAV_BLOCK;
+    ParallelLoop.runTasks(blocks, (long) len * NAV_WORK,
+      new ParallelLoop.Body() {
+        public void run(int start, int end) {
+          int first = start * NAV_BLOCK;
+          int last = Math.min(end * NAV_BLOCK, len);
+          anav.toLatLon(linele, latlon, first, last - first);
+        }
+      });
+    return latlon;
+  }
+
+  /**
+   * Convert with {@link AREAnav#toLatLon(float[][])}, splitting the
+   * points across threads when the navigation allows it.
+   */
+  private static float[][] navLatLon(final AREAnav anav, final float[][] linele)
+          throws VisADException {
+    if (!anav.canNavigateInParallel()) return anav.toLatLon(linele);
+    final int len = linele[0].length;
+    final float[][] latlon = new float[2][len];
+    int blocks = (len + NAV_BLOCK - 1) / NAV_BLOCK;
+    ParallelLoop.runTasks(blocks, (long) len * NAV_WORK,
+      new ParallelLoop.Body() {
+        public void run(int start, int end) {
+          int first = start * NAV_BLOCK;
+          int last = Math.min(end * NAV_BLOCK, len);
+          anav.toLatLon(linele, latlon, first, last - first);
+        }
+      });
+    return latlon;
+  }
+
+  /**
+   * Convert with {@link AREAnav#toLinEle(double[][])}, splitting the
+   * points across threads when the navigation allows it.
+   */
+  private static double[][] navLinEle(final AREAnav anav, final double[][] latlon)
+          throws VisADException {
+    if (!anav.canNavigateInParallel()) return anav.toLinEle(latlon);
+    final int len = latlon[0].length;
+    final double[][] linele = new double[2][len];
+    int blocks = (len + NAV_BLOCK - 1) / NAV_BLOCK;
+    ParallelLoop.runTasks(blocks, (long) len * NAV_WORK,
+      new ParallelLoop.Body() {
+        public void run(int start, int end) {
+          int first = start * NAV_BLOCK;
+          int last = Math.min(end * NAV_BLOCK, len);
+          anav.toLinEle(latlon, linele, first, last - first);
+        }
+      });
+    return linele;
+  }
+
+  /**
+   * Convert with {@link AREAnav#toLinEle(float[][])}, splitting the
+   * points across threads when the navigation allows it.
+   */
+  private static float[][] navLinEle(final AREAnav anav, final float[][] latlon)
+          throws VisADException {
+    if (!anav.canNavigateInParallel()) return anav.toLinEle(latlon);
+    final int len = latlon[0].length;
+    final float[][] linele = new float[2][len];
+    int blocks = (len + NAV_BLOCK - 1) / NAV_BLOCK;
+    ParallelLoop.runTasks(blocks, (long) len * NAV_WORK,
+      new ParallelLoop.Body() {
+        public void run(int start, int end) {
+          int first = start * NAV_BLOCK;
+          int last = Math.min(end * NAV_BLOCK, len);
+          anav.toLinEle(latlon, linele, first, last - first);
+        }
+      });
+    return linele;
+  }
+
   // return reduced array for approximatin by splines
   private double[][] makeSpline(double[][] val, double[] mins,
                                 double[] maxs, int[] nums)
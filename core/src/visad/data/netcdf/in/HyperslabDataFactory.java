@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015, University Corporation for Atmospheric Research
+ * All Rights Reserved.
+ * See file LICENSE for copying and redistribution conditions.
+ */
+
+package visad.data.netcdf.in;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import visad.FlatField;
+import visad.VisADException;
+
+/**
+ * Provides support for creating VisAD Data objects whose FlatFields read
+ * their values from the netCDF dataset by hyperslab, as they are needed.
+ *
+ * @see HyperslabFlatField
+ */
+public class
+HyperslabDataFactory
+    extends     DataFactory
+{
+    private static HyperslabDataFactory instance;
+
+    static
+    {
+        instance = new HyperslabDataFactory();
+    }
+
+
+    private HyperslabDataFactory()
+    {}
+
+
+    /**
+     * Returns an instance of this class.
+     *
+     * @return                  An instance of this class.
+     */
+    public static DataFactory instance()
+    {
+        return instance;
+    }
+
+
+    /**
+     * Creates a VisAD FlatField object from a netCDF indicial context and a 
+     * VirtualFlatField.  The returned FlatField object is a {@link
+     * HyperslabFlatField}, which reads nothing from the netCDF dataset
+     * until its values are needed.
+     *
+     * @param context           The netCDF indicial context.
+     * @param virtualField      The virtual data.
+     * @return                  The VisAD HyperslabFlatField corresponding to
+     *                          the input.
+     * @throws VisADException   VisAD failure.
+     * @throws RemoteException  Java RMI failure.
+     * @throws IOException      I/O failure.
+     */
+    public FlatField newData(Context context, VirtualFlatField virtualField)
+        throws VisADException, RemoteException, IOException
+    {
+        return new HyperslabFlatField(context, virtualField);
+    }
+}
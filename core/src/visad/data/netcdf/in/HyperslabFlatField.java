@@ -0,0 +1,801 @@
+/*
+ * Copyright 2015, University Corporation for Atmospheric Research
+ * All Rights Reserved.
+ * See file LICENSE for copying and redistribution conditions.
+ */
+
+package visad.data.netcdf.in;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import ucar.netcdf.Variable;
+import visad.*;
+import visad.data.CachedFlatField;
+
+/**
+ * <p>A FlatField whose range values stay in the netCDF dataset until they
+ * are needed, and are then read by hyperslab.</p>
+ *
+ * <p>Single samples ({@link #getSample(int)}), index boxes ({@link
+ * #getFloats(int[], int[])}) and resampling onto part of the domain ({@link
+ * #resample(Set, int, int)}) read only the tiles of the netCDF variables
+ * that hold the requested samples.  A tile is a hyperslab of about {@link
+ * #TILE_SIZE} values: whole rows along the fastest varying dimensions, and
+ * a part of the next one.  Tiles are kept, for all instances, in a least
+ * recently used cache whose size in megabytes is given by the
+ * <code>visad.data.netcdf.in.hyperslab.cache</code> system property
+ * (default 64).</p>
+ *
+ * <p>Any other access reads all of the values, as for a {@link
+ * CachedFlatField}, whose storage (as floats) this class uses.</p>
+ *
+ * <p>The netCDF variables are not serializable, so an instance is
+ * serialized as a plain {@link FlatField} holding all of its values.</p>
+ *
+ * @see HyperslabStrategy
+ */
+public class HyperslabFlatField
+    extends     CachedFlatField
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The system property giving the size of the tile cache in megabytes.
+     */
+    public static final String  CACHE_SIZE_PROPERTY =
+        "visad.data.netcdf.in.hyperslab.cache";
+
+    /**
+     * The approximate number of values in a tile.
+     */
+    public static final int     TILE_SIZE = 1 << 16;
+
+    /**
+     * The maximum number of values in the tile cache.
+     */
+    private static final long   maxCachedValues =
+        Long.getLong(CACHE_SIZE_PROPERTY, 64).longValue() * (1 << 20) / 4;
+
+    /**
+     * The tile cache: {@link TileKey}s to float[]s, in access order.
+     */
+    private static final LinkedHashMap<TileKey, float[]>        tiles =
+        new LinkedHashMap<TileKey, float[]>(64, 0.75f, true);
+
+    /**
+     * The number of values in the tile cache.
+     */
+    private static long         cachedValues = 0;
+
+    /**
+     * Serializes reads of the netCDF datasets, whose file access is not
+     * thread-safe.
+     */
+    private static final Object readLock = new Object();
+
+    /**
+     * The range components.
+     */
+    private transient final VirtualScalar[]     components;
+
+    /**
+     * The netCDF indicial context of this field.
+     */
+    private final int[]         context;
+
+    /**
+     * The shape of the field in netCDF (outermost dimension first) order.
+     */
+    private final int[]         shape;
+
+    /**
+     * The shape of a tile in netCDF order.
+     */
+    private final int[]         tileShape;
+
+    /**
+     * Constructs from a netCDF indicial context and a virtual FlatField.
+     *
+     * @param context           The netCDF indicial context.  It is copied.
+     * @param virtualField      The virtual FlatField.
+     * @throws VisADException   VisAD failure.
+     */
+    public HyperslabFlatField(Context context, VirtualFlatField virtualField)
+        throws VisADException
+    {
+        this(context, virtualField, getRangeSets(virtualField),
+            getRangeUnits(virtualField));
+    }
+
+    private HyperslabFlatField(Context context, VirtualFlatField virtualField,
+            Set[] rangeSets, Unit[] rangeUnits)
+        throws VisADException
+    {
+        super(virtualField.getFunctionType(), virtualField.getDomainSet(),
+            (CoordinateSystem)null, (CoordinateSystem[])null, rangeSets,
+            rangeUnits, (float[][])null);
+
+        VirtualTuple    rangeTuple = virtualField.getRangeTuple();
+
+        components = new VirtualScalar[rangeTuple.size()];
+        for (int i = 0; i < components.length; ++i)
+            components[i] = (VirtualScalar)rangeTuple.get(i);
+
+        this.context = context.getContext();
+
+        int[]   lengths = components[0].getVariable().getLengths();
+
+        shape = new int[lengths.length - this.context.length];
+        System.arraycopy(lengths, this.context.length, shape, 0, shape.length);
+        tileShape = getTileShape(shape);
+    }
+
+    private static Set[] getRangeSets(VirtualFlatField virtualField)
+    {
+        VirtualTuple    rangeTuple = virtualField.getRangeTuple();
+        Set[]           rangeSets = new Set[rangeTuple.size()];
+
+        for (int i = 0; i < rangeSets.length; ++i)
+            rangeSets[i] = ((VirtualScalar)rangeTuple.get(i)).getRangeSet();
+        return rangeSets;
+    }
+
+    private static Unit[] getRangeUnits(VirtualFlatField virtualField)
+    {
+        VirtualTuple    rangeTuple = virtualField.getRangeTuple();
+        Unit[]          units = new Unit[rangeTuple.size()];
+
+        for (int i = 0; i < units.length; ++i)
+            units[i] = ((VirtualScalar)rangeTuple.get(i)).getUnit();
+        return units;
+    }
+
+    /**
+     * Returns the shape of the tiles of a field: whole rows along the
+     * fastest varying dimensions while they fit in {@link #TILE_SIZE}
+     * values, part of the next dimension, and 1 along the rest.
+     */
+    private static int[] getTileShape(int[] shape)
+    {
+        int[]   tileShape = new int[shape.length];
+        int     size = 1;
+        int     i = shape.length - 1;
+
+        for (; i >= 0 && (long)size * shape[i] <= TILE_SIZE; --i)
+        {
+            tileShape[i] = shape[i];
+            size *= shape[i];
+        }
+        if (i >= 0)
+        {
+            tileShape[i] = Math.max(1, TILE_SIZE / size);
+            while (--i >= 0)
+                tileShape[i] = 1;
+        }
+        return tileShape;
+    }
+
+    /**
+     * Reads all of the values.  Called by {@link CachedFlatField} when all
+     * of the values are needed.  The tile cache is not used.
+     *
+     * @return                  The range values.
+     */
+    public float[][] readData()
+    {
+        try
+        {
+            int[]       origin = new int[shape.length];
+            float[][]   values = new float[components.length][];
+
+            for (int i = 0; i < components.length; ++i)
+                values[i] = read(components[i], origin, shape);
+            return values;
+        }
+        catch (Exception e)
+        {
+            throw new VisADError(
+                getClass().getName() + ".readData(): " + e);
+        }
+    }
+
+    /**
+     * Returns the range values of an index box of the domain.
+     *
+     * @param first             The index of the first sample of the box in
+     *                          each dimension of the domain.
+     * @param lengths           The number of samples of the box in each
+     *                          dimension of the domain.
+     * @return                  The range values of the box: <code>
+     *                          [component][sample]</code>, with the first
+     *                          dimension of the domain varying fastest.
+     * @throws SetException     if the domain is not a {@link GriddedSet} with
+     *                          one dimension for each netCDF dimension, or
+     *                          the box is not inside it.
+     * @throws VisADException   VisAD failure.
+     */
+    public float[][] getFloats(int[] first, int[] lengths)
+        throws VisADException
+    {
+        int     rank = shape.length;
+
+        if (!isGridded() || first.length != rank || lengths.length != rank)
+            throw new SetException(
+                "HyperslabFlatField.getFloats: bad box dimension");
+
+        // netCDF order
+        int[]   lo = new int[rank];
+        int[]   hi = new int[rank];
+        int     total = 1;
+
+        for (int i = 0; i < rank; ++i)
+        {
+            int j = rank - 1 - i;
+
+            lo[j] = first[i];
+            hi[j] = first[i] + lengths[i];
+            if (lo[j] < 0 || lengths[i] <= 0 || hi[j] > shape[j])
+                throw new SetException(
+                    "HyperslabFlatField.getFloats: box outside of domain");
+            total *= lengths[i];
+        }
+
+        int[]       count = new int[rank];
+        float[][]   values = new float[components.length][total];
+
+        for (int i = 0; i < rank; ++i)
+            count[i] = hi[i] - lo[i];
+
+        if (haveData())
+        {
+            float[][]   all = unpackFloats(false);
+            int[]       origin = new int[rank];
+
+            for (int c = 0; c < components.length; ++c)
+                copy(all[c], origin, shape, values[c], lo, count, lo, hi);
+            return values;
+        }
+
+        // visit the tiles that intersect the box
+        int[]   tile = new int[rank];
+        int[]   tileLo = new int[rank];
+        int[]   tileOrigin = new int[rank];
+        int[]   tileCount = new int[rank];
+        int[]   from = new int[rank];
+        int[]   to = new int[rank];
+
+        for (int i = 0; i < rank; ++i)
+            tileLo[i] = tile[i] = lo[i] / tileShape[i];
+
+        for (;;)
+        {
+            for (int i = 0; i < rank; ++i)
+            {
+                tileOrigin[i] = tile[i] * tileShape[i];
+                tileCount[i] =
+                    Math.min(tileShape[i], shape[i] - tileOrigin[i]);
+                from[i] = Math.max(lo[i], tileOrigin[i]);
+                to[i] = Math.min(hi[i], tileOrigin[i] + tileCount[i]);
+            }
+            for (int c = 0; c < components.length; ++c)
+                copy(getTile(c, tileOrigin, tileCount), tileOrigin,
+                    tileCount, values[c], lo, count, from, to);
+
+            int i = rank - 1;
+
+            while (i >= 0 && ++tile[i] * tileShape[i] >= hi[i])
+            {
+                tile[i] = tileLo[i];
+                --i;
+            }
+            if (i < 0)
+                break;
+        }
+        return values;
+    }
+
+    /**
+     * Returns the range values of one sample, reading only the tile that
+     * holds it if all of the values have not been read.
+     *
+     * @param s_index           The index of the sample.
+     * @return                  The range values of the sample.
+     * @throws VisADException   VisAD failure.
+     */
+    protected float[] unpackFloats(int s_index)
+        throws VisADException
+    {
+        if (haveData())
+            return super.unpackFloats(s_index);
+
+        int     rank = shape.length;
+        int[]   tileOrigin = new int[rank];
+        int[]   tileCount = new int[rank];
+        int     offset = 0;
+        int     index = s_index;
+        int[]   position = new int[rank];
+
+        for (int i = rank - 1; i >= 0; --i)
+        {
+            position[i] = index % shape[i];
+            index /= shape[i];
+        }
+        for (int i = 0; i < rank; ++i)
+        {
+            tileOrigin[i] = position[i] - position[i] % tileShape[i];
+            tileCount[i] = Math.min(tileShape[i], shape[i] - tileOrigin[i]);
+            offset = offset * tileCount[i] + position[i] - tileOrigin[i];
+        }
+
+        float[] range = new float[components.length];
+
+        for (int c = 0; c < components.length; ++c)
+            range[c] = getTile(c, tileOrigin, tileCount)[offset];
+        return range;
+    }
+
+    /**
+     * Returns a sample, reading only the tile that holds it if all of the
+     * values have not been read.
+     *
+     * @param index             The index of the sample.
+     * @return                  The range at the sample.
+     * @throws VisADException   VisAD failure.
+     * @throws RemoteException  Java RMI failure.
+     */
+    public Data getSample(int index)
+        throws VisADException, RemoteException
+    {
+        MathType        rangeType = ((FunctionType)getType()).getRange();
+
+        if (haveData() || !(rangeType instanceof RealType ||
+                rangeType instanceof RealTupleType))
+            return super.getSample(index);
+
+        if (isMissing() || index < 0 || index >= getLength())
+            return rangeType.missingData();
+
+        float[]         values = unpackFloats(index);
+        ErrorEstimate[] errors = getRangeErrors();
+
+        if (rangeType instanceof RealType)
+            return new Real((RealType)rangeType, values[0], RangeUnits[0],
+                errors[0]);
+
+        Real[]  reals = new Real[values.length];
+
+        for (int i = 0; i < reals.length; ++i)
+            reals[i] = new Real(
+                (RealType)((RealTupleType)rangeType).getComponent(i),
+                values[i], RangeUnits[i], errors[i]);
+        return new RealTuple((RealTupleType)rangeType, reals,
+            RangeCoordinateSystem);
+    }
+
+    /**
+     * Resamples this field.  If all of the values have not been read and
+     * the samples of <code>set</code> fall in part of the domain, only the
+     * index box that holds them (and the neighbours used by interpolation)
+     * is read, and resampled.
+     *
+     * <p>A box is resampled on its own domain set, whose grid coordinates
+     * are rounded differently from those of the whole domain.  So a
+     * nearest-neighbour target exactly halfway between two samples may
+     * take the other neighbour, and weighted averages may differ from
+     * those of the whole field in the last few bits (relative
+     * differences of about 1e-6).</p>
+     *
+     * @param set               The set of points at which to resample.
+     * @param sampling_mode     Data.NEAREST_NEIGHBOR or
+     *                          Data.WEIGHTED_AVERAGE.
+     * @param error_mode        Data.DEPENDENT, Data.INDEPENDENT, or
+     *                          Data.NO_ERRORS.
+     * @return                  Field of resampled data.
+     * @throws VisADException   VisAD failure.
+     * @throws RemoteException  Java RMI failure.
+     */
+    public Field resample(Set set, int sampling_mode, int error_mode)
+        throws VisADException, RemoteException
+    {
+        Set     domainSet = getDomainSet();
+
+        if (haveData() || isMissing() || !isGridded() ||
+                domainSet.equals(set) ||
+                set.getDimension() != domainSet.getDimension())
+            return super.resample(set, sampling_mode, error_mode);
+
+        int[]   first = new int[shape.length];
+        int[]   lengths = new int[shape.length];
+
+        if (!getBox(set, first, lengths))
+            return super.resample(set, sampling_mode, error_mode);
+
+        GriddedSet      subSet = getSubSet(first, lengths);
+
+        if (subSet == null)
+            return super.resample(set, sampling_mode, error_mode);
+
+        FlatField       field = new FlatField((FunctionType)getType(),
+            subSet, RangeCoordinateSystem, RangeCoordinateSystems,
+            getRangeSets(), RangeUnits);
+
+        field.setSamples(getFloats(first, lengths), getRangeErrors(),
+            /*copy=*/false);
+        return field.resample(set, sampling_mode, error_mode);
+    }
+
+    /**
+     * Replaces this field, when serialized, with a {@link FlatField}
+     * holding all of its values, since the netCDF variables that they are
+     * read from cannot be serialized.
+     *
+     * @return                  The FlatField to serialize instead.
+     * @throws ObjectStreamException    if the values can't be read.
+     */
+    protected Object writeReplace()
+        throws ObjectStreamException
+    {
+        try
+        {
+            FlatField   field = new FlatField((FunctionType)getType(),
+                getDomainSet(), RangeCoordinateSystem, RangeCoordinateSystems,
+                getRangeSets(), RangeUnits);
+
+            if (!isMissing())
+                field.setSamples(unpackFloats(true), getRangeErrors(),
+                    /*copy=*/false);
+            return field;
+        }
+        catch (Exception e)
+        {
+            throw new InvalidObjectException(
+                getClass().getName() + ".writeReplace(): " + e);
+        }
+    }
+
+    /**
+     * Computes the index box of the domain that holds the samples of a set
+     * and their neighbours.
+     *
+     * @return                  <code>false</code> if the box is the whole
+     *                          domain.
+     */
+    private boolean getBox(Set set, int[] first, int[] lengths)
+        throws VisADException
+    {
+        GriddedSet      domainSet = (GriddedSet)getDomainSet();
+        float[][]       values = set.getSamples(false);
+
+        if (values == null)
+            return false;
+        values = CoordinateSystem.transformCoordinates(
+            ((FunctionType)getType()).getDomain(),
+            domainSet.getCoordinateSystem(), domainSet.getSetUnits(),
+            (ErrorEstimate[])null,
+            ((SetType)set.getType()).getDomain(), set.getCoordinateSystem(),
+            set.getSetUnits(), (ErrorEstimate[])null, values);
+
+        float[][]       grid = domainSet.valueToGrid(values);
+        boolean         whole = true;
+
+        for (int i = 0; i < grid.length; ++i)
+        {
+            int         length = domainSet.getLength(i);
+            float       min = Float.POSITIVE_INFINITY;
+            float       max = Float.NEGATIVE_INFINITY;
+            float[]     g = grid[i];
+
+            for (int j = 0; j < g.length; ++j)
+            {
+                if (g[j] < min)
+                    min = g[j];
+                if (g[j] > max)
+                    max = g[j];
+            }
+
+            int lo = 0;
+            int hi = Math.min(1, length - 1);
+
+            if (min <= max)     // not all missing
+            {
+                lo = Math.max(0, (int)Math.floor(min));
+                hi = Math.min(length - 1, (int)Math.ceil(max));
+            }
+            // keep at least 2 samples, as the domain has
+            if (hi == lo && length > 1)
+            {
+                if (hi < length - 1)
+                    ++hi;
+                else
+                    --lo;
+            }
+            first[i] = lo;
+            lengths[i] = hi - lo + 1;
+            whole &= lengths[i] == length;
+        }
+        return !whole;
+    }
+
+    /**
+     * Returns an index box of the domain as a set, or <code>null</code> if
+     * the kind of domain is not supported.
+     */
+    private GriddedSet getSubSet(int[] first, int[] lengths)
+        throws VisADException
+    {
+        GriddedSet      domainSet = (GriddedSet)getDomainSet();
+        int             rank = first.length;
+        MathType        type = domainSet.getType();
+        CoordinateSystem        cs = domainSet.getCoordinateSystem();
+        Unit[]          units = domainSet.getSetUnits();
+        ErrorEstimate[] errors = domainSet.getSetErrors();
+
+        if (domainSet instanceof LinearSet)
+        {
+            double[]    firsts = new double[rank];
+            double[]    lasts = new double[rank];
+
+            for (int i = 0; i < rank; ++i)
+            {
+                Linear1DSet     set =
+                    ((LinearSet)domainSet).getLinear1DComponent(i);
+
+                firsts[i] = set.getFirst() + first[i] * set.getStep();
+                lasts[i] = firsts[i] + (lengths[i] - 1) * set.getStep();
+            }
+            if (domainSet instanceof LinearLatLonSet)
+                return new LinearLatLonSet(type, firsts[0], lasts[0],
+                    lengths[0], firsts[1], lasts[1], lengths[1], cs, units,
+                    errors);
+            return (GriddedSet)LinearNDSet.create(type, firsts, lasts,
+                lengths, cs, units, errors);
+        }
+
+        // netCDF order
+        int[]   origin = new int[rank];
+        int[]   all = new int[rank];
+        int[]   lo = new int[rank];
+        int[]   hi = new int[rank];
+        int[]   count = new int[rank];
+
+        for (int i = 0; i < rank; ++i)
+        {
+            int j = rank - 1 - i;
+
+            all[j] = shape[j];
+            lo[j] = first[i];
+            count[j] = lengths[i];
+            hi[j] = first[i] + lengths[i];
+        }
+
+        if (domainSet instanceof Gridded1DDoubleSet)
+        {
+            double[][]  samples = domainSet.getDoubles(false);
+            double[][]  sub = new double[1][lengths[0]];
+
+            copy(samples[0], origin, all, sub[0], lo, count, lo, hi);
+            return new Gridded1DDoubleSet(type, sub, lengths[0], cs, units,
+                errors, /*copy=*/false);
+        }
+        if (domainSet instanceof GriddedDoubleSet)
+            return null;
+
+        float[][]       samples = domainSet.getSamples(false);
+        float[][]       sub = new float[samples.length][getLength(lengths)];
+
+        for (int i = 0; i < samples.length; ++i)
+            copy(samples[i], origin, all, sub[i], lo, count, lo, hi);
+        return GriddedSet.create(type, sub, lengths, cs, units, errors,
+            /*copy=*/false);
+    }
+
+    private static int getLength(int[] lengths)
+    {
+        int     length = 1;
+
+        for (int i = 0; i < lengths.length; ++i)
+            length *= lengths[i];
+        return length;
+    }
+
+    /**
+     * Indicates whether the domain is a {@link GriddedSet} with one
+     * dimension, in reverse order, for each of the netCDF dimensions of
+     * this field.
+     */
+    private boolean isGridded()
+    {
+        Set     domainSet = getDomainSet();
+
+        if (!(domainSet instanceof GriddedSet) ||
+                domainSet.getDimension() != shape.length ||
+                domainSet.getManifoldDimension() != shape.length)
+            return false;
+
+        int[]   lengths = ((GriddedSet)domainSet).getLengths();
+
+        for (int i = 0; i < shape.length; ++i)
+            if (lengths[i] != shape[shape.length - 1 - i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns a tile of a range component, from the tile cache if it is
+     * there.
+     */
+    private float[] getTile(int component, int[] origin, int[] count)
+        throws VisADException
+    {
+        VirtualScalar   scalar = components[component];
+        TileKey         key = new TileKey(scalar.getVariable(), context,
+            origin, count);
+        float[]         tile;
+
+        synchronized(tiles)
+        {
+            tile = tiles.get(key);
+        }
+        if (tile != null)
+            return tile;
+
+        try
+        {
+            tile = read(scalar, origin, count);
+        }
+        catch (IOException e)
+        {
+            throw new VisADException(
+                getClass().getName() + ".getTile(): " + e);
+        }
+
+        synchronized(tiles)
+        {
+            if (tiles.put(key, tile) == null)
+                cachedValues += tile.length;
+            for (Iterator<Map.Entry<TileKey, float[]>> iter =
+                        tiles.entrySet().iterator();
+                    cachedValues > maxCachedValues && iter.hasNext(); )
+            {
+                Map.Entry<TileKey, float[]>     entry = iter.next();
+
+                if (entry.getKey().equals(key))
+                    continue;
+                cachedValues -= entry.getValue().length;
+                iter.remove();
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * Reads and vets a hyperslab of a range component.
+     *
+     * @param scalar            The range component.
+     * @param origin            The origin of the hyperslab in the field.
+     * @param count             The shape of the hyperslab.
+     * @return                  The values of the hyperslab.
+     */
+    private float[] read(VirtualScalar scalar, int[] origin, int[] count)
+        throws IOException
+    {
+        int     rank = context.length + shape.length;
+        int[]   ioOrigin = new int[rank];
+        int[]   ioShape = new int[rank];
+
+        System.arraycopy(context, 0, ioOrigin, 0, context.length);
+        Arrays.fill(ioShape, 0, context.length, 1);
+        System.arraycopy(origin, 0, ioOrigin, context.length, origin.length);
+        System.arraycopy(count, 0, ioShape, context.length, count.length);
+
+        double[]        values = new double[getLength(count)];
+
+        synchronized(readLock)
+        {
+            VirtualScalar.toArray(
+                scalar.getVariable(), values, ioOrigin, ioShape);
+        }
+        scalar.getVetter().vet(values);
+
+        float[]         floats = new float[values.length];
+
+        for (int i = 0; i < values.length; ++i)
+            floats[i] = (float)values[i];
+        return floats;
+    }
+
+    /**
+     * Copies the intersection <code>[from, to)</code> of two hyperslabs,
+     * stored in row-major order, from one to the other.
+     *
+     * @param src               The source array.
+     * @param srcOrigin         The origin of the source hyperslab.
+     * @param srcShape          The shape of the source hyperslab.
+     * @param dst               The destination array.
+     * @param dstOrigin         The origin of the destination hyperslab.
+     * @param dstShape          The shape of the destination hyperslab.
+     * @param from              The first index to copy in each dimension.
+     * @param to                The index after the last one to copy in
+     *                          each dimension.
+     */
+    private static void copy(Object src, int[] srcOrigin, int[] srcShape,
+            Object dst, int[] dstOrigin, int[] dstShape, int[] from, int[] to)
+    {
+        int     rank = from.length;
+
+        for (int i = 0; i < rank; ++i)
+            if (from[i] >= to[i])
+                return;
+
+        int     run = to[rank - 1] - from[rank - 1];
+        int[]   index = from.clone();
+
+        for (;;)
+        {
+            int srcOffset = 0;
+            int dstOffset = 0;
+
+            for (int i = 0; i < rank; ++i)
+            {
+                srcOffset = srcOffset * srcShape[i] + index[i] - srcOrigin[i];
+                dstOffset = dstOffset * dstShape[i] + index[i] - dstOrigin[i];
+            }
+            System.arraycopy(src, srcOffset, dst, dstOffset, run);
+
+            int i = rank - 2;
+
+            while (i >= 0 && ++index[i] == to[i])
+            {
+                index[i] = from[i];
+                --i;
+            }
+            if (i < 0)
+                break;
+        }
+    }
+
+    /**
+     * The key of a tile in the tile cache.
+     */
+    private static final class TileKey
+    {
+        private final Variable  variable;
+        private final int[]     position;
+        private final int       hashCode;
+
+        TileKey(Variable variable, int[] context, int[] origin, int[] count)
+        {
+            this.variable = variable;
+            position = new int[context.length + origin.length + count.length];
+            System.arraycopy(context, 0, position, 0, context.length);
+            System.arraycopy(origin, 0, position, context.length,
+                origin.length);
+            System.arraycopy(count, 0, position,
+                context.length + origin.length, count.length);
+            hashCode = System.identityHashCode(variable) ^
+                Arrays.hashCode(position);
+        }
+
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof TileKey))
+                return false;
+
+            TileKey     that = (TileKey)obj;
+
+            return variable == that.variable &&
+                Arrays.equals(position, that.position);
+        }
+
+        public int hashCode()
+        {
+            return hashCode;
+        }
+    }
+}
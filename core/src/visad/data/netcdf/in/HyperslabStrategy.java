@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015, University Corporation for Atmospheric Research
+ * All Rights Reserved.
+ * See file LICENSE for copying and redistribution conditions.
+ */
+
+package visad.data.netcdf.in;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import visad.VisADException;
+import visad.data.BadFormException;
+import visad.DataImpl;
+
+/**
+ * <p>An import strategy whose FlatFields read only the parts of the netCDF
+ * dataset that are used, by hyperslab, as they are needed (see {@link
+ * HyperslabFlatField}).  This suits datasets much larger than memory of
+ * which only single samples or sub-regions are looked at.</p>
+ *
+ * <p>Instances are immutable.</p>
+ */
+public class HyperslabStrategy extends Strategy
+{
+    /**
+     * The single instance of this class.
+     */
+    private static final HyperslabStrategy INSTANCE;
+
+    static
+    {
+        INSTANCE = new HyperslabStrategy();
+    }
+
+    /**
+     * Constructs from nothing.
+     */
+    private HyperslabStrategy()
+    {}
+
+    /**
+     * Returns an instance of this class.
+     *
+     * @return                      An instance of this class.
+     */
+    public static HyperslabStrategy instance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * <p>Returns a VisAD data object corresponding to the netCDF dataset.</p>
+     *
+     * <p>This implementation uses the data-merging of {@link 
+     * Merger#instance()}.</p>
+     *
+     * @param adapter           The netCDF-to-VisAD adapter.
+     * @return                  The top-level, VisAD data object of the netCDF
+     *                          dataset.
+     * @throws VisADException   if a problem occurs in core VisAD -- probably 
+     *                          because a VisAD object couldn't be created.
+     * @throws IOException      if a data access I/O failure occurs.
+     * @throws BadFormException if the netCDF dataset doesn't conform to
+     *                          conventions implicit in constructing
+     *                          View.
+     * @throws RemoteException  if a Java RMI failure occurs.
+     */
+    public DataImpl
+    getData(NetcdfAdapter adapter)
+        throws IOException, VisADException, RemoteException,
+            BadFormException
+    {
+        return
+            NetcdfAdapter.importData(
+                adapter.getView(), Merger.instance(),
+                HyperslabDataFactory.instance());
+    }
+}
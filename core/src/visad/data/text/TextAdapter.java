@@ -33,11 +33,13 @@ import java.util.*;
 import visad.Set;
 
 import java.net.URL;
+import java.nio.CharBuffer;
 
 import visad.*;
 import visad.VisADException;
 import visad.data.in.ArithProg;
 import visad.util.DataUtility;
+import visad.util.ParallelLoop;
 
 import java.util.regex.*;
 
@@ -66,7 +68,12 @@ import java.util.regex.*;
   * by the delimiter, as defined above.
   *
   * See visad.data.text.README.text for more details.
-  * 
+  *
+  * If every range component is numeric, the lines after the first
+  * are read in large blocks and parsed concurrently straight into
+  * columns; set the system property visad.text.columnar to "false"
+  * to read them line by line instead.
+  *
   * @author Tom Whittaker
   * 
   */
@@ -91,6 +98,13 @@ public class TextAdapter {
   private static final String BLANK = " ";
   private static final String BLANK_DELIM = "\\s+";
 
+  /** System property that, if "false", disables the columnar reader */
+  public static final String COLUMNAR_PROPERTY = "visad.text.columnar";
+
+  /** number of characters read and parsed as one block by the
+      columnar reader */
+  private static final int COLUMN_BLOCK = 1 << 22;
+
 
 
   private FlatField ff = null;
@@ -930,6 +944,14 @@ public class TextAdapter {
     if (countRange == 1 && numRng == 1 && 
                 numDom == 2 && countDomain < 2) isRaster = true;
 
+    // once the first line has shown the delimiter, purely numeric
+    // files are read by the columnar reader
+    boolean columnar = streamProcessor == null && !onlyReadOneLine &&
+                       !isRaster && rangeType instanceof RealTupleType &&
+                       !"false".equalsIgnoreCase(
+                         System.getProperty(COLUMNAR_PROPERTY));
+    ColumnBlock columns = null;
+
     Real[] prototypeReals = new Real[nhdr];
     TupleType tupleType = null;
     int index;
@@ -940,22 +962,8 @@ public class TextAdapter {
       if (line == null) break;
       if(skipPattern!=null && skipPattern.matcher(line).find()) continue;
       if((index=line.indexOf("="))>=0) {  // fixed value
-        String name  = line.substring(0,index).trim();
-        String value  = line.substring(index+1).trim();
-        boolean foundIt = false;
-        for(int paramIdx=0;paramIdx<infos.length;paramIdx++) {
-            if(infos[paramIdx].isParam(name)) {
-                if(infos[paramIdx].fixedValue==null) {
-                    numHdrValues++;
-                }
-                infos[paramIdx].fixedValue = value;
-                foundIt = true;
-                break;
-            }
-        }
-        if(!foundIt) {
-           throw new VisADException(
-                    "TextAdapter: Cannot find field with name:" +name +" from line:" + line);
+        if(setFixedValue(line, index)) {
+            numHdrValues++;
         }
         continue;
       }
@@ -1194,6 +1202,13 @@ public class TextAdapter {
       }
       if (isRaster) numElements = rValues.length;
       if(onlyReadOneLine) break;
+      if (columnar && lineCnt == 1 && getColumnDelimiter(dataDelim) != 0) {
+        columns = new ColumnBlock(numDom, numRng, 1024);
+        columns.add((double[]) domainValues.get(0),
+                    (double[]) rangeValues.get(0));
+        readColumns(bis, getColumnDelimiter(dataDelim), columns);
+        break;
+      }
     }
 
 
@@ -1201,7 +1216,8 @@ public class TextAdapter {
 	bis.close();
         return;
     }
-    int numSamples = rangeValues.size(); // # lines of data
+    int numSamples = (columns == null) ? rangeValues.size() // # lines of data
+                                       : columns.count;
 
     if (numSamples == 0) {
         throw new VisADException("No data available to read");
@@ -1220,6 +1236,21 @@ public class TextAdapter {
 // ***********************************************************
 
 
+    // domain values read from the file, by component
+    double[][] domainSamples;
+    if (columns != null) {
+      domainSamples = columns.getDomain();
+    } else {
+      domainSamples = new double[numDom][numSamples];
+      for (int i=0; i<numSamples; i++) {
+        double[] d = (double[])(domainValues.get(i));
+        for (int k=0; k<numDom; k++) {
+          domainSamples[k][i] = d[k];
+        }
+      }
+      domainValues = null;
+    }
+
     // make Linear1DSets for each possible domain component
 
     Linear1DSet[] lset = new Linear1DSet[numDom];
@@ -1263,7 +1294,7 @@ public class TextAdapter {
     if (numDom == 1) {  // for 1-D domains
 
       if (lset[0] == null) {
-        domain = createAppropriate1DDomain(domType, numSamples, domainValues);
+        domain = createAppropriate1DDomain(domType, numSamples, domainSamples);
 
       } else {
         domain = lset[0];
@@ -1279,7 +1310,7 @@ public class TextAdapter {
 
         for (int k = 0; k < numDom; k++) {
           if (lset[k] == null) {
-            samples[k] = (getDomSamples(k, numSamples, domainValues))[0];
+            samples[k] = (getDomSamples(k, numSamples, domainSamples))[0];
           } else {
             samples[k] = (lset[k].getSamples())[0];
           }
@@ -1299,7 +1330,7 @@ public class TextAdapter {
 
         for (int k = 0; k < numDom; k++) {
           if (lset[k] == null) {
-            samples[k] = (getDomSamples(k, numSamples, domainValues))[0];
+            samples[k] = (getDomSamples(k, numSamples, domainSamples))[0];
           } else {
             samples[k] = (lset[k].getSamples())[0];
           }
@@ -1326,7 +1357,7 @@ public class TextAdapter {
 
         for (int k=0; k<numDom; k++) {
           if (lset[k] == null) {
-            samples[k] = (getDomSamples(k, numSamples, domainValues))[0];
+            samples[k] = (getDomSamples(k, numSamples, domainSamples))[0];
           } else {
             samples[k] = (lset[k].getSamples())[0];
           }
@@ -1363,13 +1394,16 @@ public class TextAdapter {
     }
 //*************************************************
 
-    double[][]a = new double[numRng][numSamples * numElements];
+    double[][]a;
     Tuple[] at = new Tuple[numSamples];
     
     // if this is a raster then the samples are in a slightly
     // difielderent form ...
 
-    if (isRaster) {
+    if (columns != null) {
+      a = columns.getRange();
+    } else if (isRaster) {
+      a = new double[numRng][numSamples * numElements];
       int samPointer = 0;
       for (int i=0; i<numSamples; i++) {
         double[] rs = (double[])(rangeValues.get(i));
@@ -1379,6 +1413,7 @@ public class TextAdapter {
         }
       }
     } else {
+      a = new double[numRng][numSamples];
       for (int i=0; i<numSamples; i++) {
         double[] rs = (double[])(rangeValues.get(i));
         for (int j=0; j<numRng; j++) {
@@ -1433,6 +1468,437 @@ public class TextAdapter {
 
   }
 
+  /**
+   * Apply a fixed value line of the form <code>name=value</code>.
+   *
+   * @param line the line
+   * @param index index of the "=" in line
+   * @return true if the parameter had no fixed value before
+   * @exception VisADException if there is no parameter of that name
+   */
+  private boolean setFixedValue(String line, int index)
+                                throws VisADException {
+    String name  = line.substring(0,index).trim();
+    String value  = line.substring(index+1).trim();
+    for(int paramIdx=0;paramIdx<infos.length;paramIdx++) {
+        if(infos[paramIdx].isParam(name)) {
+            boolean isNew = infos[paramIdx].fixedValue==null;
+            infos[paramIdx].fixedValue = value;
+            return isNew;
+        }
+    }
+    throw new VisADException(
+             "TextAdapter: Cannot find field with name:" +name +" from line:" + line);
+  }
+
+  /**
+   * Return the character the columnar reader splits lines on for a
+   * data delimiter, ' ' meaning any run of white space, or 0 if lines
+   * split by the delimiter cannot be read by the columnar reader.
+   */
+  private static char getColumnDelimiter(String dataDelim) {
+    if (COMMA.equals(dataDelim)) return ',';
+    if (SEMICOLON.equals(dataDelim)) return ';';
+    if (TAB.equals(dataDelim)) return '\t';
+    if (BLANK.equals(dataDelim) || BLANK_DELIM.equals(dataDelim)) return ' ';
+    return 0;
+  }
+
+  /**
+   * Read the remaining lines of a purely numeric file straight into
+   * columns.  The text is read in large blocks ending at a line end,
+   * and each block is split into line-aligned chunks that are parsed
+   * concurrently (see {@link ParallelLoop}).  Lines are split on the
+   * delimiter without regular expressions, and numbers are parsed
+   * without making a String unless they are not plain decimals, so
+   * the values are exactly those the line by line reader makes.
+   *
+   * @param bis reader positioned after the first data line
+   * @param delim delimiter from {@link #getColumnDelimiter}
+   * @param columns columns to add the values of each line to
+   */
+  private void readColumns(BufferedReader bis, char delim,
+                           ColumnBlock columns)
+          throws IOException, VisADException {
+    char[] buf = new char[COLUMN_BLOCK];
+    int len = 0;
+    boolean eof = false;
+    while (true) {
+      while (!eof && len < buf.length) {
+        int n = bis.read(buf, len, buf.length - len);
+        if (n < 0) {
+          eof = true;
+        } else {
+          len += n;
+        }
+      }
+
+      // parse up to the end of the last complete line
+      int end = len;
+      if (!eof) {
+        while (end > 0 && buf[end-1] != '\n' && buf[end-1] != '\r') end--;
+        if (end == 0) {
+          // a line longer than the block
+          char[] bigger = new char[2 * buf.length];
+          System.arraycopy(buf, 0, bigger, 0, len);
+          buf = bigger;
+          continue;
+        }
+      }
+
+      if (!parseBlock(buf, end, delim, columns) || eof) return;
+
+      System.arraycopy(buf, end, buf, 0, len - end);
+      len -= end;
+    }
+  }
+
+  /**
+   * Parse the complete lines in buf[0] through buf[end - 1].  The
+   * lines are parsed concurrently up to any fixed value line, which
+   * must be applied before the lines that follow it are parsed.
+   *
+   * @return false if a line that is not text was found, which ends
+   *         the data as it does for {@link #readLine}
+   */
+  private boolean parseBlock(final char[] buf, int end, final char delim,
+                             ColumnBlock columns)
+          throws VisADException {
+    // a DateParser need not be thread safe
+    boolean concurrent = true;
+    for (int i=0; i<infos.length && dateParsers != null; i++) {
+      if (infos[i].formatString != null) concurrent = false;
+    }
+    final int numDom = columns.domain.length;
+    final int numRng = columns.range.length;
+
+    int pos = 0;
+    while (pos < end) {
+      final double[] fixed = getFixedValues();
+      int work = end - pos;
+      int count = (concurrent && ParallelLoop.isParallel(work))
+                  ? ParallelLoop.getMaxThreads() : 1;
+
+      // chunk boundaries, moved forward to the start of a line
+      final int[] starts = new int[count + 1];
+      starts[0] = pos;
+      starts[count] = end;
+      for (int k=1; k<count; k++) {
+        int b = Math.max(pos + (int) ((long) work * k / count), starts[k-1]);
+        while (b > pos && b < end && buf[b-1] != '\n' && buf[b-1] != '\r') {
+          b++;
+        }
+        starts[k] = b;
+      }
+
+      final ColumnBlock[] chunks = new ColumnBlock[count];
+      ParallelLoop.runTasks(count, work, new ParallelLoop.Body() {
+        public void run(int first, int last) throws VisADException {
+          for (int k=first; k<last; k++) {
+            chunks[k] = parseChunk(buf, starts[k], starts[k+1], delim, fixed,
+                                   numDom, numRng);
+          }
+        }
+      });
+
+      pos = end;
+      for (int k=0; k<count; k++) {
+        ColumnBlock chunk = chunks[k];
+        columns.append(chunk);
+        if (chunk.stop >= 0) {
+          if (chunk.binary) return false;
+          // the chunks that follow were parsed with stale fixed values
+          String line =
+            new String(buf, chunk.stop, chunk.stopEnd - chunk.stop).trim();
+          setFixedValue(line, line.indexOf("="));
+          pos = chunk.stopEnd;
+          break;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the values of the columns with fixed values, or 0 for
+   *         columns without one or not used by the MathType
+   */
+  private double[] getFixedValues() {
+    double[] fixed = new double[infos.length];
+    for (int i=0; i<infos.length; i++) {
+      if (infos[i].fixedValue != null &&
+          (values_to_index[0][i] != -1 || values_to_index[1][i] != -1)) {
+        fixed[i] = getVal(infos[i].fixedValue, i);
+      }
+    }
+    return fixed;
+  }
+
+  /**
+   * Parse the lines in buf[start] through buf[end - 1], stopping at a
+   * fixed value line or a line that is not text.  Lines are handled as
+   * by the line by line reader: comments are skipped, tokens are
+   * split on delim (with trailing empty tokens dropped) and trimmed,
+   * and values are assigned to columns following the header,
+   * including fixed values and <code>colspan</code>.
+   */
+  private ColumnBlock parseChunk(char[] buf, int start, int end,
+                                 char delim, double[] fixed,
+                                 int numDom, int numRng)
+          throws VisADException {
+    int nhdr = infos.length;
+    ColumnBlock chunk =
+      new ColumnBlock(numDom, numRng, (end - start) / 32 + 16);
+    int[] tokStart = new int[nhdr + 1];
+    int[] tokEnd = new int[nhdr + 1];
+
+    int p = start;
+    while (p < end) {
+      // find the end of the line; look for non-text and "=" on the way
+      int e = p;
+      boolean text = true;
+      boolean equals = false;
+      for (; e < end; e++) {
+        char ch = buf[e];
+        if (ch == '\n' || ch == '\r') break;
+        if (ch == '=') {
+          equals = true;
+        } else if ((ch < ' ' || (ch >= '\u007f' && ch <= '\u009f')) &&
+                   !Character.isWhitespace(ch)) {
+          text = false;
+        }
+      }
+      int next = (e < end) ? e + 1 : end;
+
+      if (!text) {
+        chunk.stop = p;
+        chunk.stopEnd = next;
+        chunk.binary = true;
+        return chunk;
+      }
+      if (e == p || buf[p] == '#' || buf[p] == '!' || buf[p] == '%') {
+        p = next;
+        continue;
+      }
+
+      int s = p;
+      int t = e;
+      while (s < t && buf[s] <= ' ') s++;
+      while (t > s && buf[t-1] <= ' ') t--;
+
+      if (skipPattern != null &&
+          skipPattern.matcher(CharBuffer.wrap(buf, s, t - s)).find()) {
+        p = next;
+        continue;
+      }
+      if (equals) {
+        chunk.stop = p;
+        chunk.stopEnd = next;
+        return chunk;
+      }
+
+      // split into tokens
+      int ntok = 0;
+      if (delim == ' ') {
+        int q = s;
+        while (q < t || ntok == 0) {
+          int a = q;
+          while (q < t && !isBlank(buf[q])) q++;
+          if (ntok == tokStart.length) {
+            tokStart = grow(tokStart);
+            tokEnd = grow(tokEnd);
+          }
+          tokStart[ntok] = a;
+          tokEnd[ntok] = q;
+          ntok++;
+          while (q < t && isBlank(buf[q])) q++;
+        }
+      } else {
+        boolean split = false;
+        int a = s;
+        for (int q = s; q <= t; q++) {
+          if (q < t && buf[q] != delim) continue;
+          if (q < t) split = true;
+          if (ntok == tokStart.length) {
+            tokStart = grow(tokStart);
+            tokEnd = grow(tokEnd);
+          }
+          tokStart[ntok] = a;
+          tokEnd[ntok] = q;
+          ntok++;
+          a = q + 1;
+        }
+        if (split) {
+          while (ntok > 0 && tokStart[ntok-1] == tokEnd[ntok-1]) ntok--;
+        }
+      }
+      if (ntok < 1) {
+        p = next;
+        continue;
+      }
+
+      int row = chunk.add();
+      int tokenIdx = 0;
+      for (int i=0; i<nhdr; i++) {
+        int dom = values_to_index[0][i];
+        int rng = values_to_index[1][i];
+        double value;
+        if (infos[i].fixedValue != null) {
+          value = fixed[i];
+        } else if (tokenIdx >= ntok) {
+          value = Double.NaN;
+        } else if (infos[i].colspan > 1) {
+          if (tokenIdx + infos[i].colspan > ntok) {
+            throw new VisADException("TextAdapter: too few values for " +
+              infos[i].name + " in line: " + new String(buf, s, t - s));
+          }
+          String sa = new String(buf, tokStart[tokenIdx],
+                                 tokEnd[tokenIdx] - tokStart[tokenIdx]).trim();
+          tokenIdx++;
+          for (int m=1; m<infos[i].colspan; m++) {
+            sa = sa + " " + new String(buf, tokStart[tokenIdx],
+                                tokEnd[tokenIdx] - tokStart[tokenIdx]).trim();
+            tokenIdx++;
+          }
+          if (dom == -1 && rng == -1) continue;
+          value = getVal(sa, i);
+        } else {
+          int a = tokStart[tokenIdx];
+          int b = tokEnd[tokenIdx];
+          tokenIdx++;
+          if (dom == -1 && rng == -1) continue;
+          value = getVal(buf, a, b, i);
+        }
+
+        if (dom != -1) {
+          chunk.domain[dom][row] = value;
+        } else if (rng != -1) {
+          chunk.range[rng][row] = value;
+        }
+      }
+      p = next;
+    }
+    return chunk;
+  }
+
+  /** true for the characters matched by "\\s" */
+  private static boolean isBlank(char ch) {
+    return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000b' ||
+           ch == '\f' || ch == '\r';
+  }
+
+  private static int[] grow(int[] a) {
+    int[] b = new int[2 * a.length];
+    System.arraycopy(a, 0, b, 0, a.length);
+    return b;
+  }
+
+  /**
+   * As {@link #getVal(String, int)}, for the token buf[start] through
+   * buf[end - 1].
+   */
+  private double getVal(char[] buf, int start, int end, int k) {
+    while (start < end && buf[start] <= ' ') start++;
+    while (end > start && buf[end-1] <= ' ') end--;
+    int i = values_to_index[2][k];
+    if (i < 0 || start == end) {
+      return Double.NaN;
+    }
+    HeaderInfo info = infos[i];
+    if (info.missingString != null) {
+      String miss = info.missingString;
+      if (miss.length() == end - start) {
+        int j = 0;
+        while (j < miss.length() && miss.charAt(j) == buf[start + j]) j++;
+        if (j == miss.length()) return Double.NaN;
+      }
+    }
+    if (info.formatString == null) {
+      double v = parseDecimal(buf, start, end);
+      if (v == v) {
+        if (v == info.missingValue) {
+          return Double.NaN;
+        }
+        return v * info.scale + info.offset;
+      }
+    }
+    return getVal(new String(buf, start, end - start), k);
+  }
+
+  /** exactly representable powers of ten */
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  /**
+   * Parse a plain decimal number, with an optional sign, fraction and
+   * exponent, of at most 15 significant digits and with a power of ten
+   * of at most 22.  Such a number is a product or quotient of two
+   * exactly represented doubles, so it is rounded exactly as by
+   * Double.parseDouble.
+   *
+   * @return the value, or NaN if the token is not such a number
+   */
+  static double parseDecimal(char[] buf, int start, int end) {
+    int p = start;
+    boolean negative = false;
+    if (p < end && (buf[p] == '-' || buf[p] == '+')) {
+      negative = (buf[p] == '-');
+      p++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int significant = 0;
+    int scale = 0;
+    boolean point = false;
+    for (; p < end; p++) {
+      char ch = buf[p];
+      if (ch >= '0' && ch <= '9') {
+        digits++;
+        if (significant > 0 || ch != '0') {
+          if (++significant > 15) return Double.NaN;
+          mantissa = 10 * mantissa + (ch - '0');
+        }
+        if (point) scale--;
+      } else if (ch == '.' && !point) {
+        point = true;
+      } else {
+        break;
+      }
+    }
+    if (digits == 0) return Double.NaN;
+    if (p < end && (buf[p] == 'e' || buf[p] == 'E')) {
+      p++;
+      boolean negativeExp = false;
+      if (p < end && (buf[p] == '-' || buf[p] == '+')) {
+        negativeExp = (buf[p] == '-');
+        p++;
+      }
+      int exp = 0;
+      int expDigits = 0;
+      for (; p < end && buf[p] >= '0' && buf[p] <= '9'; p++) {
+        if (++expDigits > 4) return Double.NaN;
+        exp = 10 * exp + (buf[p] - '0');
+      }
+      if (expDigits == 0) return Double.NaN;
+      scale += negativeExp ? -exp : exp;
+    }
+    if (p != end) return Double.NaN;
+
+    double v;
+    if (mantissa == 0) {
+      v = 0.0;
+    } else if (scale >= 0 && scale < POWERS_OF_TEN.length) {
+      v = mantissa * POWERS_OF_TEN[scale];
+    } else if (scale < 0 && -scale < POWERS_OF_TEN.length) {
+      v = mantissa / POWERS_OF_TEN[-scale];
+    } else {
+      return Double.NaN;
+    }
+    return negative ? -v : v;
+  }
+
   // munges a pseudo MathType string into something legal
 
   private String makeMT(String s) {
@@ -1523,12 +1989,13 @@ public class TextAdapter {
        }
 
       String key = format+"__" + tz;
-      SimpleDateFormat sdf = (SimpleDateFormat) formats.get(key);
+      Hashtable threadFormats = (Hashtable) formats.get();
+      SimpleDateFormat sdf = (SimpleDateFormat) threadFormats.get(key);
       if(sdf == null) {
           sdf = new SimpleDateFormat();
           sdf.setTimeZone(TimeZone.getTimeZone(tz));
           sdf.applyPattern(format);
-          formats.put(key,sdf);
+          threadFormats.put(key,sdf);
       }
       Date d = sdf.parse(string);
       dt = new DateTime(d);
@@ -1543,8 +2010,14 @@ public class TextAdapter {
   }
 
 
-  /**  A set of cached simpledateformats  */
-  private static Hashtable formats = new Hashtable();
+  /**  A set of cached simpledateformats for each thread, since
+       SimpleDateFormat cannot be shared by the threads of the columnar
+       reader  */
+  private static ThreadLocal formats = new ThreadLocal() {
+      protected Object initialValue() {
+          return new Hashtable();
+      }
+  };
 
   /** This list of DateFormatter-s will be checked when we are making a DateTime wiht a given format */
   private static List dateParsers;
@@ -1611,12 +2084,12 @@ public class TextAdapter {
     return Double.NaN;
   }
 
-  // get the samples from the ArrayList.
-  float[][] getDomSamples(int comp, int numDomValues, ArrayList domValues) {
+  // get the samples of one domain component.
+  float[][] getDomSamples(int comp, int numDomValues, double[][] domValues) {
     float [][] a = new float[1][numDomValues];
+    double[] d = domValues[comp];
     for (int i=0; i<numDomValues; i++) {
-      double[] d = (double[])(domValues.get(i));
-      a[0][i] = (float)d[comp];
+      a[0][i] = (float)d[i];
     }
     return a;
   }
@@ -1634,7 +2107,8 @@ public class TextAdapter {
    *
    * @param type the math-type of the domain
    * @param numSamples the number of samples in the domain
-   * @param domValues domain values are extracted from this array list.
+   * @param domValues domain values are taken from the first component
+   *   of this array.
    *
    * @return a Linear1DSet if the domain samples form an arithmetic
    *   progression, a Gridded1DDoubleSet if the domain samples are ordered
@@ -1643,7 +2117,7 @@ public class TextAdapter {
    * @throws VisADException there was a problem creating the domain set.
    */
   private Set createAppropriate1DDomain(MathType type, int numSamples,
-                                       ArrayList domValues)
+                                       double[][] domValues)
                                          throws VisADException {
 
     if (0 == numSamples) {
@@ -1651,12 +2125,7 @@ public class TextAdapter {
       return null;
     }
 
-    // Extract the first element from each element of the array list.
-    double[][] values = new double[1][numSamples];
-    for (int i=0; i<numSamples; ++i) {
-      double[] d = (double []) domValues.get(i);
-      values[0][i] = d[0];
-    }
+    double[][] values = new double[][] {domValues[0]};
 
     // This implementation for testing that the values are ordered
     // is based on visad.Gridded1DDoubleSet.java
@@ -1699,6 +2168,82 @@ public class TextAdapter {
   }
 
 
+    /**
+     * Values of the domain and range components read from a run of
+     * lines, by component, as read by the columnar reader.
+     */
+    private static class ColumnBlock {
+        double[][] domain;
+        double[][] range;
+        int count = 0;
+        /** start and end of the line that stopped the parse, or -1 */
+        int stop = -1;
+        int stopEnd = -1;
+        /** true if that line was not text */
+        boolean binary = false;
+
+        ColumnBlock(int numDom, int numRng, int capacity) {
+            domain = new double[numDom][capacity];
+            range = new double[numRng][capacity];
+        }
+
+        /** add a row of zeros, and return its index */
+        int add() {
+            ensureCapacity(count + 1);
+            return count++;
+        }
+
+        void add(double[] dValues, double[] rValues) {
+            int row = add();
+            for (int k=0; k<domain.length; k++) domain[k][row] = dValues[k];
+            for (int k=0; k<range.length; k++) range[k][row] = rValues[k];
+        }
+
+        void append(ColumnBlock block) {
+            ensureCapacity(count + block.count);
+            for (int k=0; k<domain.length; k++) {
+                System.arraycopy(block.domain[k], 0, domain[k], count, block.count);
+            }
+            for (int k=0; k<range.length; k++) {
+                System.arraycopy(block.range[k], 0, range[k], count, block.count);
+            }
+            count += block.count;
+        }
+
+        double[][] getDomain() {
+            return trim(domain);
+        }
+
+        double[][] getRange() {
+            return trim(range);
+        }
+
+        private void ensureCapacity(int n) {
+            int capacity = (domain.length > 0) ? domain[0].length
+                           : (range.length > 0) ? range[0].length : n;
+            if (n <= capacity) return;
+            capacity = Math.max(n, 2 * capacity);
+            domain = resize(domain, capacity);
+            range = resize(range, capacity);
+        }
+
+        private double[][] trim(double[][] values) {
+            if (values.length > 0 && values[0].length != count) {
+                values = resize(values, count);
+            }
+            return values;
+        }
+
+        private double[][] resize(double[][] values, int capacity) {
+            double[][] resized = new double[values.length][capacity];
+            for (int k=0; k<values.length; k++) {
+                System.arraycopy(values[k], 0, resized[k], 0,
+                                 Math.min(count, capacity));
+            }
+            return resized;
+        }
+    }
+
     private static class HeaderInfo {
         String  name;
         Unit    unit;
@@ -159,6 +159,35 @@ public class BinaryReader
     typeCache = new BinaryObjectCache();
   }
 
+  /**
+   * Prepare to read a binary object from a memory mapped file.
+   * <br><br>
+   * Like the <tt>RandomAccessFile</tt> constructors, this returns
+   * every <tt>FlatField</tt> as a <tt>FileFlatField</tt> whose samples
+   * are only read when they are used, so opening a large file is fast.
+   * <br><br>
+   * The first few bytes will be read to verify that the file starts
+   * with the appropriate <tt>MAGIC_STR</tt> characters and that this
+   * class can read the format version used by the file.
+   *
+   * @param mapped File to read.
+   *
+   * @exception IOException If the file cannot be read.
+   */
+  public BinaryReader(MappedDataInput mapped)
+    throws IOException
+  {
+    file = mapped;
+    isRandom = true;
+
+    version = checkMagic(file);
+
+    unitCache = new BinaryObjectCache();
+    errorCache = new BinaryObjectCache();
+    cSysCache = new BinaryObjectCache();
+    typeCache = new BinaryObjectCache();
+  }
+
   private int checkMagic(DataInput file)
     throws IOException
   {
@@ -186,6 +215,8 @@ public class BinaryReader
       ((java.io.RandomAccessFile )file).close();
     } else if (file instanceof ucar.netcdf.RandomAccessFile) {
       ((ucar.netcdf.RandomAccessFile )file).close();
+    } else if (file instanceof MappedDataInput) {
+      ((MappedDataInput )file).close();
     } else {
       throw new IOException("Unknown file class \"" +
                             file.getClass().getName() + "\"");
@@ -275,6 +306,8 @@ if(DEBUG_RD_TIME){
       return ((java.io.RandomAccessFile )file).getFilePointer();
     } else if (file instanceof ucar.netcdf.RandomAccessFile) {
       return ((ucar.netcdf.RandomAccessFile )file).getFilePointer();
+    } else if (file instanceof MappedDataInput) {
+      return ((MappedDataInput )file).getFilePointer();
     }
 
     return -1;
@@ -563,6 +596,8 @@ if(DEBUG_RD_TIME){
       ((java.io.RandomAccessFile )file).seek(pos);
     } else if (file instanceof ucar.netcdf.RandomAccessFile) {
       ((ucar.netcdf.RandomAccessFile )file).seek(pos);
+    } else if (file instanceof MappedDataInput) {
+      ((MappedDataInput )file).seek(pos);
     } else {
       throw new IOException("Seek not supported for " +
                             file.getClass().getName());
@@ -0,0 +1,353 @@
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.data.visad;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Random access, read-only input from a memory mapped file.
+ * <br><br>
+ * The file is mapped in regions of at most 1 GB, so files larger than
+ * 2 GB can be read.  Nothing is copied until it is read, and the
+ * operating system only pages in the parts of the file which are
+ * actually touched, so a {@link BinaryReader} using this input (which
+ * turns every <tt>FlatField</tt> into a <tt>FileFlatField</tt>) opens
+ * large files quickly.  Arrays of floats and doubles are read in bulk.
+ */
+public class MappedDataInput
+  implements DataInput
+{
+  private static final int REGION_SHIFT = 30;
+  private static final long REGION_SIZE = 1L << REGION_SHIFT;
+
+  private ByteBuffer[] regions;
+  private final long length;
+
+  private ByteBuffer region;
+  private long regionStart;
+
+  /**
+   * Map the named file.
+   *
+   * @param name Name of file to be read.
+   *
+   * @exception IOException If the file cannot be opened or mapped.
+   */
+  public MappedDataInput(String name)
+    throws IOException
+  {
+    this(new File(name));
+  }
+
+  /**
+   * Map the referenced file.
+   *
+   * @param ref File to be read.
+   *
+   * @exception IOException If the file cannot be opened or mapped.
+   */
+  public MappedDataInput(File ref)
+    throws IOException
+  {
+    RandomAccessFile raf = new RandomAccessFile(ref, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      length = channel.size();
+
+      final int num = (int )((length + REGION_SIZE - 1) >> REGION_SHIFT);
+      regions = new ByteBuffer[Math.max(num, 1)];
+      for (int i = 0; i < num; i++) {
+        final long start = (long )i << REGION_SHIFT;
+        final long size = Math.min(REGION_SIZE, length - start);
+        MappedByteBuffer buf =
+          channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        regions[i] = buf;
+      }
+      if (num == 0) {
+        regions[0] = ByteBuffer.allocate(0);
+      }
+    } finally {
+      // the mappings stay valid after the file is closed
+      raf.close();
+    }
+
+    region = regions[0];
+    regionStart = 0;
+  }
+
+  /**
+   * Release the mapped regions.  The memory is returned to the system
+   * once the regions are garbage collected.
+   */
+  public void close()
+  {
+    regions = null;
+    region = null;
+  }
+
+  /**
+   * @return the length of the file.
+   */
+  public final long length() { return length; }
+
+  /**
+   * @return the current offset in the file.
+   */
+  public final long getFilePointer()
+  {
+    return regionStart + region.position();
+  }
+
+  /**
+   * Move to an offset in the file.
+   *
+   * @param pos Offset from the start of the file.
+   *
+   * @exception IOException If the offset is outside the file.
+   */
+  public final void seek(long pos)
+    throws IOException
+  {
+    if (pos < 0 || pos > length) {
+      throw new IOException("Seek to " + pos + " outside file of length " +
+                            length);
+    }
+
+    int idx = (int )(pos >> REGION_SHIFT);
+    if (idx == regions.length) {
+      // the end of a file which fills its last region
+      idx--;
+    }
+    region = regions[idx];
+    regionStart = (long )idx << REGION_SHIFT;
+    region.position((int )(pos - regionStart));
+  }
+
+  /**
+   * Make the current region hold at least one more byte.
+   */
+  private final void nextRegion()
+    throws IOException
+  {
+    final long pos = getFilePointer();
+    if (pos >= length) {
+      throw new EOFException();
+    }
+    seek(pos);
+  }
+
+  public final void readFully(byte[] b)
+    throws IOException
+  {
+    readFully(b, 0, b.length);
+  }
+
+  public final void readFully(byte[] b, int off, int len)
+    throws IOException
+  {
+    while (len > 0) {
+      if (!region.hasRemaining()) {
+        nextRegion();
+      }
+      final int n = Math.min(len, region.remaining());
+      region.get(b, off, n);
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Read an array of big-endian floats.
+   *
+   * @param array Destination array.
+   * @param off Index of the first value read.
+   * @param len Number of values to read.
+   *
+   * @exception IOException If the file ends first.
+   */
+  public final void readFloats(float[] array, int off, int len)
+    throws IOException
+  {
+    while (len > 0) {
+      final int n = Math.min(len, region.remaining() / 4);
+      if (n == 0) {
+        // value straddles two regions
+        array[off++] = readFloat();
+        len--;
+        continue;
+      }
+
+      region.asFloatBuffer().get(array, off, n);
+      region.position(region.position() + n * 4);
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Read an array of big-endian doubles.
+   *
+   * @param array Destination array.
+   * @param off Index of the first value read.
+   * @param len Number of values to read.
+   *
+   * @exception IOException If the file ends first.
+   */
+  public final void readDoubles(double[] array, int off, int len)
+    throws IOException
+  {
+    while (len > 0) {
+      final int n = Math.min(len, region.remaining() / 8);
+      if (n == 0) {
+        // value straddles two regions
+        array[off++] = readDouble();
+        len--;
+        continue;
+      }
+
+      region.asDoubleBuffer().get(array, off, n);
+      region.position(region.position() + n * 8);
+      off += n;
+      len -= n;
+    }
+  }
+
+  public final int skipBytes(int n)
+    throws IOException
+  {
+    final long pos = getFilePointer();
+    final int skip = (int )Math.max(0, Math.min(n, length - pos));
+    seek(pos + skip);
+    return skip;
+  }
+
+  public final boolean readBoolean()
+    throws IOException
+  {
+    return readByte() != 0;
+  }
+
+  public final byte readByte()
+    throws IOException
+  {
+    if (!region.hasRemaining()) {
+      nextRegion();
+    }
+    return region.get();
+  }
+
+  public final int readUnsignedByte()
+    throws IOException
+  {
+    return readByte() & 0xff;
+  }
+
+  public final short readShort()
+    throws IOException
+  {
+    if (region.remaining() >= 2) {
+      return region.getShort();
+    }
+    return (short )((readUnsignedByte() << 8) | readUnsignedByte());
+  }
+
+  public final int readUnsignedShort()
+    throws IOException
+  {
+    return readShort() & 0xffff;
+  }
+
+  public final char readChar()
+    throws IOException
+  {
+    return (char )readShort();
+  }
+
+  public final int readInt()
+    throws IOException
+  {
+    if (region.remaining() >= 4) {
+      return region.getInt();
+    }
+    return (readUnsignedShort() << 16) | readUnsignedShort();
+  }
+
+  public final long readLong()
+    throws IOException
+  {
+    if (region.remaining() >= 8) {
+      return region.getLong();
+    }
+    return ((long )readInt() << 32) | (readInt() & 0xffffffffL);
+  }
+
+  public final float readFloat()
+    throws IOException
+  {
+    return Float.intBitsToFloat(readInt());
+  }
+
+  public final double readDouble()
+    throws IOException
+  {
+    return Double.longBitsToDouble(readLong());
+  }
+
+  public final String readLine()
+    throws IOException
+  {
+    StringBuffer buf = new StringBuffer();
+    while (getFilePointer() < length) {
+      final int c = readUnsignedByte();
+      if (c == '\n') {
+        return buf.toString();
+      } else if (c == '\r') {
+        if (getFilePointer() < length) {
+          final long pos = getFilePointer();
+          if (readUnsignedByte() != '\n') {
+            seek(pos);
+          }
+        }
+        return buf.toString();
+      }
+      buf.append((char )c);
+    }
+
+    return (buf.length() == 0 ? null : buf.toString());
+  }
+
+  public final String readUTF()
+    throws IOException
+  {
+    return DataInputStream.readUTF(this);
+  }
+}
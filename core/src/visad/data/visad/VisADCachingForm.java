@@ -46,9 +46,23 @@ import visad.data.BadFormException;
 public class VisADCachingForm
   extends VisADForm
 {
+  private boolean mapped;
+
   public VisADCachingForm()
+  {
+    this(false);
+  }
+
+  /**
+   * @param mapped <tt>true</tt> to read files through a
+   *               {@link MappedDataInput}, so the parts of a file
+   *               which are used are paged in by the operating system.
+   */
+  public VisADCachingForm(boolean mapped)
   {
     super(true);
+
+    this.mapped = mapped;
   }
 
   public boolean isThisType(String name) { return false; }
@@ -70,6 +84,9 @@ public class VisADCachingForm
 
     // try to read a binary object
     try {
+      if (mapped) {
+        return readData(new BinaryReader(new MappedDataInput(id)));
+      }
       return readData(new BinaryReader(new RandomAccessFile(id, "r")));
     } catch (IOException ioe) {
       savedIOE = ioe;
@@ -32,6 +32,7 @@ import visad.DelaunayClarkson;
 import visad.DelaunayCustom;
 import visad.DelaunayFast;
 import visad.DelaunayOverlap;
+import visad.DelaunayParallel;
 import visad.DelaunayWatson;
 import visad.VisADException;
 
@@ -114,6 +115,7 @@ if(DEBUG_RD_DATA)System.err.println("rdDel: FLD_END (" + FLD_END + ")");
             dClass.equals(DelaunayCustom.class) ||
             dClass.equals(DelaunayFast.class) ||
             dClass.equals(DelaunayOverlap.class) ||
+            dClass.equals(DelaunayParallel.class) ||
             dClass.equals(DelaunayWatson.class));
   }
 
@@ -27,6 +27,7 @@ import java.io.DataOutput;
 import java.io.IOException;
 
 import visad.data.visad.BinaryReader;
+import visad.data.visad.MappedDataInput;
 import visad.data.visad.BinaryWriter;
 
 public class BinaryDoubleArray
@@ -50,6 +51,10 @@ if(DEBUG_RD_DATA)System.err.println("rdDblRA: len (" + len + ")");
     }
 
     double[] array = new double[len];
+    if (file instanceof MappedDataInput) {
+      ((MappedDataInput )file).readDoubles(array, 0, len);
+      return array;
+    }
     for (int i = 0; i < len; i++) {
       array[i] = file.readDouble();
 if(DEBUG_RD_DATA_DETAIL)System.err.println("rdDblRA: #" + i +" (" + array[i] + ")");
@@ -27,6 +27,7 @@ import java.io.DataOutput;
 import java.io.IOException;
 
 import visad.data.visad.BinaryReader;
+import visad.data.visad.MappedDataInput;
 import visad.data.visad.BinaryWriter;
 
 public class BinaryDoubleMatrix
@@ -62,6 +63,10 @@ if(DEBUG_RD_DATA)System.err.println("rdDblMtx: len (" + len + ")");
       final int len2 = file.readInt();
 if(DEBUG_RD_DATA)System.err.println("rdDblMtx: #" + i + " len (" + len2 + ")");
       matrix[i] = new double[len2];
+      if (file instanceof MappedDataInput) {
+        ((MappedDataInput )file).readDoubles(matrix[i], 0, len2);
+        continue;
+      }
       for (int j = 0; j < len2; j++) {
         matrix[i][j] = file.readDouble();
 if(DEBUG_RD_DATA_DETAIL)System.err.println("rdDblMtx: #" + i + "," + j +" (" + matrix[i][j] + ")");
@@ -174,9 +174,12 @@ if(DEBUG_RD_DATA)System.err.println("rdFldI: FLD_END (" + FLD_END + ")");
     FieldImpl fld = (set == null ? new FieldImpl(ft) :
                      new FieldImpl(ft, set));
     if (samples != null) {
+      // a random access reader returns lazy FileFlatFields, which a copy
+      // would read in full
+      final boolean copy = !reader.isRandom();
       final int len = samples.length;
       for (int i = 0; i < len; i++) {
-        fld.setSample(i, samples[i]);
+        fld.setSample(i, samples[i], copy);
       }
     }
 
@@ -117,7 +117,7 @@ public class BinaryFlatField
       final int len = fld.getLength();
 
       if (dim > 0 && len > 0) {
-        samplesLen = 4 + dim * (4 + len * 8);
+        samplesLen = 1 + 4 + dim * (4 + len * 8);
       }
     }
 
@@ -208,12 +208,60 @@ if(DEBUG_RD_MATH)System.err.println("rdFlFld: type index (" + typeIndex + ")");
     System.err.println("Expected ptr " + expectedPtr + ", got " + postPtr);
   }
 }
-    // skip to the end of this object
-    rdr.seek(filePtr + (long )objLen);
+    // skip to the end of this object, by its contents rather than by
+    // objLen, which was one byte short in files written before the
+    // sample directive was counted
+    rdr.seek(filePtr + 4);
+    skipFields(rdr);
 
     return new FileFlatField(new BinaryAccessor(rdr, filePtr, ft), strategy);
   }
 
+  /**
+   * Skip the fields of a FlatField, seeking past its samples.
+   */
+  private static final void skipFields(BinaryReader rdr)
+    throws IOException, VisADException
+  {
+    DataInput file = rdr.getInput();
+
+    while (true) {
+      final byte directive = file.readByte();
+      switch (directive) {
+      case FLD_SET:
+        BinaryGeneric.read(rdr);
+        break;
+      case FLD_DATA_SAMPLES:
+        BinaryDataArray.read(rdr);
+        break;
+      case FLD_DOUBLE_SAMPLES:
+        final int len = file.readInt();
+        for (int i = 0; i < len; i++) {
+          final int len2 = file.readInt();
+          rdr.seek(rdr.getFilePointer() + (long )len2 * 8);
+        }
+        break;
+      case FLD_INDEX_COORDSYS:
+        file.readInt();
+        break;
+      case FLD_RANGE_COORDSYSES:
+        BinaryCoordinateSystem.readList(rdr);
+        break;
+      case FLD_SET_LIST:
+        readSetArray(rdr);
+        break;
+      case FLD_INDEX_UNITS:
+        BinaryUnit.readList(rdr);
+        break;
+      case FLD_END:
+        return;
+      default:
+        throw new IOException("Unknown FlatField directive " +
+                              directive);
+      }
+    }
+  }
+
   private static final Set[] readSetArray(BinaryReader reader)
     throws IOException, VisADException
   {
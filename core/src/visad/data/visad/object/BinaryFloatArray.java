@@ -27,6 +27,7 @@ import java.io.DataOutput;
 import java.io.IOException;
 
 import visad.data.visad.BinaryReader;
+import visad.data.visad.MappedDataInput;
 import visad.data.visad.BinaryWriter;
 
 public class BinaryFloatArray
@@ -50,6 +51,10 @@ if(DEBUG_RD_DATA)System.err.println("rdFltRA: len (" + len + ")");
     }
 
     float[] array = new float[len];
+    if (file instanceof MappedDataInput) {
+      ((MappedDataInput )file).readFloats(array, 0, len);
+      return array;
+    }
     for (int i = 0; i < len; i++) {
       array[i] = file.readFloat();
 if(DEBUG_RD_DATA_DETAIL)System.err.println("rdFltRA: #" + i +" (" + array[i] + ")");
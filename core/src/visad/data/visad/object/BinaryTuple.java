@@ -90,7 +90,9 @@ if(DEBUG_RD_DATA)System.err.println("rdTpl: FLD_END (" + FLD_END + ")");
       }
     }
 
-    return new Tuple(tt, components);
+    // a random access reader returns lazy FileFlatFields, which a copy
+    // would read in full
+    return new Tuple(tt, components, !reader.isRandom());
   }
 
   private static final void writeDependentData(BinaryWriter writer,
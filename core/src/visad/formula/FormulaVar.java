@@ -27,6 +27,7 @@ MA 02111-1307, USA
 package visad.formula;
 
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.rmi.RemoteException;
 import java.util.*;
 import visad.*;
@@ -427,11 +428,55 @@ public class FormulaVar extends ActionImpl {
 
   /** used by compute method for convenience */
   private Thing popStack(Stack s) {
+    return evaluate(popOperand(s));
+  }
+
+  /** used by compute method to pop an operand that may still be a
+      FusedExpression */
+  private Object popOperand(Stack s) {
     if (s.empty()) {
       evalError("Syntax error in formula (stack empty)");
       return null;
     }
-    else return (Thing) s.pop();
+    else return s.pop();
+  }
+
+  /** convert an operand from popOperand to a Thing, computing it if it is
+      a FusedExpression */
+  private Thing evaluate(Object o) {
+    if (o instanceof FusedExpression) {
+      try {
+        return ((FusedExpression) o).getValue();
+      }
+      catch (VisADException exc) {
+        if (DEBUG) exc.printStackTrace();
+        evalError("Could not compute fused expression", exc);
+      }
+      catch (RemoteException exc) {
+        if (DEBUG) exc.printStackTrace();
+        evalError("Could not compute fused expression (remote)", exc);
+      }
+      catch (RuntimeException exc) {
+        if (DEBUG) exc.printStackTrace();
+        evalError("Could not compute fused expression", exc);
+      }
+      return null;
+    }
+    return (Thing) o;
+  }
+
+  /** return the first of methods whose name in names is token, which is
+      the method compute tries first for token */
+  private static Method findMethod(String[] names, Method[] methods,
+    String token, boolean ignoreCase)
+  {
+    for (int j=0; j<methods.length; j++) {
+      if (ignoreCase ? names[j].equalsIgnoreCase(token) :
+                       names[j].equals(token)) {
+        return methods[j];
+      }
+    }
+    return null;
   }
 
   /** compute the solution to this variable's postfix formula */
@@ -445,8 +490,17 @@ public class FormulaVar extends ActionImpl {
       int code = formula.codes[i];
       if (code == Postfix.BINARY) {
         Object[] o = new Object[2];
-        o[1] = popStack(stack);
-        o[0] = popStack(stack);
+        o[1] = popOperand(stack);
+        o[0] = popOperand(stack);
+        // element-wise operations on FlatFields are fused into one pass
+        FusedExpression fused = FusedExpression.binary(FusedExpression.getOp(
+          findMethod(fm.bOps, fm.bMethods, token, false), 2), o[0], o[1]);
+        if (fused != null) {
+          stack.push(fused);
+          continue;
+        }
+        o[1] = evaluate(o[1]);
+        o[0] = evaluate(o[0]);
         Thing ans = null;
         if (o[0] != null && o[1] != null) {
           for (int j=0; j<fm.bMethods.length; j++) {
@@ -482,7 +536,14 @@ public class FormulaVar extends ActionImpl {
       }
       else if (code == Postfix.UNARY) {
         Object[] o = new Object[1];
-        o[0] = popStack(stack);
+        o[0] = popOperand(stack);
+        FusedExpression fused = FusedExpression.unary(FusedExpression.getOp(
+          findMethod(fm.uOps, fm.uMethods, token, false), 1), o[0]);
+        if (fused != null) {
+          stack.push(fused);
+          continue;
+        }
+        o[0] = evaluate(o[0]);
         Thing ans = null;
         if (o[0] != null) {
           for (int j=0; j<fm.uMethods.length; j++) {
@@ -537,7 +598,21 @@ public class FormulaVar extends ActionImpl {
           else o = null;
           boolean eflag = false;
           for (int j=num-1; j>=0; j--) {
-            o[j] = popStack(stack);
+            o[j] = popOperand(stack);
+            if (o[j] == null) eflag = true;
+          }
+          if (!eflag && (num == 1 || num == 2)) {
+            Method m = findMethod(fm.funcs, fm.fMethods, token, true);
+            FusedExpression fused = (num == 1) ?
+              FusedExpression.unary(FusedExpression.getOp(m, 1), o[0]) :
+              FusedExpression.binary(FusedExpression.getOp(m, 2), o[0], o[1]);
+            if (fused != null) {
+              stack.push(fused);
+              continue;
+            }
+          }
+          for (int j=0; j<num; j++) {
+            o[j] = evaluate(o[j]);
             if (o[j] == null) eflag = true;
           }
           if (!eflag) {
@@ -0,0 +1,661 @@
+//
+// FusedExpression.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.formula;
+
+import java.lang.reflect.Method;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.Vector;
+import visad.*;
+import visad.util.ParallelLoop;
+
+/** An element-wise expression over FlatFields that share a domain, built
+    by FormulaVar in place of the intermediate FlatFields the standard
+    Data methods would create, and computed in one pass over the range
+    values.<P>
+
+    The result matches that of the Data methods, including their MathTypes,
+    Units and choice of float or double arithmetic.  An operation that would
+    convert Units, or that involves anything other than FlatFields of one
+    type and domain and Real constants, is not fused and is left to the
+    Data methods.<P> */
+final class FusedExpression {
+
+  /** node kinds */
+  private static final int FIELD = 0;
+  private static final int REAL = 1;
+  private static final int BINARY = 2;
+  private static final int UNARY = 3;
+
+  /** number of samples computed by each node at a time */
+  private static final int BLOCK = 1024;
+
+  /** names of the Data methods for binary operations that can be fused */
+  private static final String[] BINARY_METHODS = {
+    "add", "subtract", "multiply", "divide", "pow", "remainder", "max", "min"
+  };
+
+  /** Data operations for BINARY_METHODS */
+  private static final int[] BINARY_OPS = {
+    Data.ADD, Data.SUBTRACT, Data.MULTIPLY, Data.DIVIDE, Data.POW,
+    Data.REMAINDER, Data.MAX, Data.MIN
+  };
+
+  /** names of the Data methods for unary operations that can be fused */
+  private static final String[] UNARY_METHODS = {
+    "negate", "abs", "ceil", "floor", "rint", "round", "exp", "log", "sqrt",
+    "cos", "sin", "tan", "cosDegrees", "sinDegrees", "tanDegrees"
+  };
+
+  /** Data operations for UNARY_METHODS */
+  private static final int[] UNARY_OPS = {
+    Data.NEGATE, Data.ABS, Data.CEIL, Data.FLOOR, Data.RINT, Data.ROUND,
+    Data.EXP, Data.LOG, Data.SQRT, Data.COS, Data.SIN, Data.TAN,
+    Data.COS_DEGREES, Data.SIN_DEGREES, Data.TAN_DEGREES
+  };
+
+  /** kind of node */
+  private int kind;
+
+  /** Data operation of a BINARY or UNARY node */
+  private int op;
+
+  /** operands of a BINARY or UNARY node */
+  private FusedExpression left, right;
+
+  /** value of a FIELD node */
+  private FlatField field;
+
+  /** value and unit of a REAL node */
+  private double value;
+  private Unit unit;
+
+  /** MathType of this node's value */
+  private MathType type;
+
+  /** Units of the range components of a FIELD, BINARY or UNARY node */
+  private Unit[] units;
+
+  /** whether a trigonometric UNARY node takes each component in degrees */
+  private boolean[] degrees;
+
+  /** whether this node's values are doubles rather than floats */
+  private boolean dbl;
+
+  /** a FlatField of the expression, giving its type and domain */
+  private FlatField sample;
+
+  /** index of this node's buffer, and range values of a FIELD node */
+  private int id;
+  private float[][] floats;
+  private double[][] doubles;
+
+  private FusedExpression() {
+  }
+
+  /** return the Data operation of the standard Data method m, called with
+      args arguments (including the Data it is called on), or -1 if it
+      cannot be fused */
+  static int getOp(Method m, int args) {
+    if (m == null || m.getDeclaringClass() != Data.class) return -1;
+    Class[] c = m.getParameterTypes();
+    if (c.length != args - 1 || (args == 2 && c[0] != Data.class)) return -1;
+    String[] names = (args == 2) ? BINARY_METHODS : UNARY_METHODS;
+    int[] ops = (args == 2) ? BINARY_OPS : UNARY_OPS;
+    for (int i=0; i<names.length; i++) {
+      if (names[i].equals(m.getName())) return ops[i];
+    }
+    return -1;
+  }
+
+  /** return an expression for binary operation op on a and b, each a
+      FusedExpression or a Thing, or null if they cannot be fused */
+  static FusedExpression binary(int op, Object a, Object b) {
+    if (op < 0) return null;
+    FusedExpression l = wrap(a);
+    FusedExpression r = wrap(b);
+    if (l == null || r == null || (l.kind == REAL && r.kind == REAL)) {
+      return null;
+    }
+    boolean fields = (l.kind != REAL && r.kind != REAL);
+    if (fields && !l.sample.getType().equals(r.sample.getType())) return null;
+
+    // FlatField.binary is called on the field operand, with the operation
+    // inverted if the Real operand comes first
+    FusedExpression that = (l.kind == REAL) ? l : r;
+    FusedExpression self = (l.kind == REAL) ? r : l;
+    int self_op = (l.kind == REAL) ? invertOp(op) : op;
+    Unit[] that_units = that.units;
+    if (that.kind == REAL) {
+      that_units = new Unit[self.units.length];
+      Arrays.fill(that_units, that.unit);
+    }
+    try {
+      if (fields && !self.sample.getDomainSet().equals(
+                     that.sample.getDomainSet())) {
+        return null;
+      }
+      MathType type = l.type.binary(r.type, op, new Vector());
+      if (!(type instanceof FunctionType) ||
+          !self.type.equalsExceptName(type) ||
+          (fields && !self.type.equalsExceptName(that.type))) {
+        return null;
+      }
+      Unit[] units = binaryUnits(self_op, self.units, that_units);
+      if (units == null) return null;
+      units = rangeUnits((FunctionType) type, units);
+      if (units == null) return null;
+
+      FusedExpression e = new FusedExpression();
+      e.kind = BINARY;
+      e.op = op;
+      e.left = l;
+      e.right = r;
+      e.type = type;
+      e.units = units;
+      e.sample = self.sample;
+      // float and double operands are combined as floats
+      e.dbl = fields ? (l.dbl && r.dbl) : self.dbl;
+      if (fields) {
+        if (l.kind == FIELD) l.dbl = e.dbl;
+        if (r.kind == FIELD) r.dbl = e.dbl;
+      }
+      return e;
+    }
+    catch (VisADException exc) {
+      return null;
+    }
+    catch (RuntimeException exc) {
+      // e.g. a Unit operation with no result, which the reflected
+      // method reports as an evaluation error
+      return null;
+    }
+  }
+
+  /** return an expression for unary operation op on a, a FusedExpression
+      or a Thing, or null if it cannot be fused */
+  static FusedExpression unary(int op, Object a) {
+    if (op < 0) return null;
+    FusedExpression c = wrap(a);
+    if (c == null || c.kind == REAL) return null;
+    try {
+      MathType type = c.type.unary(op, new Vector());
+      if (!(type instanceof FunctionType)) return null;
+      boolean[] degrees = new boolean[c.units.length];
+      Unit[] units = unaryUnits(op, c.units, degrees);
+      if (units == null) return null;
+      units = rangeUnits((FunctionType) type, units);
+      if (units == null) return null;
+
+      FusedExpression e = new FusedExpression();
+      e.kind = UNARY;
+      e.op = op;
+      e.left = c;
+      e.type = type;
+      e.units = units;
+      e.degrees = degrees;
+      e.sample = c.sample;
+      e.dbl = c.dbl;
+      return e;
+    }
+    catch (VisADException exc) {
+      return null;
+    }
+    catch (RuntimeException exc) {
+      // e.g. a Unit operation with no result, which the reflected
+      // method reports as an evaluation error
+      return null;
+    }
+  }
+
+  /** return a FusedExpression or a FIELD or REAL node for o, or null if
+      o cannot be fused */
+  private static FusedExpression wrap(Object o) {
+    if (o instanceof FusedExpression) return (FusedExpression) o;
+    FusedExpression e = new FusedExpression();
+    if (o != null && o.getClass() == Real.class) {
+      Real r = (Real) o;
+      if (r.isMissing()) return null;
+      e.kind = REAL;
+      e.type = r.getType();
+      e.value = r.getValue();
+      e.unit = r.getUnit();
+      return e;
+    }
+    if (!(o instanceof FlatField)) return null;
+    FlatField f = (FlatField) o;
+    if (!usesFlatFieldMath(f.getClass()) || f.isMissing()) return null;
+    FunctionType type = (FunctionType) f.getType();
+    RealTupleType range = type.getFlatRange();
+    if (!type.getReal() || range.getCoordinateSystem() != null) return null;
+
+    // range values must be in the default Units, so getFloats and
+    // getValues return them unconverted
+    Unit[][] range_units = f.getRangeUnits();
+    Unit[] units = new Unit[range_units.length];
+    for (int i=0; i<units.length; i++) units[i] = range_units[i][0];
+    if (!Arrays.equals(units, range.getDefaultUnits())) return null;
+
+    Set[] sets = f.getRangeSets();
+    for (int i=0; i<sets.length; i++) {
+      if (sets[i] instanceof DoubleSet) e.dbl = true;
+    }
+    e.kind = FIELD;
+    e.field = f;
+    e.type = type;
+    e.units = units;
+    e.sample = f;
+    return e;
+    }
+
+  /** return whether FlatFields of class c do arithmetic with the binary
+      and unary methods of FlatField */
+  private static boolean usesFlatFieldMath(Class c) {
+    if (c == FlatField.class) return true;
+    try {
+      Method b = c.getMethod("binary", new Class[] {Data.class, Integer.TYPE,
+        MathType.class, Integer.TYPE, Integer.TYPE});
+      Method u = c.getMethod("unary", new Class[] {Integer.TYPE,
+        MathType.class, Integer.TYPE, Integer.TYPE});
+      return b.getDeclaringClass() == FlatField.class &&
+             u.getDeclaringClass() == FlatField.class;
+    }
+    catch (NoSuchMethodException exc) {
+      return false;
+    }
+  }
+
+  /** return op with its operands reversed */
+  private static int invertOp(int op) {
+    switch (op) {
+      case Data.SUBTRACT:
+        return Data.INV_SUBTRACT;
+      case Data.DIVIDE:
+        return Data.INV_DIVIDE;
+      case Data.POW:
+        return Data.INV_POW;
+      case Data.REMAINDER:
+        return Data.INV_REMAINDER;
+      default:
+        return op;
+    }
+  }
+
+  /** return the Units FlatField.binary gives the result of self_op, or null
+      if it would convert the values of either operand */
+  private static Unit[] binaryUnits(int self_op, Unit[] self_units,
+    Unit[] that_units) throws VisADException
+  {
+    Unit[] units = new Unit[self_units.length];
+    for (int j=0; j<units.length; j++) {
+      Unit a = self_units[j];
+      Unit b = that_units[j];
+      switch (self_op) {
+        case Data.ADD:
+        case Data.SUBTRACT:
+        case Data.INV_SUBTRACT:
+        case Data.MAX:
+        case Data.MIN:
+          if (a == null || b == null) break;
+          if (isPromiscuous(a) || isPromiscuous(b)) return null;
+          units[j] = a.getAbsoluteUnit();
+          if (!units[j].equals(a) || !units[j].equals(b)) return null;
+          break;
+        case Data.MULTIPLY:
+        case Data.DIVIDE:
+        case Data.INV_DIVIDE:
+          if (!isAbsolute(a) || !isAbsolute(b)) return null;
+          if (a == null || b == null) break;
+          if (isPromiscuous(a) || isPromiscuous(b)) return null;
+          units[j] = (self_op == Data.MULTIPLY) ? a.multiply(b) :
+            (self_op == Data.DIVIDE) ? a.divide(b) : b.divide(a);
+          break;
+        case Data.POW:
+        case Data.INV_POW:
+          Unit base = (self_op == Data.POW) ? a : b;
+          Unit exponent = (self_op == Data.POW) ? b : a;
+          if (!isAbsolute(base)) return null;
+          if (!isPromiscuous(exponent) && !isAbsolute(exponent)) return null;
+          if (base != null && (isPromiscuous(base) ||
+              base.equals(CommonUnit.dimensionless))) {
+            units[j] = base;
+          }
+          break;
+        case Data.REMAINDER:
+        case Data.INV_REMAINDER:
+          if (a != null && b != null) {
+            Unit abs = a.getAbsoluteUnit();
+            if (!abs.equals(a) || !abs.equals(b)) return null;
+          }
+          units[j] = (self_op == Data.REMAINDER) ? a : b;
+          break;
+        default:
+          return null;
+      }
+    }
+    return units;
+  }
+
+  /** return the Units FlatField.unary gives the result of op, and set
+      degrees for its trigonometric operations, or null if it would convert
+      the values of the operand */
+  private static Unit[] unaryUnits(int op, Unit[] in, boolean[] degrees)
+    throws VisADException
+  {
+    Unit[] units = new Unit[in.length];
+    for (int j=0; j<units.length; j++) {
+      Unit u = in[j];
+      if (u != null && !(u instanceof PromiscuousUnit)) {
+        Unit rational = u.getAbsoluteUnit();
+        if (Unit.canConvert(rational, CommonUnit.dimensionless)) {
+          rational = CommonUnit.dimensionless;
+        }
+        if (!rational.equals(u)) return null;
+      }
+      boolean dimensionless = CommonUnit.dimensionless.equals(u);
+      switch (op) {
+        case Data.ABS:
+        case Data.CEIL:
+        case Data.FLOOR:
+        case Data.RINT:
+        case Data.ROUND:
+        case Data.NEGATE:
+          units[j] = u;
+          break;
+        case Data.COS:
+        case Data.SIN:
+        case Data.TAN:
+          degrees[j] = CommonUnit.degree.equals(u);
+          units[j] = dimensionless ? u : null;
+          break;
+        case Data.COS_DEGREES:
+        case Data.SIN_DEGREES:
+        case Data.TAN_DEGREES:
+          degrees[j] = !CommonUnit.radian.equals(u);
+          units[j] = dimensionless ? u : null;
+          break;
+        case Data.EXP:
+        case Data.LOG:
+          units[j] = dimensionless ? u : null;
+          break;
+        case Data.SQRT:
+          if (u != null) {
+            try {
+              units[j] = u.sqrt();
+            }
+            catch (IllegalArgumentException exc) {
+              units[j] = null;
+            }
+            catch (UnitException exc) {
+              units[j] = null;
+            }
+          }
+          break;
+        default:
+          return null;
+      }
+    }
+    return units;
+  }
+
+  /** return units as the FlatField constructor stores them for a field of
+      the given type, or null if it would reject them */
+  private static Unit[] rangeUnits(FunctionType type, Unit[] units)
+    throws VisADException
+  {
+    RealTupleType range = type.getFlatRange();
+    if (range.getDimension() != units.length) return null;
+    Unit[] stored = new Unit[units.length];
+    for (int j=0; j<units.length; j++) {
+      RealType component = (RealType) range.getComponent(j);
+      stored[j] = (units[j] == null || !component.isInterval()) ?
+        units[j] : units[j].getAbsoluteUnit();
+    }
+    if (!Unit.canConvertArray(range.getDefaultUnits(), stored)) return null;
+    return stored;
+  }
+
+  private static boolean isPromiscuous(Unit u) {
+    return CommonUnit.promiscuous.equals(u);
+  }
+
+  private static boolean isAbsolute(Unit u) {
+    return u == null || u.getAbsoluteUnit().equals(u);
+  }
+
+  /** compute the FlatField this expression represents */
+  FlatField getValue() throws VisADException, RemoteException {
+    final int count = prepare(0);
+    final int length = sample.getLength();
+    final int dim = units.length;
+    final float[][] float_values = dbl ? null : new float[dim][length];
+    final double[][] double_values = dbl ? new double[dim][length] : null;
+
+    ParallelLoop.run(length, new ParallelLoop.Body() {
+      public void run(int start, int end) {
+        double[][] buffers = new double[count][BLOCK];
+        fill(buffers);
+        for (int j=0; j<dim; j++) {
+          for (int s=start; s<end; s+=BLOCK) {
+            int n = Math.min(BLOCK, end - s);
+            double[] v = compute(j, s, n, buffers);
+            if (dbl) {
+              System.arraycopy(v, 0, double_values[j], s, n);
+            }
+            else {
+              float[] f = float_values[j];
+              for (int i=0; i<n; i++) f[s + i] = (float) v[i];
+            }
+          }
+        }
+      }
+    });
+
+    // as FlatField.cloneFloat and cloneDouble construct results
+    FunctionType ftype = (FunctionType) type;
+    RealTupleType range = ftype.getFlatRange();
+    Set[] sets = new Set[dim];
+    for (int j=0; j<dim; j++) {
+      SetType set_type = new SetType(range.getComponent(j));
+      sets[j] = dbl ? (Set) new DoubleSet(set_type) :
+                      (Set) new FloatSet(set_type);
+    }
+    FlatField result = new FlatField(ftype, sample.getDomainSet(),
+      (CoordinateSystem) null, sets, units);
+    if (dbl) result.setSamples(double_values, false);
+    else result.setSamples(float_values, false);
+    return result;
+  }
+
+  /** number the nodes of this expression from next, and unpack the range
+      values of its FlatFields; return the next unused number */
+  private int prepare(int next) throws VisADException {
+    if (left != null) next = left.prepare(next);
+    if (right != null) next = right.prepare(next);
+    if (kind == FIELD) {
+      if (dbl) doubles = field.getValues(false);
+      else floats = field.getFloats(false);
+    }
+    id = next;
+    return next + 1;
+  }
+
+  /** fill the buffers of REAL nodes with their values */
+  private void fill(double[][] buffers) {
+    if (left != null) left.fill(buffers);
+    if (right != null) right.fill(buffers);
+    if (kind == REAL) Arrays.fill(buffers[id], value);
+  }
+
+  /** return a buffer holding this node's values of range component j for
+      the n samples from start */
+  private double[] compute(int j, int start, int n, double[][] buffers) {
+    double[] out = buffers[id];
+    switch (kind) {
+      case FIELD:
+        if (dbl) {
+          System.arraycopy(doubles[j], start, out, 0, n);
+        }
+        else {
+          float[] f = floats[j];
+          for (int i=0; i<n; i++) out[i] = f[start + i];
+        }
+        return out;
+      case REAL:
+        return out;
+      case BINARY:
+        double[] a = left.compute(j, start, n, buffers);
+        double[] b = right.compute(j, start, n, buffers);
+        if (!dbl) {
+          // double field operands of a float operation are rounded first
+          if (left.kind == BINARY || left.kind == UNARY) round(left, a, n);
+          if (right.kind == BINARY || right.kind == UNARY) round(right, b, n);
+        }
+        binary(op, a, b, out, n);
+        break;
+      default:
+        double[] c = left.compute(j, start, n, buffers);
+        unary(op, degrees[j], dbl, c, out, n);
+        break;
+    }
+    if (!dbl) {
+      for (int i=0; i<n; i++) out[i] = (float) out[i];
+    }
+    return out;
+  }
+
+  /** round the values of node e to float, if they are doubles */
+  private static void round(FusedExpression e, double[] values, int n) {
+    if (e.dbl) {
+      for (int i=0; i<n; i++) values[i] = (float) values[i];
+    }
+  }
+
+  /** out[i] = a[i] op b[i]; float operations are done in double on float
+      values and rounded by the caller, which gives the float result */
+  private static void binary(int op, double[] a, double[] b, double[] out,
+                             int n) {
+    int i;
+    switch (op) {
+      case Data.ADD:
+        for (i=0; i<n; i++) out[i] = a[i] + b[i];
+        break;
+      case Data.SUBTRACT:
+        for (i=0; i<n; i++) out[i] = a[i] - b[i];
+        break;
+      case Data.MULTIPLY:
+        for (i=0; i<n; i++) out[i] = a[i] * b[i];
+        break;
+      case Data.DIVIDE:
+        for (i=0; i<n; i++) out[i] = a[i] / b[i];
+        break;
+      case Data.POW:
+        for (i=0; i<n; i++) out[i] = Math.pow(a[i], b[i]);
+        break;
+      case Data.REMAINDER:
+        for (i=0; i<n; i++) out[i] = a[i] % b[i];
+        break;
+      case Data.MAX:
+        for (i=0; i<n; i++) out[i] = Math.max(a[i], b[i]);
+        break;
+      case Data.MIN:
+        for (i=0; i<n; i++) out[i] = Math.min(a[i], b[i]);
+        break;
+    }
+  }
+
+  /** out[i] = op(a[i]), as FlatFieldOps.unary computes it for floats or
+      doubles */
+  private static void unary(int op, boolean degrees, boolean dbl, double[] a,
+                            double[] out, int n) {
+    int i;
+    double scale = degrees ? Data.DEGREES_TO_RADIANS : 1.0;
+    switch (op) {
+      case Data.NEGATE:
+        for (i=0; i<n; i++) out[i] = -a[i];
+        break;
+      case Data.ABS:
+        for (i=0; i<n; i++) out[i] = Math.abs(a[i]);
+        break;
+      case Data.CEIL:
+        for (i=0; i<n; i++) out[i] = Math.ceil(a[i]);
+        break;
+      case Data.FLOOR:
+        for (i=0; i<n; i++) out[i] = Math.floor(a[i]);
+        break;
+      case Data.RINT:
+        for (i=0; i<n; i++) out[i] = Math.rint(a[i]);
+        break;
+      case Data.ROUND:
+        // Math.round(float) rounds to an int, Math.round(double) to a long
+        if (dbl) {
+          for (i=0; i<n; i++) out[i] = Math.round(a[i]);
+        }
+        else {
+          for (i=0; i<n; i++) out[i] = Math.round((float) a[i]);
+        }
+        break;
+      case Data.EXP:
+        for (i=0; i<n; i++) out[i] = Math.exp(a[i]);
+        break;
+      case Data.LOG:
+        for (i=0; i<n; i++) out[i] = Math.log(a[i]);
+        break;
+      case Data.SQRT:
+        for (i=0; i<n; i++) out[i] = Math.sqrt(a[i]);
+        break;
+      case Data.COS:
+      case Data.COS_DEGREES:
+        if (degrees) {
+          for (i=0; i<n; i++) out[i] = Math.cos(scale * a[i]);
+        }
+        else {
+          for (i=0; i<n; i++) out[i] = Math.cos(a[i]);
+        }
+        break;
+      case Data.SIN:
+      case Data.SIN_DEGREES:
+        if (degrees) {
+          for (i=0; i<n; i++) out[i] = Math.sin(scale * a[i]);
+        }
+        else {
+          for (i=0; i<n; i++) out[i] = Math.sin(a[i]);
+        }
+        break;
+      case Data.TAN:
+      case Data.TAN_DEGREES:
+        if (degrees) {
+          for (i=0; i<n; i++) out[i] = Math.tan(scale * a[i]);
+        }
+        else {
+          for (i=0; i<n; i++) out[i] = Math.tan(a[i]);
+        }
+        break;
+    }
+  }
+
+}
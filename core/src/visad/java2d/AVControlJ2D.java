@@ -45,6 +45,7 @@ public abstract class AVControlJ2D extends Control implements AVControl {
 
   void addPair(VisADSwitch sw, Set se, DataRenderer re) {
     switches.addElement(new SwitchSet(sw, se, re));
+    re.switchAdded();
   }
 
   abstract void init() throws VisADException;
@@ -146,6 +146,11 @@ public class ShadowFunctionOrSetTypeJ2D extends ShadowTypeJ2D {
     return branch;
   }
 
+  public boolean detachBranch(Object branch) throws VisADException {
+    ((VisADGroup) branch).detach();
+    return true;
+  }
+
   public void addToGroup(Object group, Object branch)
          throws VisADException {
     ((VisADGroup) group).addChild((VisADGroup) branch);
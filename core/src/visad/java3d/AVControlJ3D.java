@@ -49,6 +49,7 @@ public abstract class AVControlJ3D extends Control implements AVControl {
 
   public void addPair(Switch sw, Set se, DataRenderer re) {
     switches.addElement(new SwitchSet(sw, se, re));
+    re.switchAdded();
   }
 
   public void nullControl() {
@@ -174,6 +174,7 @@ public class ProjectionControlJ3D extends ProjectionControl {
   public void addPair(Switch sw, DataRenderer re) {
     switches.addElement(new SwitchProjection(sw, re));
     sw.setWhichChild(which_child);
+    re.switchAdded();
   }
 
   private void selectSwitches() {
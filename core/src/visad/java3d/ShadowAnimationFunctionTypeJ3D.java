@@ -205,14 +205,18 @@ public class ShadowAnimationFunctionTypeJ3D extends ShadowFunctionTypeJ3D {
       old_times = null;
       old_mark = null;
 
-      // render new frames
-      for (int i=0; i<len; i++) {
-        if (!mark[i]) {
+      // render new frames, in the order the animation shows them,
+      // reading frames ahead of their transform
+      FramePrefetcher prefetcher =
+        new FramePrefetcher(link, (Field) data, control, mark);
+      try {
+        int i;
+        while ((i = prefetcher.next()) >= 0) {
           // not necessary, but perhaps if this is modified
           // int[] lat_lon_indices = renderer.getLatLonIndices();
           BranchGroup branch = (BranchGroup) makeBranch();
           ((AnimationRendererJ3D) renderer).setVisADBranch(nodes[i]);
-          recurseRange(branch, ((Field) data).getSample(i),
+          recurseRange(branch, prefetcher.getSample(i),
                        value_array, default_values, renderer);
           ((AnimationRendererJ3D) renderer).setVisADBranch(null);
           nodes[i].addChild(branch);
@@ -220,6 +224,9 @@ public class ShadowAnimationFunctionTypeJ3D extends ShadowFunctionTypeJ3D {
           // renderer.setLatLonIndices(lat_lon_indices);
         }
       }
+      finally {
+        prefetcher.close();
+      }
     }
     else {
       super.doTransform(group, data, value_array, default_values, renderer);
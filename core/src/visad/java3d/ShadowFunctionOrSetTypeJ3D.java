@@ -1207,6 +1207,12 @@ System.out.println("Texture.BASE_LEVEL_LINEAR = " + Texture.BASE_LEVEL_LINEAR);
     return branch;
   }
 
+  public boolean detachBranch(Object branch) throws VisADException {
+    // makeBranch() sets ALLOW_DETACH
+    ((BranchGroup) branch).detach();
+    return true;
+  }
+
   public void addToGroup(Object group, Object branch)
          throws VisADException {
 /* WLH 18 Aug 98
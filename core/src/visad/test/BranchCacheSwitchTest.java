@@ -0,0 +1,116 @@
+package visad.test;
+
+import visad.DataReferenceImpl;
+import visad.Display;
+import visad.FieldImpl;
+import visad.FlatField;
+import visad.FunctionType;
+import visad.Integer1DSet;
+import visad.RealType;
+import visad.ScalarMap;
+import visad.java2d.DefaultRendererJ2D;
+import visad.java2d.DisplayImplJ2D;
+
+/**
+ * Headless test of the reuse of animation frame branches across
+ * transforms: a frame holding a nested SelectValue Field registers a
+ * Switch with the ValueControl when it is transformed, and those
+ * registrations are cleared before every transform, so such a frame
+ * must be transformed again (registering its Switch again) even if it
+ * did not change.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true visad.test.BranchCacheSwitchTest</code>.
+ */
+public class BranchCacheSwitchTest {
+
+  private static final int FRAMES = 4;
+
+  private static int failures = 0;
+
+  public static void main(String[] args) throws Exception {
+    try {
+      run();
+    } finally {
+      System.out.println(failures == 0 ? "PASSED" : failures + " FAILED");
+      System.exit(failures == 0 ? 0 : 1);
+    }
+  }
+
+  private static void run() throws Exception {
+    RealType time = RealType.getRealType("bcst_time");
+    RealType select = RealType.getRealType("bcst_select");
+    RealType x = RealType.getRealType("bcst_x");
+    RealType y = RealType.getRealType("bcst_y");
+    FunctionType curve = new FunctionType(x, y);
+    FunctionType frame = new FunctionType(select, curve);
+    FunctionType movie = new FunctionType(time, frame);
+
+    FieldImpl field = new FieldImpl(movie, new Integer1DSet(time, FRAMES));
+    for (int i=0; i<FRAMES; i++) {
+      field.setSample(i, makeFrame(frame, curve, i), false);
+    }
+
+    DisplayImplJ2D display = new DisplayImplJ2D("bcst", 100, 100);
+    display.addMap(new ScalarMap(time, Display.Animation));
+    display.addMap(new ScalarMap(select, Display.SelectValue));
+    display.addMap(new ScalarMap(x, Display.XAxis));
+    display.addMap(new ScalarMap(y, Display.YAxis));
+    DataReferenceImpl ref = new DataReferenceImpl("bcst");
+    ref.setData(field);
+    DefaultRendererJ2D renderer = new DefaultRendererJ2D();
+    display.addReferences(renderer, ref);
+
+    // the Animation Switch, and one SelectValue Switch per frame
+    int expected = 1 + FRAMES;
+    int first = waitForSwitches(renderer, expected);
+    check(first == expected,
+          "first transform registered " + first + " Switches, expected " +
+          expected);
+
+    // change one frame; the others are unchanged, but their SelectValue
+    // Switches must be registered again
+    field.setSample(0, makeFrame(frame, curve, 7), false);
+    int second = waitForSwitches(renderer, first + expected) - first;
+    check(second == expected,
+          "second transform registered " + second + " Switches, expected " +
+          expected);
+
+    display.destroy();
+  }
+
+  /** wait for the transform to register count Switches in all, and
+      return the number registered */
+  private static int waitForSwitches(DefaultRendererJ2D renderer, int count)
+          throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 20000;
+    while (renderer.getSwitchesAdded() < count &&
+           System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    // give a transform in progress time to finish
+    Thread.sleep(500);
+    return renderer.getSwitchesAdded();
+  }
+
+  private static FieldImpl makeFrame(FunctionType frame, FunctionType curve,
+                                     int k) throws Exception {
+    RealType select = (RealType) frame.getDomain().getComponent(0);
+    RealType x = (RealType) curve.getDomain().getComponent(0);
+    FieldImpl field = new FieldImpl(frame, new Integer1DSet(select, 3));
+    for (int j=0; j<3; j++) {
+      FlatField ff = new FlatField(curve, new Integer1DSet(x, 5));
+      float[][] values = new float[1][5];
+      for (int q=0; q<5; q++) values[0][q] = q * k + j;
+      ff.setSamples(values);
+      field.setSample(j, ff, false);
+    }
+    return field;
+  }
+
+  private static void check(boolean ok, String message) {
+    if (!ok) {
+      failures++;
+      System.out.println("FAILED: " + message);
+    }
+  }
+}
@@ -0,0 +1,249 @@
+package visad.test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import visad.Delaunay;
+import visad.DelaunayClarkson;
+import visad.DelaunayParallel;
+import visad.util.ParallelLoop;
+
+/**
+ * Headless test of DelaunayParallel against DelaunayClarkson for random
+ * samples in 2-D and 3-D, which must give the same triangles, and for
+ * lattices, whose co-circular samples have many Delaunay triangulations,
+ * so the triangles must only be locally Delaunay and cover the same
+ * area or volume.  Each DelaunayParallel must take no more than twice
+ * as long as DelaunayClarkson, plus a second, and Delaunay.factory must
+ * not choose DelaunayParallel for lattice-like samples.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true visad.test.DelaunayParallelTest</code>.
+ */
+public class DelaunayParallelTest {
+
+  private static final int SLABS = 4;
+
+  private static int failures = 0;
+
+  public static void main(String[] args) throws Exception {
+    try {
+      run();
+    } finally {
+      System.out.println(failures == 0 ? "PASSED" : failures + " FAILED");
+      System.exit(failures == 0 ? 0 : 1);
+    }
+  }
+
+  private static void run() throws Exception {
+    Random random = new Random(5);
+
+    float[][] random2 = new float[2][20000];
+    for (int i=0; i<random2[0].length; i++) {
+      random2[0][i] = random.nextFloat() * 100000;
+      random2[1][i] = random.nextFloat() * 100000;
+    }
+    compare("random 2-D", random2, true);
+
+    float[][] random3 = new float[3][10000];
+    for (int i=0; i<random3[0].length; i++) {
+      for (int j=0; j<3; j++) random3[j][i] = random.nextFloat() * 10000;
+    }
+    compare("random 3-D", random3, true);
+
+    int n = 70;
+    float[][] lattice2 = new float[2][n * n];
+    for (int j=0; j<n; j++) {
+      for (int i=0; i<n; i++) {
+        lattice2[0][j * n + i] = 10 * i;
+        lattice2[1][j * n + i] = 10 * j;
+      }
+    }
+    compare("lattice 2-D", lattice2, false);
+
+    n = 16;
+    float[][] lattice3 = new float[3][n * n * n];
+    for (int k=0; k<n; k++) {
+      for (int j=0; j<n; j++) {
+        for (int i=0; i<n; i++) {
+          int q = (k * n + j) * n + i;
+          lattice3[0][q] = 10 * i;
+          lattice3[1][q] = 10 * j;
+          lattice3[2][q] = 10 * k;
+        }
+      }
+    }
+    compare("lattice 3-D", lattice3, false);
+
+    // the factory splits random samples, but not samples on a few
+    // lines, which are degenerate like a lattice; both sets are large
+    // enough for ParallelLoop to split
+    int m = 40000;
+    float[][] spread = new float[2][m];
+    float[][] lines = new float[2][m];
+    for (int i=0; i<m; i++) {
+      spread[0][i] = random.nextFloat() * 1000000;
+      spread[1][i] = random.nextFloat() * 1000000;
+      lines[0][i] = 10 * (i % 100);
+      lines[1][i] = random.nextFloat() * 1000000;
+    }
+    check(!DelaunayParallel.isDegenerate(random2),
+          "random samples reported degenerate");
+    check(DelaunayParallel.isDegenerate(lattice2),
+          "2-D lattice not reported degenerate");
+    check(DelaunayParallel.isDegenerate(lattice3),
+          "3-D lattice not reported degenerate");
+    check(DelaunayParallel.isDegenerate(lines),
+          "samples on lines not reported degenerate");
+    int threshold = ParallelLoop.getThreshold();
+    int threads = ParallelLoop.getMaxThreads();
+    try {
+      ParallelLoop.setThreshold(1);
+      ParallelLoop.setMaxThreads(SLABS);
+      Delaunay d = Delaunay.factory(spread, true);
+      check(d instanceof DelaunayParallel,
+            "factory chose " + d.getClass().getName() + " for random samples");
+      d = Delaunay.factory(lines, true);
+      check(d instanceof DelaunayClarkson,
+            "factory chose " + d.getClass().getName() +
+            " for samples on lines");
+    }
+    finally {
+      ParallelLoop.setThreshold(threshold);
+      ParallelLoop.setMaxThreads(threads);
+    }
+  }
+
+  private static void compare(String name, float[][] samples,
+                              boolean unique)
+          throws Exception {
+    long t0 = System.currentTimeMillis();
+    Delaunay clarkson = new DelaunayClarkson(samples);
+    long t1 = System.currentTimeMillis();
+    Delaunay parallel = new DelaunayParallel(samples, SLABS);
+    long t2 = System.currentTimeMillis();
+    System.out.println(name + ": " + samples[0].length + " samples, " +
+                       "DelaunayClarkson " + (t1 - t0) + " ms, " +
+                       clarkson.Tri.length + " triangles; " +
+                       "DelaunayParallel " + (t2 - t1) + " ms, " +
+                       parallel.Tri.length + " triangles");
+    check(t2 - t1 <= 2 * (t1 - t0) + 1000,
+          name + ": DelaunayParallel took " + (t2 - t1) + " ms");
+
+    if (unique) {
+      check(triangles(parallel).equals(triangles(clarkson)),
+            name + ": triangles differ");
+      return;
+    }
+    double[][] site = round(samples);
+    check(Math.abs(volume(site, parallel) - volume(site, clarkson)) <=
+          1.0e-9 * volume(site, clarkson),
+          name + ": triangles cover " + volume(site, parallel) +
+          ", expected " + volume(site, clarkson));
+    int bad = 0;
+    for (int t=0; t<parallel.Tri.length; t++) {
+      for (int j=0; j<parallel.Tri[t].length; j++) {
+        int w = parallel.Walk[t][j];
+        if (w < 0) continue;
+        for (int k=0; k<parallel.Tri[w].length; k++) {
+          if (inside(site, parallel.Tri[t], parallel.Tri[w][k])) bad++;
+        }
+      }
+    }
+    check(bad == 0, name + ": " + bad + " neighbors not locally Delaunay");
+  }
+
+  /** the triangles of d, each as its sorted vertices */
+  private static HashSet<String> triangles(Delaunay d) {
+    HashSet<String> set = new HashSet<String>();
+    for (int t=0; t<d.Tri.length; t++) {
+      int[] v = d.Tri[t].clone();
+      Arrays.sort(v);
+      set.add(Arrays.toString(v));
+    }
+    return set;
+  }
+
+  /** the samples rounded to integers, as Clarkson triangulates them */
+  private static double[][] round(float[][] samples) {
+    double[][] site = new double[samples.length][samples[0].length];
+    for (int j=0; j<samples.length; j++) {
+      for (int i=0; i<samples[j].length; i++) {
+        site[j][i] = Math.floor(samples[j][i] + 0.5);
+      }
+    }
+    return site;
+  }
+
+  /** the total area or volume of the triangles of d, up to a constant */
+  private static double volume(double[][] site, Delaunay d) {
+    double total = 0;
+    int dim = site.length;
+    double[][] m = new double[dim][dim];
+    for (int t=0; t<d.Tri.length; t++) {
+      int[] v = d.Tri[t];
+      for (int i=0; i<dim; i++) {
+        for (int k=0; k<dim; k++) m[i][k] = site[k][v[i+1]] - site[k][v[0]];
+      }
+      total += Math.abs(det(m));
+    }
+    return total;
+  }
+
+  /** true if sample p lies strictly inside the circumsphere of t */
+  private static boolean inside(double[][] site, int[] t, int p) {
+    int dim = site.length;
+    for (int i=0; i<t.length; i++) {
+      if (t[i] == p) return false;
+    }
+    // the center c, relative to the first vertex, solves
+    // 2 (v_i - v_0) . c = |v_i - v_0|^2, by Cramer's rule
+    double[][] a = new double[dim][dim];
+    double[] b = new double[dim];
+    for (int i=0; i<dim; i++) {
+      for (int k=0; k<dim; k++) {
+        double d = site[k][t[i+1]] - site[k][t[0]];
+        a[i][k] = 2 * d;
+        b[i] += d * d;
+      }
+    }
+    double det = det(a);
+    double r2 = 0;
+    double p2 = 0;
+    for (int k=0; k<dim; k++) {
+      double[][] ak = new double[dim][];
+      for (int i=0; i<dim; i++) {
+        ak[i] = a[i].clone();
+        ak[i][k] = b[i];
+      }
+      double c = det(ak) / det;
+      r2 += c * c;
+      double d = site[k][p] - site[k][t[0]] - c;
+      p2 += d * d;
+    }
+    return p2 < r2 * (1 - 1.0e-9);
+  }
+
+  private static double det(double[][] m) {
+    int n = m.length;
+    if (n == 2) return m[0][0] * m[1][1] - m[0][1] * m[1][0];
+    double d = 0;
+    for (int c=0; c<n; c++) {
+      double[][] minor = new double[n - 1][n - 1];
+      for (int i=1; i<n; i++) {
+        for (int k=0, l=0; k<n; k++) {
+          if (k != c) minor[i-1][l++] = m[i][k];
+        }
+      }
+      d += ((c % 2 == 0) ? 1 : -1) * m[0][c] * det(minor);
+    }
+    return d;
+  }
+
+  private static void check(boolean ok, String message) {
+    if (!ok) {
+      failures++;
+      System.out.println("FAILED: " + message);
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package visad.test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import visad.Data;
+import visad.FlatField;
+import visad.FunctionType;
+import visad.Integer1DSet;
+import visad.RealType;
+import visad.VisADException;
+import visad.data.CacheStrategy;
+import visad.data.FileAccessor;
+import visad.data.FileFlatField;
+
+/**
+ * Headless test of FileFlatFields read concurrently, as the frames of
+ * an animation are read ahead by a FramePrefetcher: FileAccessors that
+ * share one file handle (seek, then read) must not interleave their
+ * reads, so every frame must hold the values written for it.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true visad.test.FileFlatFieldReadTest</code>.
+ */
+public class FileFlatFieldReadTest {
+
+  private static final int FRAMES = 40;
+
+  private static final int THREADS = 4;
+
+  private static final int N = 4096;
+
+  private static int failures = 0;
+
+  public static void main(String[] args) throws Exception {
+    try {
+      run();
+    } finally {
+      System.out.println(failures == 0 ? "PASSED" : failures + " FAILED");
+      System.exit(failures == 0 ? 0 : 1);
+    }
+  }
+
+  private static void run() throws Exception {
+    File file = File.createTempFile("ffftest", ".bin");
+    file.deleteOnExit();
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      // frame f holds the value f in every sample
+      for (int f=0; f<FRAMES; f++) {
+        for (int i=0; i<N; i++) raf.writeFloat(f);
+      }
+
+      RealType index = RealType.getRealType("fffread_index");
+      RealType value = RealType.getRealType("fffread_value");
+      FunctionType type = new FunctionType(index, value);
+      Integer1DSet set = new Integer1DSet(index, N);
+      CacheStrategy strategy = new CacheStrategy();
+
+      final FileFlatField[] frames = new FileFlatField[FRAMES];
+      for (int f=0; f<FRAMES; f++) {
+        frames[f] = new FileFlatField(
+          new SharedFileAccessor(raf, type, set, f), strategy);
+      }
+
+      final int[] bad = new int[1];
+      List<Thread> threads = new ArrayList<Thread>();
+      for (int t=0; t<THREADS; t++) {
+        final int first = t;
+        Thread thread = new Thread(new Runnable() {
+          public void run() {
+            for (int f=first; f<FRAMES; f+=THREADS) {
+              if (!holds(frames[f], f)) {
+                synchronized (bad) {
+                  bad[0]++;
+                }
+              }
+            }
+          }
+        });
+        threads.add(thread);
+        thread.start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      check(bad[0] == 0, bad[0] + " of " + FRAMES + " frames corrupt");
+    }
+    finally {
+      raf.close();
+    }
+  }
+
+  private static boolean holds(FileFlatField frame, int f) {
+    try {
+      float[][] values = frame.getFloats(false);
+      for (int i=0; i<N; i++) {
+        if (values[0][i] != f) return false;
+      }
+      return true;
+    }
+    catch (Exception exc) {
+      return false;
+    }
+  }
+
+  /** reads one frame through a file handle shared by all frames */
+  private static class SharedFileAccessor extends FileAccessor {
+
+    private final RandomAccessFile raf;
+    private final FunctionType type;
+    private final Integer1DSet set;
+    private final int frame;
+
+    SharedFileAccessor(RandomAccessFile raf, FunctionType type,
+                       Integer1DSet set, int frame) {
+      this.raf = raf;
+      this.type = type;
+      this.set = set;
+      this.frame = frame;
+    }
+
+    public FlatField getFlatField() throws VisADException {
+      float[][] values = new float[1][N];
+      try {
+        raf.seek((long) frame * N * 4);
+        for (int i=0; i<N; i++) {
+          values[0][i] = raf.readFloat();
+          // give other readers a chance to move the file pointer
+          if (i % 512 == 0) Thread.yield();
+        }
+      }
+      catch (java.io.IOException exc) {
+        throw new VisADException(exc.toString());
+      }
+      FlatField field = new FlatField(type, set);
+      try {
+        field.setSamples(values, false);
+      }
+      catch (java.rmi.RemoteException exc) {
+        throw new VisADException(exc.toString());
+      }
+      return field;
+    }
+
+    public FunctionType getFunctionType() {
+      return type;
+    }
+
+    public void writeFile(int[] fileLocations, Data range) {
+      throw new UnsupportedOperationException();
+    }
+
+    public double[][] readFlatField(FlatField template, int[] fileLocation) {
+      throw new UnsupportedOperationException();
+    }
+
+    public void writeFlatField(double[][] values, FlatField template,
+                               int[] fileLocation) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static void check(boolean ok, String message) {
+    if (!ok) {
+      failures++;
+      System.out.println("FAILED: " + message);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package visad.test;
+
+import visad.FlatField;
+import visad.FunctionType;
+import visad.Integer1DSet;
+import visad.Real;
+import visad.RealType;
+import visad.SI;
+import visad.formula.FormulaManager;
+import visad.formula.FormulaUtil;
+
+/**
+ * Headless test of formulas whose element-wise FlatField operations are
+ * fused into one pass: fused results must match the unfused Data
+ * methods, and an operation the Units of its operands do not allow,
+ * such as the square root of a field in metres, must be reported as an
+ * evaluation error rather than leave the formula uncomputed.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true visad.test.FormulaFusionTest</code>.
+ */
+public class FormulaFusionTest {
+
+  private static final int N = 5000;
+
+  private static int failures = 0;
+
+  public static void main(String[] args) throws Exception {
+    try {
+      run();
+    } finally {
+      System.out.println(failures == 0 ? "PASSED" : failures + " FAILED");
+      System.exit(failures == 0 ? 0 : 1);
+    }
+  }
+
+  private static void run() throws Exception {
+    RealType index = RealType.getRealType("fusion_index");
+    RealType length = RealType.getRealType("fusion_length", SI.meter);
+    RealType count = RealType.getRealType("fusion_count");
+    FlatField p = makeField(new FunctionType(index, length), index);
+    FlatField q = makeField(new FunctionType(index, count), index);
+
+    FormulaManager fm = FormulaUtil.createStandardManager();
+    fm.setThing("p", p);
+    fm.setThing("q", q);
+
+    // fused result matches the Data methods
+    fm.assignFormula("r", "q * 2 + sqrt(q)");
+    FlatField expected =
+      (FlatField) q.multiply(new Real(2)).add(q.sqrt());
+    FlatField r = (FlatField) waitFor(fm, "r");
+    check(r != null, "q * 2 + sqrt(q) not computed");
+    if (r != null) {
+      float[][] a = r.getFloats(false);
+      float[][] b = expected.getFloats(false);
+      for (int i=0; i<N; i++) {
+        if (a[0][i] != b[0][i]) {
+          check(false, "sample " + i + " is " + a[0][i] + ", expected " +
+                b[0][i]);
+          break;
+        }
+      }
+    }
+
+    // square root of metres has no Unit: an error, not a hang
+    String[] formulas = {"sqrt(p)", "p + q * 0 + sqrt(p)"};
+    for (int i=0; i<formulas.length; i++) {
+      String name = "bad" + i;
+      fm.assignFormula(name, formulas[i]);
+      waitFor(fm, name);
+      String[] errors = fm.getErrors(name);
+      check(errors != null && errors.length > 0,
+            formulas[i] + " did not report an evaluation error");
+      if (errors != null && errors.length > 0) {
+        System.out.println(formulas[i] + ": " + errors[0]);
+      }
+    }
+  }
+
+  private static FlatField makeField(FunctionType type, RealType index)
+          throws Exception {
+    FlatField field = new FlatField(type, new Integer1DSet(index, N));
+    float[][] values = new float[1][N];
+    for (int i=0; i<N; i++) values[0][i] = i;
+    field.setSamples(values, false);
+    return field;
+  }
+
+  /** wait for a formula, failing rather than hanging if it never
+      completes */
+  private static Object waitFor(final FormulaManager fm, final String name)
+          throws Exception {
+    Thread waiter = new Thread(new Runnable() {
+      public void run() {
+        try {
+          fm.waitForFormula(name);
+        }
+        catch (Exception exc) { }
+      }
+    });
+    waiter.start();
+    waiter.join(10000);
+    if (waiter.isAlive()) {
+      check(false, "formula " + name + " never completed");
+      return null;
+    }
+    return fm.getThing(name);
+  }
+
+  private static void check(boolean ok, String message) {
+    if (!ok) {
+      failures++;
+      System.out.println("FAILED: " + message);
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package visad.test;
+
+import visad.Data;
+import visad.FieldImpl;
+import visad.FlatField;
+import visad.FramePrefetcher;
+import visad.FunctionType;
+import visad.Integer1DSet;
+import visad.RealType;
+import visad.VisADException;
+import visad.data.CacheStrategy;
+import visad.data.FileAccessor;
+import visad.data.FileFlatField;
+
+/**
+ * Headless test of the frames a FramePrefetcher reads ahead when frames
+ * are needed in index order: frames passed to skip (those whose
+ * branches are reused) or marked done up front must never be read, and
+ * reads must not wrap around past the last frame to frames before the
+ * current one.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true visad.test.FramePrefetcherTest</code>.
+ */
+public class FramePrefetcherTest {
+
+  private static final int FRAMES = 12;
+
+  private static final int N = 1024;
+
+  private static int failures = 0;
+
+  public static void main(String[] args) throws Exception {
+    try {
+      run();
+    } finally {
+      System.out.println(failures == 0 ? "PASSED" : failures + " FAILED");
+      System.exit(failures == 0 ? 0 : 1);
+    }
+  }
+
+  private static void run() throws Exception {
+    RealType index = RealType.getRealType("fpt_index");
+    RealType value = RealType.getRealType("fpt_value");
+    RealType time = RealType.getRealType("fpt_time");
+    FunctionType type = new FunctionType(index, value);
+    Integer1DSet set = new Integer1DSet(index, N);
+
+    // frames 0 to 5 are reused, so only 6 to 11 are transformed
+    int[] reads = new int[FRAMES];
+    FieldImpl field = makeField(time, type, set, reads);
+    FramePrefetcher prefetcher = new FramePrefetcher(null, field, null, null);
+    try {
+      for (int i=0; i<FRAMES; i++) {
+        if (i < FRAMES / 2) {
+          prefetcher.skip(i);
+        }
+        else {
+          prefetcher.getSample(i);
+        }
+      }
+      settle();
+    }
+    finally {
+      prefetcher.close();
+    }
+    System.out.println("skipped: " + prefetcher);
+    check(prefetcher.getLookahead() > 0, "no frames read ahead");
+    for (int i=0; i<FRAMES / 2; i++) {
+      check(reads[i] == 0, "reused frame " + i + " read " + reads[i] +
+            " times");
+    }
+    for (int i=FRAMES / 2; i<FRAMES; i++) {
+      check(reads[i] == 1, "frame " + i + " read " + reads[i] + " times");
+    }
+
+    // frames marked done up front (not selected) are never read, and
+    // the frames before the first one transformed are not read when
+    // the last frames are
+    reads = new int[FRAMES];
+    field = makeField(time, type, set, reads);
+    boolean[] done = new boolean[FRAMES];
+    for (int i=0; i<FRAMES; i+=3) done[i] = true;
+    prefetcher = new FramePrefetcher(null, field, null, done);
+    try {
+      for (int i=FRAMES / 2; i<FRAMES; i++) {
+        if (!done[i]) prefetcher.getSample(i);
+      }
+      settle();
+    }
+    finally {
+      prefetcher.close();
+    }
+    System.out.println("unselected: " + prefetcher);
+    for (int i=0; i<FRAMES; i++) {
+      int expected = (done[i] || i < FRAMES / 2) ? 0 : 1;
+      check(reads[i] == expected, "frame " + i + " read " + reads[i] +
+            " times, expected " + expected);
+    }
+  }
+
+  private static FieldImpl makeField(RealType time, FunctionType type,
+                                     Integer1DSet set, int[] reads)
+          throws Exception {
+    FieldImpl field =
+      new FieldImpl(new FunctionType(time, type), new Integer1DSet(time, FRAMES));
+    CacheStrategy strategy = new CacheStrategy();
+    for (int i=0; i<FRAMES; i++) {
+      field.setSample(i, new FileFlatField(
+        new CountingAccessor(type, set, i, reads), strategy), false);
+    }
+    return field;
+  }
+
+  /** give reads queued on the prefetch threads time to run */
+  private static void settle() throws InterruptedException {
+    Thread.sleep(1000);
+  }
+
+  /** makes one frame in memory, counting the reads of each frame */
+  private static class CountingAccessor extends FileAccessor {
+
+    private final FunctionType type;
+    private final Integer1DSet set;
+    private final int frame;
+    private final int[] reads;
+
+    CountingAccessor(FunctionType type, Integer1DSet set, int frame,
+                     int[] reads) {
+      this.type = type;
+      this.set = set;
+      this.frame = frame;
+      this.reads = reads;
+    }
+
+    public FlatField getFlatField() throws VisADException {
+      synchronized (reads) {
+        reads[frame]++;
+      }
+      float[][] values = new float[1][N];
+      java.util.Arrays.fill(values[0], frame);
+      FlatField field = new FlatField(type, set);
+      try {
+        field.setSamples(values, false);
+      }
+      catch (java.rmi.RemoteException exc) {
+        throw new VisADException(exc.toString());
+      }
+      return field;
+    }
+
+    public FunctionType getFunctionType() {
+      return type;
+    }
+
+    public void writeFile(int[] fileLocations, Data range) {
+      throw new UnsupportedOperationException();
+    }
+
+    public double[][] readFlatField(FlatField template, int[] fileLocation) {
+      throw new UnsupportedOperationException();
+    }
+
+    public void writeFlatField(double[][] values, FlatField template,
+                               int[] fileLocation) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static void check(boolean ok, String message) {
+    if (!ok) {
+      failures++;
+      System.out.println("FAILED: " + message);
+    }
+  }
+}
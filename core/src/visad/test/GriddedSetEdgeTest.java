@@ -0,0 +1,99 @@
+package visad.test;
+
+import java.util.Random;
+
+import visad.Gridded3DSet;
+import visad.RealTupleType;
+
+/**
+ * Headless test of Gridded3DSet.valueToGrid for points just outside a
+ * curvilinear grid.  With enough points valueToGrid starts its walks
+ * from a spatial index of the grid boxes; points outside the grid must
+ * still be extrapolated from the same edge box as before, and not end
+ * up exactly one box off.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true visad.test.GriddedSetEdgeTest</code>.
+ */
+public class GriddedSetEdgeTest {
+
+  private static final int M = 48;
+
+  private static final int POINTS = 20000;
+
+  /** points near the grid edge, and the grid coordinates expected
+      for them */
+  private static final float[][] EDGE = {
+    {46.944473f, 38.095825f, 28.033142f, 47.132214f, 38.095825f, 28.032982f},
+    {14.993366f, 47.427082f, 17.078873f, 15.073722f, 47.427063f, 17.0662f},
+    {12.987362f, 26.215054f, -0.39969945f,
+     13.014357f, 26.215054f, -0.45292687f},
+  };
+
+  private static int failures = 0;
+
+  public static void main(String[] args) throws Exception {
+    try {
+      run();
+    } finally {
+      System.out.println(failures == 0 ? "PASSED" : failures + " FAILED");
+      System.exit(failures == 0 ? 0 : 1);
+    }
+  }
+
+  private static void run() throws Exception {
+    // a grid warped in x and z
+    float[][] samples = new float[3][M * M * M];
+    for (int k=0; k<M; k++) {
+      for (int j=0; j<M; j++) {
+        for (int i=0; i<M; i++) {
+          int q = (k * M + j) * M + i;
+          samples[0][q] = i + 0.3f * (float) Math.sin(k * 0.2);
+          samples[1][q] = j;
+          samples[2][q] = k + 0.2f * (float) Math.cos(i * 0.1);
+        }
+      }
+    }
+    Gridded3DSet set = new Gridded3DSet(
+      RealTupleType.SpatialCartesian3DTuple, samples, M, M, M);
+
+    // enough points, inside and around the grid, to use the index
+    Random random = new Random(1);
+    float[][] values = new float[3][POINTS];
+    for (int i=0; i<POINTS; i++) {
+      for (int d=0; d<3; d++) {
+        values[d][i] = random.nextFloat() * (M + 4) - 2;
+      }
+    }
+    float[][] grid = set.valueToGrid(values);
+
+    for (int e=0; e<EDGE.length; e++) {
+      int i = find(values, EDGE[e]);
+      check(i >= 0, "edge point " + e + " not generated");
+      if (i < 0) continue;
+      for (int d=0; d<3; d++) {
+        float expected = EDGE[e][3 + d];
+        check(Math.abs(grid[d][i] - expected) < 1.0e-3f,
+              "edge point " + e + " grid[" + d + "] is " + grid[d][i] +
+              ", expected " + expected);
+      }
+    }
+  }
+
+  private static int find(float[][] values, float[] point) {
+    for (int i=0; i<values[0].length; i++) {
+      if (Math.abs(values[0][i] - point[0]) < 1.0e-5f &&
+          Math.abs(values[1][i] - point[1]) < 1.0e-5f &&
+          Math.abs(values[2][i] - point[2]) < 1.0e-5f) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static void check(boolean ok, String message) {
+    if (!ok) {
+      failures++;
+      System.out.println("FAILED: " + message);
+    }
+  }
+}
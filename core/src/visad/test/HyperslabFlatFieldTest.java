@@ -0,0 +1,211 @@
+package visad.test;
+
+import java.io.File;
+import java.util.Random;
+
+import visad.Data;
+import visad.FieldImpl;
+import visad.FlatField;
+import visad.FunctionType;
+import visad.Gridded2DSet;
+import visad.Linear2DSet;
+import visad.RealTupleType;
+import visad.RealType;
+import visad.SI;
+import visad.Set;
+import visad.Tuple;
+import visad.data.netcdf.Plain;
+import visad.data.netcdf.in.HyperslabFlatField;
+import visad.data.netcdf.in.Strategy;
+
+/**
+ * Headless test of the netCDF import of a field as a HyperslabFlatField
+ * against an in-memory import of the same file: single samples, index
+ * boxes, and nearest neighbor and weighted average resampling onto part
+ * of the domain must give the values of the in-memory field.  Weighted
+ * averages may differ slightly: the box read for a resampling has its
+ * own domain Set, offset from that of the whole field, so the float
+ * interpolation weights are rounded differently.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true visad.test.HyperslabFlatFieldTest</code>.
+ */
+public class HyperslabFlatFieldTest {
+
+  private static final int NX = 400;
+  private static final int NY = 300;
+
+  /** relative tolerance of weighted average resampling; the weights
+      are good to about 1.0e-4 of a grid step, and neighbouring values
+      differ by up to a fifth of their magnitude */
+  private static final double TOLERANCE = 1.0e-5;
+
+  private static int failures = 0;
+
+  public static void main(String[] args) throws Exception {
+    try {
+      run();
+    } finally {
+      System.out.println(failures == 0 ? "PASSED" : failures + " FAILED");
+      System.exit(failures == 0 ? 0 : 1);
+    }
+  }
+
+  private static void run() throws Exception {
+    RealType lon = RealType.Longitude;
+    RealType lat = RealType.Latitude;
+    RealType temp = RealType.getRealType("hfft_temp", SI.kelvin);
+    RealType rh = RealType.getRealType("hfft_rh");
+    RealTupleType domain = new RealTupleType(lon, lat);
+    FunctionType type =
+      new FunctionType(domain, new RealTupleType(temp, rh));
+    Linear2DSet set = new Linear2DSet(domain, -120, -80, NX, 20, 50, NY);
+    FlatField field = new FlatField(type, set);
+    float[][] values = new float[2][NX * NY];
+    Random random = new Random(2);
+    for (int i=0; i<NX * NY; i++) {
+      values[0][i] = 250 + random.nextFloat() * 50;
+      values[1][i] = random.nextFloat();
+      if (i % 501 == 0) values[0][i] = Float.NaN;
+    }
+    field.setSamples(values);
+
+    File file = File.createTempFile("hfftest", ".nc");
+    file.deleteOnExit();
+    file.delete();
+    Plain plain = new Plain();
+    plain.save(file.getPath(), field, true);
+    FlatField memory = open(file, Strategy.IN_MEMORY);
+    check(!(memory instanceof HyperslabFlatField),
+          "in-memory import is a HyperslabFlatField");
+    float[][] all = memory.getFloats(false);
+
+    // single samples, including ones at tile boundaries
+    HyperslabFlatField hyper = openHyperslab(file);
+    int[] indices = {0, 1, 500, 501, 777, 65535, 65536, 65535 + NX,
+                     NX * NY - 1};
+    for (int k=0; k<indices.length; k++) {
+      int i = indices[k];
+      check(hyper.getSample(i).equals(memory.getSample(i)),
+            "sample " + i + " is " + hyper.getSample(i) + ", expected " +
+            memory.getSample(i));
+    }
+    check(!hyper.haveData(), "single samples read all values");
+
+    // an index box, read before any other access
+    hyper = openHyperslab(file);
+    int[] first = {10, 20};
+    int[] lengths = {300, 250};
+    float[][] box = hyper.getFloats(first, lengths);
+    int bad = 0;
+    for (int c=0; c<2; c++) {
+      for (int j=0; j<lengths[1]; j++) {
+        for (int i=0; i<lengths[0]; i++) {
+          int q = (j + first[1]) * NX + i + first[0];
+          if (!same(box[c][j * lengths[0] + i], all[c][q])) bad++;
+        }
+      }
+    }
+    check(bad == 0, bad + " values of the index box differ");
+    check(!hyper.haveData(), "index box read all values");
+
+    // resampling onto a grid inside the domain, and onto points at and
+    // beyond its edges
+    Set grid = new Linear2DSet(domain, -101.3, -99.1, 37, 31.7, 33.2, 21);
+    Set points = new Gridded2DSet(domain, new float[][] {
+      {-100.05f, -90.13f, -119.99f, -80f, -79.9f, -120f},
+      {30.01f, 40.5f, 20.0f, 50f, 50.02f, 35f}}, 6);
+    Set[] sets = {grid, points};
+    int[] modes = {Data.NEAREST_NEIGHBOR, Data.WEIGHTED_AVERAGE};
+    for (int s=0; s<sets.length; s++) {
+      for (int m=0; m<modes.length; m++) {
+        String name = (s == 0 ? "grid" : "points") + ", " +
+          (modes[m] == Data.NEAREST_NEIGHBOR ? "nearest neighbor" :
+           "weighted average");
+        hyper = openHyperslab(file);
+        float[][] expected = ((FlatField) memory.resample(
+          sets[s], modes[m], Data.NO_ERRORS)).getFloats(false);
+        float[][] got = ((FlatField) hyper.resample(
+          sets[s], modes[m], Data.NO_ERRORS)).getFloats(false);
+        double tolerance =
+          (modes[m] == Data.NEAREST_NEIGHBOR) ? 0 : TOLERANCE;
+        compare(got, expected, tolerance, name);
+        // the points span the whole domain, so they need all values
+        if (sets[s] == grid) {
+          check(!hyper.haveData(), name + ": resampling read all values");
+        }
+      }
+    }
+
+    // all values
+    hyper = openHyperslab(file);
+    float[][] floats = hyper.getFloats(false);
+    bad = 0;
+    for (int c=0; c<2; c++) {
+      for (int i=0; i<NX * NY; i++) {
+        if (!same(floats[c][i], all[c][i])) bad++;
+      }
+    }
+    check(bad == 0, bad + " values differ");
+  }
+
+  private static void compare(float[][] got, float[][] expected,
+                              double tolerance, String name) {
+    int bad = 0;
+    double worst = 0;
+    for (int c=0; c<expected.length; c++) {
+      for (int i=0; i<expected[c].length; i++) {
+        float a = got[c][i];
+        float b = expected[c][i];
+        if (same(a, b)) continue;
+        double diff = Math.abs(a - b);
+        worst = Math.max(worst, diff);
+        if (Float.isNaN(a) || Float.isNaN(b) ||
+            diff > tolerance * Math.max(1.0, Math.abs(b))) {
+          bad++;
+        }
+      }
+    }
+    System.out.println(name + ": largest difference " + worst);
+    check(bad == 0, name + ": " + bad + " values differ");
+  }
+
+  private static boolean same(float a, float b) {
+    return Float.floatToIntBits(a) == Float.floatToIntBits(b);
+  }
+
+  private static HyperslabFlatField openHyperslab(File file)
+          throws Exception {
+    FlatField field = open(file, Strategy.HYPERSLAB_FLAT_FIELDS);
+    check(field instanceof HyperslabFlatField,
+          "hyperslab import is a " + field.getClass().getName());
+    return (HyperslabFlatField) field;
+  }
+
+  /** the first FlatField in the data of file */
+  private static FlatField open(File file, Strategy strategy)
+          throws Exception {
+    return find(new Plain().open(file.getPath(), strategy));
+  }
+
+  private static FlatField find(Data data) throws Exception {
+    if (data instanceof FlatField) return (FlatField) data;
+    if (data instanceof Tuple) {
+      Tuple tuple = (Tuple) data;
+      for (int i=0; i<tuple.getDimension(); i++) {
+        FlatField field = find(tuple.getComponent(i));
+        if (field != null) return field;
+      }
+    }
+    if (data instanceof FieldImpl) {
+      return find(((FieldImpl) data).getSample(0));
+    }
+    return null;
+  }
+
+  private static void check(boolean ok, String message) {
+    if (!ok) {
+      failures++;
+      System.out.println("FAILED: " + message);
+    }
+  }
+}
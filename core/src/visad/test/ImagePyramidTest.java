@@ -0,0 +1,335 @@
+package visad.test;
+
+import java.util.Arrays;
+
+import visad.DataReferenceImpl;
+import visad.Display;
+import visad.DisplayImpl;
+import visad.FieldImpl;
+import visad.FlatField;
+import visad.FunctionType;
+import visad.ImagePyramid;
+import visad.ImagePyramidLevels;
+import visad.Integer1DSet;
+import visad.Linear2DSet;
+import visad.MouseBehavior;
+import visad.ProjectionControl;
+import visad.RealTupleType;
+import visad.RealType;
+import visad.ScalarMap;
+import visad.bom.ImageRendererJ3D;
+import visad.java2d.DisplayImplJ2D;
+import visad.java3d.DisplayImplJ3D;
+import visad.java3d.TwoDDisplayRendererJ3D;
+
+/**
+ * Headless test of the level of detail selection of
+ * <code>ImagePyramid</code>: an image much larger than the display is
+ * shown, and the level selected at the default projection and after
+ * zooming in must have at least one sample per pixel while the next
+ * level would not, and must hold every 2^L-th sample of the image.
+ * <p>
+ * The <code>ImagePyramidLevels</code> an image renderer transforms
+ * through is run against the same display: it must ask for a new
+ * transform only when zooming changes the level, hand out the selected
+ * level of each image, and count the samples handed out.
+ * <p>
+ * The image is then shown with an <code>ImageRendererJ3D</code> in an
+ * offscreen <code>DisplayImplJ3D</code>, and the level the renderer
+ * transforms and the number of samples it transforms are checked against
+ * the footprint, before and after zooming in.  That part is skipped when
+ * Java3D cannot be loaded or there is no graphics environment.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true visad.test.ImagePyramidTest</code>,
+ * or without <code>-Djava.awt.headless=true</code> to include the renderer.
+ */
+public class ImagePyramidTest {
+
+  private static final int NX = 2049;
+  private static final int NY = 1025;
+
+  private static int failures = 0;
+
+  public static void main(String[] args) throws Exception {
+    try {
+      run();
+    } finally {
+      System.out.println(failures == 0 ? "PASSED" : failures + " FAILED");
+      System.exit(failures == 0 ? 0 : 1);
+    }
+  }
+
+  private static void run() throws Exception {
+    RealType x = RealType.getRealType("pyramid_x");
+    RealType y = RealType.getRealType("pyramid_y");
+    RealType value = RealType.getRealType("pyramid_value");
+    RealType time = RealType.getRealType("pyramid_time");
+    RealTupleType domain = new RealTupleType(x, y);
+    FunctionType type = new FunctionType(domain, value);
+
+    FlatField image =
+      new FlatField(type, new Linear2DSet(domain, -1.0, 1.0, NX,
+                                          -0.5, 0.5, NY));
+    float[][] values = new float[1][NX * NY];
+    for (int i=0; i<NX * NY; i++) values[0][i] = i;
+    image.setSamples(values, false);
+
+    DisplayImpl display = new DisplayImplJ2D("ImagePyramidTest", 256, 256);
+    ScalarMap xmap = new ScalarMap(x, Display.XAxis);
+    ScalarMap ymap = new ScalarMap(y, Display.YAxis);
+    xmap.setRange(-1.0, 1.0);
+    ymap.setRange(-1.0, 1.0);
+    display.addMap(xmap);
+    display.addMap(ymap);
+    display.addMap(new ScalarMap(value, Display.RGB));
+    DataReferenceImpl ref = new DataReferenceImpl("image");
+    ref.setData(image);
+    display.addReference(ref);
+
+    ImagePyramid pyramid = ImagePyramid.getPyramid(image);
+    check(pyramid != null, "no pyramid for " + NX + " by " + NY + " image");
+    if (pyramid == null) return;
+    System.out.println(pyramid);
+
+    int[] pixels = waitForPixels(pyramid, display, null);
+    check(pixels != null, "no screen footprint");
+    if (pixels == null) return;
+    int level = checkLevel(pyramid, display, pixels);
+    check(level > 0, "large image not decimated at default scale");
+
+    // a movie of the image and a copy, transformed at the default scale
+    FieldImpl movie =
+      new FieldImpl(new FunctionType(time, type), new Integer1DSet(time, 2));
+    movie.setSample(0, image, false);
+    movie.setSample(1, (FlatField) image.clone(), false);
+    ImagePyramidLevels levels = new ImagePyramidLevels();
+    check(!levels.isLevelPending(display),
+          "transform pending before the first transform");
+    transformLevels(levels, movie, display, level);
+    check(levels.getLevelChanged(), "first transform kept level 0");
+    check(!levels.isLevelPending(display),
+          "transform pending at an unchanged projection");
+
+    // zoom in by 8, so the image covers 8 times as many pixels
+    ProjectionControl control = display.getProjectionControl();
+    double[] matrix = control.getMatrix();
+    MouseBehavior behavior = display.getDisplayRenderer().getMouseBehavior();
+    double[] zoom = behavior.make_matrix(0.0, 0.0, 0.0, 8.0, 0.0, 0.0, 0.0);
+    control.setMatrix(behavior.multiply_matrix(zoom, matrix));
+    int[] zoomed = waitForPixels(pyramid, display, pixels);
+    check(zoomed != null && zoomed[0] > pixels[0],
+          "footprint did not grow when zoomed");
+    if (zoomed == null) return;
+    int zoomedLevel = checkLevel(pyramid, display, zoomed);
+    check(zoomedLevel < level, "level did not drop when zoomed: " +
+          zoomedLevel + " >= " + level);
+
+    check(levels.isLevelPending(display),
+          "no transform pending when zooming changed the level");
+    transformLevels(levels, movie, display, zoomedLevel);
+    check(levels.getLevelChanged(), "zoomed transform kept the level");
+    check(!levels.isLevelPending(display),
+          "transform pending after transforming the zoomed level");
+    transformLevels(levels, movie, display, zoomedLevel);
+    check(!levels.getLevelChanged(),
+          "level changed at an unchanged projection");
+
+    display.destroy();
+
+    if (java.awt.GraphicsEnvironment.isHeadless()) {
+      System.out.println("headless: ImageRendererJ3D not tested");
+      return;
+    }
+    try {
+      runRenderer(image, x, y, value);
+    }
+    catch (NoClassDefFoundError e) {
+      System.out.println("no Java3D: ImageRendererJ3D not tested: " + e);
+    }
+    catch (UnsatisfiedLinkError e) {
+      System.out.println("no Java3D: ImageRendererJ3D not tested: " + e);
+    }
+  }
+
+  /** show image through an ImageRendererJ3D, and check the level and
+      number of samples it transforms, before and after zooming in */
+  private static void runRenderer(FlatField image, RealType x, RealType y,
+                                  RealType value)
+          throws Exception {
+    DisplayImpl display =
+      new DisplayImplJ3D("ImagePyramidTestJ3D", new TwoDDisplayRendererJ3D(),
+                         256, 256);
+    ScalarMap xmap = new ScalarMap(x, Display.XAxis);
+    ScalarMap ymap = new ScalarMap(y, Display.YAxis);
+    xmap.setRange(-1.0, 1.0);
+    ymap.setRange(-1.0, 1.0);
+    display.addMap(xmap);
+    display.addMap(ymap);
+    display.addMap(new ScalarMap(value, Display.RGB));
+    DataReferenceImpl ref = new DataReferenceImpl("image");
+    ref.setData(image);
+    ImageRendererJ3D renderer = new ImageRendererJ3D();
+    display.addReferences(renderer, ref);
+
+    int level = waitForTransform(renderer, -1);
+    check(level >= 0, "ImageRendererJ3D did not transform the image");
+    if (level < 0) return;
+    checkRendererLevel(renderer, display);
+    check(level > 0, "ImageRendererJ3D did not decimate the large image");
+
+    ProjectionControl control = display.getProjectionControl();
+    double[] matrix = control.getMatrix();
+    MouseBehavior behavior = display.getDisplayRenderer().getMouseBehavior();
+    double[] zoom = behavior.make_matrix(0.0, 0.0, 0.0, 8.0, 0.0, 0.0, 0.0);
+    control.setMatrix(behavior.multiply_matrix(zoom, matrix));
+    int zoomedLevel = waitForTransform(renderer, level);
+    check(zoomedLevel >= 0 && zoomedLevel < level,
+          "ImageRendererJ3D did not re-transform at a finer level when " +
+          "zoomed: " + zoomedLevel);
+    if (zoomedLevel >= 0) checkRendererLevel(renderer, display);
+
+    display.destroy();
+  }
+
+  /** transform movie through levels as an image renderer does, and
+      check the level and the samples it hands out */
+  private static void transformLevels(ImagePyramidLevels levels,
+                                      FieldImpl movie, DisplayImpl display,
+                                      int expected)
+          throws Exception {
+    levels.begin(movie, display);
+    int level = levels.getLastLevel();
+    check(level == expected,
+          "ImagePyramidLevels selected level " + level + ", expected " +
+          expected);
+    int[] lengths = levels.getLastPyramid().getLengths(level);
+    for (int i=0; i<movie.getLength(); i++) {
+      FlatField frame = (FlatField) movie.getSample(i);
+      FlatField field = levels.getLevel(frame);
+      check(field.getLength() == lengths[0] * lengths[1],
+            "ImagePyramidLevels handed out " + field.getLength() +
+            " samples of frame " + i + ", expected " +
+            lengths[0] * lengths[1]);
+      FlatField direct = ImagePyramid.getPyramid(frame).getLevel(level);
+      check(Arrays.equals(field.getFloats(false)[0],
+                          direct.getFloats(false)[0]),
+            "ImagePyramidLevels handed out another level of frame " + i);
+    }
+    levels.end();
+    int samples = levels.getTransformedSamples();
+    System.out.println("ImagePyramidLevels: level " + level + ", " +
+                       samples + " samples transformed");
+    check(samples == movie.getLength() * lengths[0] * lengths[1],
+          "ImagePyramidLevels transformed " + samples +
+          " samples, expected " +
+          movie.getLength() * lengths[0] * lengths[1]);
+  }
+
+  /** check the renderer transformed the level selected for the current
+      footprint, and only the samples of that level */
+  private static void checkRendererLevel(ImageRendererJ3D renderer,
+                                         DisplayImpl display)
+          throws Exception {
+    ImagePyramid pyramid = renderer.getLastPyramid();
+    check(pyramid != null, "ImageRendererJ3D has no pyramid");
+    if (pyramid == null) return;
+    int level = renderer.getLastPyramidLevel();
+    int[] pixels = pyramid.getPixels(display);
+    int[] lengths = pyramid.getLengths(level);
+    int samples = renderer.getLastTransformedSamples();
+    System.out.println("ImageRendererJ3D: footprint " +
+                       (pixels == null ? "unknown" :
+                        pixels[0] + " by " + pixels[1] + " pixels") +
+                       ": level " + level + ", " + samples +
+                       " samples transformed");
+
+    check(level == pyramid.selectLevel(display),
+          "ImageRendererJ3D transformed level " + level + ", expected " +
+          pyramid.selectLevel(display));
+    check(samples == lengths[0] * lengths[1],
+          "ImageRendererJ3D transformed " + samples + " samples, expected " +
+          lengths[0] * lengths[1]);
+  }
+
+  /** wait until the renderer has transformed the image at a level other
+      than old; return the level, or -1 on time out */
+  private static int waitForTransform(ImageRendererJ3D renderer, int old)
+          throws Exception {
+    for (int i=0; i<100; i++) {
+      if (renderer.getLastTransformedSamples() > 0 &&
+          renderer.getLastPyramidLevel() != old) {
+        return renderer.getLastPyramidLevel();
+      }
+      Thread.sleep(100);
+    }
+    return -1;
+  }
+
+  /** check the level selected for pixels, and the samples it holds */
+  private static int checkLevel(ImagePyramid pyramid, DisplayImpl display,
+                                int[] pixels)
+          throws Exception {
+    int level = pyramid.selectLevel(display);
+    int[] lengths = pyramid.getLengths(level);
+    System.out.println("footprint " + pixels[0] + " by " + pixels[1] +
+                       " pixels: level " + level + ", " + lengths[0] +
+                       " by " + lengths[1] + " samples");
+
+    check(lengths[0] >= pixels[0] && lengths[1] >= pixels[1],
+          "level " + level + " has fewer samples than pixels");
+    if (level + 1 < pyramid.getLevelCount()) {
+      int[] next = pyramid.getLengths(level + 1);
+      check(next[0] < pixels[0] || next[1] < pixels[1],
+            "level " + (level + 1) + " would also do");
+    }
+
+    FlatField field = pyramid.getLevel(level);
+    check(field.getLength() == lengths[0] * lengths[1],
+          "level " + level + " transforms " + field.getLength() +
+          " samples, expected " + lengths[0] * lengths[1]);
+
+    float[][] values = field.getFloats(false);
+    int stride = 1 << level;
+    for (int j=0; j<lengths[1]; j++) {
+      for (int i=0; i<lengths[0]; i++) {
+        float expected = (j * stride) * NX + i * stride;
+        if (values[0][i + j * lengths[0]] != expected) {
+          check(false, "level " + level + " sample (" + i + ", " + j +
+                ") is " + values[0][i + j * lengths[0]] + ", expected " +
+                expected);
+          return level;
+        }
+      }
+    }
+
+    float[][] corner = field.getDomainSet().indexToValue(
+      new int[] {field.getLength() - 1});
+    check(Math.abs(corner[0][0] - 1.0f) < 1.0e-5f &&
+          Math.abs(corner[1][0] - 0.5f) < 1.0e-5f,
+          "level " + level + " domain does not end at (1, 0.5)");
+    return level;
+  }
+
+  /** wait until the display has a screen transform that differs from
+      the footprint old */
+  private static int[] waitForPixels(ImagePyramid pyramid,
+                                     DisplayImpl display, int[] old)
+          throws Exception {
+    for (int i=0; i<100; i++) {
+      int[] pixels = pyramid.getPixels(display);
+      if (pixels != null &&
+          (old == null || pixels[0] != old[0] || pixels[1] != old[1])) {
+        return pixels;
+      }
+      Thread.sleep(100);
+    }
+    return null;
+  }
+
+  private static void check(boolean ok, String message) {
+    if (!ok) {
+      failures++;
+      System.out.println("FAILED: " + message);
+    }
+  }
+}
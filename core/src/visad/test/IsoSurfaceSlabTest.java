@@ -0,0 +1,113 @@
+package visad.test;
+
+import java.util.Arrays;
+
+import visad.Gridded3DSet;
+import visad.RealTupleType;
+import visad.VisADGeometryArray;
+import visad.VisADIndexedTriangleStripArray;
+import visad.VisADTriangleStripArray;
+import visad.util.ParallelLoop;
+
+/**
+ * Headless test of Gridded3DSet.makeIsoSurface computed in slabs of cube
+ * layers on several threads: the strips, vertices, normals and colors
+ * must be the same, bit for bit, as those computed in one piece, also
+ * where the field is missing or equals the isolevel at grid points on
+ * the planes between slabs.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true visad.test.IsoSurfaceSlabTest</code>.
+ */
+public class IsoSurfaceSlabTest {
+
+  private static final int M = 60;
+
+  private static final float ISOLEVEL = 0.3f;
+
+  private static int failures = 0;
+
+  public static void main(String[] args) throws Exception {
+    try {
+      run();
+    } finally {
+      System.out.println(failures == 0 ? "PASSED" : failures + " FAILED");
+      System.exit(failures == 0 ? 0 : 1);
+    }
+  }
+
+  private static void run() throws Exception {
+    // a grid warped in x and z, with missing values and values equal
+    // to the isolevel scattered through it
+    float[][] samples = new float[3][M * M * M];
+    float[] field = new float[M * M * M];
+    byte[][] colors = new byte[4][M * M * M];
+    for (int k=0; k<M; k++) {
+      for (int j=0; j<M; j++) {
+        for (int i=0; i<M; i++) {
+          int q = (k * M + j) * M + i;
+          samples[0][q] = i + 0.3f * (float) Math.sin(k * 0.2);
+          samples[1][q] = j;
+          samples[2][q] = k + 0.2f * (float) Math.cos(i * 0.1);
+          field[q] = (float) (Math.sin(i * 0.2) * Math.cos(j * 0.15) +
+                              Math.sin(k * 0.17));
+          if (q % 997 == 0) field[q] = Float.NaN;
+          if (q % 389 == 0) field[q] = ISOLEVEL;
+          for (int c=0; c<4; c++) colors[c][q] = (byte) (q * (c + 3));
+        }
+      }
+    }
+    Gridded3DSet set = new Gridded3DSet(
+      RealTupleType.SpatialCartesian3DTuple, samples, M, M, M);
+
+    int threshold = ParallelLoop.getThreshold();
+    int threads = ParallelLoop.getMaxThreads();
+    try {
+      ParallelLoop.setThreshold(1);
+      for (int b=0; b<2; b++) {
+        boolean indexed = (b == 1);
+        ParallelLoop.setMaxThreads(1);
+        VisADGeometryArray whole =
+          set.makeIsoSurface(ISOLEVEL, field, colors, indexed);
+        for (int t=2; t<=5; t++) {
+          ParallelLoop.setMaxThreads(t);
+          VisADGeometryArray slabs =
+            set.makeIsoSurface(ISOLEVEL, field, colors, indexed);
+          compare(whole, slabs, (indexed ? "indexed, " : "") + t + " threads");
+        }
+      }
+    }
+    finally {
+      ParallelLoop.setThreshold(threshold);
+      ParallelLoop.setMaxThreads(threads);
+    }
+  }
+
+  private static void compare(VisADGeometryArray whole,
+                              VisADGeometryArray slabs, String name) {
+    check(Arrays.equals(whole.coordinates, slabs.coordinates),
+          name + ": coordinates differ");
+    check(Arrays.equals(whole.normals, slabs.normals),
+          name + ": normals differ");
+    check(Arrays.equals(whole.colors, slabs.colors),
+          name + ": colors differ");
+    if (whole instanceof VisADIndexedTriangleStripArray) {
+      VisADIndexedTriangleStripArray w = (VisADIndexedTriangleStripArray) whole;
+      VisADIndexedTriangleStripArray s = (VisADIndexedTriangleStripArray) slabs;
+      check(Arrays.equals(w.indices, s.indices), name + ": indices differ");
+      check(Arrays.equals(w.stripVertexCounts, s.stripVertexCounts),
+            name + ": strips differ");
+    }
+    else {
+      check(Arrays.equals(((VisADTriangleStripArray) whole).stripVertexCounts,
+                          ((VisADTriangleStripArray) slabs).stripVertexCounts),
+            name + ": strips differ");
+    }
+  }
+
+  private static void check(boolean ok, String message) {
+    if (!ok) {
+      failures++;
+      System.out.println("FAILED: " + message);
+    }
+  }
+}
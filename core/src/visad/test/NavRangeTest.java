@@ -0,0 +1,231 @@
+package visad.test;
+
+import java.util.Random;
+
+import edu.wisc.ssec.mcidas.ABISnav;
+import edu.wisc.ssec.mcidas.AREAnav;
+import edu.wisc.ssec.mcidas.RECTnav;
+import visad.RealTupleType;
+import visad.VisADException;
+import visad.data.mcidas.AREACoordinateSystem;
+import visad.util.ParallelLoop;
+
+/**
+ * Headless test of navigating ranges of points against navigating whole
+ * arrays: for ABIS and RECT navigation, converting ranges of the points,
+ * and converting them through an AREACoordinateSystem split across
+ * threads, must give exactly the values of
+ * {@link AREAnav#toLatLon(float[][])} and {@link AREAnav#toLinEle(float[][])}
+ * (and their double versions), including NaN for missing input points
+ * and for points off the earth.  A subclass overriding a whole array
+ * conversion must not be navigated in parallel, and its override must
+ * be used.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true visad.test.NavRangeTest</code>.
+ */
+public class NavRangeTest {
+
+  private static final int N = 40000;
+
+  private static final int RANGE = 777;
+
+  private static final Random random = new Random(19);
+
+  private static int failures = 0;
+
+  public static void main(String[] args) throws Exception {
+    try {
+      run();
+    } finally {
+      System.out.println(failures == 0 ? "PASSED" : failures + " FAILED");
+      System.exit(failures == 0 ? 0 : 1);
+    }
+  }
+
+  private static void run() throws Exception {
+    int threshold = ParallelLoop.getThreshold();
+    int threads = ParallelLoop.getMaxThreads();
+    try {
+      ParallelLoop.setThreshold(1);
+      ParallelLoop.setMaxThreads(4);
+
+      // the full disk, whose corners are off the earth
+      float[][] disk = points(0, 22140, 0, 22140);
+      compare("ABIS", new ABISnav(abis()), abis(), disk, true);
+      compare("ABIS subclass", new ABISnav(abis()) { }, abis(), disk, true);
+      compare("RECT", new RECTnav(rect()), rect(), points(1, 400, 1, 600), true);
+
+      // subclasses changing the whole array conversions
+      AREAnav shifted = new ShiftedNav(abis());
+      compare("ABIS overriding float conversions", shifted, abis(), disk, false);
+      float[][] latlon = new AREACS(shifted, abis()).toReference(copy(disk));
+      float[][] expected = new ABISnav(abis()).toLatLon(copy(disk));
+      int bad = 0;
+      for (int i=0; i<expected[0].length; i++) {
+        if (!same(latlon[0][i], expected[0][i] + 1)) bad++;
+      }
+      check(bad == 0, "ABIS overriding float conversions: override not " +
+            "used for " + bad + " points");
+      compare("ABIS overriding double conversions",
+              new ABISnav(abis()) {
+                public double[][] toLatLon(double[][] linele) {
+                  return super.toLatLon(linele);
+                }
+              }, abis(), disk, false);
+    }
+    finally {
+      ParallelLoop.setThreshold(threshold);
+      ParallelLoop.setMaxThreads(threads);
+    }
+  }
+
+  /**
+   * Compare range and whole array navigation of linele, and back from
+   * the resulting latitudes and longitudes.
+   */
+  private static void compare(String name, AREAnav nav, int[] block,
+                              float[][] linele, boolean parallel)
+          throws VisADException {
+    check(nav.canNavigateInParallel() == parallel,
+          name + ": canNavigateInParallel is " + !parallel);
+    AREACS cs = new AREACS(nav, block);
+
+    float[][] latlon = nav.toLatLon(copy(linele));
+    int missing = 0;
+    for (int i=0; i<latlon[0].length; i++) {
+      if (Float.isNaN(latlon[0][i])) missing++;
+    }
+    check(missing > 0 && missing < latlon[0].length,
+          name + ": " + missing + " of " + latlon[0].length +
+          " points missing");
+    same(name + ": toReference", cs.toReference(copy(linele)), latlon);
+    same(name + ": toReference of doubles",
+         cs.toReference(toDouble(linele)), nav.toLatLon(toDouble(linele)));
+
+    float[][] back = nav.toLinEle(copy(latlon));
+    same(name + ": fromReference", cs.fromReference(copy(latlon)), back);
+    same(name + ": fromReference of doubles",
+         cs.fromReference(toDouble(latlon)), nav.toLinEle(toDouble(latlon)));
+
+    if (!parallel) return;
+    float[][] values = new float[2][linele[0].length];
+    double[][] doubles = toDouble(linele);
+    for (int i=0; i<values[0].length; i+=RANGE) {
+      int count = Math.min(RANGE, values[0].length - i);
+      nav.toLatLon(linele, values, i, count);
+      nav.toLatLon(doubles, doubles, i, count);
+    }
+    same(name + ": ranges", values, latlon);
+    same(name + ": ranges of doubles", doubles, nav.toLatLon(toDouble(linele)));
+    for (int i=0; i<values[0].length; i+=RANGE) {
+      nav.toLinEle(values, values, i, Math.min(RANGE, values[0].length - i));
+    }
+    same(name + ": ranges back", values, back);
+  }
+
+  /**
+   * random line/element in a box, with a few missing points; points
+   * out of order are not approximated by a spline
+   */
+  private static float[][] points(float line0, float line1,
+                                  float ele0, float ele1) {
+    float[][] linele = new float[2][N];
+    for (int i=0; i<N; i++) {
+      linele[0][i] = ele0 + (ele1 - ele0) * random.nextFloat();
+      linele[1][i] = line0 + (line1 - line0) * random.nextFloat();
+      if (i % 997 == 0) linele[i % 2][i] = Float.NaN;
+    }
+    return linele;
+  }
+
+  /** ABIS navigation at 75 degrees west */
+  private static int[] abis() {
+    int[] nav = new int[640];
+    nav[0] = AREAnav.ABIS;
+    nav[6] = 750000;
+    return nav;
+  }
+
+  /** RECT navigation from 50N 120W in steps of 0.1 degree */
+  private static int[] rect() {
+    int[] nav = new int[640];
+    nav[0] = AREAnav.RECT;
+    nav[1] = 1;
+    nav[2] = 500000;
+    nav[3] = 1;
+    nav[4] = 1200000;
+    nav[5] = 1000;
+    nav[6] = 1000;
+    nav[10] = 1;
+    return nav;
+  }
+
+  private static float[][] copy(float[][] values) {
+    return new float[][] {values[0].clone(), values[1].clone()};
+  }
+
+  private static double[][] toDouble(float[][] values) {
+    return AREAnav.floatToDouble(values);
+  }
+
+  private static void same(String name, float[][] got, float[][] expected) {
+    int bad = 0;
+    for (int c=0; c<2; c++) {
+      for (int i=0; i<expected[c].length; i++) {
+        if (!same(got[c][i], expected[c][i])) bad++;
+      }
+    }
+    check(bad == 0, name + ": " + bad + " values differ");
+  }
+
+  private static void same(String name, double[][] got, double[][] expected) {
+    int bad = 0;
+    for (int c=0; c<2; c++) {
+      for (int i=0; i<expected[c].length; i++) {
+        if (Double.compare(got[c][i], expected[c][i]) != 0) bad++;
+      }
+    }
+    check(bad == 0, name + ": " + bad + " values differ");
+  }
+
+  private static boolean same(float a, float b) {
+    return Float.floatToIntBits(a) == Float.floatToIntBits(b);
+  }
+
+  /** ABIS navigation with latitudes of float conversions moved north */
+  private static class ShiftedNav extends ABISnav {
+
+    ShiftedNav(int[] nav) {
+      super(nav);
+    }
+
+    public float[][] toLatLon(float[][] linele) {
+      float[][] latlon = super.toLatLon(linele);
+      for (int i=0; i<latlon[indexLat].length; i++) latlon[indexLat][i] += 1;
+      return latlon;
+    }
+  }
+
+  /** AREACoordinateSystem navigating with nav */
+  private static class AREACS extends AREACoordinateSystem {
+
+    private final AREAnav nav;
+
+    AREACS(AREAnav nav, int[] block) throws VisADException {
+      super(RealTupleType.LatitudeLongitudeTuple, new int[64], block, null,
+            false);
+      this.nav = nav;
+    }
+
+    protected AREAnav getAreaNav() {
+      return nav;
+    }
+  }
+
+  private static void check(boolean ok, String message) {
+    if (!ok) {
+      failures++;
+      System.out.println("FAILED: " + message);
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package visad.test;
+
+import java.util.Arrays;
+
+import visad.FlatField;
+import visad.FunctionType;
+import visad.Integer1DSet;
+import visad.RealTuple;
+import visad.RealTupleType;
+import visad.RealType;
+import visad.RemoteFlatFieldImpl;
+import visad.RemoteFlatFieldProxy;
+
+/**
+ * Headless test of RemoteFlatFieldProxy against a RemoteFlatFieldImpl in
+ * the same JVM: intervals read through a small chunk cache, and the
+ * FlatField adapting the proxy, must hold the values of the field, and
+ * reading the whole field through a cache of two chunks must fetch each
+ * chunk only once and keep only the last two.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true visad.test.RemoteFlatFieldProxyTest</code>.
+ */
+public class RemoteFlatFieldProxyTest {
+
+  private static final int N = 1000;
+
+  private static final int CHUNK = 64;
+
+  private static int failures = 0;
+
+  public static void main(String[] args) throws Exception {
+    try {
+      run();
+    } finally {
+      System.out.println(failures == 0 ? "PASSED" : failures + " FAILED");
+      System.exit(failures == 0 ? 0 : 1);
+    }
+  }
+
+  private static void run() throws Exception {
+    RealType index = RealType.getRealType("rffp_index");
+    RealType a = RealType.getRealType("rffp_a");
+    RealType b = RealType.getRealType("rffp_b");
+    FunctionType type = new FunctionType(index, new RealTupleType(a, b));
+    FlatField field = new FlatField(type, new Integer1DSet(index, N));
+    float[][] values = new float[2][N];
+    for (int i=0; i<N; i++) {
+      values[0][i] = i;
+      values[1][i] = (i % 7 == 0) ? Float.NaN : -0.5f * i;
+    }
+    field.setSamples(values, false);
+    RemoteFlatFieldImpl remote = new RemoteFlatFieldImpl(field);
+
+    RemoteFlatFieldProxy proxy =
+      new RemoteFlatFieldProxy(remote, CHUNK, false, 2);
+
+    // intervals within, across and at the ends of chunks
+    int[][] intervals = {{0, 1}, {10, 40}, {60, 10}, {100, 300},
+                         {N - 5, 5}, {0, N}};
+    for (int k=0; k<intervals.length; k++) {
+      int start = intervals[k][0];
+      int count = intervals[k][1];
+      float[][] got = proxy.getFloats(null, start, count);
+      for (int c=0; c<2; c++) {
+        check(Arrays.equals(got[c],
+                            Arrays.copyOfRange(values[c], start, start + count)),
+              "component " + c + " of samples " + start + " to " +
+              (start + count) + " differ");
+      }
+      double[][] doubles = proxy.getValues(new int[] {1}, start, count);
+      for (int j=0; j<count; j++) {
+        if (Double.compare(doubles[0][j], values[1][start + j]) != 0) {
+          check(false, "double sample " + (start + j) + " differs");
+          break;
+        }
+      }
+    }
+
+    // reading the field in order through two cached chunks per
+    // component fetches each chunk once
+    proxy.clearCache();
+    long before = proxy.getBytesTransferred();
+    for (int start=0; start<N; start+=10) {
+      proxy.getFloats(new int[] {0}, start, Math.min(10, N - start));
+    }
+    long bytes = proxy.getBytesTransferred() - before;
+    check(bytes < 2L * 4 * N, "sequential read transferred " + bytes +
+          " bytes for " + (4 * N) + " bytes of values");
+
+    // only the last two chunks are kept, so the first is fetched again
+    before = proxy.getBytesTransferred();
+    proxy.getFloats(new int[] {0}, N - 1, 1);
+    check(proxy.getBytesTransferred() == before, "last chunk not cached");
+    proxy.getFloats(new int[] {0}, 0, 1);
+    check(proxy.getBytesTransferred() > before,
+          "first chunk still cached after reading " + (N / CHUNK) +
+          " chunks through a cache of 2");
+
+    // the FlatField adapting the proxy
+    FlatField local = new RemoteFlatFieldProxy(remote, CHUNK, false, 2)
+                        .getFlatField();
+    check(local.getType().equals(type), "adapter has type " +
+          local.getType());
+    check(local.getLength() == N, "adapter has " + local.getLength() +
+          " samples");
+    double[] sample =
+      ((RealTuple) local.getSample(21)).getValues();
+    check(sample[0] == 21 && Double.isNaN(sample[1]),
+          "adapter sample 21 is " + Arrays.toString(sample));
+    check(Arrays.equals(local.getRangeFloats(1, 130, 70),
+                        Arrays.copyOfRange(values[1], 130, 200)),
+          "adapter interval differs");
+    float[][] all = local.getFloats(false);
+    check(Arrays.equals(all[0], values[0]) && Arrays.equals(all[1], values[1]),
+          "adapter values differ");
+  }
+
+  private static void check(boolean ok, String message) {
+    if (!ok) {
+      failures++;
+      System.out.println("FAILED: " + message);
+    }
+  }
+}
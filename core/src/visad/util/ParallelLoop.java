@@ -0,0 +1,311 @@
+//
+// ParallelLoop.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2015 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import visad.VisADException;
+
+/**
+ * Splits a loop over a range of sample indices into contiguous chunks
+ * and runs the chunks concurrently on a shared pool of daemon threads.
+ * Loops shorter than the parallel threshold, loops started from inside
+ * a pool thread, and all loops when only one thread is configured are
+ * run on the calling thread, so callers need no separate serial path.
+ * <P>
+ * The threshold and thread count default to the values of the
+ * <code>visad.parallel.threshold</code> and
+ * <code>visad.parallel.threads</code> system properties.
+ */
+public final class ParallelLoop {
+
+  /** System property giving the default parallel threshold */
+  public static final String THRESHOLD_PROPERTY = "visad.parallel.threshold";
+
+  /** System property giving the default number of threads */
+  public static final String THREADS_PROPERTY = "visad.parallel.threads";
+
+  /** default minimum loop length for parallel execution */
+  public static final int DEFAULT_THRESHOLD = 1 << 18;
+
+  /** smallest chunk handed to a single thread */
+  private static final int MIN_CHUNK = 1 << 14;
+
+  /** loops shorter than this are run on the calling thread */
+  private static int threshold =
+    Integer.getInteger(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD).intValue();
+
+  /** maximum number of threads (including the caller) used by a loop */
+  private static int maxThreads =
+    Integer.getInteger(THREADS_PROPERTY,
+                       Runtime.getRuntime().availableProcessors()).intValue();
+
+  /** shared worker pool, created on first use */
+  private static ExecutorService pool = null;
+
+  /** pool size of the current pool */
+  private static int poolSize = 0;
+
+  private static final Object POOL_LOCK = new Object();
+
+  /** marks pool threads so nested loops run inline */
+  private static final ThreadLocal<Boolean> IN_POOL = new ThreadLocal<Boolean>();
+
+  /**
+   * The work done for one chunk of a loop.
+   */
+  public interface Body {
+
+    /**
+     * Process the samples with indices <code>start</code> (inclusive)
+     * through <code>end</code> (exclusive).  Distinct chunks of the
+     * same loop may be processed concurrently.
+     *
+     * @param start     first index of the chunk
+     * @param end       one past the last index of the chunk
+     * @throws VisADException  processing failed
+     */
+    void run(int start, int end) throws VisADException;
+  }
+
+  private ParallelLoop() {
+  }
+
+  /**
+   * @return the minimum loop length for parallel execution
+   */
+  public static int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Set the minimum loop length for parallel execution;
+   * <code>Integer.MAX_VALUE</code> effectively disables it.
+   *
+   * @param length  minimum number of samples
+   */
+  public static void setThreshold(int length) {
+    threshold = Math.max(length, 1);
+  }
+
+  /**
+   * @return the maximum number of threads used by one loop
+   */
+  public static int getMaxThreads() {
+    return maxThreads;
+  }
+
+  /**
+   * Set the maximum number of threads used by one loop, including the
+   * calling thread; 1 runs every loop serially.
+   *
+   * @param num  number of threads
+   */
+  public static void setMaxThreads(int num) {
+    maxThreads = Math.max(num, 1);
+  }
+
+  /**
+   * Return whether a loop of the given length would be split across
+   * threads if started from the current thread.
+   *
+   * @param length  loop length
+   * @return <tt>true</tt> if the loop would run in parallel
+   */
+  public static boolean isParallel(int length) {
+    return getChunkCount(length) > 1;
+  }
+
+  /**
+   * Run <code>body</code> over the indices <code>0</code> through
+   * <code>length - 1</code>, in parallel if <code>length</code> is at
+   * least the parallel threshold.  Returns once every chunk is done.
+   * If any chunk fails, the first failure is rethrown after all chunks
+   * have finished.
+   *
+   * @param length  loop length
+   * @param body    the work done for each chunk
+   * @throws VisADException  a chunk threw a VisADException
+   */
+  public static void run(int length, Body body) throws VisADException {
+    run(length, getChunkCount(length), body);
+  }
+
+  /**
+   * Run <code>body</code> over <code>count</code> independent tasks,
+   * numbered <code>0</code> through <code>count - 1</code>, spreading
+   * them over threads if <code>work</code>, their total cost in samples,
+   * is at least the parallel threshold.  Use this rather than
+   * {@link #run(int, Body)} when there are only a few tasks, each
+   * processing many samples.
+   *
+   * @param count   number of tasks
+   * @param work    total number of samples processed by all tasks
+   * @param body    the work done for each range of tasks
+   * @throws VisADException  a task threw a VisADException
+   */
+  public static void runTasks(int count, long work, Body body)
+         throws VisADException {
+    int chunks = 1;
+    if (maxThreads >= 2 && work >= threshold && IN_POOL.get() == null) {
+      chunks = Math.min(maxThreads, count);
+    }
+    run(count, chunks, body);
+  }
+
+  private static void run(int length, int chunks, Body body)
+          throws VisADException {
+    if (chunks <= 1) {
+      if (length > 0) body.run(0, length);
+      return;
+    }
+
+    int size = (length + chunks - 1) / chunks;
+    List<Future<Object>> futures = new ArrayList<Future<Object>>(chunks - 1);
+    for (int start = size; start < length; start += size) {
+      Chunk chunk = new Chunk(body, start, Math.min(start + size, length));
+      futures.add(submit(chunk, chunks - 1));
+    }
+
+    // the calling thread takes the first chunk
+    Throwable failure = null;
+    try {
+      body.run(0, size);
+    }
+    catch (VisADException e) {
+      failure = e;
+    }
+    catch (RuntimeException e) {
+      failure = e;
+    }
+    catch (Error e) {
+      failure = e;
+    }
+
+    boolean interrupted = false;
+    for (Future<Object> f : futures) {
+      while (true) {
+        try {
+          f.get();
+          break;
+        }
+        catch (InterruptedException e) {
+          interrupted = true;
+        }
+        catch (ExecutionException e) {
+          if (failure == null) failure = e.getCause();
+          break;
+        }
+      }
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+
+    if (failure instanceof VisADException) throw (VisADException) failure;
+    if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+    if (failure instanceof Error) throw (Error) failure;
+    if (failure != null) throw new VisADException(failure.toString());
+  }
+
+  private static int getChunkCount(int length) {
+    int threads = maxThreads;
+    if (threads < 2 || length < threshold || length < 2 * MIN_CHUNK ||
+        IN_POOL.get() != null) {
+      return 1;
+    }
+    return Math.min(threads, length / MIN_CHUNK);
+  }
+
+  /**
+   * Submit <code>chunk</code> to a pool of at least <code>size</code>
+   * threads.  A pool replaced by a larger one (for a loop started on
+   * another thread) is shut down and rejects new chunks, so those go to
+   * the new pool; chunks already queued on the old pool still run.
+   */
+  private static Future<Object> submit(Chunk chunk, int size) {
+    while (true) {
+      try {
+        return getPool(size).submit(chunk);
+      }
+      catch (RejectedExecutionException e) {
+        // shut down since getPool returned it; try the new pool
+      }
+    }
+  }
+
+  private static ExecutorService getPool(int size) {
+    synchronized (POOL_LOCK) {
+      if (pool == null || poolSize < size) {
+        if (pool != null) pool.shutdown();
+        poolSize = Math.max(size, maxThreads - 1);
+        pool = Executors.newFixedThreadPool(poolSize, new PoolThreadFactory());
+      }
+      return pool;
+    }
+  }
+
+  /** one chunk of a loop, run on a pool thread */
+  private static class Chunk implements Callable<Object> {
+    private final Body body;
+    private final int start;
+    private final int end;
+
+    Chunk(Body body, int start, int end) {
+      this.body = body;
+      this.start = start;
+      this.end = end;
+    }
+
+    public Object call() throws Exception {
+      body.run(start, end);
+      return null;
+    }
+  }
+
+  /** creates named daemon threads that are marked as pool threads */
+  private static class PoolThreadFactory implements ThreadFactory {
+    private int count = 0;
+
+    public synchronized Thread newThread(final Runnable r) {
+      Thread t = new Thread(new Runnable() {
+        public void run() {
+          IN_POOL.set(Boolean.TRUE);
+          r.run();
+        }
+      }, "ParallelLoop-" + (++count));
+      t.setDaemon(true);
+      return t;
+    }
+  }
+}